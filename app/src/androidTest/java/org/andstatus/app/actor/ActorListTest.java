@@ -102,13 +102,11 @@ public class ActorListTest extends TimelineActivityTest<ActivityViewItem> {
 
         assertEquals(listItems.toString(), 5, listItems.size());
 
-        Actor actorE = MyContextHolder.get().users().actors.values().stream()
-                .filter(actor -> actor.oid.equals(demoData.conversationAuthorThirdActorOid))
-                .findAny().orElse(Actor.EMPTY);
-        assertTrue("Found " + demoData.conversationAuthorThirdActorOid
-                + " cached " + MyContextHolder.get().users().actors, actorE.nonEmpty());
         Actor actorA = getByActorOid(listItems, demoData.conversationAuthorThirdActorOid);
         assertTrue("Found " + demoData.conversationAuthorThirdActorOid + ", " + logMsg, actorA != null);
+        Actor actorE = MyContextHolder.get().users().getCachedActor(actorA.actorId);
+        assertTrue("Found " + demoData.conversationAuthorThirdActorOid
+                + " cached " + MyContextHolder.get().users().getCacheInfo(), actorE.nonEmpty());
         compareAttributes(actorE, actorA, false);
 
         ListActivityTestHelper<ActorList> actorListHelper = new ListActivityTestHelper<>(actorList);
@@ -6,8 +6,13 @@ import android.accounts.AccountManager;
 import android.accounts.AccountManagerFuture;
 import android.accounts.AuthenticatorException;
 import android.accounts.OperationCanceledException;
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.pm.PackageManager.NameNotFoundException;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.provider.BaseColumns;
 import android.support.test.rule.GrantPermissionRule;
 
 import org.andstatus.app.account.MyAccount;
@@ -15,6 +20,15 @@ import org.andstatus.app.account.MyAccounts;
 import org.andstatus.app.context.MyContextHolder;
 import org.andstatus.app.context.MyStorage;
 import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.data.DbUtils;
+import org.andstatus.app.data.NoteSearchIndex;
+import org.andstatus.app.database.DatabaseCreator;
+import org.andstatus.app.database.DatabaseHolder;
+import org.andstatus.app.database.table.ActorTable;
+import org.andstatus.app.database.table.AudienceTable;
+import org.andstatus.app.database.table.FriendshipTable;
+import org.andstatus.app.database.table.NoteTable;
+import org.andstatus.app.database.table.OriginTable;
 import org.andstatus.app.service.MyServiceManager;
 import org.andstatus.app.util.FileUtils;
 import org.andstatus.app.util.MyLog;
@@ -30,11 +44,15 @@ import org.junit.Test;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static org.andstatus.app.context.DemoData.demoData;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class MyBackupAgentTest {
@@ -79,6 +97,152 @@ public class MyBackupAgentTest {
         deleteBackup(dataFolder);
     }
 
+    /** Rows are changed between backups, so the first delta is replayed before the last one */
+    @Test
+    public void testIncrementalBackupRestore() throws IOException, JSONException {
+        MyAccounts accountsBefore = MyAccounts.newEmpty(MyContextHolder.get());
+        accountsBefore.initialize();
+
+        File outputFolder = MyContextHolder.get().context().getCacheDir();
+        File dataFolder = testBackup(outputFolder);
+
+        SQLiteDatabase db = MyContextHolder.get().getDatabase();
+        final long noteId = DatabaseUtils.longForQuery(db, "SELECT " + AudienceTable.NOTE_ID
+                + " FROM " + AudienceTable.TABLE_NAME + " GROUP BY " + AudienceTable.NOTE_ID
+                + " HAVING COUNT(*) > 1 ORDER BY " + AudienceTable.NOTE_ID + " LIMIT 1", null);
+        final long actorId = DatabaseUtils.longForQuery(db, "SELECT " + NoteTable.AUTHOR_ID
+                + " FROM " + NoteTable.TABLE_NAME + " WHERE " + BaseColumns._ID + "=" + noteId, null);
+        assertTrue("Note with audience: " + noteId + ", author: " + actorId, noteId != 0 && actorId != 0);
+        final String contentStored = stringOf(db, NoteTable.TABLE_NAME, NoteTable.CONTENT, noteId);
+        final String contentToSearchStored = stringOf(db, NoteTable.TABLE_NAME, NoteTable.CONTENT_TO_SEARCH, noteId);
+        final String realNameStored = stringOf(db, ActorTable.TABLE_NAME, ActorTable.REAL_NAME, actorId);
+        final long audienceActorId = DatabaseUtils.longForQuery(db, "SELECT " + AudienceTable.ACTOR_ID
+                + " FROM " + AudienceTable.TABLE_NAME + " WHERE " + AudienceTable.NOTE_ID + "=" + noteId
+                + " ORDER BY " + AudienceTable.ACTOR_ID + " LIMIT 1", null);
+        final long audienceCount = audienceCount(db, noteId);
+
+        final String word1 = "deltaone" + demoData.testRunUid;
+        updateNote(db, noteId, word1);
+        db.delete(AudienceTable.TABLE_NAME, AudienceTable.NOTE_ID + "=" + noteId
+                + " AND " + AudienceTable.ACTOR_ID + "=" + audienceActorId, null);
+        ContentValues noteChanges = new ContentValues();
+        noteChanges.put(NoteTable.NOTE_OID, "deltaNote" + demoData.testRunUid);
+        final long newNoteId = copyRow(db, NoteTable.TABLE_NAME, noteId, noteChanges);
+        updateActor(db, actorId, "Delta one " + demoData.testRunUid);
+        ContentValues actorChanges = new ContentValues();
+        actorChanges.put(ActorTable.ACTOR_OID, "deltaActor" + demoData.testRunUid);
+        actorChanges.put(ActorTable.USERNAME, "deltaActor" + demoData.testRunUid);
+        actorChanges.put(ActorTable.WEBFINGER_ID, "deltaactor" + demoData.testRunUid + "@example.com");
+        final long newActorId = copyRow(db, ActorTable.TABLE_NAME, actorId, actorChanges);
+        ContentValues friendship = new ContentValues();
+        friendship.put(FriendshipTable.ACTOR_ID, newActorId);
+        friendship.put(FriendshipTable.FRIEND_ID, actorId);
+        friendship.put(FriendshipTable.FOLLOWED, 1);
+        db.insert(FriendshipTable.TABLE_NAME, null, friendship);
+        File deltaFolder1 = testIncrementalBackup(outputFolder, Collections.singletonList(dataFolder));
+
+        final String word2 = "deltatwo" + demoData.testRunUid;
+        updateNote(db, noteId, word2);
+        final String realName2 = "Delta two " + demoData.testRunUid;
+        updateActor(db, newActorId, realName2);
+        friendship.put(FriendshipTable.FOLLOWED, 0);
+        db.replace(FriendshipTable.TABLE_NAME, null, friendship);
+        File deltaFolder2 = testIncrementalBackup(outputFolder, Arrays.asList(dataFolder, deltaFolder1));
+
+        deleteApplicationData();
+        testRestore(deltaFolder2);
+
+        TestSuite.forget();
+        TestSuite.initialize(this);
+        assertEquals("Persistent accounts", accountsBefore, MyContextHolder.get().accounts());
+
+        db = MyContextHolder.get().getDatabase();
+        assertEquals("Content of the note, changed in both deltas", word2 + " changed",
+                stringOf(db, NoteTable.TABLE_NAME, NoteTable.CONTENT, noteId));
+        assertEquals("Note search index updated", 1, matchingCount(db, noteId, word2));
+        assertEquals("Old content is not found", 0, matchingCount(db, noteId, word1));
+        assertEquals("Audience of the changed note replaced", audienceCount - 1, audienceCount(db, noteId));
+        assertEquals("New note", "deltaNote" + demoData.testRunUid,
+                stringOf(db, NoteTable.TABLE_NAME, NoteTable.NOTE_OID, newNoteId));
+        assertEquals("Changed actor", "Delta one " + demoData.testRunUid,
+                stringOf(db, ActorTable.TABLE_NAME, ActorTable.REAL_NAME, actorId));
+        assertEquals("New actor, changed in the second delta", realName2,
+                stringOf(db, ActorTable.TABLE_NAME, ActorTable.REAL_NAME, newActorId));
+        assertEquals("Friendship, changed in the second delta", 0, DatabaseUtils.longForQuery(db,
+                "SELECT " + FriendshipTable.FOLLOWED + " FROM " + FriendshipTable.TABLE_NAME
+                        + " WHERE " + FriendshipTable.ACTOR_ID + "=" + newActorId
+                        + " AND " + FriendshipTable.FRIEND_ID + "=" + actorId, null));
+
+        db.delete(FriendshipTable.TABLE_NAME, FriendshipTable.ACTOR_ID + "=" + newActorId, null);
+        db.delete(ActorTable.TABLE_NAME, BaseColumns._ID + "=" + newActorId, null);
+        db.delete(AudienceTable.TABLE_NAME, AudienceTable.NOTE_ID + "=" + newNoteId, null);
+        db.delete(NoteTable.TABLE_NAME, BaseColumns._ID + "=" + newNoteId, null);
+        NoteSearchIndex.delete(db, Collections.singletonList(newNoteId));
+        ContentValues audience = new ContentValues();
+        audience.put(AudienceTable.NOTE_ID, noteId);
+        audience.put(AudienceTable.ACTOR_ID, audienceActorId);
+        db.insert(AudienceTable.TABLE_NAME, null, audience);
+        ContentValues note = new ContentValues();
+        note.put(NoteTable.CONTENT, contentStored);
+        note.put(NoteTable.CONTENT_TO_SEARCH, contentToSearchStored);
+        db.update(NoteTable.TABLE_NAME, note, BaseColumns._ID + "=" + noteId, null);
+        NoteSearchIndex.update(db, noteId, contentToSearchStored);
+        ContentValues actor = new ContentValues();
+        actor.put(ActorTable.REAL_NAME, realNameStored);
+        db.update(ActorTable.TABLE_NAME, actor, BaseColumns._ID + "=" + actorId, null);
+        TestSuite.initializeWithData(this);
+
+        deleteBackup(deltaFolder2);
+        deleteBackup(deltaFolder1);
+        deleteBackup(dataFolder);
+    }
+
+    /** The updated date is later than the high-water mark, so the note is in the next delta */
+    private static void updateNote(SQLiteDatabase db, long noteId, String word) {
+        db.execSQL("UPDATE " + NoteTable.TABLE_NAME + " SET " + NoteTable.CONTENT + "=?, "
+                + NoteTable.CONTENT_TO_SEARCH + "=?, " + NoteTable.UPDATED_DATE
+                + "=(SELECT MAX(" + NoteTable.UPDATED_DATE + ") FROM " + NoteTable.TABLE_NAME + ") + 1000"
+                + " WHERE " + BaseColumns._ID + "=" + noteId, new Object[]{word + " changed", word + " changed"});
+        NoteSearchIndex.update(db, noteId, word + " changed");
+    }
+
+    private static void updateActor(SQLiteDatabase db, long actorId, String realName) {
+        db.execSQL("UPDATE " + ActorTable.TABLE_NAME + " SET " + ActorTable.REAL_NAME + "=?, "
+                + ActorTable.UPDATED_DATE
+                + "=(SELECT MAX(" + ActorTable.UPDATED_DATE + ") FROM " + ActorTable.TABLE_NAME + ") + 1000"
+                + " WHERE " + BaseColumns._ID + "=" + actorId, new Object[]{realName});
+    }
+
+    private static long copyRow(SQLiteDatabase db, String tableName, long id, ContentValues changes) {
+        ContentValues values = new ContentValues();
+        try (Cursor cursor = db.rawQuery("SELECT * FROM " + tableName
+                + " WHERE " + BaseColumns._ID + "=" + id, null)) {
+            assertTrue("Row " + id + " of " + tableName, cursor.moveToFirst());
+            DatabaseUtils.cursorRowToContentValues(cursor, values);
+        }
+        values.remove(BaseColumns._ID);
+        values.putAll(changes);
+        long newId = db.insert(tableName, null, values);
+        assertTrue("Copy of " + id + " in " + tableName, newId > 0);
+        return newId;
+    }
+
+    private static String stringOf(SQLiteDatabase db, String tableName, String columnName, long id) {
+        return DatabaseUtils.stringForQuery(db, "SELECT " + columnName + " FROM " + tableName
+                + " WHERE " + BaseColumns._ID + "=" + id, null);
+    }
+
+    private static long audienceCount(SQLiteDatabase db, long noteId) {
+        return DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM " + AudienceTable.TABLE_NAME
+                + " WHERE " + AudienceTable.NOTE_ID + "=" + noteId, null);
+    }
+
+    private static long matchingCount(SQLiteDatabase db, long noteId, String word) {
+        return DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM " + NoteTable.TABLE_NAME
+                + " WHERE " + BaseColumns._ID + "=" + noteId
+                + " AND " + NoteSearchIndex.getNoteIdsMatching(BaseColumns._ID), new String[]{word});
+    }
+
     private void compareOneAccount(MyAccounts accountsExpected, MyAccounts accountsActual, String accountName) throws JSONException {
         MyAccount oldAccount = accountsExpected.fromAccountName(accountName);
         MyAccount newAccount = accountsActual.fromAccountName(accountName);
@@ -119,7 +283,44 @@ public class MyBackupAgentTest {
         assertTrue(accountData.exists());
         JSONArray jsa = FileUtils.getJSONArray(accountData);
         assertTrue(jsa.length() > 2);
-        
+
+        File databaseHeader = new File(backupManager.getDataFolder(),
+                MyBackupAgent.DATABASE_KEY + "_" + DatabaseHolder.DATABASE_NAME + "_header.json");
+        assertTrue(databaseHeader.exists());
+        jso = FileUtils.getJSONObject(databaseHeader);
+        assertEquals(MyBackupDataOutput.COMPRESSION_GZIP, jso.getString(MyBackupDataOutput.KEY_COMPRESSION));
+        assertTrue(jso.getLong(MyBackupDataOutput.KEY_CHECKSUM) >= 0);
+        assertTrue(jso.getLong(MyBackupDataOutput.KEY_FILE_SIZE) > jso.getLong(MyBackupDataOutput.KEY_DATA_SIZE));
+
+        return backupManager.getDataFolder();
+    }
+
+    /** @param baseChain data folders of the full backup and of the incremental ones after it */
+    private File testIncrementalBackup(File backupFolder, List<File> baseChain) throws IOException, JSONException {
+        // Data folder names differ in seconds
+        DbUtils.waitMs(this, 1100);
+        MyBackupManager backupManager = new MyBackupManager(null, null);
+        backupManager.prepareForBackup(backupFolder, true);
+        backupManager.backup();
+        assertEquals("Databases backed up", 1, backupManager.getBackupAgent().getDatabasesBackedUp());
+
+        JSONObject jso = FileUtils.getJSONObject(backupManager.getDescriptorFile());
+        assertEquals(baseChain.get(baseChain.size() - 1).getName(), jso.getString(MyBackupDescriptor.KEY_BASE_BACKUP));
+        assertEquals(baseChain.size(), jso.getInt(MyBackupDescriptor.KEY_DELTA_NUMBER));
+        assertEquals(DatabaseCreator.DATABASE_VERSION, jso.getInt(MyBackupDescriptor.KEY_DATABASE_VERSION));
+        JSONObject noteMarks = jso.getJSONObject(MyBackupDescriptor.KEY_HIGH_WATER_MARKS)
+                .getJSONObject(NoteTable.TABLE_NAME);
+        assertTrue(noteMarks.toString(), noteMarks.getLong(DatabaseDelta.KEY_MAX_ID) > 0);
+
+        assertFalse("No database file in incremental backup", new File(backupManager.getDataFolder(),
+                MyBackupAgent.DATABASE_KEY + "_" + DatabaseHolder.DATABASE_NAME + "_header.json").exists());
+        assertTrue("Whole small table", new File(backupManager.getDataFolder(),
+                DatabaseDelta.KEY_PREFIX + OriginTable.TABLE_NAME + "_header.json").exists());
+        List<File> chain = new ArrayList<>(baseChain);
+        chain.add(backupManager.getDataFolder());
+        assertEquals(chain,
+                MyBackupManager.getBackupChain(backupManager.getDataFolder(), backupManager.getNewDescriptor()));
+
         return backupManager.getDataFolder();
     }
 
@@ -2,9 +2,11 @@ package org.andstatus.app.data;
 
 import android.net.Uri;
 
+import org.andstatus.app.context.MyContext;
 import org.andstatus.app.context.MyContextHolder;
 import org.andstatus.app.context.MyPreferences;
 import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.database.table.DownloadTable;
 import org.andstatus.app.net.social.Attachment;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.RelativeTime;
@@ -131,6 +133,25 @@ public class DataPrunerTest {
         assertEquals("Nothing should be pruned, " + dirSize2 + " -> " + dirSize3, 0, prunedCount2);
     }
 
+    @Test
+    public void testRunningTotalOfMediaSize() {
+        MyContext myContext = MyContextHolder.get();
+        DownloadSize.reconcile(myContext);
+        assertFalse(DownloadSize.isTimeToReconcile(myContext));
+        long size1 = DownloadSize.getTotal(myContext, DownloadType.ATTACHMENT);
+        long sizeInTable = MyQuery.getLongs(myContext, "SELECT SUM(" + DownloadTable.FILE_SIZE + ")"
+                + " FROM " + DownloadTable.TABLE_NAME
+                + " WHERE " + DownloadTable.DOWNLOAD_TYPE + "=" + DownloadType.ATTACHMENT.save()
+                + " AND " + DownloadTable.DOWNLOAD_STATUS + "=" + DownloadStatus.LOADED.save())
+                .stream().findAny().orElse(0L);
+        assertEquals("Reconciled", sizeInTable, size1);
+
+        DownloadSize.add(myContext.getDatabase(), DownloadType.ATTACHMENT, 100);
+        assertEquals(size1 + 100, DownloadSize.getTotal(myContext, DownloadType.ATTACHMENT));
+        DownloadSize.reconcile(myContext);
+        assertEquals(size1, DownloadSize.getTotal(myContext, DownloadType.ATTACHMENT));
+    }
+
     private void clearPrunedDate() {
         SharedPreferencesUtil.putLong(MyPreferences.KEY_DATA_PRUNED_DATE, 0);
     }
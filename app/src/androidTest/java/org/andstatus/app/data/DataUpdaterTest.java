@@ -52,6 +52,7 @@ import org.andstatus.app.util.TriState;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.andstatus.app.context.DemoData.demoData;
@@ -188,6 +189,34 @@ public class DataUpdaterTest {
         assertEquals("Number of audience for " + activity, 1, audience.getActors().size());
     }
 
+    @Test
+    public void testActivitiesStoredInOneBatch() throws ConnectionException {
+        MyAccount ma = demoData.getConversationMyAccount();
+        Actor accountActor = ma.getActor();
+        String username = "batch" + demoData.testRunUid + "@pumpity.net";
+        Actor author = Actor.fromOid(accountActor.origin, OriginPumpio.ACCOUNT_PREFIX + username);
+        author.setUsername(username);
+
+        DemoNoteInserter inserter = new DemoNoteInserter(accountActor);
+        List<AActivity> activities = new ArrayList<>();
+        for (int ind = 0; ind < 3; ind++) {
+            activities.add(inserter.buildActivity(author, "", "Batched note " + ind + " " + demoData.testRunUid,
+                    null, "https://pumpity.net/api/note/batch" + ind + "-" + demoData.testRunUid, DownloadStatus.LOADED));
+        }
+        new DataUpdater(ma).onActivities(activities, true);
+
+        for (AActivity activity : activities) {
+            final long noteId = activity.getNote().noteId;
+            assertNotEquals("Note added " + activity, 0, noteId);
+            assertNotEquals("Activity added " + activity, 0, activity.getId());
+            assertEquals("Note found by oid " + activity, noteId,
+                    MyQuery.oidToId(myContext, OidEnum.NOTE_OID, accountActor.origin.getId(), activity.getNote().oid));
+        }
+        final long authorId = activities.get(0).getAuthor().actorId;
+        assertNotEquals("Author added", 0, authorId);
+        assertEquals("The same author of all notes", authorId, activities.get(2).getAuthor().actorId);
+    }
+
     @Test
     public void noteFavoritedByOtherActor() throws ConnectionException {
         MyAccount ma = demoData.getConversationMyAccount();
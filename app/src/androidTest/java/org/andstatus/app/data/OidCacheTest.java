@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2016 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+
+public class OidCacheTest {
+
+    @Test
+    public void testPutGetClear() {
+        OidCache cache = new OidCache();
+        assertEquals(0, cache.get(OidEnum.NOTE_OID, 1, "note1"));
+        cache.put(OidEnum.NOTE_OID, 1, "note1", 11);
+        cache.put(OidEnum.NOTE_OID, 2, "note1", 21);
+        cache.put(OidEnum.ACTOR_OID, 1, "note1", 31);
+        cache.put(OidEnum.REBLOG_OID, 1, "note1", 41);
+        cache.put(OidEnum.NOTE_OID, 1, "", 51);
+        assertEquals(11, cache.get(OidEnum.NOTE_OID, 1, "note1"));
+        assertEquals(21, cache.get(OidEnum.NOTE_OID, 2, "note1"));
+        assertEquals(31, cache.get(OidEnum.ACTOR_OID, 1, "note1"));
+        assertEquals("Not cacheable", 0, cache.get(OidEnum.REBLOG_OID, 1, "note1"));
+
+        cache.clear(OidEnum.NOTE_OID, 1);
+        assertEquals(0, cache.get(OidEnum.NOTE_OID, 1, "note1"));
+        assertEquals("Other origin is kept", 21, cache.get(OidEnum.NOTE_OID, 2, "note1"));
+        assertEquals(31, cache.get(OidEnum.ACTOR_OID, 1, "note1"));
+    }
+
+    @Test
+    public void testUpdateAndRemove() {
+        OidCache cache = new OidCache();
+        cache.put(OidEnum.NOTE_OID, 1, "tempOid", 11);
+        cache.put(OidEnum.NOTE_OID, 1, "note2", 12);
+        cache.update(OidEnum.NOTE_OID, 1, "note1", 11);
+        assertEquals("Previous oid is evicted", 0, cache.get(OidEnum.NOTE_OID, 1, "tempOid"));
+        assertEquals(11, cache.get(OidEnum.NOTE_OID, 1, "note1"));
+
+        cache.remove(OidEnum.NOTE_OID, 1, 11);
+        assertEquals(0, cache.get(OidEnum.NOTE_OID, 1, "note1"));
+        assertEquals(12, cache.get(OidEnum.NOTE_OID, 1, "note2"));
+
+        cache.put(OidEnum.NOTE_OID, 1, "note3", 13);
+        cache.remove(OidEnum.NOTE_OID, 1, new HashSet<>(Arrays.asList(12L, 14L)));
+        assertEquals(0, cache.get(OidEnum.NOTE_OID, 1, "note2"));
+        assertEquals(13, cache.get(OidEnum.NOTE_OID, 1, "note3"));
+    }
+
+    @Test
+    public void testBounded() {
+        OidCache cache = new OidCache();
+        for (int ind = 1; ind <= OidCache.MAX_SIZE_PER_ORIGIN + 1; ind++) {
+            cache.put(OidEnum.ACTIVITY_OID, 1, "act" + ind, ind);
+        }
+        assertEquals("Eldest entry evicted", 0, cache.get(OidEnum.ACTIVITY_OID, 1, "act1"));
+        assertEquals(2, cache.get(OidEnum.ACTIVITY_OID, 1, "act2"));
+    }
+}
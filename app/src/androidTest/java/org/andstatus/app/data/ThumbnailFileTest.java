@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.graphics.Bitmap;
+
+import org.andstatus.app.context.TestSuite;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ThumbnailFileTest {
+
+    @Before
+    public void setUp() throws Exception {
+        TestSuite.initialize(this);
+    }
+
+    @Test
+    public void testSaveLoadAndPrune() throws Exception {
+        File source = File.createTempFile("source", ".png");
+        assertTrue(source.setLastModified(System.currentTimeMillis() - 60000));
+        ThumbnailFile thumbnail = new ThumbnailFile(-123L, 16, 16);
+        assertNull("No thumbnail yet", thumbnail.load(source.getAbsolutePath()));
+
+        thumbnail.save(Bitmap.createBitmap(16, 8, Bitmap.Config.ARGB_8888));
+        Bitmap loaded = thumbnail.load(source.getAbsolutePath());
+        assertNotNull("Thumbnail loaded", loaded);
+        assertEquals(16, loaded.getWidth());
+        assertEquals(8, loaded.getHeight());
+        assertNull("Other target size", new ThumbnailFile(-123L, 32, 32).load(source.getAbsolutePath()));
+
+        assertTrue(source.setLastModified(System.currentTimeMillis() + 60000));
+        assertNull("Source file is newer", thumbnail.load(source.getAbsolutePath()));
+        assertTrue(source.setLastModified(System.currentTimeMillis() - 60000));
+
+        assertTrue(ThumbnailFile.getDirSize() > 0);
+        ThumbnailFile.prune(0);
+        assertEquals(0, ThumbnailFile.getDirSize());
+        assertNull("Pruned", thumbnail.load(source.getAbsolutePath()));
+        source.delete();
+    }
+}
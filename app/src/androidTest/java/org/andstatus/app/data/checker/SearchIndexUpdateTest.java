@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data.checker;
+
+import org.andstatus.app.account.MyAccount;
+import org.andstatus.app.context.MyContext;
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.data.MyQuery;
+import org.andstatus.app.data.OidEnum;
+import org.andstatus.app.database.table.NoteTable;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.andstatus.app.context.DemoData.demoData;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SearchIndexUpdateTest {
+    private MyContext myContext;
+
+    @Before
+    public void setUp() {
+        TestSuite.initializeWithData(this);
+        myContext = MyContextHolder.get();
+    }
+
+    @Test
+    public void testChunksAndCheckpoint() {
+        MyAccount ma = demoData.getMyAccount(demoData.conversationAccountName);
+        long noteId = MyQuery.oidToId(OidEnum.NOTE_OID, ma.getOriginId(), demoData.conversationEntryNoteOid);
+        assertNotEquals("No note " + demoData.conversationEntryNoteOid, 0, noteId);
+        myContext.getDatabase().execSQL("UPDATE " + NoteTable.TABLE_NAME
+                + " SET " + NoteTable.CONTENT_TO_SEARCH + "='spoiled'"
+                + " WHERE " + NoteTable._ID + "=" + noteId);
+
+        DataChecker checker = new SearchIndexUpdate().setMyContext(myContext);
+        checker.setCheckpoint(noteId + 1);
+        assertTrue("Spoiled note " + noteId, checker.countChanges() > 0);
+        assertEquals("Counting doesn't touch the checkpoint", noteId + 1, checker.getCheckpoint());
+
+        DataChecker.requestStop();
+        try {
+            assertEquals("Stopped before the first chunk", 0, checker.fix());
+            assertEquals("Stopped walk keeps its checkpoint", noteId + 1, checker.getCheckpoint());
+        } finally {
+            DataChecker.stopRequested.set(false);
+        }
+
+        assertTrue("Resumed from the checkpoint " + (noteId + 1), checker.fix() > 0);
+        assertEquals("Checkpoint of the completed walk", 0, checker.getCheckpoint());
+        assertEquals("After the fix", 0, checker.countChanges());
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.andstatus.app.database;
 
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 
 import org.andstatus.app.context.MyContextHolder;
@@ -28,6 +29,7 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 public class DatabaseCreatorTest {
 
@@ -46,4 +48,12 @@ public class DatabaseCreatorTest {
         assertNotEquals("Origin Twitter doesn't exist", 0, originId );
     }
 
+    @Test
+    public void testWriteAheadLogging() {
+        final SQLiteDatabase database = MyContextHolder.get().getDatabase();
+        assertTrue("WAL mode " + database.getPath(), database.isWriteAheadLoggingEnabled());
+        assertEquals("wal", DatabaseUtils.stringForQuery(database, "PRAGMA journal_mode", null));
+        assertTrue("Checkpoint", MyContextHolder.get().getMyDatabase().checkpoint());
+    }
+
 }
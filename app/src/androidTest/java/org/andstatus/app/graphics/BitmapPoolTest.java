@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.graphics;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BitmapPoolTest {
+
+    @Test
+    public void testPoolIsLimitedByBytes() {
+        Bitmap small1 = Bitmap.createBitmap(10, 10, CachedImage.BITMAP_CONFIG);
+        Bitmap small2 = Bitmap.createBitmap(10, 10, CachedImage.BITMAP_CONFIG);
+        Bitmap large = Bitmap.createBitmap(20, 10, CachedImage.BITMAP_CONFIG);
+        BitmapPool pool = new BitmapPool(small1.getAllocationByteCount() * 3);
+
+        assertNull("Nothing is pre-allocated", pool.get(10, 10, CachedImage.BITMAP_CONFIG));
+        pool.put(small1);
+        pool.put(small2);
+        assertEquals(2, pool.getCount());
+        pool.put(large);
+        assertEquals("The least recently released bitmap evicted", 2, pool.getCount());
+        assertFalse("Evicted bitmap is not recycled", small1.isRecycled());
+        assertEquals(small2.getAllocationByteCount() + large.getAllocationByteCount(), pool.getSizeBytes());
+
+        assertNull("Other size", pool.get(10, 20, CachedImage.BITMAP_CONFIG));
+        assertTrue(large == pool.get(20, 10, CachedImage.BITMAP_CONFIG));
+        assertTrue(small2 == pool.get(10, 10, CachedImage.BITMAP_CONFIG));
+        assertEquals(0, pool.getCount());
+        assertEquals(0, pool.getSizeBytes());
+
+        pool.put(small2);
+        pool.evictAll();
+        assertEquals(0, pool.getCount());
+        assertNull(pool.get(10, 10, CachedImage.BITMAP_CONFIG));
+    }
+
+    @Test
+    public void testBitmapOfShownImageIsNotPooled() {
+        Bitmap bitmap = Bitmap.createBitmap(10, 10, CachedImage.BITMAP_CONFIG);
+        BitmapPool pool = new BitmapPool(bitmap.getAllocationByteCount() * 3);
+        CachedImage image = new CachedImage(1, bitmap, new Rect(0, 0, 10, 10), pool);
+
+        assertTrue(image.acquire());
+        assertTrue(image.acquire());
+        image.makeExpired();
+        assertFalse("Expired image cannot be acquired", image.acquire());
+        image.release();
+        assertEquals("Still shown", 0, pool.getCount());
+        image.release();
+        assertEquals("Released by all its users", 1, pool.getCount());
+        image.release();
+        assertEquals(1, pool.getCount());
+        assertTrue(bitmap == pool.get(10, 10, CachedImage.BITMAP_CONFIG));
+
+        Bitmap bitmap2 = Bitmap.createBitmap(10, 10, CachedImage.BITMAP_CONFIG);
+        CachedImage image2 = new CachedImage(2, bitmap2, new Rect(0, 0, 10, 10), pool);
+        assertTrue(image2.getDrawable() != null);
+        image2.makeExpired();
+        assertEquals("The drawable was shared", 0, pool.getCount());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.net.http;
+
+import org.andstatus.app.context.MyPreferences;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.util.SharedPreferencesUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cz.msebera.android.httpclient.client.HttpClient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HttpClientPoolTest {
+    private String maxConnectionsStored;
+
+    @Before
+    public void setUp() throws Exception {
+        TestSuite.initialize(this);
+        maxConnectionsStored = SharedPreferencesUtil.getString(MyPreferences.KEY_MAX_CONNECTIONS_PER_HOST, "");
+        HttpClientPool.clear();
+    }
+
+    @After
+    public void tearDown() {
+        SharedPreferencesUtil.putString(MyPreferences.KEY_MAX_CONNECTIONS_PER_HOST, maxConnectionsStored);
+        HttpClientPool.clear();
+    }
+
+    @Test
+    public void testClientsAreShared() {
+        HttpClient client1 = clientOf(1, SslModeEnum.SECURE);
+        assertSame(client1, clientOf(1, SslModeEnum.SECURE));
+        assertNotSame(client1, clientOf(2, SslModeEnum.SECURE));
+        assertNotSame(client1, clientOf(1, SslModeEnum.INSECURE));
+        HttpClient misconfigured = clientOf(1, SslModeEnum.MISCONFIGURED);
+        assertSame(misconfigured, clientOf(1, SslModeEnum.MISCONFIGURED));
+        assertEquals(4, HttpClientPool.size());
+
+        changeMaxConnections();
+        HttpClient client2 = clientOf(1, SslModeEnum.SECURE);
+        assertNotSame("Recreated after the preference change", client1, client2);
+        assertSame(client2, clientOf(1, SslModeEnum.SECURE));
+        assertEquals(4, HttpClientPool.size());
+    }
+
+    @Test
+    public void testRetiredClientIsShutDownAfterRelease() {
+        HttpClientPool.Lease lease1 = HttpClientPool.acquire(1, SslModeEnum.SECURE);
+        HttpClientPool.Lease lease2 = HttpClientPool.acquire(1, SslModeEnum.SECURE);
+        assertSame(lease1.client, lease2.client);
+
+        changeMaxConnections();
+        HttpClientPool.Lease lease3 = HttpClientPool.acquire(1, SslModeEnum.SECURE);
+        assertNotSame("Recreated after the preference change", lease1.client, lease3.client);
+        assertFalse("Requests are in flight", lease1.isShutDown());
+
+        lease1.close();
+        lease1.close();
+        assertFalse("Released twice by the same lease", lease2.isShutDown());
+        lease2.close();
+        assertTrue("Shut down after the last release", lease1.isShutDown());
+        assertFalse(lease3.isShutDown());
+
+        HttpClientPool.clear();
+        assertFalse("Cleared, but the request is in flight", lease3.isShutDown());
+        lease3.close();
+        assertTrue(lease3.isShutDown());
+    }
+
+    private static HttpClient clientOf(long originId, SslModeEnum sslMode) {
+        try (HttpClientPool.Lease lease = HttpClientPool.acquire(originId, sslMode)) {
+            return lease.client;
+        }
+    }
+
+    private static void changeMaxConnections() {
+        SharedPreferencesUtil.putString(MyPreferences.KEY_MAX_CONNECTIONS_PER_HOST,
+                Integer.toString(MyPreferences.getMaxConnectionsPerHost() + 1));
+    }
+}
@@ -21,9 +21,16 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class HttpReadResultTest {
 
@@ -49,4 +56,44 @@ public class HttpReadResultTest {
         assertEquals(true, result.hasFormParams());
         assertTrue(result.toString(), result.toString().contains("posted"));
     }
+
+    @Test
+    public void testResultItemsToConsumer() throws ConnectionException, IOException {
+        final String url = "https://example.com/somepath/file.html";
+        final String in = "{\"since_id\":\"123\",\"ignored\":[1,2],"
+                + "\"items\":[{\"text\":\"Text1\",\"id\":12345678901,\"nested\":{\"a\":[true,null,1.5]}},"
+                + "{\"text\":\"Text2\",\"id\":2}]}";
+        List<JSONObject> items = new ArrayList<>();
+        HttpReadResult result = new HttpReadResult(url).setItemConsumer("items", items::add);
+        result.readStream(new ByteArrayInputStream(in.getBytes(StandardCharsets.UTF_8)));
+        result.readItems();
+        assertEquals(2, items.size());
+        assertEquals("Text1", items.get(0).optString("text"));
+        assertEquals(12345678901L, items.get(0).optLong("id"));
+        assertEquals(1.5, items.get(0).optJSONObject("nested").optJSONArray("a").optDouble(2), 0.001);
+        assertEquals("Text2", items.get(1).optString("text"));
+
+        items.clear();
+        HttpReadResult result2 = new HttpReadResult(url).setItemConsumer("items", items::add);
+        result2.strResponse = "[{\"text\":\"Text3\"}]";
+        result2.readItems();
+        assertEquals(1, items.size());
+        assertEquals("Text3", items.get(0).optString("text"));
+    }
+
+    @Test
+    public void testErrorObjectInsteadOfItems() throws IOException {
+        final String url = "https://example.com/somepath/file.html";
+        final String in = "{\"request\":\"/api/statuses/home_timeline.json\",\"error\":\"Not authorized\"}";
+        List<JSONObject> items = new ArrayList<>();
+        HttpReadResult result = new HttpReadResult(url).setItemConsumer("items", items::add);
+        result.readStream(new ByteArrayInputStream(in.getBytes(StandardCharsets.UTF_8)));
+        try {
+            result.readItems();
+            fail("Error object should be reported: " + result);
+        } catch (ConnectionException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Not authorized"));
+        }
+        assertTrue(items.isEmpty());
+    }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.net.http;
+
+import org.andstatus.app.context.TestSuite;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HttpValidatorsTest {
+    private static final String ACCOUNT_NAME = "validators/tester";
+
+    @Before
+    public void setUp() throws Exception {
+        TestSuite.initialize(this);
+    }
+
+    @Test
+    public void testStoreAndLoad() {
+        final String url = "https://example.com/api/config?time=" + System.nanoTime();
+        HttpValidators validators1 = HttpValidators.load(ACCOUNT_NAME, url);
+        assertTrue(validators1.isEmpty());
+        assertTrue(validators1.getRequestHeaders().isEmpty());
+
+        final String body = "{\"name\":\"value\"}";
+        validators1.onResponse("\"abc\"", "Wed, 21 Oct 2015 07:28:00 GMT", body);
+
+        HttpValidators validators2 = HttpValidators.load(ACCOUNT_NAME, url);
+        assertFalse(validators2.toString(), validators2.isEmpty());
+        assertEquals(body, validators2.getBody());
+        Map<String, String> headers = validators2.getRequestHeaders();
+        assertEquals("\"abc\"", headers.get("If-None-Match"));
+        assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", headers.get("If-Modified-Since"));
+        assertTrue(HttpValidators.load("other/account", url).isEmpty());
+
+        StringBuilder longBody = new StringBuilder();
+        while (longBody.length() <= HttpValidators.MAX_BODY_LENGTH) {
+            longBody.append(body);
+        }
+        validators2.onResponse("\"def\"", "", longBody.toString());
+        assertTrue("Too long body is not stored", HttpValidators.load(ACCOUNT_NAME, url).isEmpty());
+
+        validators2.onResponse("\"ghi\"", "", body);
+        HttpValidators validators3 = HttpValidators.load(ACCOUNT_NAME, url);
+        assertEquals("\"ghi\"", validators3.getRequestHeaders().get("If-None-Match"));
+        validators3.onResponse("\"jkl\"", "", null);
+        assertTrue("Response without a body is not stored", HttpValidators.load(ACCOUNT_NAME, url).isEmpty());
+
+        validators3.onResponse("\"mno\"", "", body);
+        validators3.onResponse("", "", body);
+        assertTrue(HttpValidators.load(ACCOUNT_NAME, url).isEmpty());
+    }
+}
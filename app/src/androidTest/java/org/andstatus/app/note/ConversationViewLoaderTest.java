@@ -1,18 +1,29 @@
 package org.andstatus.app.note;
 
+import android.database.Cursor;
+
 import org.andstatus.app.account.MyAccount;
 import org.andstatus.app.context.MyContextHolder;
 import org.andstatus.app.context.TestSuite;
 import org.andstatus.app.data.MyQuery;
 import org.andstatus.app.data.OidEnum;
+import org.andstatus.app.data.ProjectionMap;
+import org.andstatus.app.database.table.NoteTable;
 import org.andstatus.app.timeline.LoadableListActivity.ProgressPublisher;
 import org.andstatus.app.util.MyLog;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.andstatus.app.context.DemoData.demoData;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class ConversationViewLoaderTest implements ProgressPublisher {
@@ -53,6 +64,78 @@ public class ConversationViewLoaderTest implements ProgressPublisher {
         assertTrue("Indented note found in " + list, indentFound);
         assertTrue("Ordered note found in " + list, orderFound);
         assertTrue(progressCounter > 0);
+
+        Map<Long, ConversationViewItem> byNoteId = new HashMap<>();
+        Set<Integer> historyOrders = new HashSet<>();
+        for (ConversationViewItem oMsg : list) {
+            byNoteId.put(oMsg.getNoteId(), oMsg);
+            assertTrue("Unique history order " + oMsg, historyOrders.add(oMsg.historyOrder));
+        }
+        for (ConversationViewItem oMsg : list) {
+            ConversationViewItem parent = byNoteId.get(oMsg.inReplyToNoteId);
+            if (parent != null) {
+                assertTrue("Reply " + oMsg + " is after " + parent, oMsg.historyOrder > parent.historyOrder);
+                assertTrue("Reply " + oMsg + " is not less indented than " + parent,
+                        oMsg.indentLevel >= parent.indentLevel);
+            }
+        }
+    }
+
+    @Test
+    public void testReplyGraphSelection() {
+        Map<Long, Long> inReplyTo = new HashMap<>();
+        Map<Long, Long> conversations = new HashMap<>();
+        try (Cursor cursor = MyContextHolder.get().getDatabase().rawQuery("SELECT " + NoteTable._ID + ", "
+                + NoteTable.IN_REPLY_TO_NOTE_ID + ", " + NoteTable.CONVERSATION_ID
+                + " FROM " + NoteTable.TABLE_NAME, null)) {
+            while (cursor.moveToNext()) {
+                inReplyTo.put(cursor.getLong(0), cursor.getLong(1));
+                conversations.put(cursor.getLong(0), cursor.getLong(2));
+            }
+        }
+
+        Set<Long> replyGraph = new HashSet<>();
+        Deque<Long> toVisit = new ArrayDeque<>();
+        toVisit.push(selectedNoteId);
+        while (!toVisit.isEmpty()) {
+            long noteId = toVisit.pop();
+            if (noteId == 0 || !replyGraph.add(noteId)) continue;
+
+            toVisit.push(inReplyTo.getOrDefault(noteId, 0L));
+            for (Map.Entry<Long, Long> entry : inReplyTo.entrySet()) {
+                if (entry.getValue() == noteId) toVisit.push(entry.getKey());
+            }
+        }
+        Set<Long> conversationIds = new HashSet<>();
+        for (long noteId : replyGraph) {
+            long conversationId = conversations.getOrDefault(noteId, 0L);
+            if (conversationId != 0) conversationIds.add(conversationId);
+        }
+        Set<Long> expected = new HashSet<>(replyGraph);
+        for (Map.Entry<Long, Long> entry : conversations.entrySet()) {
+            if (conversationIds.contains(entry.getValue())) expected.add(entry.getKey());
+        }
+
+        Map<Long, Integer> repliesCount = new HashMap<>();
+        for (long noteId : replyGraph) {
+            repliesCount.merge(inReplyTo.getOrDefault(noteId, 0L), 1, Integer::sum);
+        }
+        repliesCount.remove(0L);
+        assertTrue("The conversation branches " + repliesCount,
+                repliesCount.values().stream().anyMatch(count -> count > 1));
+
+        Set<Long> graphIds = MyQuery.getLongs("SELECT " + ProjectionMap.NOTE_TABLE_ALIAS + "." + NoteTable._ID
+                + " FROM " + NoteTable.TABLE_NAME + " AS " + ProjectionMap.NOTE_TABLE_ALIAS
+                + " WHERE " + RecursiveConversationLoader.getReplyGraphSelection(selectedNoteId));
+        assertEquals(expected, graphIds);
+
+        ConversationLoader<ConversationViewItem> loader =
+                new ConversationLoaderFactory<ConversationViewItem>().getLoader(
+                        ConversationViewItem.EMPTY, MyContextHolder.get(), ma, selectedNoteId, false);
+        loader.load(this);
+        for (ConversationViewItem oMsg : loader.getList()) {
+            assertTrue("Note " + oMsg + " in " + graphIds, graphIds.contains(oMsg.getNoteId()));
+        }
     }
 
     @Override
@@ -74,6 +74,22 @@ public class KeywordsFilterTest {
         assertNotMatchAll(query, body2);
     }
 
+    @Test
+    public void testFullTextSearchQuery() {
+        assertEquals("", new KeywordsFilter("").getFtsQuery());
+        assertEquals("\"word\"", new KeywordsFilter("Word").getFtsQuery());
+        assertEquals("\"deleted notice\" \"word\"", new KeywordsFilter("\"deleted notice\" word").getFtsQuery());
+        assertEquals("\"andstatus\"", new KeywordsFilter("AndStatus " + CONTAINS_PREFIX + "status").getFtsQuery());
+        assertEquals("", new KeywordsFilter(CONTAINS_PREFIX + "status").getFtsQuery());
+
+        KeywordsFilter filter = new KeywordsFilter("word " + CONTAINS_PREFIX + "status");
+        assertEquals("(msg1._id IN (SELECT docid FROM note_fts WHERE note_fts MATCH ?)"
+                        + " AND content_to_search LIKE ? AND content_to_search LIKE ?)",
+                filter.getSqlSelection("msg1._id", "content_to_search"));
+        assertEquals("[\"word\", %,word,%, %status%, x]",
+                java.util.Arrays.toString(filter.prependSqlSelectionArgs(new String[]{"x"})));
+    }
+
     private void assertOneQueryToKeywords(String query, Keyword... keywords) {
         int size = keywords.length;
         KeywordsFilter filter1 = new KeywordsFilter(query);
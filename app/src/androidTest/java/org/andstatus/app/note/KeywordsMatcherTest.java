@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2016 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.note;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeywordsMatcherTest {
+
+    @Test
+    public void testOverlappingKeywords() {
+        KeywordsMatcher matcher = new KeywordsMatcher(Arrays.asList("he", "she", "his", "hers"));
+        assertTrue(matcher.matchedAny("ushers"));
+        assertFalse(matcher.matchedAll("ushers"));
+        assertTrue(matcher.matchedAll("ushers and his"));
+        assertFalse(matcher.matchedAny("xyz"));
+        assertFalse(matcher.matchedAny(""));
+        assertFalse(matcher.matchedAll(null));
+
+        matcher = new KeywordsMatcher(Arrays.asList(",deleted,notice,", "ted,no"));
+        assertTrue(matcher.matchedAll(",the,deleted,notice,"));
+        assertFalse(matcher.matchedAll(",the,deleted,notices,"));
+        assertTrue(matcher.matchedAny(",the,deleted,notices,"));
+    }
+
+    @Test
+    public void testEmpty() {
+        KeywordsMatcher matcher = new KeywordsMatcher(Collections.emptyList());
+        assertFalse(matcher.matchedAny("something"));
+        assertFalse(matcher.matchedAll("something"));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.service;
+
+import org.andstatus.app.account.MyAccount;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.timeline.meta.TimelineType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.andstatus.app.context.DemoData.demoData;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CommandLanesTest {
+
+    @Before
+    public void setUp() throws Exception {
+        TestSuite.initializeWithData(this);
+        new CommandQueue().clear();
+    }
+
+    @After
+    public void tearDown() {
+        new CommandQueue().clear();
+    }
+
+    @Test
+    public void testLimitsAndSerialisation() {
+        final MyAccount ma = demoData.getMyAccount(demoData.conversationAccountName);
+        CommandQueue queue = new CommandQueue().load();
+        addToQueue(queue, CommandData.newTimelineCommand(CommandEnum.GET_TIMELINE, ma, TimelineType.HOME));
+        addToQueue(queue, CommandData.newTimelineCommand(CommandEnum.GET_OLDER_TIMELINE, ma, TimelineType.HOME));
+        addToQueue(queue, CommandData.newTimelineCommand(CommandEnum.GET_TIMELINE, ma, TimelineType.INTERACTIONS));
+        addToQueue(queue, CommandData.newFetchAttachment(0, 1001));
+        addToQueue(queue, CommandData.newFetchAttachment(0, 1002));
+
+        CommandLanes lanes = new CommandLanes(2, 1);
+        CommandData cd1 = lanes.pollToStart(queue, false);
+        CommandData cd2 = lanes.pollToStart(queue, false);
+        assertNotNull(cd1);
+        assertNotNull(cd2);
+        assertNotEquals("Same account and timeline " + cd1 + ", " + cd2,
+                CommandLanes.keyOf(cd1), CommandLanes.keyOf(cd2));
+        assertNull("Limit per origin", lanes.pollToStart(queue, false));
+
+        CommandData download1 = lanes.pollToStart(queue, true);
+        assertNotNull(download1);
+        assertTrue(CommandLanes.isDownload(download1));
+        assertNull("Limit of downloads", lanes.pollToStart(queue, true));
+        assertEquals(3, lanes.getRunningCount());
+
+        CommandData home = cd1.getTimelineType() == TimelineType.HOME ? cd1 : cd2;
+        lanes.onEnd(home == cd1 ? cd2 : cd1);
+        assertNull("Same account and timeline as " + home, lanes.pollToStart(queue, false));
+        lanes.onEnd(home);
+        CommandData cd3 = lanes.pollToStart(queue, false);
+        assertNotNull(cd3);
+        assertEquals(CommandLanes.keyOf(home), CommandLanes.keyOf(cd3));
+
+        lanes.onEnd(download1);
+        CommandData download2 = lanes.pollToStart(queue, true);
+        assertNotNull(download2);
+        assertNotEquals(download1, download2);
+        assertEquals(CommandLanes.laneOf(download1), CommandLanes.laneOf(download2));
+    }
+
+    private void addToQueue(CommandQueue queue, CommandData commandData) {
+        queue.addToQueue(QueueType.CURRENT, commandData.setInForeground(true));
+    }
+}
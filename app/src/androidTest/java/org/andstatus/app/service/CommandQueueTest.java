@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.service;
+
+import org.andstatus.app.SearchObjects;
+import org.andstatus.app.account.MyAccount;
+import org.andstatus.app.context.MyContext;
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.origin.Origin;
+import org.andstatus.app.timeline.meta.Timeline;
+import org.andstatus.app.timeline.meta.TimelineType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.andstatus.app.context.DemoData.demoData;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommandQueueTest {
+
+    @Before
+    public void setUp() throws Exception {
+        TestSuite.initializeWithData(this);
+        new CommandQueue().clear();
+    }
+
+    @After
+    public void tearDown() {
+        new CommandQueue().clear();
+    }
+
+    @Test
+    public void testIncrementalSave() {
+        final MyAccount ma = demoData.getMyAccount(demoData.conversationAccountName);
+        CommandData cd1 = CommandData.newTimelineCommand(CommandEnum.GET_TIMELINE, ma, TimelineType.HOME);
+        CommandData cd2 = CommandData.newTimelineCommand(CommandEnum.GET_TIMELINE, ma, TimelineType.INTERACTIONS);
+        CommandData cd3 = CommandData.newTimelineCommand(CommandEnum.GET_TIMELINE, ma, TimelineType.PRIVATE);
+
+        CommandQueue queue1 = new CommandQueue().load();
+        queue1.addToQueue(QueueType.CURRENT, cd1);
+        queue1.addToQueue(QueueType.CURRENT, cd2);
+        queue1.addToQueue(QueueType.ERROR, cd3);
+        queue1.save();
+        assertTrue("Saved commands are removed from memory", queue1.get(QueueType.CURRENT).isEmpty());
+
+        CommandQueue queue2 = new CommandQueue().load();
+        assertEquals(2, queue2.get(QueueType.CURRENT).size());
+        assertTrue(queue2.get(QueueType.CURRENT).remove(cd1));
+        assertTrue(queue2.get(QueueType.CURRENT).remove(cd2));
+        queue2.addToQueue(QueueType.RETRY, cd2);
+        queue2.save();
+
+        CommandQueue queue3 = new CommandQueue().load();
+        assertTrue("Removed command was deleted", queue3.get(QueueType.CURRENT).isEmpty());
+        assertEquals("Moved to Retry queue", 1, queue3.get(QueueType.RETRY).size());
+        assertTrue(queue3.get(QueueType.RETRY).contains(cd2));
+        assertEquals("Error queue loaded on access", 1, queue3.get(QueueType.ERROR).size());
+        assertTrue(queue3.get(QueueType.ERROR).contains(cd3));
+        assertFalse(queue3.get(QueueType.ERROR).contains(cd1));
+    }
+
+    @Test
+    public void testIndexedQueue() {
+        final MyAccount ma = demoData.getMyAccount(demoData.conversationAccountName);
+        CommandDataQueue queue = new CommandDataQueue(10);
+        CommandData cd1 = CommandData.newTimelineCommand(CommandEnum.GET_TIMELINE, ma, TimelineType.HOME);
+        CommandData cd1Copy = CommandData.newTimelineCommand(CommandEnum.GET_TIMELINE, ma, TimelineType.HOME);
+        CommandData cd2 = CommandData.newTimelineCommand(CommandEnum.GET_TIMELINE, ma, TimelineType.INTERACTIONS);
+        assertTrue(queue.offer(cd1));
+        assertFalse("Duplicate is not added", queue.offer(cd1Copy));
+        assertTrue(queue.offer(cd2));
+        assertEquals(2, queue.size());
+        assertTrue(queue.contains(cd1Copy));
+        assertTrue("Queued instance is found", cd1 == queue.find(cd1Copy));
+        assertTrue(cd2 == queue.findById(cd2.getCommandId()));
+
+        assertTrue(queue.remove(cd1Copy));
+        assertFalse(queue.contains(cd1));
+        assertEquals(null, queue.findById(cd1.getCommandId()));
+        assertTrue(cd2 == queue.poll());
+        assertTrue(queue.isEmpty());
+        assertFalse(queue.contains(cd2));
+    }
+
+    @Test
+    public void testTimelineIdAssignedWhileQueued() {
+        MyContext myContext = MyContextHolder.get();
+        Origin origin = demoData.getMyAccount(demoData.conversationAccountName).getOrigin();
+        CommandData commandData = CommandData.newSearch(SearchObjects.NOTES, myContext, origin,
+                "queued" + demoData.testRunUid);
+        Timeline timeline = commandData.getTimeline();
+        assertEquals(0, timeline.getId());
+
+        CommandDataQueue queue = new CommandDataQueue(10);
+        assertTrue(queue.offer(commandData));
+        assertTrue(timeline.save(myContext) == timeline);
+        assertTrue(timeline.getId() != 0);
+        assertTrue("Found after the timeline id was assigned", queue.contains(commandData));
+        assertTrue(queue.remove(commandData));
+        assertTrue(queue.isEmpty());
+        timeline.delete(myContext);
+    }
+}
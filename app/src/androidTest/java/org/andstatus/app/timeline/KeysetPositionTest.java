@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2016 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.timeline;
+
+import org.andstatus.app.timeline.meta.TimelineType;
+import org.andstatus.app.util.SelectionAndArgs;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeysetPositionTest {
+
+    @Test
+    public void testOrdering() {
+        assertTrue(KeysetPosition.of(0, 5).isEmpty());
+        assertTrue(KeysetPosition.of(100, 0).isEmpty());
+
+        KeysetPosition position1 = KeysetPosition.of(100, 5);
+        KeysetPosition position2 = KeysetPosition.of(100, 6);
+        KeysetPosition position3 = KeysetPosition.of(101, 1);
+        assertTrue(position1.isOlderThan(position2));
+        assertTrue(position2.isOlderThan(position3));
+        assertTrue(position3.isYoungerThan(position1));
+        assertFalse(position1.isOlderThan(position1));
+        assertFalse(position1.isYoungerThan(position1));
+        assertEquals(position1, KeysetPosition.of(100, 5));
+    }
+
+    @Test
+    public void testSeekSelection() {
+        SelectionAndArgs sa = new SelectionAndArgs();
+        KeysetPosition.EMPTY.addSeekSelection(sa, TimelineType.HOME, true);
+        assertTrue(sa.toString(), sa.isEmpty());
+
+        KeysetPosition.of(100, 5).addSeekSelection(sa, TimelineType.HOME, true);
+        assertEquals("activity_updated_date < ? OR (activity_updated_date = ? AND act1._id < ?)", sa.selection);
+        assertArrayEquals(new String[]{"100", "100", "5"}, sa.selectionArgs);
+    }
+
+    @Test
+    public void testPositionsLoaded() {
+        TimelineParameters params = new TimelineParameters(null);
+        params.rememberItemPositionLoaded(200, 7);
+        params.rememberItemPositionLoaded(100, 9);
+        params.rememberItemPositionLoaded(100, 8);
+        params.rememberItemPositionLoaded(200, 3);
+        assertEquals(KeysetPosition.of(100, 8), params.getOldestLoaded());
+        assertEquals(KeysetPosition.of(200, 7), params.getYoungestLoaded());
+        assertEquals(100, params.minDateLoaded);
+        assertEquals(200, params.maxDateLoaded);
+    }
+}
@@ -20,11 +20,16 @@ import org.andstatus.app.context.MyContextHolder;
 import org.andstatus.app.context.TestSuite;
 import org.andstatus.app.net.social.Actor;
 import org.andstatus.app.origin.Origin;
+import org.andstatus.app.util.TriState;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.HashSet;
+
 import static org.andstatus.app.context.DemoData.demoData;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class CachedUsersAndActorsTest {
@@ -46,4 +51,37 @@ public class CachedUsersAndActorsTest {
         assertEquals(users.toString(), false, users.isMeOrMyFriend(Actor.EMPTY));
     }
 
+    @Test
+    public void testBoundedAndIndexedCache() {
+        CachedUsersAndActors users = CachedUsersAndActors.newEmpty(MyContextHolder.get());
+        Origin origin = MyContextHolder.get().origins().fromName(demoData.conversationOriginName);
+        final long firstId = 1000000;
+        final long lastId = firstId + CachedUsersAndActors.MAX_CACHED_ACTORS + 10;
+        for (long id = firstId; id <= lastId; id++) {
+            Actor actor = Actor.fromTwoIds(origin, id, "oid" + id);
+            actor.user = new User(id, "user" + id, TriState.FALSE, new HashSet<>());
+            users.updateCache(actor);
+        }
+        assertTrue("Evicted: " + users.getCacheInfo(), users.getCachedActor(firstId).isEmpty());
+        assertEquals(users.getCacheInfo(), lastId, users.getCachedActor(lastId).actorId);
+        assertEquals(lastId, users.userFromActorId(lastId, () -> User.EMPTY).userId);
+        assertTrue(users.getCacheInfo(), users.getCacheInfo().contains(
+                "Cached actors: " + CachedUsersAndActors.MAX_CACHED_ACTORS + ","));
+
+        final long myActorId1 = lastId + 1;
+        final long myActorId2 = lastId + 2;
+        Actor myActor = Actor.fromTwoIds(origin, myActorId1, "oid" + myActorId1);
+        myActor.user = new User(myActorId1, "me", TriState.TRUE, new HashSet<>(Arrays.asList(myActorId1, myActorId2)));
+        assertFalse(users.isMe(myActorId2));
+        users.updateCache(myActor);
+        assertTrue(users.isMe(myActorId1));
+        assertTrue("Other actor of my user", users.isMe(myActorId2));
+        assertEquals(myActorId1, users.userFromActorId(myActorId2, () -> User.EMPTY).userId);
+
+        users.evict(Arrays.asList(lastId, myActorId1));
+        assertTrue(users.getCacheInfo(), users.getCachedActor(lastId).isEmpty());
+        assertEquals(User.EMPTY, users.userFromActorId(lastId, () -> User.EMPTY));
+        assertEquals("My actor is kept", myActorId1, users.getCachedActor(myActorId1).actorId);
+        assertTrue(users.isMe(myActorId1));
+    }
 }
@@ -23,6 +23,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -70,6 +72,30 @@ public class MyLogTest {
         }
     }
 
+    @Test
+    public void testBufferedLinesWrittenOnStop() throws IOException {
+        final String method = "testBufferedLinesWrittenOnStop";
+        boolean isLogEnabled = MyLog.isLogToFileEnabled();
+
+        MyLog.setLogToFile(false);
+        MyLog.setLogToFile(true);
+        File file = MyLog.getFileInLogDir(MyLog.getLogFilename(), true);
+        final String line = method + " " + MyLog.uniqueDateTimeFormatted();
+        for (int ind = 0; ind < 10; ind++) {
+            MyLog.i(this, line + " " + ind);
+        }
+        MyLog.setLogToFile(false);
+        String content = new String(FileUtils.getBytes(file), StandardCharsets.UTF_8);
+        for (int ind = 0; ind < 10; ind++) {
+            assertTrue("Line " + ind + " in " + file.getName(), content.contains(line + " " + ind));
+        }
+        assertEquals("Dropped lines", 0, MyLog.getDroppedLogLinesCount());
+
+        if (isLogEnabled) {
+            MyLog.setLogToFile(true);
+        }
+    }
+
     @Test
     public void testUniqueDateTimeFormatted() {
         String string1 = "";
@@ -22,6 +22,7 @@ import android.view.ViewGroup;
 
 import org.andstatus.app.R;
 import org.andstatus.app.actor.ActorAdapter;
+import org.andstatus.app.data.ImageFile;
 import org.andstatus.app.graphics.AvatarView;
 import org.andstatus.app.net.social.ActivityType;
 import org.andstatus.app.note.NoteAdapter;
@@ -29,6 +30,8 @@ import org.andstatus.app.timeline.BaseTimelineAdapter;
 import org.andstatus.app.timeline.TimelineData;
 import org.andstatus.app.util.MyUrlSpan;
 
+import java.util.Collection;
+
 /**
  * @author yvolk@yurivolkov.com
  */
@@ -71,9 +74,23 @@ public class ActivityAdapter extends BaseTimelineAdapter<ActivityViewItem> {
             actorView.setOnClickListener(objActorAdapter);
             actorView.setVisibility(View.VISIBLE);
         }
+        prefetchImages(position);
         return view;
     }
 
+    @Override
+    public void addImagesToPrefetch(ActivityViewItem item, Collection<ImageFile> images) {
+        if (showAvatars && item.activityType != ActivityType.CREATE && item.activityType != ActivityType.UPDATE) {
+            images.add(item.actor.getAvatarFile());
+        }
+        if (item.noteViewItem.getId() != 0) {
+            noteAdapter.addImagesToPrefetch(item.noteViewItem, images);
+        }
+        if (item.getObjActorItem().getId() != 0) {
+            objActorAdapter.addImagesToPrefetch(item.getObjActorItem(), images);
+        }
+    }
+
     private ViewGroup getEmptyView(View convertView) {
         if (convertView == null) {
             final ViewGroup viewGroup = (ViewGroup) LayoutInflater.from(contextMenu.note.getActivity())
@@ -22,10 +22,12 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import org.andstatus.app.R;
+import org.andstatus.app.data.ImageFile;
 import org.andstatus.app.timeline.BaseTimelineAdapter;
 import org.andstatus.app.timeline.TimelineData;
 import org.andstatus.app.timeline.meta.Timeline;
 
+import java.util.Collection;
 import java.util.List;
 
 public class ActorAdapter extends BaseTimelineAdapter<ActorViewItem> {
@@ -56,9 +58,17 @@ public class ActorAdapter extends BaseTimelineAdapter<ActorViewItem> {
         setPosition(view, position);
         ActorViewItem item = getItem(position);
         populator.populateView(view, item, position);
+        prefetchImages(position);
         return view;
     }
 
+    @Override
+    public void addImagesToPrefetch(ActorViewItem item, Collection<ImageFile> images) {
+        if (showAvatars) {
+            images.add(item.getAvatarFile());
+        }
+    }
+
     private View newView() {
         return LayoutInflater.from(contextMenu.getActivity()).inflate(listItemLayoutId, null);
     }
@@ -184,7 +184,7 @@ public class ActorViewItem extends ViewItem<ActorViewItem> implements Comparable
     public Stream<Actor> getMyActorsFollowingTheActor(MyContext myContext) {
         return myContext.users().friendsOfMyActors.getOrDefault(actor.actorId, Collections.emptySet()).stream()
                 .filter(id -> id != myFollowingActorToHide.actorId)
-                .map(id -> myContext.users().actors.getOrDefault(id, Actor.EMPTY))
+                .map(id -> myContext.users().getCachedActor(id))
                 .filter(Actor::nonEmpty);
     }
 
@@ -0,0 +1,443 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.backup;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.provider.BaseColumns;
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
+
+import org.andstatus.app.data.DbUtils;
+import org.andstatus.app.data.NoteSearchIndex;
+import org.andstatus.app.database.table.ActivityTable;
+import org.andstatus.app.database.table.ActorEndpointTable;
+import org.andstatus.app.database.table.ActorTable;
+import org.andstatus.app.database.table.AudienceTable;
+import org.andstatus.app.database.table.CommandTable;
+import org.andstatus.app.database.table.DownloadSizeTable;
+import org.andstatus.app.database.table.DownloadTable;
+import org.andstatus.app.database.table.FriendshipTable;
+import org.andstatus.app.database.table.NoteTable;
+import org.andstatus.app.database.table.OriginTable;
+import org.andstatus.app.database.table.TimelineTable;
+import org.andstatus.app.database.table.UserTable;
+import org.andstatus.app.util.MyLog;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Incremental backup of the database: rows, added or changed since the previous backup,
+ * are exported as batches of JSON rows, one backup entity per table, and are replayed on restore.
+ * Changes are found using high-water marks of the previous backup, see {@link MyBackupDescriptor}:
+ * the largest {@link BaseColumns#_ID} and the latest updated date of a table.
+ * Small tables are exported whole. Rows of child tables are replaced for each changed parent.
+ * <p>
+ * There are no local change markers in the tables, so some changes are missed till the next full backup:
+ * <ul>
+ * <li>Deleted rows stay in a restored database.</li>
+ * <li>Updated dates of notes, actors and activities are set by servers. So a note or an actor,
+ * which is downloaded again with changes, is missed, if its updated date is not later than the mark,
+ * and no new activity refers to it.</li>
+ * <li>A change of a download's status without a new downloaded date, e.g. a failed download,
+ * is missed.</li>
+ * </ul>
+ * A full backup is made after {@link MyBackupManager#MAX_DELTA_NUMBER} incremental ones, which limits the gaps
+ * @author yvolk@yurivolkov.com
+ */
+class DatabaseDelta {
+    private static final String TAG = DatabaseDelta.class.getSimpleName();
+    static final String KEY_PREFIX = "delta_";
+    static final String KEY_MAX_ID = "max_id";
+    static final String KEY_MAX_DATE = "max_date";
+    private static final String KEY_COLUMNS = "columns";
+    private static final String KEY_ROWS = "rows";
+    private static final String KEY_PARENT_IDS = "parent_ids";
+    /** Number of rows in one batch, which is replayed in one transaction */
+    static final int BATCH_SIZE = 500;
+
+    private static final List<TableDelta> TABLES = Arrays.asList(
+            TableDelta.whole(OriginTable.TABLE_NAME),
+            TableDelta.whole(UserTable.TABLE_NAME),
+            TableDelta.marked(ActorTable.TABLE_NAME, ActorTable.UPDATED_DATE, DatabaseDelta::changedActors),
+            TableDelta.child(ActorEndpointTable.TABLE_NAME, ActorEndpointTable.ACTOR_ID,
+                    marks -> "SELECT " + BaseColumns._ID + " FROM " + ActorTable.TABLE_NAME
+                            + " WHERE " + changedActors(marks)),
+            TableDelta.marked(NoteTable.TABLE_NAME, NoteTable.UPDATED_DATE, DatabaseDelta::changedNotes),
+            TableDelta.child(AudienceTable.TABLE_NAME, AudienceTable.NOTE_ID,
+                    marks -> "SELECT " + BaseColumns._ID + " FROM " + NoteTable.TABLE_NAME
+                            + " WHERE " + changedNotes(marks)),
+            TableDelta.marked(ActivityTable.TABLE_NAME, ActivityTable.UPDATED_DATE,
+                    marks -> BaseColumns._ID + ">" + maxId(marks, ActivityTable.TABLE_NAME)
+                            + " OR " + ActivityTable.UPDATED_DATE + ">" + maxDate(marks, ActivityTable.TABLE_NAME)),
+            TableDelta.marked(DownloadTable.TABLE_NAME, DownloadTable.DOWNLOADED_DATE,
+                    marks -> BaseColumns._ID + ">" + maxId(marks, DownloadTable.TABLE_NAME)
+                            + " OR " + DownloadTable.DOWNLOADED_DATE + ">" + maxDate(marks, DownloadTable.TABLE_NAME)),
+            TableDelta.changed(FriendshipTable.TABLE_NAME,
+                    marks -> {
+                        String actorIds = "SELECT " + BaseColumns._ID + " FROM " + ActorTable.TABLE_NAME
+                                + " WHERE " + changedActors(marks);
+                        return FriendshipTable.ACTOR_ID + " IN (" + actorIds + ")"
+                                + " OR " + FriendshipTable.FRIEND_ID + " IN (" + actorIds + ")";
+                    }),
+            TableDelta.whole(TimelineTable.TABLE_NAME),
+            TableDelta.whole(CommandTable.TABLE_NAME),
+            TableDelta.whole(DownloadSizeTable.TABLE_NAME)
+    );
+
+    /** A table and the way to select its rows, changed since the high-water marks of a previous backup */
+    private static class TableDelta {
+        final String tableName;
+        /** Latest value of this column is a high-water mark in addition to the largest {@link BaseColumns#_ID} */
+        final String dateColumn;
+        /** Rows of the child table, which have this column equal to an id of a changed parent, are replaced */
+        final String parentColumn;
+        /** SQL condition on changed rows or, for a child table, a query of ids of changed parents.
+         * null means that the table is exported whole */
+        final Function<JSONObject, String> selection;
+
+        private TableDelta(String tableName, String dateColumn, String parentColumn,
+                           Function<JSONObject, String> selection) {
+            this.tableName = tableName;
+            this.dateColumn = dateColumn;
+            this.parentColumn = parentColumn;
+            this.selection = selection;
+        }
+
+        static TableDelta whole(String tableName) {
+            return new TableDelta(tableName, null, null, null);
+        }
+
+        static TableDelta marked(String tableName, String dateColumn, Function<JSONObject, String> selection) {
+            return new TableDelta(tableName, dateColumn, null, selection);
+        }
+
+        static TableDelta changed(String tableName, Function<JSONObject, String> selection) {
+            return new TableDelta(tableName, null, null, selection);
+        }
+
+        static TableDelta child(String tableName, String parentColumn, Function<JSONObject, String> parentIds) {
+            return new TableDelta(tableName, null, parentColumn, parentIds);
+        }
+
+        boolean isWhole() {
+            return selection == null;
+        }
+
+        boolean isChild() {
+            return parentColumn != null;
+        }
+
+        boolean hasMarks() {
+            return dateColumn != null;
+        }
+
+        String getKey() {
+            return KEY_PREFIX + tableName;
+        }
+    }
+
+    private DatabaseDelta() {
+        // Empty
+    }
+
+    private static String changedActors(JSONObject marks) {
+        return BaseColumns._ID + ">" + maxId(marks, ActorTable.TABLE_NAME)
+                + " OR " + ActorTable.UPDATED_DATE + ">" + maxDate(marks, ActorTable.TABLE_NAME)
+                + " OR " + ActorTable.ACTOR_ACTIVITY_ID + ">" + maxId(marks, ActivityTable.TABLE_NAME);
+    }
+
+    /** Notes, touched by new activities, are included, because their counters and flags may have changed */
+    private static String changedNotes(JSONObject marks) {
+        return BaseColumns._ID + ">" + maxId(marks, NoteTable.TABLE_NAME)
+                + " OR " + NoteTable.UPDATED_DATE + ">" + maxDate(marks, NoteTable.TABLE_NAME)
+                + " OR " + BaseColumns._ID + " IN (SELECT " + ActivityTable.NOTE_ID
+                + " FROM " + ActivityTable.TABLE_NAME
+                + " WHERE " + BaseColumns._ID + ">" + maxId(marks, ActivityTable.TABLE_NAME) + ")";
+    }
+
+    private static long maxId(JSONObject marks, String tableName) {
+        JSONObject tableMarks = marks.optJSONObject(tableName);
+        return tableMarks == null ? 0 : tableMarks.optLong(KEY_MAX_ID, 0);
+    }
+
+    private static long maxDate(JSONObject marks, String tableName) {
+        JSONObject tableMarks = marks.optJSONObject(tableName);
+        return tableMarks == null ? 0 : tableMarks.optLong(KEY_MAX_DATE, 0);
+    }
+
+    /** Should be called in the same transaction, as the backup, so the marks match the backed up data */
+    @NonNull
+    static JSONObject getHighWaterMarks(@NonNull SQLiteDatabase db) throws IOException {
+        JSONObject marks = new JSONObject();
+        try {
+            for (TableDelta table : TABLES) {
+                if (!table.hasMarks()) continue;
+                JSONObject tableMarks = new JSONObject();
+                tableMarks.put(KEY_MAX_ID, DatabaseUtils.longForQuery(db,
+                        "SELECT IFNULL(MAX(" + BaseColumns._ID + "), 0) FROM " + table.tableName, null));
+                tableMarks.put(KEY_MAX_DATE, DatabaseUtils.longForQuery(db,
+                        "SELECT IFNULL(MAX(" + table.dateColumn + "), 0) FROM " + table.tableName, null));
+                marks.put(table.tableName, tableMarks);
+            }
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+        return marks;
+    }
+
+    /**
+     * Writes rows, changed since the old marks, one entity per table with changes
+     * @param tempFolder for files with row batches, which are deleted after being written to the backup
+     * @return number of rows backed up
+     */
+    static long backup(@NonNull SQLiteDatabase db, @NonNull JSONObject oldMarks, @NonNull MyBackupDataOutput data,
+                       @NonNull File tempFolder, @NonNull ProgressLogger logger) throws IOException {
+        long rowsTotal = 0;
+        for (TableDelta table : TABLES) {
+            File file = File.createTempFile(table.getKey(), ".json", tempFolder);
+            try {
+                long rows = exportTable(db, table, oldMarks, file);
+                if (file.length() > 0) {
+                    data.writeEntityFile(table.getKey(), file);
+                    logger.logProgress("Backed up " + rows + " rows of " + table.tableName);
+                }
+                rowsTotal += rows;
+            } finally {
+                if (!file.delete()) {
+                    MyLog.v(TAG, () -> "Couldn't delete " + file.getAbsolutePath());
+                }
+            }
+        }
+        return rowsTotal;
+    }
+
+    private static long exportTable(SQLiteDatabase db, TableDelta table, JSONObject oldMarks, File file)
+            throws IOException {
+        long rows = 0;
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.UTF_8))) {
+            if (table.isChild()) {
+                List<Long> parentIds = getLongs(db, table.selection.apply(oldMarks));
+                for (int from = 0; from < parentIds.size(); from += BATCH_SIZE) {
+                    List<Long> batchIds = parentIds.subList(from, Math.min(from + BATCH_SIZE, parentIds.size()));
+                    rows += exportRows(db, "SELECT * FROM " + table.tableName
+                            + " WHERE " + table.parentColumn + " IN (" + TextUtils.join(",", batchIds) + ")",
+                            new JSONArray(batchIds), out);
+                }
+            } else {
+                rows = table.isWhole()
+                        ? exportRows(db, "SELECT * FROM " + table.tableName, new JSONArray(), out)
+                        : exportRows(db, "SELECT * FROM " + table.tableName
+                            + " WHERE " + table.selection.apply(oldMarks), null, out);
+            }
+        } catch (JSONException e) {
+            throw new IOException("Failed to export " + table.tableName, e);
+        }
+        return rows;
+    }
+
+    /**
+     * Writes one line per batch of rows
+     * @param parentIds if not null, the first batch is written even without rows,
+     *                  so rows of a whole table or of the parents are deleted on restore
+     */
+    private static long exportRows(SQLiteDatabase db, String sql, JSONArray parentIds, Writer out)
+            throws IOException, JSONException {
+        long rowsCount = 0;
+        try (Cursor cursor = db.rawQuery(sql, null)) {
+            JSONArray columns = new JSONArray(Arrays.asList(cursor.getColumnNames()));
+            JSONArray rows = new JSONArray();
+            while (cursor.moveToNext()) {
+                JSONArray row = new JSONArray();
+                for (int ind = 0; ind < cursor.getColumnCount(); ind++) {
+                    switch (cursor.getType(ind)) {
+                        case Cursor.FIELD_TYPE_NULL:
+                            row.put(JSONObject.NULL);
+                            break;
+                        case Cursor.FIELD_TYPE_INTEGER:
+                            row.put(cursor.getLong(ind));
+                            break;
+                        case Cursor.FIELD_TYPE_FLOAT:
+                            row.put(cursor.getDouble(ind));
+                            break;
+                        default:
+                            row.put(cursor.getString(ind));
+                            break;
+                    }
+                }
+                rows.put(row);
+                rowsCount++;
+                if (rows.length() >= BATCH_SIZE) {
+                    writeBatch(out, columns, rows, parentIds);
+                    rows = new JSONArray();
+                    parentIds = null;
+                }
+            }
+            if (rows.length() > 0 || parentIds != null) {
+                writeBatch(out, columns, rows, parentIds);
+            }
+        }
+        return rowsCount;
+    }
+
+    private static void writeBatch(Writer out, JSONArray columns, JSONArray rows, JSONArray parentIds)
+            throws IOException, JSONException {
+        JSONObject batch = new JSONObject();
+        batch.put(KEY_COLUMNS, columns);
+        batch.put(KEY_ROWS, rows);
+        if (parentIds != null && parentIds.length() > 0) {
+            batch.put(KEY_PARENT_IDS, parentIds);
+        }
+        out.write(batch.toString());
+        out.write("\n");
+    }
+
+    private static List<Long> getLongs(SQLiteDatabase db, String sql) {
+        List<Long> list = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery(sql, null)) {
+            while (cursor.moveToNext()) {
+                list.add(cursor.getLong(0));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Replays row batches of the current entity, one transaction per batch
+     * @return number of rows restored
+     */
+    static long restore(@NonNull SQLiteDatabase db, @NonNull MyBackupDataInput data, @NonNull File tempFolder,
+                        @NonNull ProgressLogger logger) throws IOException {
+        final String key = data.getKey();
+        TableDelta table = TABLES.stream().filter(t -> t.getKey().equals(key)).findAny().orElse(null);
+        if (table == null) {
+            MyLog.w(TAG, "Skipped unknown delta key='" + key + "'");
+            data.skipEntityData();
+            return 0;
+        }
+        File file = File.createTempFile(key, ".json", tempFolder);
+        long rows = 0;
+        try {
+            data.readEntityFile(file);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                    StandardCharsets.UTF_8))) {
+                boolean first = true;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) continue;
+                    rows += replayBatch(db, table, new JSONObject(line), first);
+                    first = false;
+                }
+            }
+        } catch (JSONException e) {
+            throw new FileNotFoundException("Corrupted delta of " + table.tableName + ": " + e.getMessage());
+        } finally {
+            if (!file.delete()) {
+                MyLog.v(TAG, () -> "Couldn't delete " + file.getAbsolutePath());
+            }
+        }
+        logger.logProgress("Restored " + rows + " rows of " + table.tableName);
+        return rows;
+    }
+
+    private static long replayBatch(SQLiteDatabase db, TableDelta table, JSONObject batch, boolean first)
+            throws JSONException {
+        JSONArray columns = batch.getJSONArray(KEY_COLUMNS);
+        JSONArray rows = batch.getJSONArray(KEY_ROWS);
+        db.beginTransaction();
+        try {
+            if (table.isWhole() && first) {
+                db.delete(table.tableName, null, null);
+            }
+            JSONArray parentIds = batch.optJSONArray(KEY_PARENT_IDS);
+            if (table.isChild() && parentIds != null && parentIds.length() > 0) {
+                db.execSQL("DELETE FROM " + table.tableName + " WHERE " + table.parentColumn
+                        + " IN (" + parentIds.join(",") + ")");
+            }
+            if (rows.length() > 0) {
+                insertRows(db, table, columns, rows);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return rows.length();
+    }
+
+    private static void insertRows(SQLiteDatabase db, TableDelta table, JSONArray columns, JSONArray rows)
+            throws JSONException {
+        StringBuilder names = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        int idIndex = -1;
+        int contentIndex = -1;
+        for (int ind = 0; ind < columns.length(); ind++) {
+            String column = columns.getString(ind);
+            names.append(ind == 0 ? "" : ",").append(column);
+            values.append(ind == 0 ? "?" : ",?");
+            if (BaseColumns._ID.equals(column)) idIndex = ind;
+            if (NoteTable.CONTENT_TO_SEARCH.equals(column)) contentIndex = ind;
+        }
+        SQLiteStatement statement = db.compileStatement("INSERT OR REPLACE INTO " + table.tableName
+                + " (" + names + ") VALUES (" + values + ")");
+        try {
+            for (int indRow = 0; indRow < rows.length(); indRow++) {
+                JSONArray row = rows.getJSONArray(indRow);
+                statement.clearBindings();
+                for (int ind = 0; ind < row.length(); ind++) {
+                    Object value = row.get(ind);
+                    if (value == JSONObject.NULL) {
+                        statement.bindNull(ind + 1);
+                    } else if (value instanceof Double || value instanceof Float) {
+                        statement.bindDouble(ind + 1, ((Number) value).doubleValue());
+                    } else if (value instanceof Number) {
+                        statement.bindLong(ind + 1, ((Number) value).longValue());
+                    } else {
+                        statement.bindString(ind + 1, value.toString());
+                    }
+                }
+                statement.executeInsert();
+                // The full text search index is not in deltas, so it is updated for restored notes
+                if (NoteTable.TABLE_NAME.equals(table.tableName) && idIndex >= 0 && contentIndex >= 0) {
+                    NoteSearchIndex.update(db, row.optLong(idIndex),
+                            row.isNull(contentIndex) ? "" : row.optString(contentIndex));
+                }
+            }
+        } finally {
+            DbUtils.closeSilently(statement);
+        }
+    }
+}
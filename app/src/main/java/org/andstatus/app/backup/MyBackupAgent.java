@@ -21,7 +21,9 @@ import android.app.backup.BackupAgent;
 import android.app.backup.BackupDataInput;
 import android.app.backup.BackupDataOutput;
 import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
 import android.os.ParcelFileDescriptor;
+import android.support.annotation.NonNull;
 
 import org.andstatus.app.R;
 import org.andstatus.app.account.MyAccounts;
@@ -35,15 +37,16 @@ import org.andstatus.app.data.DbUtils;
 import org.andstatus.app.database.DatabaseHolder;
 import org.andstatus.app.service.MyServiceManager;
 import org.andstatus.app.service.MyServiceState;
-import org.andstatus.app.util.FileUtils;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.SharedPreferencesUtil;
 import org.andstatus.app.util.TriState;
+import org.json.JSONObject;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 public class MyBackupAgent extends BackupAgent {
     public static final String DATABASE_KEY = "database";
@@ -53,6 +56,8 @@ public class MyBackupAgent extends BackupAgent {
     private MyBackupDescriptor backupDescriptor = null;
 
     private String previousKey = "";
+    /** Data folders of an incremental backup and of its base backups, starting from a full one */
+    private List<File> backupChain = Collections.emptyList();
     
     private long accountsBackedUp = 0;
     long accountsRestored = 0;
@@ -65,6 +70,10 @@ public class MyBackupAgent extends BackupAgent {
         this.activity = activity;
     }
 
+    void setBackupChain(@NonNull List<File> backupChain) {
+        this.backupChain = backupChain;
+    }
+
     void setContext(Context baseContext) {
         attachBaseContext(baseContext);
     }
@@ -92,7 +101,7 @@ public class MyBackupAgent extends BackupAgent {
     public void onBackup(MyBackupDescriptor oldDescriptor, MyBackupDataOutput data,
             MyBackupDescriptor newDescriptor) throws IOException {
         final String method = "onBackup";
-        // Ignore oldDescriptor for now...
+        // High-water marks of the oldDescriptor are used by an incremental backup only
         MyLog.i(this, method + " started"
                 + (data != null && data.getDataFolder() != null ? ", folder='"
                         + data.getDataFolder().getAbsolutePath() + "'" : "")
@@ -109,7 +118,7 @@ public class MyBackupAgent extends BackupAgent {
                 throw new FileNotFoundException("Nothing to backup - No accounts yet");
             } else {
                 boolean isServiceAvailableStored = checkAndSetServiceUnavailable();
-                doBackup(data);
+                doBackup(oldDescriptor, data);
                 backupDescriptor.save();
                 MyLog.v(this, () -> method + "; newState: " + backupDescriptor.toString());
                 if (isServiceAvailableStored) {
@@ -137,39 +146,62 @@ public class MyBackupAgent extends BackupAgent {
         return isServiceAvailableStored;
     }
 
-    private void doBackup(MyBackupDataOutput data) throws IOException {
+    private void doBackup(MyBackupDescriptor oldDescriptor, MyBackupDataOutput data) throws IOException {
         sharedPreferencesBackedUp = backupFile(data,
                 SHARED_PREFERENCES_KEY,
                 SharedPreferencesUtil.defaultSharedPreferencesPath(MyContextHolder.get().context()));
-        databasesBackedUp = backupFile(data,
-                DATABASE_KEY + "_" + DatabaseHolder.DATABASE_NAME,
-                MyStorage.getDatabasePath(DatabaseHolder.DATABASE_NAME));
+        databasesBackedUp = backupDescriptor.isDelta()
+                ? backupDatabaseDelta(data, oldDescriptor.getHighWaterMarks())
+                : backupDatabase(data);
         accountsBackedUp = MyContextHolder.get().accounts().onBackup(data, backupDescriptor);
     }
     
+    /**
+     * The database file is copied as a consistent snapshot: committed data is moved from the write-ahead log
+     * into the file, and writers wait till the end of the copying
+     */
+    private long backupDatabase(MyBackupDataOutput data) throws IOException {
+        final String key = DATABASE_KEY + "_" + DatabaseHolder.DATABASE_NAME;
+        final File dataFile = MyStorage.getDatabasePath(DatabaseHolder.DATABASE_NAME);
+        DatabaseHolder db = MyContextHolder.get().getMyDatabase();
+        if (db == null) return backupFile(data, key, dataFile);
+
+        for (int attempt = 0; !db.beginFileSnapshot(); attempt++) {
+            if (attempt > 5) {
+                throw new FileNotFoundException(getString(R.string.system_is_busy_try_later));
+            }
+            DbUtils.waitMs("backupDatabase", 1000);
+        }
+        try {
+            backupDescriptor.setHighWaterMarks(DatabaseDelta.getHighWaterMarks(db.getWritableDatabase()));
+            return backupFile(data, key, dataFile);
+        } finally {
+            db.endFileSnapshot();
+        }
+    }
+
+    /** Rows, changed since the previous backup, are exported in one transaction, so they match new marks */
+    private long backupDatabaseDelta(MyBackupDataOutput data, JSONObject oldMarks) throws IOException {
+        SQLiteDatabase db = MyContextHolder.get().getDatabase();
+        if (db == null) {
+            throw new FileNotFoundException("Database is not available");
+        }
+        db.beginTransactionNonExclusive();
+        try {
+            JSONObject marks = DatabaseDelta.getHighWaterMarks(db);
+            long rows = DatabaseDelta.backup(db, oldMarks, data, getCacheDir(), backupDescriptor.getLogger());
+            backupDescriptor.setHighWaterMarks(marks);
+            backupDescriptor.getLogger().logProgress("Backed up " + rows + " changed rows of the database");
+            return 1;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     private long backupFile(MyBackupDataOutput data, String key, File dataFile) throws IOException {
         long backedUpCount = 0;
         if (dataFile.exists()) {
-            long fileLength = dataFile.length();
-            if ( fileLength > Integer.MAX_VALUE) {
-                throw new FileNotFoundException("File '" 
-                        + dataFile.getName() + "' is too large for backup: " + fileLength + " bytes" );
-            } 
-            int bytesToWrite = (int) fileLength;
-            data.writeEntityHeader(key, bytesToWrite, MyBackupDataOutput.getDataFileExtension(dataFile));
-            int bytesWritten = 0;
-            while (bytesWritten < bytesToWrite) {
-                byte[] bytes = FileUtils.getBytes(dataFile, bytesWritten, MyBackupDataInput.FILE_CHUNK_SIZE);
-                if (bytes.length <= 0) {
-                    break;
-                }
-                bytesWritten += bytes.length;
-                data.writeEntityData(bytes, bytes.length);
-            }
-            if (bytesWritten != bytesToWrite) {
-                throw new FileNotFoundException("Couldn't backup "
-                        + filePartiallyWritten(key, dataFile, bytesToWrite, bytesWritten));
-            }
+            long bytesWritten = data.writeEntityFile(key, dataFile);
             backedUpCount++;
             backupDescriptor.getLogger().logProgress(
                     "Backed up " + fileWritten(key, dataFile, bytesWritten));
@@ -179,11 +211,11 @@ public class MyBackupAgent extends BackupAgent {
         return backedUpCount;
     }
 
-    private String fileWritten(String key, File dataFile, int bytesWritten) {
+    private String fileWritten(String key, File dataFile, long bytesWritten) {
         return filePartiallyWritten(key, dataFile, bytesWritten, bytesWritten);
     }
     
-    private String filePartiallyWritten(String key, File dataFile, int bytesToWrite, int bytesWritten) {
+    private String filePartiallyWritten(String key, File dataFile, long bytesToWrite, long bytesWritten) {
         if ( bytesWritten == bytesToWrite) {
             return "file:'" + dataFile.getName()
                     + "', key:'" + key + "', length:"
@@ -220,6 +252,8 @@ public class MyBackupAgent extends BackupAgent {
                         throw new FileNotFoundException("No BackupDataInput");
                     } else if (!newDescriptor.saved()) {
                         throw new FileNotFoundException("No new state");
+                    } else if (newDescriptor.isDelta() && backupChain.size() < 2) {
+                        throw new FileNotFoundException("Base backups of the incremental backup are not found");
                     } else {
                         ensureNoDataIsPresent();
                         doRestore(data);
@@ -256,8 +290,19 @@ public class MyBackupAgent extends BackupAgent {
     
     private void doRestore(MyBackupDataInput data) throws IOException {
         restoreSharedPreferences(data);
-        assertNextHeader(data, DATABASE_KEY + "_" + DatabaseHolder.DATABASE_NAME);
-        databasesRestored += restoreFile(data, MyStorage.getDatabasePath(DatabaseHolder.DATABASE_NAME));
+        File databasePath = MyStorage.getDatabasePath(DatabaseHolder.DATABASE_NAME);
+        for (File journalFile : DatabaseHolder.getJournalFiles(databasePath)) {
+            if (journalFile.exists() && !journalFile.delete()) {
+                throw new FileNotFoundException("Couldn't delete old file before restore '"
+                        + journalFile.getName() + "'");
+            }
+        }
+        if (backupDescriptor.isDelta()) {
+            restoreDatabaseChain(data, databasePath);
+        } else {
+            assertNextHeader(data, DATABASE_KEY + "_" + DatabaseHolder.DATABASE_NAME);
+            databasesRestored += restoreFile(data, databasePath);
+        }
         MyContextHolder.release();
         MyContextHolder.setOnRestore(true);
         MyContextHolder.initialize(this, this);
@@ -275,6 +320,57 @@ public class MyBackupAgent extends BackupAgent {
         MyContextHolder.initialize(this, this);
     }
 
+    /**
+     * Restores the database file from the full backup and replays changes of the incremental backups
+     * in the chain. Changes are applied to the database of the backup's version, before it is upgraded
+     */
+    private void restoreDatabaseChain(MyBackupDataInput data, File databasePath) throws IOException {
+        final String databaseKey = DATABASE_KEY + "_" + DatabaseHolder.DATABASE_NAME;
+        MyBackupDataInput fullData = new MyBackupDataInput(backupChain.get(0));
+        boolean found = false;
+        while (!found && fullData.readNextHeader()) {
+            found = databaseKey.equals(fullData.getKey());
+            if (!found) {
+                fullData.skipEntityData();
+            }
+        }
+        if (!found) {
+            throw new FileNotFoundException("No key='" + databaseKey + "' in the full backup '"
+                    + backupChain.get(0).getName() + "'");
+        }
+        databasesRestored += restoreFile(fullData, databasePath);
+
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(databasePath.getAbsolutePath(), null,
+                SQLiteDatabase.OPEN_READWRITE);
+        try {
+            if (db.getVersion() != backupDescriptor.getDatabaseVersion()) {
+                throw new FileNotFoundException("Full backup '" + backupChain.get(0).getName()
+                        + "' has database version " + db.getVersion()
+                        + ", the incremental one has " + backupDescriptor.getDatabaseVersion());
+            }
+            long rows = 0;
+            for (File folder : backupChain.subList(1, backupChain.size() - 1)) {
+                MyBackupDataInput deltaData = new MyBackupDataInput(folder);
+                while (deltaData.readNextHeader()) {
+                    if (deltaData.getKey().startsWith(DatabaseDelta.KEY_PREFIX)) {
+                        rows += DatabaseDelta.restore(db, deltaData, getCacheDir(), backupDescriptor.getLogger());
+                    } else {
+                        deltaData.skipEntityData();
+                    }
+                }
+            }
+            while (data.readNextHeader()) {
+                previousKey = data.getKey();
+                if (!previousKey.startsWith(DatabaseDelta.KEY_PREFIX)) break;
+                rows += DatabaseDelta.restore(db, data, getCacheDir(), backupDescriptor.getLogger());
+            }
+            backupDescriptor.getLogger().logProgress("Restored " + rows + " changed rows of the database from "
+                    + (backupChain.size() - 1) + " incremental backups");
+        } finally {
+            db.close();
+        }
+    }
+
     private void restoreSharedPreferences(MyBackupDataInput data) throws IOException {
         MyLog.i(this, "On restoring Shared preferences");
         MyPreferencesGroupsEnum.setDefaultValues();
@@ -328,25 +424,9 @@ public class MyBackupAgent extends BackupAgent {
         }
         final String method = "restoreFile";
         MyLog.i(this, method + " started, " + fileWritten(data.getKey(), dataFile, data.getDataSize()));
-        int bytesToWrite = data.getDataSize();
-        int bytesWritten = 0;
-        try (FileOutputStream output = new FileOutputStream(dataFile, false)) {
-            while (bytesToWrite > bytesWritten) {
-                byte[] bytes = new byte[MyBackupDataInput.FILE_CHUNK_SIZE];
-                int bytesRead = data.readEntityData(bytes, 0, bytes.length);
-                if (bytesRead == 0) {
-                    break;
-                }
-                output.write(bytes, 0, bytesRead);
-                bytesWritten += bytesRead;
-            }
-            if (bytesWritten != bytesToWrite) {
-                throw new FileNotFoundException("Couldn't restore " 
-                        + filePartiallyWritten(data.getKey(), dataFile, bytesToWrite, bytesWritten));
-            }
-        }
+        long bytesWritten = data.readEntityFile(dataFile);
         backupDescriptor.getLogger().logProgress("Restored "
-                + filePartiallyWritten(data.getKey(), dataFile, bytesToWrite, bytesWritten));
+                + fileWritten(data.getKey(), dataFile, bytesWritten));
         return 1;
     }
 
@@ -24,11 +24,18 @@ import org.andstatus.app.util.MyLog;
 import org.json.JSONObject;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
 
 public class MyBackupDataInput {
     final static int FILE_CHUNK_SIZE = 250000;
@@ -46,14 +53,20 @@ public class MyBackupDataInput {
     static class BackupHeader implements Comparable<BackupHeader> {
         String key;
         long ordinalNumber;
-        int dataSize;
+        long dataSize;
         String fileExtension;
+        /** Size of the original file, if the data is compressed */
+        long fileSize;
+        String compression = "";
+        /** CRC32 of the original file, -1 if unknown */
+        long checksum = -1;
 
-        BackupHeader(String key, long ordinalNumber, int dataSize, String fileExtension) {
+        BackupHeader(String key, long ordinalNumber, long dataSize, String fileExtension) {
             this.key = key;
             this.ordinalNumber = ordinalNumber;
             this.dataSize = dataSize;
             this.fileExtension = fileExtension;
+            this.fileSize = dataSize;
         }
 
         static BackupHeader getEmpty() {
@@ -61,11 +74,19 @@ public class MyBackupDataInput {
         }
         
         static BackupHeader fromJson(JSONObject jso) {
-            return new BackupHeader(
+            BackupHeader header = new BackupHeader(
             jso.optString(MyBackupDataOutput.KEY_KEYNAME, ""),
             jso.optLong(MyBackupDataOutput.KEY_ORDINAL_NUMBER, 0),
-            jso.optInt(MyBackupDataOutput.KEY_DATA_SIZE, 0),
+            jso.optLong(MyBackupDataOutput.KEY_DATA_SIZE, 0),
             jso.optString(MyBackupDataOutput.KEY_FILE_EXTENSION, MyBackupDataOutput.DATA_FILE_EXTENSION_DEFAULT));
+            header.fileSize = jso.optLong(MyBackupDataOutput.KEY_FILE_SIZE, header.dataSize);
+            header.compression = jso.optString(MyBackupDataOutput.KEY_COMPRESSION, "");
+            header.checksum = jso.optLong(MyBackupDataOutput.KEY_CHECKSUM, -1);
+            return header;
+        }
+
+        boolean isCompressed() {
+            return MyBackupDataOutput.COMPRESSION_GZIP.equals(compression);
         }
 
         @Override
@@ -78,7 +99,7 @@ public class MyBackupDataInput {
         public int hashCode() {
             final int prime = 31;
             int result = 1;
-            result = prime * result + dataSize;
+            result = prime * result + (int) (dataSize ^ (dataSize >>> 32));
             result = prime * result + ((fileExtension == null) ? 0 : fileExtension.hashCode());
             result = prime * result + ((key == null) ? 0 : key.hashCode());
             result = prime * result + (int) (ordinalNumber ^ (ordinalNumber >>> 32));
@@ -194,7 +215,7 @@ public class MyBackupDataInput {
 
     private int getDataSize2() {
         if (mHeaderReady) {
-            return header.dataSize;
+            return (int) Math.min(header.fileSize, Integer.MAX_VALUE);
         } else {
             throw new IllegalStateException(ENTITY_HEADER_NOT_READ);
         }
@@ -209,6 +230,73 @@ public class MyBackupDataInput {
         }
     }
 
+    /**
+     * Reads the whole entity into the file. Data in a backup folder is read through one channel,
+     * decompressed and checked against its checksum, if they are in the header
+     * @return number of bytes written to the file
+     */
+    public long readEntityFile(File file) throws IOException {
+        if (backupDataInput != null) {
+            return readEntityFile1(file);
+        } else if (mHeaderReady) {
+            return readEntityFile2(file);
+        } else {
+            throw new IllegalStateException(ENTITY_HEADER_NOT_READ);
+        }
+    }
+
+    private long readEntityFile1(File file) throws IOException {
+        final int bytesToWrite = backupDataInput.getDataSize();
+        long bytesWritten = 0;
+        try (FileOutputStream output = new FileOutputStream(file, false)) {
+            byte[] bytes = new byte[FILE_CHUNK_SIZE];
+            while (bytesToWrite > bytesWritten) {
+                int bytesRead = backupDataInput.readEntityData(bytes, 0, bytes.length);
+                if (bytesRead <= 0) {
+                    break;
+                }
+                output.write(bytes, 0, bytesRead);
+                bytesWritten += bytesRead;
+            }
+        }
+        if (bytesWritten != bytesToWrite) {
+            throw new FileNotFoundException("Couldn't restore file:'" + file.getName() + "', key:'"
+                    + getKey() + "', wrote " + bytesWritten + " of " + bytesToWrite + " bytes");
+        }
+        return bytesWritten;
+    }
+
+    private long readEntityFile2(File file) throws IOException {
+        File dataFile = new File(dataFolder, header.key + MyBackupDataOutput.DATA_FILE_SUFFIX + header.fileExtension);
+        final CRC32 checksum = new CRC32();
+        long bytesWritten = 0;
+        try (InputStream fileIn = new FileInputStream(dataFile);
+             InputStream in = header.isCompressed()
+                     ? new GZIPInputStream(fileIn, MyBackupDataOutput.FILE_BUFFER_SIZE) : fileIn;
+             FileOutputStream out = new FileOutputStream(file, false);
+             FileChannel outChannel = out.getChannel()) {
+            byte[] bytes = new byte[MyBackupDataOutput.FILE_BUFFER_SIZE];
+            int bytesRead;
+            while ((bytesRead = in.read(bytes)) >= 0) {
+                checksum.update(bytes, 0, bytesRead);
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, bytesRead);
+                while (buffer.hasRemaining()) {
+                    outChannel.write(buffer);
+                }
+                bytesWritten += bytesRead;
+            }
+        }
+        if (bytesWritten != header.fileSize) {
+            throw new FileNotFoundException("Couldn't restore file:'" + file.getName() + "', key:'"
+                    + header.key + "', wrote " + bytesWritten + " of " + header.fileSize + " bytes");
+        }
+        if (header.checksum >= 0 && header.checksum != checksum.getValue()) {
+            throw new FileNotFoundException("Checksum mismatch of restored file:'" + file.getName()
+                    + "', key:'" + header.key + "'");
+        }
+        return bytesWritten;
+    }
+
     private int readEntityData2(byte[] data, int offset, int size) throws IOException {
         int bytesRead = 0;
         if (size > FILE_CHUNK_SIZE) {
@@ -24,10 +24,16 @@ import org.json.JSONObject;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 /** Allowing to instantiate and to mock BackupDataOutput class */
 public class MyBackupDataOutput {
@@ -38,12 +44,20 @@ public class MyBackupDataOutput {
     static final String KEY_DATA_SIZE = "data_size";
     static final String KEY_ORDINAL_NUMBER = "ordinal_number";
     static final String KEY_FILE_EXTENSION = "file_extension";
+    /** Size of the original file, before compression */
+    static final String KEY_FILE_SIZE = "file_size";
+    static final String KEY_COMPRESSION = "compression";
+    /** CRC32 of the original file */
+    static final String KEY_CHECKSUM = "checksum";
+    static final String COMPRESSION_GZIP = "gzip";
+    static final int FILE_BUFFER_SIZE = 1024 * 1024;
     private File dataFolder;
     private BackupDataOutput backupDataOutput;
     private int sizeToWrite = 0;
     private int sizeWritten = 0;
     private File dataFile = null;
     private int headerOrdinalNumber = 0;
+    private boolean compressFiles = false;
 
     public MyBackupDataOutput(BackupDataOutput backupDataOutput) {
         this.backupDataOutput = backupDataOutput;
@@ -53,6 +67,101 @@ public class MyBackupDataOutput {
         this.dataFolder = dataFolder;
     }
 
+    /** Compress files, written by {@link #writeEntityFile(String, File)} to a backup folder */
+    MyBackupDataOutput setCompressFiles(boolean compressFiles) {
+        this.compressFiles = compressFiles;
+        return this;
+    }
+
+    /**
+     * Writes the whole file as one entity, reading it once through one channel.
+     * In a backup folder the data is stored with a checksum and, optionally, compressed
+     * @return number of bytes of the file written
+     */
+    public long writeEntityFile(String key, File file) throws IOException {
+        headerOrdinalNumber++;
+        final long fileLength = file.length();
+        final CRC32 checksum = new CRC32();
+        long bytesWritten = 0;
+        if (backupDataOutput != null) {
+            if (fileLength > Integer.MAX_VALUE) {
+                throw new FileNotFoundException("File '" + file.getName() + "' is too large for backup: "
+                        + fileLength + " bytes");
+            }
+            backupDataOutput.writeEntityHeader(key, (int) fileLength);
+            try (FileInputStream in = new FileInputStream(file); FileChannel inChannel = in.getChannel()) {
+                ByteBuffer buffer = ByteBuffer.allocate(MyBackupDataInput.FILE_CHUNK_SIZE);
+                while (bytesWritten < fileLength) {
+                    int count = readChunk(inChannel, buffer, fileLength - bytesWritten);
+                    if (count <= 0) break;
+                    backupDataOutput.writeEntityData(buffer.array(), count);
+                    bytesWritten += count;
+                }
+            }
+        } else {
+            final String fileExtension = getDataFileExtension(file);
+            createDataFile(key, 0, fileExtension);
+            try (FileInputStream in = new FileInputStream(file); FileChannel inChannel = in.getChannel();
+                 FileOutputStream out = new FileOutputStream(dataFile);
+                 OutputStream gzOut = compressFiles ? new FastGzipOutputStream(out) : null) {
+                FileChannel outChannel = out.getChannel();
+                ByteBuffer buffer = ByteBuffer.allocate(FILE_BUFFER_SIZE);
+                while (bytesWritten < fileLength) {
+                    int count = readChunk(inChannel, buffer, fileLength - bytesWritten);
+                    if (count <= 0) break;
+                    checksum.update(buffer.array(), 0, count);
+                    if (gzOut == null) {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            outChannel.write(buffer);
+                        }
+                    } else {
+                        gzOut.write(buffer.array(), 0, count);
+                    }
+                    bytesWritten += count;
+                }
+            }
+            JSONObject extra = new JSONObject();
+            try {
+                extra.put(KEY_FILE_SIZE, bytesWritten);
+                extra.put(KEY_CHECKSUM, checksum.getValue());
+                if (compressFiles) extra.put(KEY_COMPRESSION, COMPRESSION_GZIP);
+            } catch (JSONException e) {
+                throw new IOException(e);
+            }
+            writeHeaderFile(key, dataFile.length(), fileExtension, extra);
+            dataFile = null;
+        }
+        if (bytesWritten != fileLength) {
+            throw new FileNotFoundException("Couldn't backup file:'" + file.getName() + "', key:'" + key
+                    + "', wrote " + bytesWritten + " of " + fileLength + " bytes");
+        }
+        return bytesWritten;
+    }
+
+    /** Reads up to the buffer capacity, but not more than remaining bytes of the file */
+    private static int readChunk(FileChannel inChannel, ByteBuffer buffer, long remaining) throws IOException {
+        buffer.clear();
+        if (remaining < buffer.capacity()) {
+            buffer.limit((int) remaining);
+        }
+        int count = 0;
+        while (buffer.hasRemaining()) {
+            int read = inChannel.read(buffer);
+            if (read < 0) break;
+            count += read;
+        }
+        return count;
+    }
+
+    /** Compression is mostly needed to save space, so we prefer speed here */
+    private static class FastGzipOutputStream extends GZIPOutputStream {
+        FastGzipOutputStream(OutputStream out) throws IOException {
+            super(out, FILE_BUFFER_SIZE);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
+
     /** {@link BackupDataOutput#writeEntityHeader(String, int)} */
     public int writeEntityHeader(String key, int dataSize, String fileExtension) throws IOException {
         headerOrdinalNumber++;
@@ -67,15 +176,14 @@ public class MyBackupDataOutput {
         MyLog.v(this, "Writing header for '" + key + "', size=" + dataSize);
         sizeToWrite = dataSize;
         sizeWritten = 0;
-        writeHeaderFile(key, dataSize, fileExtension);
+        writeHeaderFile(key, dataSize, fileExtension, new JSONObject());
         createDataFile(key, dataSize, fileExtension);
         return key.length();
     }
 
-    private void writeHeaderFile(String key, int dataSize, String fileExtension) throws IOException {
+    private void writeHeaderFile(String key, long dataSize, String fileExtension, JSONObject jso) throws IOException {
         File headerFile = new File(dataFolder, key + HEADER_FILE_SUFFIX);
         createFileIfNeeded(dataSize, headerFile);
-        JSONObject jso = new JSONObject();
         try {
             jso.put(KEY_KEYNAME, key);
             jso.put(KEY_ORDINAL_NUMBER, headerOrdinalNumber);
@@ -88,7 +196,7 @@ public class MyBackupDataOutput {
         }
     }
 
-    private void createFileIfNeeded(int dataSize, File file) throws IOException {
+    private void createFileIfNeeded(long dataSize, File file) throws IOException {
         if (file.exists() && !file.delete()) {
             throw new FileNotFoundException("Couldn't delete " + file.getAbsolutePath());
         }
@@ -20,11 +20,13 @@ import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.os.ParcelFileDescriptor;
+import android.support.annotation.NonNull;
 
 import org.andstatus.app.context.MyContextHolder;
 import org.andstatus.app.database.DatabaseCreator;
 import org.andstatus.app.util.FileDescriptorUtils;
 import org.andstatus.app.util.MyLog;
+import org.andstatus.app.util.StringUtils;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -52,15 +54,28 @@ public class MyBackupDescriptor {
     static final String KEY_CREATED_DATE = "created_date";
     static final String KEY_BACKUP_SCHEMA_VERSION = "backup_schema_version";
     static final String KEY_APPLICATION_VERSION_CODE = "app_version_code";
+    /** {@link DatabaseCreator#DATABASE_VERSION} of the backed up database */
+    static final String KEY_DATABASE_VERSION = "database_version";
+    /** Name of the data folder of the previous backup, which this incremental backup is based on */
+    static final String KEY_BASE_BACKUP = "base_backup";
+    /** 0 for a full backup, n for the n-th incremental backup after a full one */
+    static final String KEY_DELTA_NUMBER = "delta_number";
+    /** See {@link DatabaseDelta#getHighWaterMarks} */
+    static final String KEY_HIGH_WATER_MARKS = "high_water_marks";
     
     private int backupSchemaVersion = BACKUP_SCHEMA_VERSION_UNKNOWN;
     private int applicationVersionCode = 0;
+    private int databaseVersion = 0;
 
     private long createdDate = 0;
     private FileDescriptor fileDescriptor = null;
 
     private long accountsCount = 0;
 
+    private String baseBackup = "";
+    private int deltaNumber = 0;
+    private JSONObject highWaterMarks = new JSONObject();
+
     private final ProgressLogger progressLogger;
     
     private MyBackupDescriptor(ProgressLogger progressLogger) {
@@ -79,7 +94,14 @@ public class MyBackupDescriptor {
             myBackupDescriptor.backupSchemaVersion = jso.optInt(KEY_BACKUP_SCHEMA_VERSION, myBackupDescriptor.backupSchemaVersion);
             myBackupDescriptor.createdDate = jso.optLong(KEY_CREATED_DATE, myBackupDescriptor.createdDate);
             myBackupDescriptor.applicationVersionCode = jso.optInt(KEY_APPLICATION_VERSION_CODE, myBackupDescriptor.applicationVersionCode);
+            myBackupDescriptor.databaseVersion = jso.optInt(KEY_DATABASE_VERSION, myBackupDescriptor.databaseVersion);
             myBackupDescriptor.accountsCount = jso.optLong(KEY_ACCOUNTS_COUNT, myBackupDescriptor.accountsCount);
+            myBackupDescriptor.baseBackup = jso.optString(KEY_BASE_BACKUP, myBackupDescriptor.baseBackup);
+            myBackupDescriptor.deltaNumber = jso.optInt(KEY_DELTA_NUMBER, myBackupDescriptor.deltaNumber);
+            JSONObject marks = jso.optJSONObject(KEY_HIGH_WATER_MARKS);
+            if (marks != null) {
+                myBackupDescriptor.highWaterMarks = marks;
+            }
             if (myBackupDescriptor.backupSchemaVersion != BACKUP_SCHEMA_VERSION) {
                 try {
                     MyLog.w(TAG, "Bad backup descriptor: " + jso.toString(2) );
@@ -95,6 +117,7 @@ public class MyBackupDescriptor {
         MyBackupDescriptor myBackupDescriptor = new MyBackupDescriptor(progressLoggerIn);
         myBackupDescriptor.fileDescriptor = parcelFileDescriptor.getFileDescriptor();
         myBackupDescriptor.backupSchemaVersion = BACKUP_SCHEMA_VERSION;
+        myBackupDescriptor.databaseVersion = DatabaseCreator.DATABASE_VERSION;
 
         PackageManager pm = MyContextHolder.get().context().getPackageManager();
         PackageInfo pi;
@@ -118,6 +141,11 @@ public class MyBackupDescriptor {
     int getApplicationVersionCode() {
         return applicationVersionCode;
     }
+
+    /** 0 for backups, made before the version was stored */
+    int getDatabaseVersion() {
+        return databaseVersion;
+    }
     
     boolean isEmpty() {
         return fileDescriptor == null;
@@ -136,7 +164,13 @@ public class MyBackupDescriptor {
             jso.put(KEY_BACKUP_SCHEMA_VERSION, backupSchemaVersion);
             jso.put(KEY_CREATED_DATE, createdDateNew);
             jso.put(KEY_APPLICATION_VERSION_CODE, applicationVersionCode);
+            jso.put(KEY_DATABASE_VERSION, databaseVersion);
             jso.put(KEY_ACCOUNTS_COUNT, accountsCount);
+            if (isDelta()) {
+                jso.put(KEY_BASE_BACKUP, baseBackup);
+                jso.put(KEY_DELTA_NUMBER, deltaNumber);
+            }
+            jso.put(KEY_HIGH_WATER_MARKS, highWaterMarks);
             
             writeStringToFileDescriptor(jso.toString(), fileDescriptor, true);
             createdDate = createdDateNew;
@@ -163,7 +197,9 @@ public class MyBackupDescriptor {
                 + ", " + (createdDate == 0 ? "not created" : " created:" + (new Date(createdDate)).toString())
                 + (fileDescriptor == null ? ", fileDescriptor:null" : "")
                 + ", versionCode:" + applicationVersionCode
+                + ", databaseVersion:" + databaseVersion
                 + ", accountsCount:" + accountsCount
+                + (isDelta() ? ", base:'" + baseBackup + "', delta:" + deltaNumber : "")
                 + "}";
      }
 
@@ -180,6 +216,37 @@ public class MyBackupDescriptor {
         progressLogger.logProgress("Accounts backed up:" + accountsCount);
     }
 
+    /** Incremental backup contains only changes since the base backup */
+    boolean isDelta() {
+        return StringUtils.nonEmpty(baseBackup);
+    }
+
+    String getBaseBackup() {
+        return baseBackup;
+    }
+
+    int getDeltaNumber() {
+        return deltaNumber;
+    }
+
+    void setBaseBackup(String baseBackup, int deltaNumber) {
+        this.baseBackup = baseBackup;
+        this.deltaNumber = deltaNumber;
+    }
+
+    @NonNull
+    JSONObject getHighWaterMarks() {
+        return highWaterMarks;
+    }
+
+    boolean hasHighWaterMarks() {
+        return highWaterMarks.length() > 0;
+    }
+
+    void setHighWaterMarks(@NonNull JSONObject highWaterMarks) {
+        this.highWaterMarks = highWaterMarks;
+    }
+
     public ProgressLogger getLogger() {
         return progressLogger;
     }
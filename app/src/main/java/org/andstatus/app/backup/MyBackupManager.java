@@ -24,12 +24,16 @@ import android.os.ParcelFileDescriptor;
 import android.support.annotation.NonNull;
 
 import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.database.DatabaseCreator;
 import org.andstatus.app.util.MyLog;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
 
 /**
  * Creates backups in the local file system:
@@ -40,12 +44,21 @@ import java.util.Arrays;
  * 1. Backup descriptor file
  * 2. Folder with: 
  *      For each backup "key": header file and data file  
+ * An incremental backup has database changes instead of the database file, see {@link DatabaseDelta},
+ * and it is restored together with its chain of base backups, located in the same parent folder
  * @author yvolk (Yuri Volkov), http://yurivolkov.com
  */
 class MyBackupManager {
     static final String DESCRIPTOR_FILE_NAME = "_descriptor.json";
+    /** Number of incremental backups after a full one, after which a full backup is made again */
+    static final int MAX_DELTA_NUMBER = 6;
     private File dataFolder = null;
     private MyBackupDescriptor newDescriptor = MyBackupDescriptor.getEmpty();    
+    /** The previous backup, which a new incremental backup is based on */
+    private File baseFolder = null;
+    private MyBackupDescriptor baseDescriptor = MyBackupDescriptor.getEmpty();
+    /** Data folders to restore from, starting from a full backup */
+    private List<File> backupChain = Collections.emptyList();
 
     private MyBackupAgent backupAgent;
     private final Activity activity;
@@ -56,10 +69,11 @@ class MyBackupManager {
         this.progressLogger = new ProgressLogger(progressCallback);
     }
 
-    static void backupInteractively(File backupFolder, Activity activity, ProgressLogger.ProgressCallback progressCallback) {
+    static void backupInteractively(File backupFolder, boolean incremental, Activity activity,
+                                    ProgressLogger.ProgressCallback progressCallback) {
         MyBackupManager backupManager = new MyBackupManager(activity, progressCallback);
         try {
-            backupManager.prepareForBackup(backupFolder);
+            backupManager.prepareForBackup(backupFolder, incremental);
             backupManager.backup();
         } catch (IOException e) {
             MyLog.ignored(backupManager, e);
@@ -69,12 +83,20 @@ class MyBackupManager {
     }
     
     void prepareForBackup(File backupFolder) throws IOException {
+        prepareForBackup(backupFolder, false);
+    }
+
+    /** @param incremental if true, only changes since the latest backup in the backupFolder are backed up */
+    void prepareForBackup(File backupFolder, boolean incremental) throws IOException {
         progressLogger.logProgress("Data folder will be created inside:'"
                 + backupFolder.getAbsolutePath() + "'");
         if (backupFolder.exists() && dataFolderToDescriptorFile(backupFolder).exists()) {
             throw new FileNotFoundException("Wrong folder, descriptor file already exists:'"
                     + dataFolderToDescriptorFile(backupFolder).getAbsolutePath() + "'");
         }
+        if (incremental) {
+            findBaseBackup(backupFolder);
+        }
         final String backupFileNamePrefix = MyLog.currentDateTimeFormatted() + "-AndStatusBackup";
         File dataFolderToBe = new File(backupFolder, backupFileNamePrefix);
         if (dataFolderToBe.exists()) {
@@ -92,6 +114,36 @@ class MyBackupManager {
         }
     }
 
+    /**
+     * The latest backup in the folder may be a base, if it has high-water marks, its chain is not too long
+     * and its database has the current schema, so that the changes can be applied to it on restore
+     */
+    private void findBaseBackup(File backupFolder) throws IOException {
+        File[] folders = backupFolder.listFiles(MyBackupManager::isBackupFolder);
+        if (folders == null || folders.length == 0) {
+            progressLogger.logProgress("No previous backup found, full backup will be made");
+            return;
+        }
+        Arrays.sort(folders);
+        File folder = folders[folders.length - 1];
+        MyBackupDescriptor descriptor = loadDescriptor(folder, ProgressLogger.getEmpty());
+        if (descriptor.getBackupSchemaVersion() != MyBackupDescriptor.BACKUP_SCHEMA_VERSION
+                || !descriptor.saved() || !descriptor.hasHighWaterMarks()) {
+            progressLogger.logProgress("Previous backup '" + folder.getName()
+                    + "' cannot be a base, full backup will be made");
+        } else if (descriptor.getDatabaseVersion() != DatabaseCreator.DATABASE_VERSION) {
+            progressLogger.logProgress("Previous backup '" + folder.getName() + "' has database version "
+                    + descriptor.getDatabaseVersion() + ", current is " + DatabaseCreator.DATABASE_VERSION
+                    + ", full backup will be made");
+        } else if (descriptor.getDeltaNumber() >= MAX_DELTA_NUMBER) {
+            progressLogger.logProgress("Full backup will be made after " + MAX_DELTA_NUMBER + " incremental ones");
+        } else {
+            baseFolder = folder;
+            baseDescriptor = descriptor;
+            progressLogger.logProgress("Incremental backup, based on '" + folder.getName() + "'");
+        }
+    }
+
     File getDataFolder() {
         return dataFolder;
     }
@@ -117,12 +169,15 @@ class MyBackupManager {
         backupAgent = new MyBackupAgent();
         backupAgent.setContext(MyContextHolder.get().context());
         
-        MyBackupDataOutput dataOutput = new MyBackupDataOutput(dataFolder);
+        MyBackupDataOutput dataOutput = new MyBackupDataOutput(dataFolder).setCompressFiles(true);
         ParcelFileDescriptor newState = ParcelFileDescriptor.open(getDescriptorFile(),
                 ParcelFileDescriptor.MODE_READ_WRITE);
         try {
             newDescriptor = MyBackupDescriptor.fromEmptyParcelFileDescriptor(newState, progressLogger);
-            backupAgent.onBackup(MyBackupDescriptor.getEmpty(), dataOutput, newDescriptor);
+            if (baseFolder != null) {
+                newDescriptor.setBaseBackup(baseFolder.getName(), baseDescriptor.getDeltaNumber() + 1);
+            }
+            backupAgent.onBackup(baseDescriptor, dataOutput, newDescriptor);
             progressLogger.logSuccess();
         } finally {
             newState.close();
@@ -157,18 +212,63 @@ class MyBackupManager {
             throw new FileNotFoundException("Descriptor file doesn't exist:'" + getDescriptorFile().getAbsolutePath() + "'");
         }
 
-        ParcelFileDescriptor newState = ParcelFileDescriptor.open(getDescriptorFile(),
+        newDescriptor = loadDescriptor(dataFolder, progressLogger);
+        assertSchemaVersion(dataFolder, newDescriptor);
+        backupChain = getBackupChain(dataFolder, newDescriptor);
+        if (backupChain.size() > 1) {
+            progressLogger.logProgress("Incremental backup, based on full backup '"
+                    + backupChain.get(0).getName() + "' and " + (backupChain.size() - 2) + " incremental ones");
+        }
+    }
+
+    @NonNull
+    static MyBackupDescriptor loadDescriptor(File dataFolder, ProgressLogger progressLogger) throws IOException {
+        ParcelFileDescriptor state = ParcelFileDescriptor.open(dataFolderToDescriptorFile(dataFolder),
                 ParcelFileDescriptor.MODE_READ_ONLY);
         try {
-            newDescriptor = MyBackupDescriptor.fromOldParcelFileDescriptor(newState, progressLogger);
-            if (newDescriptor.getBackupSchemaVersion() != MyBackupDescriptor.BACKUP_SCHEMA_VERSION) {
-                throw new FileNotFoundException("Unsupported backup schema version: " + newDescriptor.getBackupSchemaVersion()
-                        + "; created with app version code:" + newDescriptor.getApplicationVersionCode()
-                        + "; data folder:'" + dataFolder.getAbsolutePath() + "'");
-            }
+            return MyBackupDescriptor.fromOldParcelFileDescriptor(state, progressLogger);
         } finally {
-            newState.close();
+            state.close();
+        }
+    }
+
+    private static void assertSchemaVersion(File dataFolder, MyBackupDescriptor descriptor) throws FileNotFoundException {
+        if (descriptor.getBackupSchemaVersion() != MyBackupDescriptor.BACKUP_SCHEMA_VERSION) {
+            throw new FileNotFoundException("Unsupported backup schema version: " + descriptor.getBackupSchemaVersion()
+                    + "; created with app version code:" + descriptor.getApplicationVersionCode()
+                    + "; data folder:'" + dataFolder.getAbsolutePath() + "'");
+        }
+    }
+
+    /**
+     * All backups of the chain should have the same database version, because changes are applied
+     * to the database of the full backup
+     * @return data folders from the full backup to this one, which are restored in this order
+     */
+    @NonNull
+    static List<File> getBackupChain(File dataFolder, MyBackupDescriptor descriptor) throws IOException {
+        LinkedList<File> chain = new LinkedList<>();
+        chain.addFirst(dataFolder);
+        MyBackupDescriptor current = descriptor;
+        while (current.isDelta()) {
+            File folder = new File(dataFolder.getParentFile(), current.getBaseBackup());
+            if (!isBackupFolder(folder)) {
+                throw new FileNotFoundException("Base backup not found:'" + folder.getAbsolutePath() + "'");
+            }
+            if (chain.size() > MAX_DELTA_NUMBER) {
+                throw new FileNotFoundException("Too long chain of incremental backups at:'"
+                        + folder.getAbsolutePath() + "'");
+            }
+            current = loadDescriptor(folder, ProgressLogger.getEmpty());
+            assertSchemaVersion(folder, current);
+            if (current.getDatabaseVersion() != descriptor.getDatabaseVersion()) {
+                throw new FileNotFoundException("Base backup has database version " + current.getDatabaseVersion()
+                        + ", the incremental one has " + descriptor.getDatabaseVersion()
+                        + "; base backup:'" + folder.getAbsolutePath() + "'");
+            }
+            chain.addFirst(folder);
         }
+        return chain;
     }
 
     void restore() throws IOException {
@@ -182,6 +282,7 @@ class MyBackupManager {
         backupAgent = new MyBackupAgent();
         backupAgent.setContext(MyContextHolder.get().context());
         backupAgent.setActivity(activity);
+        backupAgent.setBackupChain(backupChain);
         backupAgent.onRestore(dataInput, newDescriptor.getApplicationVersionCode(), newDescriptor);
         progressLogger.logSuccess();
     }
@@ -29,6 +29,7 @@ import org.acra.ACRA;
 import org.acra.ReportingInteractionMode;
 import org.acra.annotation.ReportsCrashes;
 import org.andstatus.app.R;
+import org.andstatus.app.net.http.HttpClientPool;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.StringUtils;
 import org.andstatus.app.util.TamperingDetector;
@@ -55,6 +56,7 @@ public class MyApplication extends Application {
         if (!isAcraProcess) {
             MyContextHolder.storeContextIfNotPresent(this, this);
             MyLocale.setLocale(this);
+            HttpClientPool.configureJavaNet();
         }
     }
 
@@ -86,7 +88,8 @@ public class MyApplication extends Application {
         File dbAbsolutePath = getDatabasePath(name);
         if (dbAbsolutePath != null) {
             db = SQLiteDatabase.openDatabase(dbAbsolutePath.getPath(), factory,
-                    SQLiteDatabase.CREATE_IF_NECESSARY + SQLiteDatabase.OPEN_READWRITE );
+                    SQLiteDatabase.CREATE_IF_NECESSARY + SQLiteDatabase.OPEN_READWRITE
+                    + ((mode & MODE_ENABLE_WRITE_AHEAD_LOGGING) == 0 ? 0 : SQLiteDatabase.ENABLE_WRITE_AHEAD_LOGGING));
         }
         if (MyLog.isVerboseEnabled()) {
             MyLog.v(this, "openOrCreateDatabase, name=" + name + ( db!=null ? " opened '"
@@ -84,6 +84,8 @@ public class MyPreferences {
     public static final String KEY_DONT_SYNCHRONIZE_OLD_NOTES = "dont_synchronize_old_messages";
     public static final String KEY_CONNECTION_TIMEOUT_SECONDS = "connection_timeout";
     private static final long CONNECTION_TIMEOUT_DEFAULT_SECONDS = 30;
+    public static final String KEY_MAX_CONNECTIONS_PER_HOST = "max_connections_per_host";
+    private static final long MAX_CONNECTIONS_PER_HOST_DEFAULT = 4;
 
     // ----------------------------------------------------------
     // Filters
@@ -146,6 +148,13 @@ public class MyPreferences {
                 KEY_CONNECTION_TIMEOUT_SECONDS, CONNECTION_TIMEOUT_DEFAULT_SECONDS));
     }
 
+    /** Limit of simultaneous (and of kept alive) HTTP connections to one host */
+    public static int getMaxConnectionsPerHost() {
+        long value = SharedPreferencesUtil.getLongStoredAsString(KEY_MAX_CONNECTIONS_PER_HOST,
+                MAX_CONNECTIONS_PER_HOST_DEFAULT);
+        return (int) (value < 1 ? MAX_CONNECTIONS_PER_HOST_DEFAULT : value);
+    }
+
     /**
      * @return the number of seconds between two sync ("fetch"...) actions.
      */
@@ -109,6 +109,7 @@ public class MySettingsFragment extends PreferenceFragment implements
         showFrequency();
         showDontSynchronizeOldNotes();
         showConnectionTimeout();
+        showMaxConnectionsPerHost();
         showHistorySize();
         showHistoryTime();
         showRingtone();
@@ -159,6 +160,13 @@ public class MySettingsFragment extends PreferenceFragment implements
         }
     }
 
+    private void showMaxConnectionsPerHost() {
+        Preference preference = findPreference(MyPreferences.KEY_MAX_CONNECTIONS_PER_HOST);
+        if (preference != null) {
+            preference.setSummary(Integer.toString(MyPreferences.getMaxConnectionsPerHost()));
+        }
+    }
+
     private void showDontSynchronizeOldNotes() {
         long hours = MyPreferences.getDontSynchronizeOldNotes();
         Preference preference = findPreference(MyPreferences.KEY_DONT_SYNCHRONIZE_OLD_NOTES);
@@ -440,6 +448,9 @@ public class MySettingsFragment extends PreferenceFragment implements
                 case MyPreferences.KEY_CONNECTION_TIMEOUT_SECONDS:
                     showConnectionTimeout();
                     break;
+                case MyPreferences.KEY_MAX_CONNECTIONS_PER_HOST:
+                    showMaxConnectionsPerHost();
+                    break;
                 case MyPreferences.KEY_NOTIFICATION_METHOD_SOUND:
                     showRingtone();
                     break;
@@ -36,6 +36,7 @@ public class MyStorage {
     /** Standard directory in which to place databases */
     public static final String DIRECTORY_DATABASES = "databases";
     public static final String DIRECTORY_DOWNLOADS = "downloads";
+    public static final String DIRECTORY_THUMBNAILS = "thumbnails";
 
     private MyStorage() {
         // Non instantiable
@@ -218,6 +218,10 @@ public class StorageSwitch {
                         MyLog.v(this, method + " to: " + dbFileNew.getPath());
                     }
                     try {
+                        DatabaseHolder db = MyContextHolder.get().getMyDatabase();
+                        if (db != null && !db.checkpoint()) {
+                            throw new IllegalStateException("Couldn't checkpoint the write-ahead log");
+                        }
                         if (copyFile(dbFileOld, dbFileNew)) {
                             copied = true;
                             succeeded = true;
@@ -241,6 +245,13 @@ public class StorageSwitch {
                                 && !dbFileOld.delete()) {
                             messageToAppend.append(method + " couldn't delete old files. ");
                         }
+                        if (copied && dbFileOld != null) {
+                            for (File journalFile : DatabaseHolder.getJournalFiles(dbFileOld)) {
+                                if (journalFile.exists() && !journalFile.delete()) {
+                                    messageToAppend.append(method + " couldn't delete old files. ");
+                                }
+                            }
+                        }
                     } else {
                         if (dbFileNew != null
                                 && dbFileNew.exists()
@@ -58,6 +58,8 @@ public class DataPruner {
     static final long MAX_DAYS_UNUSED_TIMELINES_TO_KEEP = 31;
     private static final long PRUNE_MIN_PERIOD_DAYS = 1;
     private static final double ATTACHMENTS_SIZE_PART = 0.90;
+    /** Thumbnails are stored in addition to the media files, see {@link ThumbnailFile} */
+    private static final double THUMBNAILS_SIZE_PART = 0.10;
 
     public static void prune(@NonNull MyContext myContext) {
         SQLiteDatabase db = myContext.getDatabase();
@@ -164,7 +166,8 @@ public class DataPruner {
     }
 
     long pruneMedia() {
-        long dirSize = DownloadFile.getDirSize();
+        long prunedThumbnails = pruneThumbnails();
+        long dirSize = getMediaSize();
         long maxSize = MyPreferences.getMaximumSizeOfCachedMediaBytes();
         final long bytesToPrune = dirSize - maxSize;
         long bytesToPruneMin = ATTACHMENTS_TO_STORE_MIN * MyPreferences.getMaximumSizeOfAttachmentBytes();
@@ -174,7 +177,7 @@ public class DataPruner {
                         : " less than")
                 + " maximum: " + I18n.formatBytes(maxSize) + " + min to prune: " + I18n.formatBytes(bytesToPruneMin)
         );
-        if (bytesToPrune < bytesToPruneMin) return 0;
+        if (bytesToPrune < bytesToPruneMin) return prunedThumbnails;
 
         DownloadData.ConsumedSummary pruned1 = DownloadData.pruneFiles(myContext, DownloadType.ATTACHMENT,
                 Math.round(maxSize * ATTACHMENTS_SIZE_PART));
@@ -185,7 +188,33 @@ public class DataPruner {
                 Math.round(maxSize * (1 - ATTACHMENTS_SIZE_PART)));
         MyLog.i(this, "Pruned " + pruned2.consumedCount + " avatar files, "
                 + I18n.formatBytes(pruned2.consumedSize));
-        return pruned1.consumedCount + pruned2.consumedCount;
+        return prunedThumbnails + pruned1.consumedCount + pruned2.consumedCount;
+    }
+
+    /** Uses running totals, and only occasionally lists the downloads directory */
+    private long getMediaSize() {
+        if (DownloadSize.isTimeToReconcile(myContext)) {
+            DownloadSize.reconcile(myContext);
+            long dirSize = DownloadFile.getDirSize();
+            MyLog.i(this, "Reconciled size of media files. In the directory: " + I18n.formatBytes(dirSize)
+                    + ", in the database: " + I18n.formatBytes(getMediaSizeInDatabase()));
+            return dirSize;
+        }
+        return getMediaSizeInDatabase();
+    }
+
+    private long getMediaSizeInDatabase() {
+        return DownloadSize.getTotal(myContext, DownloadType.ATTACHMENT)
+                + DownloadSize.getTotal(myContext, DownloadType.AVATAR);
+    }
+
+    private long pruneThumbnails() {
+        long maxSize = Math.round(MyPreferences.getMaximumSizeOfCachedMediaBytes() * THUMBNAILS_SIZE_PART);
+        DownloadData.ConsumedSummary pruned = ThumbnailFile.prune(maxSize);
+        MyLog.i(this, "Pruned " + pruned.consumedCount + " thumbnail files, "
+                + I18n.formatBytes(pruned.consumedSize) + ", kept " + I18n.formatBytes(pruned.skippedSize)
+                + " of maximum: " + I18n.formatBytes(maxSize));
+        return pruned.consumedCount;
     }
 
     public static long getLatestTimestamp(long maxDays) {
@@ -17,6 +17,7 @@
 package org.andstatus.app.data;
 
 import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.support.annotation.NonNull;
 
@@ -38,12 +39,18 @@ import org.andstatus.app.service.CommandExecutionContext;
 import org.andstatus.app.timeline.meta.TimelineType;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.SharedPreferencesUtil;
+import org.andstatus.app.util.StopWatch;
 import org.andstatus.app.util.StringUtils;
 import org.andstatus.app.util.TriState;
 import org.andstatus.app.util.UriUtils;
 
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.andstatus.app.util.RelativeTime.SOME_TIME_AGO;
 import static org.andstatus.app.util.UriUtils.nonEmptyOid;
@@ -62,12 +69,15 @@ public class DataUpdater {
     private LatestActorActivities lum = new LatestActorActivities();
     private KeywordsFilter keywordsFilter = new KeywordsFilter(
             SharedPreferencesUtil.getString(MyPreferences.KEY_FILTER_HIDE_NOTES_BASED_ON_KEYWORDS, ""));
-
-    public static void onActivities(CommandExecutionContext execContext, List<AActivity> activities) {
-        DataUpdater dataUpdater = new DataUpdater(execContext);
-        for (AActivity mbActivity : activities) {
-            dataUpdater.onActivity(mbActivity);
-        }
+    /** The first failure to store a part of the page, which is being stored by {@link #onActivities(List, boolean)} */
+    private Exception pageFailure = null;
+    private boolean storingPage = false;
+    /** Ids of rows, stored in the page transaction, by type and origin. They are evicted from caches on rollback */
+    private final Map<OidEnum, Map<Long, Set<Long>>> pageRows = new EnumMap<>(OidEnum.class);
+
+    public static void onActivities(CommandExecutionContext execContext, List<AActivity> activities)
+            throws ConnectionException {
+        new DataUpdater(execContext).onActivities(activities, true);
     }
 
     public DataUpdater(MyAccount ma) {
@@ -78,6 +88,129 @@ public class DataUpdater {
         this.execContext = execContext;
     }
 
+    /**
+     * Stores a page of activities in one database transaction, so the page costs one journal sync
+     * instead of a sync per each statement. Ids of the page's activities, notes and actors,
+     * which are already in the database, are resolved in bulk beforehand.
+     * @throws ConnectionException if any part of the page failed to be stored. Nothing of the page is stored then,
+     *  so the page should be downloaded again
+     */
+    public void onActivities(List<AActivity> activities, boolean saveLum) throws ConnectionException {
+        if (activities.isEmpty()) return;
+
+        SQLiteDatabase db = execContext.getMyContext().getDatabase();
+        if (db == null) {
+            MyLog.v(this, "onActivities; database is null");
+            return;
+        }
+        StopWatch stopWatch = StopWatch.createStarted();
+        resolveOidsInBulk(activities);
+        boolean success = false;
+        pageFailure = null;
+        pageRows.clear();
+        storingPage = true;
+        db.beginTransaction();
+        try {
+            for (AActivity activity : activities) {
+                onActivity(activity, false);
+                if (pageFailure != null) break;
+            }
+            if (saveLum && pageFailure == null) {
+                saveLum();
+            }
+            if (pageFailure == null) {
+                db.setTransactionSuccessful();
+                success = true;
+            }
+        } catch (Exception e) {
+            pageFailure = e;
+        } finally {
+            storingPage = false;
+            db.endTransaction();
+            if (!success) {
+                evictPageRows();
+            }
+            pageRows.clear();
+        }
+        if (pageFailure != null) {
+            throw new ConnectionException("Failed to store " + activities.size() + " activities, the page is rolled back",
+                    pageFailure);
+        }
+        MyLog.v(this, () -> "onActivities; " + activities.size() + " activities stored in "
+                + stopWatch.getTime() + " ms");
+    }
+
+    private void onPageRow(OidEnum oidEnum, long originId, long id) {
+        if (!storingPage || id == 0) return;
+
+        pageRows.computeIfAbsent(oidEnum, key -> new HashMap<>())
+                .computeIfAbsent(originId, key -> new HashSet<>()).add(id);
+    }
+
+    /** Ids and oids of rows, which were stored in the rolled back transaction, may have been cached */
+    private void evictPageRows() {
+        for (Map.Entry<OidEnum, Map<Long, Set<Long>>> byType : pageRows.entrySet()) {
+            for (Map.Entry<Long, Set<Long>> byOrigin : byType.getValue().entrySet()) {
+                execContext.getMyContext().oidCache().remove(byType.getKey(), byOrigin.getKey(), byOrigin.getValue());
+                if (byType.getKey() == OidEnum.ACTOR_OID) {
+                    execContext.getMyContext().users().evict(byOrigin.getValue());
+                }
+            }
+        }
+    }
+
+    private void resolveOidsInBulk(List<AActivity> activities) {
+        Map<OidEnum, Map<Long, Set<String>>> oids = new EnumMap<>(OidEnum.class);
+        for (AActivity activity : activities) {
+            collectOids(oids, activity, 0);
+        }
+        for (Map.Entry<OidEnum, Map<Long, Set<String>>> byType : oids.entrySet()) {
+            for (Map.Entry<Long, Set<String>> byOrigin : byType.getValue().entrySet()) {
+                MyQuery.oidsToIds(execContext.getMyContext(), byType.getKey(), byOrigin.getKey(), byOrigin.getValue());
+            }
+        }
+    }
+
+    private static void collectOids(Map<OidEnum, Map<Long, Set<String>>> oids, AActivity activity, int recursing) {
+        if (activity == null || activity.isEmpty() || recursing > MAX_RECURSING) return;
+
+        addOid(oids, OidEnum.ACTIVITY_OID, activity.accountActor.origin.getId(),
+                activity.getTimelinePosition().getPosition());
+        collectActorOid(oids, activity.getActor());
+        collectActorOid(oids, activity.getAuthor());
+        collectActorOid(oids, activity.getObjActor());
+        final Note note = activity.getNote();
+        if (!note.isEmpty()) {
+            addOid(oids, OidEnum.NOTE_OID, note.origin.getId(), note.oid);
+            for (Actor actor : note.audience().getActors()) {
+                collectActorOid(oids, actor);
+            }
+            collectOids(oids, note.getInReplyTo(), recursing + 1);
+        }
+        collectOids(oids, activity.getActivity(), recursing + 1);
+    }
+
+    private static void collectActorOid(Map<OidEnum, Map<Long, Set<String>>> oids, Actor actor) {
+        if (actor.isEmpty()) return;
+        addOid(oids, OidEnum.ACTOR_OID, actor.origin.getId(), actor.oid);
+    }
+
+    private static void addOid(Map<OidEnum, Map<Long, Set<String>>> oids, OidEnum oidEnum, long originId, String oid) {
+        if (StringUtils.isEmpty(oid)) return;
+
+        Map<Long, Set<String>> byOrigin = oids.get(oidEnum);
+        if (byOrigin == null) {
+            byOrigin = new HashMap<>();
+            oids.put(oidEnum, byOrigin);
+        }
+        Set<String> set = byOrigin.get(originId);
+        if (set == null) {
+            set = new HashSet<>();
+            byOrigin.put(originId, set);
+        }
+        set.add(oid);
+    }
+
     public AActivity onActivity(AActivity mbActivity) {
         return onActivity(mbActivity, true);
     }
@@ -119,6 +252,7 @@ public class DataUpdater {
             activity.setSubscribedByMe(TriState.TRUE);
         }
         activity.save(execContext.getMyContext());
+        onPageRow(OidEnum.ACTIVITY_OID, activity.accountActor.origin.getId(), activity.getId());
         lum.onNewActorActivity(new ActorActivity(activity.getActor().actorId, activity.getId(), activity.getUpdatedDate()));
         if ( !activity.isAuthorActor()) {
             lum.onNewActorActivity(new ActorActivity(activity.getAuthor().actorId, activity.getId(), activity.getUpdatedDate()));
@@ -134,7 +268,11 @@ public class DataUpdater {
         if (recursing > MAX_RECURSING) return;
 
         updateNote1(activity, recursing);
-        DataUpdater.onActivities(execContext, activity.getNote().replies);
+        try {
+            DataUpdater.onActivities(execContext, activity.getNote().replies);
+        } catch (ConnectionException e) {
+            onFailure("updateNote; replies of " + activity.getNote(), e);
+        }
     }
 
     private void updateNote1(@NonNull AActivity activity, int recursing) {
@@ -251,6 +389,8 @@ public class DataUpdater {
                 execContext.getContext().getContentResolver().update(msgUri, values, null, null);
                 MyLog.v("Note", () -> "Updated " + note);
             }
+            onPageRow(OidEnum.NOTE_OID, note.origin.getId(), note.noteId);
+            NoteSearchIndex.update(execContext.getMyContext().getDatabase(), note.noteId, note.getContentToSearch());
             note.audience().save(execContext.getMyContext(), note.origin, note.noteId, note.getPublic(), false);
 
             if (shouldSaveAttachments(isFirstTimeLoaded, isDraftUpdated)) {
@@ -266,7 +406,7 @@ public class DataUpdater {
                 }
             }
         } catch (Exception e) {
-            MyLog.e(this, method, e);
+            onFailure(method, e);
         }
     }
 
@@ -415,6 +555,7 @@ public class DataUpdater {
             } else if (values.size() > 0) {
                 execContext.getContext().getContentResolver().update(actorUri, values, null, null);
             }
+            onPageRow(OidEnum.ACTOR_OID, actor.origin.getId(), actor.actorId);
             actor.endpoints.save(actor.actorId);
 
             updateFriendship(activity, me);
@@ -430,7 +571,15 @@ public class DataUpdater {
                 updateNote(actor.getLatestActivity(), recursing + 1);
             }
         } catch (Exception e) {
-            MyLog.e(this, method + "; " + activity, e);
+            onFailure(method + "; " + activity, e);
+        }
+    }
+
+    /** A failed write, nested in the page transaction, rolls back the whole page, so the page fails */
+    private void onFailure(String message, Exception e) {
+        MyLog.e(this, message, e);
+        if (storingPage && pageFailure == null) {
+            pageFailure = e;
         }
     }
 
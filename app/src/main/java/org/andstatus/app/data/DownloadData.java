@@ -24,7 +24,6 @@ import org.andstatus.app.util.StringUtils;
 import org.andstatus.app.util.UriUtils;
 
 import java.util.List;
-import java.util.function.Consumer;
 
 public class DownloadData implements IsEmpty {
     private static final String TAG = DownloadData.class.getSimpleName();
@@ -41,6 +40,8 @@ public class DownloadData implements IsEmpty {
     @NonNull
     private DownloadFile fileStored = DownloadFile.EMPTY;
     public long fileSize = 0;
+    /** Size of the file, counted in {@link DownloadSize}, as stored in the database */
+    private long countedSize = 0;
     protected Uri uri = Uri.EMPTY;
     public MediaMetadata mediaMetadata = MediaMetadata.EMPTY;
 
@@ -147,6 +148,7 @@ public class DownloadData implements IsEmpty {
         mediaMetadata = MediaMetadata.fromCursor(cursor);
         fileSize = DbUtils.getLong(cursor, DownloadTable.FILE_SIZE);
         downloadedDate = DbUtils.getLong(cursor, DownloadTable.DOWNLOADED_DATE);
+        countedSize = status == DownloadStatus.LOADED ? fileSize : 0;
     }
 
     private boolean checkHardErrorBeforeLoad() {
@@ -260,43 +262,78 @@ public class DownloadData implements IsEmpty {
         if (status == DownloadStatus.LOADED && downloadType == DownloadType.AVATAR) {
             downloadNumber = 0;
         }
+        SQLiteDatabase db = MyContextHolder.get().getDatabase();
+        if (db == null) {
+            MyLog.v(this, () -> "Database is null, not saved " + this);
+            return;
+        }
+        boolean nested = db.inTransaction();
         try {
-            if (downloadId == 0) {
-                addNew();
-            } else {
-                update();
-            }
+            saveRowAndSize(db);
             if (!isError()) {
                 fileStored = fileNew;
             }
             MyLog.v(this, () -> "Saved " + this);
-        } catch (Exception e) {
+        } catch (RuntimeException e) {
             softErrorLogged("Couldn't save to database", e);
+            // The failed nested transaction rolls back the outer one, so its owner should know
+            if (nested) throw e;
+        }
+    }
+
+    /** The row and the total size of downloads, see {@link DownloadSize}, are changed in one transaction */
+    private void saveRowAndSize(@NonNull SQLiteDatabase db) {
+        final long downloadIdBefore = downloadId;
+        final long newCountedSize = status == DownloadStatus.LOADED ? fileSize : 0;
+        boolean rowSaved = false;
+        boolean committed = false;
+        db.beginTransaction();
+        try {
+            rowSaved = downloadId == 0 ? addNew() : update();
+            if (rowSaved) {
+                DownloadSize.add(db, downloadType, newCountedSize - countedSize);
+            }
+            db.setTransactionSuccessful();
+            committed = true;
+        } finally {
+            db.endTransaction();
+            if (!committed) {
+                downloadId = downloadIdBefore;
+            }
+        }
+        if (rowSaved) {
+            countedSize = newCountedSize;
         }
     }
 
-    private void addNew() {
+    /** @return true if added */
+    private boolean addNew() {
         ContentValues values = toContentValues();
         downloadId = DbUtils.addRowWithRetry(MyContextHolder.get(), DownloadTable.TABLE_NAME, values, 3);
         if (downloadId == -1) {
             softError = true;
-        } else {
-            MyLog.v(this, () -> "Added " + actorNoteUriToString());
+            return false;
         }
+        MyLog.v(this, () -> "Added " + actorNoteUriToString());
+        return true;
     }
 
-    private void update() {
+    /** @return true if updated */
+    private boolean update() {
         ContentValues values = toContentValues();
-        if (DbUtils.updateRowWithRetry(MyContextHolder.get(), DownloadTable.TABLE_NAME, downloadId, values, 3) != 1) {
-            softError = true;
-        } else {
+        boolean updated = DbUtils.updateRowWithRetry(MyContextHolder.get(), DownloadTable.TABLE_NAME, downloadId,
+                values, 3) == 1;
+        if (updated) {
             MyLog.v(this, () -> "Updated " + actorNoteUriToString());
+        } else {
+            softError = true;
         }
         boolean filenameChanged = !isError() && fileNew.existsNow()
                 && !fileStored.getFilename().equals(fileNew.getFilename());
         if (filenameChanged) {
             fileStored.delete();
         }
+        return updated;
     }
 
     private ContentValues toContentValues() {
@@ -375,7 +412,8 @@ public class DownloadData implements IsEmpty {
     }
 
     private static void deleteSelected(final String method, SQLiteDatabase db, String where) {
-        String sql = "SELECT " + DownloadTable._ID + ", " + DownloadTable.FILE_NAME
+        String sql = "SELECT " + DownloadTable._ID + ", " + DownloadTable.FILE_NAME + ", "
+                + DownloadTable.DOWNLOAD_TYPE + ", " + DownloadTable.DOWNLOAD_STATUS + ", " + DownloadTable.FILE_SIZE
                 + " FROM " + DownloadTable.TABLE_NAME
                 + " WHERE " + where;
         int rowsDeleted = 0;
@@ -385,16 +423,29 @@ public class DownloadData implements IsEmpty {
                 MyLog.v(TAG, "Database is null");
                 return;
             }
+            boolean nested = db.inTransaction();
+            db.beginTransaction();
             try (Cursor cursor = db.rawQuery(sql, null)) {
+                rowsDeleted = 0;
                 while (cursor.moveToNext()) {
                     long rowIdOld = DbUtils.getLong(cursor, DownloadTable._ID);
                     new DownloadFile(DbUtils.getString(cursor, DownloadTable.FILE_NAME)).delete();
-                    rowsDeleted += db.delete(DownloadTable.TABLE_NAME, DownloadTable._ID
+                    int deleted = db.delete(DownloadTable.TABLE_NAME, DownloadTable._ID
                             + "=" + Long.toString(rowIdOld), null);
+                    if (deleted > 0 && DownloadStatus.load(DbUtils.getLong(cursor, DownloadTable.DOWNLOAD_STATUS))
+                            == DownloadStatus.LOADED) {
+                        DownloadSize.add(db, DownloadType.load(DbUtils.getLong(cursor, DownloadTable.DOWNLOAD_TYPE)),
+                                -DbUtils.getLong(cursor, DownloadTable.FILE_SIZE));
+                    }
+                    rowsDeleted += deleted;
                 }
+                db.setTransactionSuccessful();
                 done = true;
             } catch (SQLiteException e) {
                 MyLog.i(DownloadData.class, method + ", Database error, pass=" + pass + "; sql='" + sql + "'", e);
+                if (nested) throw e;
+            } finally {
+                db.endTransaction();
             }
             if (done) break;
             DbUtils.waitMs(method, 500);
@@ -522,33 +573,41 @@ public class DownloadData implements IsEmpty {
         return this == EMPTY || uri.equals(Uri.EMPTY);
     }
 
+    /**
+     * Deletes files of the oldest downloads of this type, using the running total size of the files,
+     * so only the deleted downloads are read
+     */
     static ConsumedSummary pruneFiles(MyContext myContext, DownloadType downloadType, long bytesToKeep) {
-        return consumeOldest(myContext, downloadType, bytesToKeep, DownloadData::deleteFile);
-    }
-
-    private static ConsumedSummary consumeOldest(MyContext myContext, DownloadType downloadType, long totalSizeToSkip,
-                                                 Consumer<DownloadData> consumer) {
+        ConsumedSummary summary = new ConsumedSummary();
+        long totalSize = DownloadSize.getTotal(myContext, downloadType);
+        SQLiteDatabase db = myContext.getDatabase();
+        if (totalSize <= bytesToKeep || db == null) {
+            summary.skippedSize = totalSize;
+            return summary;
+        }
         final String sql = "SELECT *"
                 + " FROM " + DownloadTable.TABLE_NAME
-                + " WHERE " + DownloadTable.DOWNLOAD_TYPE + "='" + downloadType.save() + "'"
+                + " WHERE " + DownloadTable.DOWNLOAD_TYPE + "=" + downloadType.save()
                 + " AND " + DownloadTable.DOWNLOAD_STATUS + "=" + DownloadStatus.LOADED.save()
-                + " ORDER BY " + DownloadTable.DOWNLOADED_DATE + " DESC";
-        return MyQuery.foldLeft(myContext, sql,
-                new ConsumedSummary(),
-                summary -> cursor -> {
-                        DownloadData data = DownloadData.fromCursor(cursor);
-                        if (data.fileStored.existed) {
-                            if (summary.skippedSize < totalSizeToSkip) {
-                                summary.skippedSize += data.fileSize;
-                            } else {
-                                summary.consumedCount += 1;
-                                summary.consumedSize += data.fileSize;
-                                consumer.accept(data);
-                            }
-                        }
-                    return summary;
+                + " ORDER BY " + DownloadTable.DOWNLOADED_DATE + " ASC";
+        try (Cursor cursor = db.rawQuery(sql, null)) {
+            while (totalSize - summary.consumedSize > bytesToKeep && cursor.moveToNext()) {
+                DownloadData data = DownloadData.fromCursor(cursor);
+                if (data.fileStored.existed) {
+                    summary.consumedCount += 1;
+                    summary.consumedSize += data.countedSize;
+                    data.deleteFile();
+                } else {
+                    // The file has gone: the row is saved as absent, and the running total is corrected
+                    summary.consumedSize += data.countedSize;
+                    data.saveToDatabase();
                 }
-            );
+            }
+        } catch (Exception e) {
+            MyLog.i(TAG, "pruneFiles " + downloadType + "; SQL:'" + sql + "'", e);
+        }
+        summary.skippedSize = totalSize - summary.consumedSize;
+        return summary;
     }
 
     public long getDownloadedDate() {
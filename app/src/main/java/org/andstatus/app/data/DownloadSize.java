@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+
+import org.andstatus.app.context.MyContext;
+import org.andstatus.app.database.table.DownloadSizeTable;
+import org.andstatus.app.database.table.DownloadTable;
+import org.andstatus.app.util.MyLog;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Running total size of loaded media files by {@link DownloadType}, see {@link DownloadSizeTable},
+ * so we don't need to list the downloads directory or to sum the {@link DownloadTable} in order to know it.
+ * The totals are changed, when {@link DownloadData} is saved or deleted,
+ * and are recalculated from the {@link DownloadTable} once in {@link #RECONCILE_PERIOD_DAYS}
+ * @author yvolk@yurivolkov.com
+ */
+class DownloadSize {
+    private static final String TAG = DownloadSize.class.getSimpleName();
+    static final long RECONCILE_PERIOD_DAYS = 7;
+
+    private DownloadSize() {
+        // Empty
+    }
+
+    /** Should be called in the transaction, which changes the {@link DownloadTable} row, so a failure rolls both back */
+    static void add(SQLiteDatabase db, DownloadType downloadType, long sizeDelta) {
+        if (db == null || sizeDelta == 0) return;
+
+        db.execSQL("INSERT OR IGNORE INTO " + DownloadSizeTable.TABLE_NAME
+                + " (" + DownloadSizeTable.DOWNLOAD_TYPE + ") VALUES (" + downloadType.save() + ")");
+        db.execSQL("UPDATE " + DownloadSizeTable.TABLE_NAME
+                + " SET " + DownloadSizeTable.TOTAL_SIZE + "=" + DownloadSizeTable.TOTAL_SIZE + "+" + sizeDelta
+                + " WHERE " + DownloadSizeTable.DOWNLOAD_TYPE + "=" + downloadType.save());
+    }
+
+    static long getTotal(@NonNull MyContext myContext, DownloadType downloadType) {
+        return MyQuery.getLongs(myContext, "SELECT " + DownloadSizeTable.TOTAL_SIZE
+                + " FROM " + DownloadSizeTable.TABLE_NAME
+                + " WHERE " + DownloadSizeTable.DOWNLOAD_TYPE + "=" + downloadType.save())
+                .stream().findAny().orElse(0L);
+    }
+
+    static boolean isTimeToReconcile(@NonNull MyContext myContext) {
+        long reconciledDate = MyQuery.getLongs(myContext, "SELECT MIN(" + DownloadSizeTable.RECONCILED_DATE + ")"
+                + " FROM " + DownloadSizeTable.TABLE_NAME)
+                .stream().findAny().orElse(0L);
+        return System.currentTimeMillis() - reconciledDate > TimeUnit.DAYS.toMillis(RECONCILE_PERIOD_DAYS);
+    }
+
+    /** Recalculates the totals from the {@link DownloadTable} */
+    static void reconcile(@NonNull MyContext myContext) {
+        SQLiteDatabase db = myContext.getDatabase();
+        if (db == null) return;
+
+        long now = System.currentTimeMillis();
+        db.beginTransaction();
+        try {
+            db.execSQL("UPDATE " + DownloadSizeTable.TABLE_NAME
+                    + " SET " + DownloadSizeTable.TOTAL_SIZE + "=0, " + DownloadSizeTable.RECONCILED_DATE + "=" + now);
+            db.execSQL("INSERT OR REPLACE INTO " + DownloadSizeTable.TABLE_NAME + " ("
+                    + DownloadSizeTable.DOWNLOAD_TYPE + ", "
+                    + DownloadSizeTable.TOTAL_SIZE + ", "
+                    + DownloadSizeTable.RECONCILED_DATE
+                    + ") SELECT " + DownloadTable.DOWNLOAD_TYPE + ", SUM(" + DownloadTable.FILE_SIZE + "), " + now
+                    + " FROM " + DownloadTable.TABLE_NAME
+                    + " WHERE " + DownloadTable.DOWNLOAD_STATUS + "=" + DownloadStatus.LOADED.save()
+                    + " GROUP BY " + DownloadTable.DOWNLOAD_TYPE);
+            for (DownloadType downloadType : DownloadType.values()) {
+                db.execSQL("INSERT OR IGNORE INTO " + DownloadSizeTable.TABLE_NAME + " ("
+                        + DownloadSizeTable.DOWNLOAD_TYPE + ", " + DownloadSizeTable.RECONCILED_DATE
+                        + ") VALUES (" + downloadType.save() + ", " + now + ")");
+            }
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            MyLog.w(TAG, "Failed to reconcile sizes of media files", e);
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
@@ -75,10 +75,9 @@ public abstract class ImageFile implements IsEmpty {
                 logResult("Broken", taskSuffix);
                 onNoImage(imageView);
                 return;
-            } else if (cachedImage != null && !cachedImage.isExpired()) {
+            } else if (cachedImage != null && imageView.setImage(cachedImage)) {
                 logResult("Set", taskSuffix);
                 imageView.setLoaded();
-                imageView.setImageDrawable(cachedImage.getDrawable());
                 imageView.setVisibility(View.VISIBLE);
                 return;
             }
@@ -124,14 +123,9 @@ public abstract class ImageFile implements IsEmpty {
         return ImageCaches.getCachedImage(getCacheName(), this);
     }
 
-    public void preloadImageAsync() {
-        CachedImage image = getImageFromCache();
-        if (image != null) {
-            return;
-        }
-        if (downloadFile.existed) {
-            preloadAsync();
-        }
+    /** @return true if the image file is downloaded, but the image is not in the memory cache yet */
+    public boolean mayBePrefetched() {
+        return downloadFile.existed && mayBeShown() && getImageFromCache() == null;
     }
 
     public CachedImage loadAndGetImage() {
@@ -177,7 +171,10 @@ public abstract class ImageFile implements IsEmpty {
                             if (AttachedImageView.class.isAssignableFrom(imageView.getClass())) {
                                 ((AttachedImageView) imageView).setMeasuresLocked(true);
                             }
-                            imageView.setImageDrawable(image.getDrawable());
+                            if (!imageView.setImage(image)) {
+                                logResult("Expired before shown");
+                                return;
+                            }
                             imageView.setLoaded();
                             logResult("Loaded");
                         } catch (Exception e) {
@@ -217,26 +214,6 @@ public abstract class ImageFile implements IsEmpty {
     }
 
 
-    private void preloadAsync() {
-        final String taskSuffix = "-prel";
-        AsyncTaskLauncher.execute(this, false,
-                new MyAsyncTask<Void, Void, Void>(getTaskId(taskSuffix), MyAsyncTask.PoolEnum.QUICK_UI) {
-
-                    @Override
-                    protected Void doInBackground2(Void... params) {
-                        CachedImage image = ImageCaches.loadAndGetImage(getCacheName(), ImageFile.this);
-                        if (image == null) {
-                            logResult("Failed to preload", taskSuffix);
-                        } else if (image.id != getId()) {
-                            logResult("Loaded wrong image.id:" + image.id, taskSuffix);
-                        } else {
-                            logResult("Preloaded", taskSuffix);
-                        }
-                        return null;
-                    }
-                });
-    }
-
     private void logResult(String msgLog, String taskSuffix) {
         MyLog.v(ImageFile.this, () -> getMsgLog(msgLog, taskSuffix));
     }
@@ -43,6 +43,7 @@ import org.andstatus.app.util.StringUtils;
 import org.andstatus.app.util.TriState;
 
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -132,7 +133,10 @@ public class MyProvider extends ContentProvider {
 
             // Start from deletion of activities
             sqlDesc = selection + descSuffix;
+            Set<Long> activityOriginIds = getOriginIds(db, ActivityTable.TABLE_NAME, ActivityTable.ORIGIN_ID,
+                    selection, selectionArgs);
             count += db.delete(ActivityTable.TABLE_NAME, selection, selectionArgs);
+            clearOidCache(OidEnum.ACTIVITY_OID, activityOriginIds);
 
             // Notes, which don't have any activities
             String sqlNoteIds = "SELECT msgA." + NoteTable._ID +
@@ -152,13 +156,17 @@ public class MyProvider extends ContentProvider {
             for (long noteId : noteIds) {
                 DownloadData.deleteAllOfThisNote(db, noteId);
             }
+            NoteSearchIndex.delete(db, noteIds);
 
             // Notes
             selectionG = " EXISTS (" + sqlNoteIds +
                     " AND (msgA." + NoteTable._ID +
                     "=" + NoteTable.TABLE_NAME + "." + NoteTable._ID + "))";
             sqlDesc = selectionG + descSuffix;
+            Set<Long> noteOriginIds = getOriginIds(db, NoteTable.TABLE_NAME, NoteTable.ORIGIN_ID,
+                    selectionG, new String[]{});
             count += db.delete(NoteTable.TABLE_NAME, selectionG, new String[]{});
+            clearOidCache(OidEnum.NOTE_OID, noteOriginIds);
 
             if (!inTransaction) {
                 db.setTransactionSuccessful();
@@ -176,10 +184,32 @@ public class MyProvider extends ContentProvider {
     private int deleteActors(SQLiteDatabase db, String selection, String[] selectionArgs) {
         int count;
         // TODO: Delete related records also... 
+        Set<Long> originIds = getOriginIds(db, ActorTable.TABLE_NAME, ActorTable.ORIGIN_ID, selection, selectionArgs);
         count = db.delete(ActorTable.TABLE_NAME, selection, selectionArgs);
+        clearOidCache(OidEnum.ACTOR_OID, originIds);
         return count;
     }
 
+    /** Origins of the rows to be deleted, so cached oids are cleared for these origins only */
+    private static Set<Long> getOriginIds(SQLiteDatabase db, String tableName, String originIdColumn,
+                                          String selection, String[] selectionArgs) {
+        Set<Long> originIds = new HashSet<>();
+        String sql = "SELECT DISTINCT " + originIdColumn + " FROM " + tableName
+                + (StringUtils.isEmpty(selection) ? "" : " WHERE " + selection);
+        try (Cursor cursor = db.rawQuery(sql, selectionArgs)) {
+            while (cursor.moveToNext()) {
+                originIds.add(cursor.getLong(0));
+            }
+        }
+        return originIds;
+    }
+
+    private static void clearOidCache(OidEnum oidEnum, Set<Long> originIds) {
+        for (long originId : originIds) {
+            MyContextHolder.get().oidCache().clear(oidEnum, originId);
+        }
+    }
+
     public static void delete(@NonNull MyContext myContext, @NonNull String tableName, @NonNull String column, Object value) {
         if (value == null) return;
         delete(myContext, tableName, column + "=" + value);
@@ -193,7 +223,13 @@ public class MyProvider extends ContentProvider {
             return;
         }
         try {
-            db.delete(tableName, where, null);
+            if (ActorTable.TABLE_NAME.equals(tableName)) {
+                Set<Long> originIds = getOriginIds(db, tableName, ActorTable.ORIGIN_ID, where, null);
+                db.delete(tableName, where, null);
+                clearOidCache(OidEnum.ACTOR_OID, originIds);
+            } else {
+                db.delete(tableName, where, null);
+            }
         } catch (Exception e) {
             MyLog.w(TAG, method + "; table:'" + tableName + "', where:'" + where + "'", e);
         }
@@ -220,6 +256,7 @@ public class MyProvider extends ContentProvider {
         } else {
             // Delete this activity only
             count = db.delete(ActivityTable.TABLE_NAME, BaseColumns._ID + "=" + activityId, null);
+            myContext.oidCache().remove(OidEnum.ACTIVITY_OID, originId, activityId);
             updateNoteFavorited(myContext, origin, noteId);
             updateNoteReblogged(myContext, origin, noteId);
         }
@@ -348,6 +385,7 @@ public class MyProvider extends ContentProvider {
             if (rowId == -1) {
                 throw new SQLException("Failed to insert row into " + uri);
             }
+            rememberOid(uriParser.matched(), values, rowId);
 
             switch (uriParser.matched()) {
                 case NOTE_ITEM:
@@ -368,6 +406,26 @@ public class MyProvider extends ContentProvider {
         return newUri;
     }
 
+    private static void rememberOid(MatchedUri matchedUri, ContentValues values, long rowId) {
+        switch (matchedUri) {
+            case NOTE_ITEM:
+                rememberOid(OidEnum.NOTE_OID, values.getAsLong(NoteTable.ORIGIN_ID),
+                        values.getAsString(NoteTable.NOTE_OID), rowId);
+                break;
+            case ACTOR_ITEM:
+                rememberOid(OidEnum.ACTOR_OID, values.getAsLong(ActorTable.ORIGIN_ID),
+                        values.getAsString(ActorTable.ACTOR_OID), rowId);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void rememberOid(OidEnum oidEnum, Long originId, String oid, long rowId) {
+        if (originId == null) return;
+        MyContextHolder.get().oidCache().put(oidEnum, originId, oid, rowId);
+    }
+
     /**
      * Get a cursor to the database
      * 
@@ -412,7 +470,9 @@ public class MyProvider extends ContentProvider {
                         selection = "";
                     }
                     KeywordsFilter searchQuery  = new KeywordsFilter(rawQuery);
-                    selection = "(" + searchQuery.getSqlSelection(NoteTable.CONTENT_TO_SEARCH) + ")" + selection;
+                    selection = "(" + searchQuery.getSqlSelection(
+                            ProjectionMap.NOTE_TABLE_ALIAS + "." + BaseColumns._ID, NoteTable.CONTENT_TO_SEARCH)
+                            + ")" + selection;
                     selectionArgs = searchQuery.prependSqlSelectionArgs(selectionArgs);
                 }
                 break;
@@ -549,6 +609,11 @@ public class MyProvider extends ContentProvider {
                     count = db.update(NoteTable.TABLE_NAME, values, BaseColumns._ID + "=" + rowId
                             + (StringUtils.nonEmpty(selection) ? " AND (" + selection + ')' : ""),
                             selectionArgs);
+                    if (count > 0 && values.containsKey(NoteTable.NOTE_OID)) {
+                        MyContextHolder.get().oidCache().update(OidEnum.NOTE_OID,
+                                MyQuery.noteIdToLongColumnValue(NoteTable.ORIGIN_ID, rowId),
+                                values.getAsString(NoteTable.NOTE_OID), rowId);
+                    }
                 }
                 break;
 
@@ -562,6 +627,11 @@ public class MyProvider extends ContentProvider {
                     count = db.update(ActorTable.TABLE_NAME, values, BaseColumns._ID + "=" + selectedActorId
                                     + (StringUtils.nonEmpty(selection) ? " AND (" + selection + ')' : ""),
                             selectionArgs);
+                    if (count > 0 && values.containsKey(ActorTable.ACTOR_OID)) {
+                        MyContextHolder.get().oidCache().update(OidEnum.ACTOR_OID,
+                                MyQuery.actorIdToLongColumnValue(ActorTable.ORIGIN_ID, selectedActorId),
+                                values.getAsString(ActorTable.ACTOR_OID), selectedActorId);
+                    }
                 }
                 break;
 
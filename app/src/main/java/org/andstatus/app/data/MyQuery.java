@@ -43,6 +43,7 @@ import org.andstatus.app.util.StringUtils;
 import org.andstatus.app.util.TriState;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -50,6 +51,8 @@ import java.util.function.Function;
 
 public class MyQuery {
     private static final String TAG = MyQuery.class.getSimpleName();
+    /** Well below SQLITE_MAX_VARIABLE_NUMBER (999 on older Android versions) */
+    private static final int OIDS_PER_QUERY_MAX = 500;
 
     private MyQuery() {
         // Empty
@@ -88,28 +91,119 @@ public class MyQuery {
         if (StringUtils.isEmpty(oid)) {
             return 0;
         }
+        long cachedId = myContext.oidCache().get(oidEnum, originId, oid);
+        if (cachedId != 0) return cachedId;
+
         String msgLog = "oidToId; " + oidEnum + ", origin=" + originId + ", oid=" + oid;
         String sql;
         switch (oidEnum) {
             case NOTE_OID:
                 sql = "SELECT " + BaseColumns._ID + " FROM " + NoteTable.TABLE_NAME
-                        + " WHERE " + NoteTable.ORIGIN_ID + "=" + originId + " AND " + NoteTable.NOTE_OID
-                        + "=" + quoteIfNotQuoted(oid);
+                        + " WHERE " + NoteTable.ORIGIN_ID + "=? AND " + NoteTable.NOTE_OID + "=?";
                 break;
             case ACTOR_OID:
                 sql = "SELECT " + BaseColumns._ID + " FROM " + ActorTable.TABLE_NAME
-                        + " WHERE " + ActorTable.ORIGIN_ID + "=" + originId + " AND " + ActorTable.ACTOR_OID
-                        + "=" + quoteIfNotQuoted(oid);
+                        + " WHERE " + ActorTable.ORIGIN_ID + "=? AND " + ActorTable.ACTOR_OID + "=?";
                 break;
             case ACTIVITY_OID:
                 sql = "SELECT " + BaseColumns._ID + " FROM " + ActivityTable.TABLE_NAME
-                        + " WHERE " + ActivityTable.ORIGIN_ID + "=" + originId + " AND " + ActivityTable.ACTIVITY_OID
-                        + "=" + quoteIfNotQuoted(oid);
+                        + " WHERE " + ActivityTable.ORIGIN_ID + "=? AND " + ActivityTable.ACTIVITY_OID + "=?";
                 break;
             default:
                 throw new IllegalArgumentException(msgLog + "; Unknown oidEnum");
         }
-        return sqlToLong(myContext.getDatabase(), msgLog, sql);
+        long id = originIdAndOidToLong(myContext.getDatabase(), msgLog, sql, originId, oid);
+        myContext.oidCache().put(oidEnum, originId, oid, id);
+        return id;
+    }
+
+    /** The same SQL for all calls, so the compiled statement is reused from the connection's statement cache */
+    private static long originIdAndOidToLong(SQLiteDatabase db, String msgLog, String sql, long originId, String oid) {
+        if (db == null) {
+            MyLog.v(TAG, () -> msgLog + "; database is null");
+            return 0;
+        }
+        long value = 0;
+        SQLiteStatement statement = null;
+        try {
+            statement = db.compileStatement(sql);
+            statement.bindLong(1, originId);
+            statement.bindString(2, oid);
+            value = statement.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            MyLog.ignored(TAG, e);
+            value = 0;
+        } catch (Exception e) {
+            MyLog.e(TAG, msgLog + "; sql='" + sql + "'", e);
+            value = 0;
+        } finally {
+            DbUtils.closeSilently(statement);
+        }
+        if (MyLog.isVerboseEnabled()) {
+            MyLog.v(TAG, msgLog + " -> " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Resolves many oids of one origin with a few "IN (...)" queries and puts the found ids
+     * into {@link MyContext#oidCache()}, so subsequent {@link #oidToId} calls don't hit the database
+     */
+    public static void oidsToIds(@NonNull MyContext myContext, OidEnum oidEnum, long originId, Collection<String> oids) {
+        SQLiteDatabase db = myContext.getDatabase();
+        if (db == null || oids.isEmpty()) return;
+
+        final String tableName;
+        final String originIdColumn;
+        final String oidColumn;
+        switch (oidEnum) {
+            case NOTE_OID:
+                tableName = NoteTable.TABLE_NAME;
+                originIdColumn = NoteTable.ORIGIN_ID;
+                oidColumn = NoteTable.NOTE_OID;
+                break;
+            case ACTOR_OID:
+                tableName = ActorTable.TABLE_NAME;
+                originIdColumn = ActorTable.ORIGIN_ID;
+                oidColumn = ActorTable.ACTOR_OID;
+                break;
+            case ACTIVITY_OID:
+                tableName = ActivityTable.TABLE_NAME;
+                originIdColumn = ActivityTable.ORIGIN_ID;
+                oidColumn = ActivityTable.ACTIVITY_OID;
+                break;
+            default:
+                throw new IllegalArgumentException("oidsToIds; Unknown oidEnum " + oidEnum);
+        }
+        List<String> toResolve = new ArrayList<>();
+        for (String oid : oids) {
+            if (StringUtils.nonEmpty(oid) && myContext.oidCache().get(oidEnum, originId, oid) == 0) {
+                toResolve.add(oid);
+            }
+        }
+        for (int from = 0; from < toResolve.size(); from += OIDS_PER_QUERY_MAX) {
+            List<String> chunk = toResolve.subList(from, Math.min(from + OIDS_PER_QUERY_MAX, toResolve.size()));
+            StringBuilder placeholders = new StringBuilder();
+            String[] args = new String[chunk.size() + 1];
+            args[0] = Long.toString(originId);
+            for (int ind = 0; ind < chunk.size(); ind++) {
+                placeholders.append(ind == 0 ? "?" : ",?");
+                args[ind + 1] = chunk.get(ind);
+            }
+            String sql = "SELECT " + BaseColumns._ID + ", " + oidColumn + " FROM " + tableName
+                    + " WHERE " + originIdColumn + "=? AND " + oidColumn + " IN (" + placeholders + ")";
+            Cursor cursor = null;
+            try {
+                cursor = db.rawQuery(sql, args);
+                while (cursor.moveToNext()) {
+                    myContext.oidCache().put(oidEnum, originId, cursor.getString(1), cursor.getLong(0));
+                }
+            } catch (Exception e) {
+                MyLog.e(TAG, "oidsToIds; " + oidEnum + ", origin=" + originId + "; sql='" + sql + "'", e);
+            } finally {
+                DbUtils.closeSilently(cursor);
+            }
+        }
     }
 
     public static long sqlToLong(SQLiteDatabase databaseIn, String msgLogIn, String sql) {
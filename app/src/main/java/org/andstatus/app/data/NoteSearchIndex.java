@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+
+import org.andstatus.app.database.table.NoteFtsTable;
+import org.andstatus.app.util.StringUtils;
+
+import java.util.Collection;
+
+/**
+ * Keeps {@link NoteFtsTable} in sync with notes' content
+ * @author yvolk@yurivolkov.com
+ */
+public class NoteSearchIndex {
+
+    private NoteSearchIndex() {
+        // Empty
+    }
+
+    /** Failures are not caught, so an enclosing transaction is rolled back, and the index stays in sync with notes */
+    public static void update(SQLiteDatabase db, long noteId, String contentToSearch) {
+        if (db == null || noteId == 0) return;
+        db.delete(NoteFtsTable.TABLE_NAME, NoteFtsTable.DOCID + "=" + noteId, null);
+        if (StringUtils.nonEmpty(contentToSearch)) {
+            db.execSQL("INSERT INTO " + NoteFtsTable.TABLE_NAME
+                    + " (" + NoteFtsTable.DOCID + ", " + NoteFtsTable.CONTENT_TO_SEARCH + ")"
+                    + " VALUES (" + noteId + ", ?)", new Object[]{contentToSearch});
+        }
+    }
+
+    public static void delete(SQLiteDatabase db, @NonNull Collection<Long> noteIds) {
+        if (db == null || noteIds.isEmpty()) return;
+        for (long noteId : noteIds) {
+            db.delete(NoteFtsTable.TABLE_NAME, NoteFtsTable.DOCID + "=" + noteId, null);
+        }
+    }
+
+    /** SQL expression selecting notes, which contain all the terms of the full text search query */
+    @NonNull
+    public static String getNoteIdsMatching(@NonNull String noteIdColumn) {
+        return noteIdColumn + " IN (SELECT " + NoteFtsTable.DOCID + " FROM " + NoteFtsTable.TABLE_NAME
+                + " WHERE " + NoteFtsTable.TABLE_NAME + " MATCH ?)";
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.support.annotation.NonNull;
+
+import org.andstatus.app.util.StringUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded, per origin, cache of "oid -> id" resolutions for {@link OidEnum#NOTE_OID},
+ * {@link OidEnum#ACTOR_OID} and {@link OidEnum#ACTIVITY_OID}.
+ * Only found ids are cached, as a row with any oid may be added at any time
+ * @author yvolk@yurivolkov.com
+ */
+public class OidCache {
+    static final int MAX_SIZE_PER_ORIGIN = 2000;
+
+    private final Map<String, Map<String, Long>> caches = new ConcurrentHashMap<>();
+
+    private static class LruMap extends LinkedHashMap<String, Long> {
+        LruMap() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_SIZE_PER_ORIGIN;
+        }
+    }
+
+    /** @return 0 if not cached */
+    public long get(@NonNull OidEnum oidEnum, long originId, String oid) {
+        if (!isCacheable(oidEnum) || StringUtils.isEmpty(oid)) return 0;
+
+        Map<String, Long> cache = caches.get(toKey(oidEnum, originId));
+        if (cache == null) return 0;
+        synchronized (cache) {
+            Long id = cache.get(oid);
+            return id == null ? 0 : id;
+        }
+    }
+
+    public void put(@NonNull OidEnum oidEnum, long originId, String oid, long id) {
+        if (!isCacheable(oidEnum) || StringUtils.isEmpty(oid) || id <= 0) return;
+
+        Map<String, Long> cache = caches.computeIfAbsent(toKey(oidEnum, originId), key -> new LruMap());
+        synchronized (cache) {
+            cache.put(oid, id);
+        }
+    }
+
+    /** Called after the oid of the row was rewritten. Its previous oid is not known, so it is found by the id */
+    public void update(@NonNull OidEnum oidEnum, long originId, String oid, long id) {
+        if (get(oidEnum, originId, oid) == id) return;
+
+        remove(oidEnum, originId, id);
+        put(oidEnum, originId, oid, id);
+    }
+
+    /** Called after the row was deleted or its oid was rewritten */
+    public void remove(@NonNull OidEnum oidEnum, long originId, long id) {
+        if (!isCacheable(oidEnum) || id <= 0) return;
+
+        Map<String, Long> cache = caches.get(toKey(oidEnum, originId));
+        if (cache == null) return;
+        synchronized (cache) {
+            cache.values().removeIf(cachedId -> cachedId == id);
+        }
+    }
+
+    /** Called after changes of the rows were rolled back */
+    public void remove(@NonNull OidEnum oidEnum, long originId, @NonNull Set<Long> ids) {
+        if (!isCacheable(oidEnum) || ids.isEmpty()) return;
+
+        Map<String, Long> cache = caches.get(toKey(oidEnum, originId));
+        if (cache == null) return;
+        synchronized (cache) {
+            cache.values().removeIf(ids::contains);
+        }
+    }
+
+    /** Called after rows of the type were deleted in the origin, as we don't know their oids */
+    public void clear(@NonNull OidEnum oidEnum, long originId) {
+        caches.remove(toKey(oidEnum, originId));
+    }
+
+    public void clear() {
+        caches.clear();
+    }
+
+    private static boolean isCacheable(@NonNull OidEnum oidEnum) {
+        switch (oidEnum) {
+            case NOTE_OID:
+            case ACTOR_OID:
+            case ACTIVITY_OID:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static String toKey(@NonNull OidEnum oidEnum, long originId) {
+        return oidEnum.name() + ":" + originId;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.andstatus.app.context.MyStorage;
+import org.andstatus.app.util.MyLog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Pre-scaled image of a downloaded media file (a frame for a video), stored on disk,
+ * so the original file is not decoded again each time the image is evicted from memory.
+ * Thumbnails are keyed by the download id and the target (maximum) size;
+ * a thumbnail, older than its media file, is not used.
+ * Thumbnails are stored in a separate directory next to the {@link DownloadFile}s directory,
+ * they are pruned by {@link DataPruner#pruneMedia()}, the least recently used first
+ * @author yvolk@yurivolkov.com
+ */
+public class ThumbnailFile {
+    private static final String EXTENSION = ".webp";
+    private static final int QUALITY = 90;
+    @Nullable
+    private final File file;
+
+    public ThumbnailFile(long downloadId, int maxWidth, int maxHeight) {
+        File dir = getFilesDir();
+        file = dir == null || downloadId == 0
+                ? null
+                : new File(dir, downloadId + "_" + maxWidth + "x" + maxHeight + EXTENSION);
+    }
+
+    /** @return null if there is no valid thumbnail for the source file */
+    @Nullable
+    public Bitmap load(@NonNull String sourcePath) {
+        if (file == null || !file.isFile() || file.lastModified() < new File(sourcePath).lastModified()) {
+            return null;
+        }
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getAbsolutePath());
+        if (bitmap == null) {
+            MyLog.v(this, () -> "Failed to decode " + file);
+            deleteFile(file);
+        } else {
+            // For pruning of the least recently used thumbnails
+            file.setLastModified(System.currentTimeMillis());
+        }
+        return bitmap;
+    }
+
+    /** A unique temporary file is renamed, so concurrent saves of the same thumbnail don't mix their bytes */
+    public void save(@NonNull Bitmap bitmap) {
+        if (file == null) return;
+
+        File tmpFile = null;
+        boolean saved = false;
+        try {
+            tmpFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            try (OutputStream out = new FileOutputStream(tmpFile)) {
+                saved = bitmap.compress(Bitmap.CompressFormat.WEBP, QUALITY, out);
+            }
+            saved = saved && tmpFile.renameTo(file);
+        } catch (IOException e) {
+            MyLog.d(this, "Failed to save " + file, e);
+        } finally {
+            if (saved) {
+                MyLog.v(this, () -> "Saved " + bitmap.getWidth() + "x" + bitmap.getHeight() + " " + file);
+            } else if (tmpFile != null) {
+                deleteFile(tmpFile);
+            }
+        }
+    }
+
+    public static long getDirSize() {
+        return getFiles().mapToLong(File::length).sum();
+    }
+
+    private static Stream<File> getFiles() {
+        File dir = getFilesDir();
+        File[] files = dir == null ? null : dir.listFiles();
+        return files == null ? Stream.empty() : Arrays.stream(files).filter(File::isFile);
+    }
+
+    @Nullable
+    private static File getFilesDir() {
+        return MyStorage.getDataFilesDir(MyStorage.DIRECTORY_THUMBNAILS);
+    }
+
+    /** Deletes the least recently used thumbnails, keeping not more than the number of bytes */
+    static DownloadData.ConsumedSummary prune(long bytesToKeep) {
+        DownloadData.ConsumedSummary summary = new DownloadData.ConsumedSummary();
+        List<File> files = getFiles().sorted(Comparator.comparingLong(File::lastModified).reversed())
+                .collect(Collectors.toList());
+        for (File file : files) {
+            long size = file.length();
+            if (summary.skippedSize + size <= bytesToKeep) {
+                summary.skippedSize += size;
+            } else if (deleteFile(file)) {
+                summary.consumedCount += 1;
+                summary.consumedSize += size;
+            }
+        }
+        return summary;
+    }
+
+    private static boolean deleteFile(File file) {
+        if (file.delete()) return true;
+
+        MyLog.d(ThumbnailFile.class, "Couldn't delete file " + file);
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return MyLog.objToTag(this) + " " + file;
+    }
+}
@@ -17,6 +17,8 @@
 package org.andstatus.app.data.checker;
 
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 
 import org.andstatus.app.data.DbUtils;
@@ -229,45 +231,65 @@ public class CheckConversations extends DataChecker {
         }
     }
 
+    /** Changes are saved in chunks of {@link #CHUNK_SIZE} notes, each chunk in one transaction */
     private int saveChanges(boolean countOnly) {
-        int changedCount = 0;
+        List<NoteItem> changed = new ArrayList<>();
         for (NoteItem item : items.values()) {
             if (item.isChanged()) {
-                String sql = "";
+                if (changed.size() < 5 && MyLog.isVerboseEnabled()) {
+                    MyLog.v(this, "noteId=" + item.id + "; "
+                        + (item.isInReplyToIdChanged() ? "inReplyToId changed from "
+                            + item.inReplyToId_initial + " to " + item.inReplyToId : "")
+                        + (item.isInReplyToIdChanged() && item.isConversationIdChanged() ? " and " : "")
+                        + (item.isConversationIdChanged() ? "conversationId changed from "
+                            + item.conversationId_initial + " to " + item.conversationId : "")
+                        + ", Content:'" + MyQuery.noteIdToStringColumnValue(NoteTable.CONTENT, item.id) + "'");
+                }
+                changed.add(item);
+            }
+        }
+        SQLiteDatabase db = myContext.getDatabase();
+        if (countOnly || changed.isEmpty() || db == null) return changed.size();
+
+        int changedCount = 0;
+        try (SQLiteStatement statement = db.compileStatement("UPDATE " + NoteTable.TABLE_NAME
+                + " SET " + NoteTable.IN_REPLY_TO_NOTE_ID + "=?, " + NoteTable.CONVERSATION_ID + "=?"
+                + " WHERE " + NoteTable._ID + "=?")) {
+            for (int from = 0; from < changed.size(); from += CHUNK_SIZE) {
+                List<NoteItem> chunk = changed.subList(from, Math.min(from + CHUNK_SIZE, changed.size()));
+                db.beginTransaction();
                 try {
-                    if (changedCount < 5 && MyLog.isVerboseEnabled()) {
-                        MyLog.v(this, "noteId=" + item.id + "; "
-                            + (item.isInReplyToIdChanged() ? "inReplyToId changed from "
-                                + item.inReplyToId_initial + " to " + item.inReplyToId : "")
-                            + (item.isInReplyToIdChanged() && item.isConversationIdChanged() ? " and " : "")
-                            + (item.isConversationIdChanged() ? "conversationId changed from "
-                                + item.conversationId_initial + " to " + item.conversationId : "")
-                            + ", Content:'" + MyQuery.noteIdToStringColumnValue(NoteTable.CONTENT, item.id) + "'");
-                    }
-                    if (!countOnly) {
-                        sql = "UPDATE " + NoteTable.TABLE_NAME
-                                + " SET "
-                                + (item.isInReplyToIdChanged() ?
-                                    NoteTable.IN_REPLY_TO_NOTE_ID + "=" + DbUtils.sqlZeroToNull(item.inReplyToId) : "")
-                                + (item.isInReplyToIdChanged() && item.isConversationIdChanged() ? ", " : "")
-                                + (item.isConversationIdChanged() ?
-                                    NoteTable.CONVERSATION_ID + "=" + DbUtils.sqlZeroToNull(item.conversationId) : "")
-                                + " WHERE " + NoteTable._ID + "=" + item.id;
-                        myContext.getDatabase().execSQL(sql);
-                    }
-                    changedCount++;
-                    if (logger.loggedMoreSecondsAgoThan(PROGRESS_REPORT_PERIOD_SECONDS)) {
-                        logger.logProgress("Saved changes for " + changedCount + " notes");
-                        MyServiceManager.setServiceUnavailable();
+                    for (NoteItem item : chunk) {
+                        bindIdOrNull(statement, 1, item.inReplyToId);
+                        bindIdOrNull(statement, 2, item.conversationId);
+                        statement.bindLong(3, item.id);
+                        statement.execute();
                     }
+                    db.setTransactionSuccessful();
+                    changedCount += chunk.size();
                 } catch (Exception e) {
-                    String logMsg = "Error: " + e.getMessage() + ", SQL:" + sql;
+                    String logMsg = "Error: " + e.getMessage() + ", saving changes of noteId=" + chunk.get(0).id
+                            + " and " + (chunk.size() - 1) + " more notes";
                     logger.logProgress(logMsg);
                     MyLog.e(this, logMsg, e);
+                } finally {
+                    db.endTransaction();
+                }
+                if (logger.loggedMoreSecondsAgoThan(PROGRESS_REPORT_PERIOD_SECONDS)) {
+                    logger.logProgress("Saved changes for " + changedCount + " notes of " + changed.size());
+                    MyServiceManager.setServiceUnavailable();
                 }
             }
         }
         return changedCount;
     }
 
+    private static void bindIdOrNull(SQLiteStatement statement, int index, long id) {
+        if (id == 0) {
+            statement.bindNull(index);
+        } else {
+            statement.bindLong(index, id);
+        }
+    }
+
 }
\ No newline at end of file
@@ -16,6 +16,9 @@
 
 package org.andstatus.app.data.checker;
 
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
 import org.andstatus.app.backup.ProgressLogger;
 import org.andstatus.app.context.MyContext;
 import org.andstatus.app.context.MyContextHolder;
@@ -24,12 +27,19 @@ import org.andstatus.app.os.AsyncTaskLauncher;
 import org.andstatus.app.os.MyAsyncTask;
 import org.andstatus.app.service.MyServiceManager;
 import org.andstatus.app.util.MyLog;
+import org.andstatus.app.util.SharedPreferencesUtil;
+
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author yvolk@yurivolkov.com
  */
 public abstract class DataChecker {
     static final int PROGRESS_REPORT_PERIOD_SECONDS = 20;
+    /** Number of rows, checked and fixed in one transaction by {@link #fixByIdRanges} */
+    static final int CHUNK_SIZE = 500;
+    /** Asks running checkers to stop. A walk by ranges stops after the current range, keeping its checkpoint */
+    static final AtomicBoolean stopRequested = new AtomicBoolean();
     MyContext myContext;
     ProgressLogger logger = new ProgressLogger(null);
     boolean includeLong = false;
@@ -60,6 +70,12 @@ public abstract class DataChecker {
                         return null;
                     }
 
+                    @Override
+                    public boolean cancelLogged(boolean mayInterruptIfRunning) {
+                        requestStop();
+                        return super.cancelLogged(mayInterruptIfRunning);
+                    }
+
                     @Override
                     protected void onCancelled() {
                         logger.logFailure();
@@ -79,10 +95,12 @@ public abstract class DataChecker {
             return;
         }
         MyServiceManager.setServiceUnavailable();
+        stopRequested.set(false);
         try {
             MyLog.i(DataChecker.class, "fixData started" + (includeLong ? ", including long tasks" : ""));
             for(DataChecker checker : new DataChecker[]{new MergeActors(), new CheckUsers(), new CheckConversations(),
                     new CheckTimelines(), new SearchIndexUpdate(), new CheckAudience()}) {
+                if (checker.isStopping()) break;
                 checker.setMyContext(myContext).setIncludeLong(includeLong).setLogger(logger).fix(countOnly);
             }
         } finally {
@@ -90,6 +108,14 @@ public abstract class DataChecker {
         }
     }
 
+    public static void requestStop() {
+        stopRequested.set(true);
+    }
+
+    boolean isStopping() {
+        return stopRequested.get() || (myContext != null && myContext.isExpired());
+    }
+
     private DataChecker setIncludeLong(boolean includeLong) {
         this.includeLong = includeLong;
         return this;
@@ -128,4 +154,106 @@ public abstract class DataChecker {
     }
 
     abstract long fixInternal(boolean countOnly);
+
+    @FunctionalInterface
+    interface ChunkFixer {
+        /**
+         * Checks (and fixes, unless counting only) rows with fromId <= _id < toId
+         * @return number of changed items (or needed to change)
+         */
+        long fixChunk(long fromId, long toId);
+    }
+
+    /**
+     * Walks the table by ranges of _id, from the newest rows to the oldest, {@link #CHUNK_SIZE} rows in a range.
+     * Each range is fixed in one transaction, and its lower bound is saved as a checkpoint,
+     * so a walk, interrupted e.g. by stopping the application or by {@link #requestStop()},
+     * is resumed from there next time.
+     * @param maxRows 0 - for all rows
+     * @return number of changed items (or needed to change)
+     */
+    long fixByIdRanges(String tableName, long maxRows, boolean countOnly, ChunkFixer fixer) {
+        final SQLiteDatabase db = myContext.getDatabase();
+        if (db == null) return 0;
+
+        final long startedAt = System.currentTimeMillis();
+        long toId = countOnly ? 0 : getCheckpoint();
+        if (toId > 0) {
+            logger.logProgress(checkerName() + " resumed from " + tableName + " id=" + toId);
+        }
+        long rowsCount = 0;
+        long changedCount = 0;
+        boolean failed = false;
+        boolean stopped = false;
+        while (maxRows == 0 || rowsCount < maxRows) {
+            if (isStopping()) {
+                logger.logProgress(checkerName() + " stopped at " + tableName + " id=" + toId);
+                if (!countOnly) setCheckpoint(toId);
+                stopped = true;
+                break;
+            }
+            long[] range = nextIdRange(db, tableName, toId);
+            if (range[1] == 0) break;
+
+            final long fromId = range[0];
+            if (!countOnly) db.beginTransaction();
+            try {
+                changedCount += fixer.fixChunk(fromId, toId == 0 ? Long.MAX_VALUE : toId);
+                if (!countOnly) {
+                    db.setTransactionSuccessful();
+                }
+            } catch (Exception e) {
+                String logMsg = checkerName() + " stopped at " + tableName + " id=" + fromId + ", Error: " + e.getMessage();
+                logger.logProgress(logMsg);
+                MyLog.e(this, logMsg, e);
+                failed = true;
+                break;
+            } finally {
+                if (!countOnly) db.endTransaction();
+            }
+            if (!countOnly) setCheckpoint(fromId);
+            rowsCount += range[1];
+            toId = fromId;
+            if (logger.loggedMoreSecondsAgoThan(PROGRESS_REPORT_PERIOD_SECONDS)) {
+                logger.logProgress(checkerName() + " checked " + rowsCount + " rows of " + tableName
+                        + ", " + rowsPerSecond(rowsCount, startedAt) + " rows/s, id=" + fromId);
+                MyServiceManager.setServiceUnavailable();
+            }
+        }
+        if (!countOnly && !failed && !stopped) setCheckpoint(0);
+        logger.logProgress(checkerName() + " checked " + rowsCount + " rows of " + tableName + " in "
+                + (System.currentTimeMillis() - startedAt) / 1000 + " s, "
+                + rowsPerSecond(rowsCount, startedAt) + " rows/s");
+        return changedCount;
+    }
+
+    /** @return the lowest _id and number of rows of the next range, which lies below toId (0 - from the newest row) */
+    private long[] nextIdRange(SQLiteDatabase db, String tableName, long toId) {
+        String sql = "SELECT MIN(_id), COUNT(*) FROM (SELECT _id FROM " + tableName
+                + (toId == 0 ? "" : " WHERE _id<" + toId)
+                + " ORDER BY _id DESC LIMIT " + CHUNK_SIZE + ")";
+        try (Cursor cursor = db.rawQuery(sql, null)) {
+            if (cursor.moveToNext()) {
+                return new long[]{cursor.getLong(0), cursor.getLong(1)};
+            }
+        }
+        return new long[]{0, 0};
+    }
+
+    private static long rowsPerSecond(long rowsCount, long startedAt) {
+        return rowsCount * 1000 / Math.max(1, System.currentTimeMillis() - startedAt);
+    }
+
+    private String checkpointKey() {
+        return "data_checker_" + checkerName() + "_checkpoint";
+    }
+
+    /** @return _id, from which an interrupted walk should be resumed, 0 if nothing to resume */
+    long getCheckpoint() {
+        return SharedPreferencesUtil.getLong(checkpointKey());
+    }
+
+    void setCheckpoint(long id) {
+        SharedPreferencesUtil.putLong(checkpointKey(), id);
+    }
 }
@@ -19,12 +19,12 @@ package org.andstatus.app.data.checker;
 import android.database.Cursor;
 import android.support.annotation.NonNull;
 
+import org.andstatus.app.data.DownloadData;
 import org.andstatus.app.data.MyProvider;
 import org.andstatus.app.database.table.ActivityTable;
 import org.andstatus.app.database.table.ActorEndpointTable;
 import org.andstatus.app.database.table.ActorTable;
 import org.andstatus.app.database.table.AudienceTable;
-import org.andstatus.app.database.table.DownloadTable;
 import org.andstatus.app.database.table.FriendshipTable;
 import org.andstatus.app.database.table.NoteTable;
 import org.andstatus.app.net.social.AActivity;
@@ -137,7 +137,7 @@ class MergeActors extends DataChecker {
         MyProvider.delete(myContext, AudienceTable.TABLE_NAME, AudienceTable.ACTOR_ID, actor.actorId);
         MyProvider.delete(myContext, FriendshipTable.TABLE_NAME, FriendshipTable.ACTOR_ID, actor.actorId);
         MyProvider.delete(myContext, FriendshipTable.TABLE_NAME, FriendshipTable.FRIEND_ID, actor.actorId);
-        MyProvider.delete(myContext, DownloadTable.TABLE_NAME, DownloadTable.ACTOR_ID, actor.actorId);
+        DownloadData.deleteAllOfThisActor(actor.actorId);
         MyProvider.delete(myContext, ActorEndpointTable.TABLE_NAME, ActorEndpointTable.ACTOR_ID, actor.actorId);
         MyProvider.delete(myContext, ActorTable.TABLE_NAME, ActorTable._ID, actor.actorId);
     }
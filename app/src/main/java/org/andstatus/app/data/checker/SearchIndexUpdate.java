@@ -17,79 +17,68 @@
 package org.andstatus.app.data.checker;
 
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 
 import org.andstatus.app.data.DbUtils;
+import org.andstatus.app.data.NoteSearchIndex;
 import org.andstatus.app.database.table.NoteTable;
 import org.andstatus.app.net.social.Note;
-import org.andstatus.app.service.MyServiceManager;
 import org.andstatus.app.util.I18n;
 import org.andstatus.app.util.MyLog;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import static org.andstatus.app.data.MyQuery.quoteIfNotQuoted;
-
 /**
+ * Updates {@link NoteTable#CONTENT_TO_SEARCH} and the search index by chunks of notes, see {@link #fixByIdRanges}
  * @author yvolk@yurivolkov.com
  */
 class SearchIndexUpdate extends DataChecker {
 
     @Override
     long fixInternal(boolean countOnly) {
-        String sql = Note.getSqlToLoadContent(0) +
-                " ORDER BY " + NoteTable._ID + " DESC" +
-                (includeLong ? "" : " LIMIT 0, 10000");
-        List<Note> notesToFix = new ArrayList<>();
-        long rowsCount = 0;
-        try (Cursor cursor = myContext.getDatabase().rawQuery(sql, null)) {
+        SQLiteDatabase db = myContext.getDatabase();
+        if (db == null) return 0;
+
+        try (SQLiteStatement statement = countOnly ? null : db.compileStatement("UPDATE " + NoteTable.TABLE_NAME
+                + " SET " + NoteTable.CONTENT_TO_SEARCH + "=?"
+                + " WHERE " + NoteTable._ID + "=?")) {
+            long changedCount = fixByIdRanges(NoteTable.TABLE_NAME, includeLong ? 0 : 10000, countOnly,
+                    (fromId, toId) -> fixNotes(db, statement, fromId, toId));
+            logger.logProgress(changedCount == 0
+                    ? "No changes to search index were needed"
+                    : (countOnly ? "Need to update" : "Updated") + " search index for " + changedCount + " notes");
+            return changedCount;
+        }
+    }
+
+    private long fixNotes(SQLiteDatabase db, SQLiteStatement statement, long fromId, long toId) {
+        String sql = Note.getSqlToLoadContent(0)
+                + " WHERE " + NoteTable._ID + ">=" + fromId + " AND " + NoteTable._ID + "<" + toId;
+        long changedCount = 0;
+        try (Cursor cursor = db.rawQuery(sql, null)) {
             while (cursor.moveToNext()) {
-                rowsCount++;
                 Note note = Note.contentFromCursor(myContext, cursor);
                 String contentToSearchStored = DbUtils.getString(cursor, NoteTable.CONTENT_TO_SEARCH);
                 if (!contentToSearchStored.equals(note.getContentToSearch())) {
-                    notesToFix.add(note);
-                    if (logger.loggedMoreSecondsAgoThan(PROGRESS_REPORT_PERIOD_SECONDS)) {
-                        logger.logProgress("Need to fix " + notesToFix.size() + " of " + rowsCount + " notes, "
-                                + ", id=" + note.noteId + "; "
+                    changedCount++;
+                    if (statement != null) fixOneNote(db, statement, note);
+                    if (changedCount < 5 && MyLog.isVerboseEnabled()) {
+                        MyLog.v(this, "Search index of id=" + note.noteId + "; "
                                 + I18n.trimTextAt(note.getContentToSearch(), 120));
-                        MyServiceManager.setServiceUnavailable();
                     }
                 }
             }
-        } catch (Exception e) {
-            String logMsg = "Error: " + e.getMessage() + ", SQL:" + sql;
-            logger.logProgress(logMsg);
-            MyLog.e(this, logMsg, e);
         }
-
-        if (!countOnly) notesToFix.forEach(this::fixOneNote);
-
-        logger.logProgress(notesToFix.isEmpty()
-                ? "No changes to search index were needed. " + rowsCount + " notes"
-                : "Updated search index for " + notesToFix.size() + " of " + rowsCount + " notes");
-        return notesToFix.size();
+        return changedCount;
     }
 
-    private void fixOneNote(Note note) {
-        String sql = "";
-        try {
-            sql = "UPDATE " + NoteTable.TABLE_NAME
-                    + " SET "
-                    + NoteTable.CONTENT_TO_SEARCH + "=" + quoteIfNotQuoted(note.getContentToSearch())
-                    + " WHERE " + NoteTable._ID + "=" + note.noteId;
-            myContext.getDatabase().execSQL(sql);
-            if (logger.loggedMoreSecondsAgoThan(PROGRESS_REPORT_PERIOD_SECONDS)) {
-                logger.logProgress("Updating search index for " +
-                        I18n.trimTextAt(note.getContentToSearch(), 120) +
-                        " id=" + note.noteId
-                );
-                MyServiceManager.setServiceUnavailable();
-            }
-        } catch (Exception e) {
-            String logMsg = "Error: " + e.getMessage() + ", SQL:" + sql;
-            logger.logProgress(logMsg);
-            MyLog.e(this, logMsg, e);
+    private void fixOneNote(SQLiteDatabase db, SQLiteStatement statement, Note note) {
+        if (note.getContentToSearch() == null) {
+            statement.bindNull(1);
+        } else {
+            statement.bindString(1, note.getContentToSearch());
         }
+        statement.bindLong(2, note.noteId);
+        statement.execute();
+        NoteSearchIndex.update(db, note.noteId, note.getContentToSearch());
     }
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data.converter;
+
+import org.andstatus.app.data.DbUtils;
+
+class Convert44 extends ConvertOneStep {
+    Convert44() {
+        versionTo = 45;
+    }
+
+    @Override
+    protected void execute2() {
+        progressLogger.logProgress(stepTitle + ": Adding timeline indexes to activity");
+
+        sql = "CREATE INDEX IF NOT EXISTS idx_activity_account_timeline ON activity (account_id, activity_updated_date)";
+        DbUtils.execSQL(db, sql);
+
+        sql = "CREATE INDEX IF NOT EXISTS idx_activity_origin_timeline ON activity (activity_origin_id, activity_updated_date)";
+        DbUtils.execSQL(db, sql);
+    }
+}
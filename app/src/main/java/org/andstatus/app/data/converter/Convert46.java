@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data.converter;
+
+import org.andstatus.app.data.DbUtils;
+
+class Convert46 extends ConvertOneStep {
+    Convert46() {
+        versionTo = 47;
+    }
+
+    @Override
+    protected void execute2() {
+        progressLogger.logProgress(stepTitle + ": Adding download type and date index");
+
+        sql = "DROP INDEX IF EXISTS idx_download_downloaded_date";
+        DbUtils.execSQL(db, sql);
+
+        sql = "CREATE INDEX IF NOT EXISTS idx_download_type_date ON download (download_type, downloaded_date)";
+        DbUtils.execSQL(db, sql);
+
+        progressLogger.logProgress(stepTitle + ": Counting size of media files");
+        sql = "CREATE TABLE download_size (download_type INTEGER PRIMARY KEY NOT NULL," +
+                "total_size INTEGER NOT NULL DEFAULT 0,reconciled_date INTEGER NOT NULL DEFAULT 0)";
+        DbUtils.execSQL(db, sql);
+
+        sql = "INSERT INTO download_size (download_type, total_size, reconciled_date)" +
+                " SELECT download_type, SUM(file_size), " + System.currentTimeMillis() +
+                " FROM download WHERE download_status=2 GROUP BY download_type";
+        DbUtils.execSQL(db, sql);
+    }
+}
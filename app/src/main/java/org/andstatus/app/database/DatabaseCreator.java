@@ -25,8 +25,10 @@ import org.andstatus.app.database.table.ActorEndpointTable;
 import org.andstatus.app.database.table.ActorTable;
 import org.andstatus.app.database.table.AudienceTable;
 import org.andstatus.app.database.table.CommandTable;
+import org.andstatus.app.database.table.DownloadSizeTable;
 import org.andstatus.app.database.table.DownloadTable;
 import org.andstatus.app.database.table.FriendshipTable;
+import org.andstatus.app.database.table.NoteFtsTable;
 import org.andstatus.app.database.table.NoteTable;
 import org.andstatus.app.database.table.OriginTable;
 import org.andstatus.app.database.table.TimelineTable;
@@ -41,6 +43,10 @@ public class DatabaseCreator {
      * Current database scheme version, defined by AndStatus developers.
      * This is used to check (and upgrade if necessary) existing database after application update.
      *
+     * v.47 2018-11-25 DownloadSizeTable added: running total size of media files,
+     *                 DownloadTable index on download type and date for pruning
+     * v.46 2018-11-20 NoteFtsTable added: full text search index of notes
+     * v.45 2018-11-18 ActivityTable indexes added for keyset pagination of timelines
      * v.44 2018-10-30 ActorEndpointTable added.
      * v.42 2018-09-05 DownloadTable added (returned) "content_type" to filter attachments that can be shown
      * v.40 2018-06-05 DownloadTable added "downloaded_date" to decide, when to prune the download
@@ -71,7 +77,7 @@ public class DatabaseCreator {
      *      All messages are in the same table.
      *      Allows to have multiple User Accounts in different Originating systems (twitter.com etc. )
      */
-    public static final int DATABASE_VERSION = 44;
+    public static final int DATABASE_VERSION = 47;
     public static final long ORIGIN_ID_TWITTER =  1L;
 
     private final SQLiteDatabase db;
@@ -88,11 +94,13 @@ public class DatabaseCreator {
         MyLog.i(this, "Creating tables");
         OriginTable.create(db);
         NoteTable.create(db);
+        NoteFtsTable.create(db);
         UserTable.create(db);
         ActorTable.create(db);
         AudienceTable.create(db);
         FriendshipTable.create(db);
         DownloadTable.create(db);
+        DownloadSizeTable.create(db);
         TimelineTable.create(db);
         ActivityTable.create(db);
         CommandTable.create(db);
@@ -17,6 +17,8 @@
 package org.andstatus.app.database;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
@@ -28,15 +30,24 @@ import org.andstatus.app.util.MyLog;
 
 import java.io.File;
 
+/**
+ * The database is in the write-ahead log (WAL) mode, so the UI may read it through a pool of connections
+ * while the service writes. Copy the database file only after {@link #checkpoint()}
+ */
 public final class DatabaseHolder extends SQLiteOpenHelper  {
     private final boolean creationEnabled;
     private boolean wasNotCreated = false;
 
     public static final String DATABASE_NAME = "andstatus.sqlite";
+    /** Pages of the write-ahead log, after which it is checkpointed automatically by a writing transaction */
+    static final int WAL_AUTOCHECKPOINT_PAGES = 1000;
+    /** The write-ahead log file is truncated to this size after a checkpoint */
+    static final long JOURNAL_SIZE_LIMIT_BYTES = 4 * 1024 * 1024;
 
     public DatabaseHolder(Context context, boolean creationEnabled) {
         super(context, DATABASE_NAME, null, DatabaseCreator.DATABASE_VERSION);
         this.creationEnabled = creationEnabled;
+        setWriteAheadLoggingEnabled(true);
         File databasePath = context.getDatabasePath(DATABASE_NAME);
         if (databasePath == null || (!creationEnabled && !databasePath.exists())) {
             wasNotCreated = true;
@@ -77,6 +88,61 @@ public final class DatabaseHolder extends SQLiteOpenHelper  {
         return state;
     }
     
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        if (!db.isWriteAheadLoggingEnabled()) {
+            db.enableWriteAheadLogging();
+        }
+        // Durable in the WAL mode except for the last transactions on a power loss
+        db.execSQL("PRAGMA synchronous=NORMAL");
+        DatabaseUtils.longForQuery(db, "PRAGMA wal_autocheckpoint=" + WAL_AUTOCHECKPOINT_PAGES, null);
+        DatabaseUtils.longForQuery(db, "PRAGMA journal_size_limit=" + JOURNAL_SIZE_LIMIT_BYTES, null);
+    }
+
+    /**
+     * Moves the whole content of the write-ahead log into the database file and truncates the log,
+     * so the database file alone may be copied
+     * @return false if readers or writers didn't let to checkpoint the whole log
+     */
+    public boolean checkpoint() {
+        try (Cursor cursor = getWritableDatabase().rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null)) {
+            boolean success = cursor.moveToFirst() && cursor.getInt(0) == 0;
+            MyLog.v(this, () -> "Checkpoint " + (success ? "succeeded" : "failed"));
+            return success;
+        } catch (Exception e) {
+            MyLog.w(this, "Checkpoint failed", e);
+            return false;
+        }
+    }
+
+    /**
+     * Starts a transaction, during which the database file stays unchanged, so the file may be copied
+     * as a consistent snapshot. Readers are not blocked, writers wait till {@link #endFileSnapshot()}
+     * @return false if the write-ahead log couldn't be checkpointed now
+     */
+    public boolean beginFileSnapshot() {
+        if (!checkpoint()) return false;
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        File walFile = getJournalFiles(new File(db.getPath()))[0];
+        if (!walFile.exists() || walFile.length() == 0) return true;
+
+        // Somebody has written after the checkpoint
+        db.endTransaction();
+        return false;
+    }
+
+    public void endFileSnapshot() {
+        getWritableDatabase().endTransaction();
+    }
+
+    /** Journal files, which accompany the database file */
+    public static File[] getJournalFiles(File databasePath) {
+        return new File[]{new File(databasePath.getPath() + "-wal"), new File(databasePath.getPath() + "-shm"),
+                new File(databasePath.getPath() + "-journal")};
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db) {
         if (!creationEnabled) {
@@ -167,5 +167,18 @@ public final class ActivityTable implements BaseColumns {
                 + ")"
         );
 
+        // Composite indexes for keyset pagination of timelines: _id (rowid) is implicitly the last column
+        DbUtils.execSQL(db, "CREATE INDEX idx_activity_account_timeline ON " + TABLE_NAME + " ("
+                + ACCOUNT_ID + ", "
+                + UPDATED_DATE
+                + ")"
+        );
+
+        DbUtils.execSQL(db, "CREATE INDEX idx_activity_origin_timeline ON " + TABLE_NAME + " ("
+                + ORIGIN_ID + ", "
+                + UPDATED_DATE
+                + ")"
+        );
+
     }
 }
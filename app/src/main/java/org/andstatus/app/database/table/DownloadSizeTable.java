@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.database.table;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.andstatus.app.data.DbUtils;
+import org.andstatus.app.data.DownloadStatus;
+import org.andstatus.app.data.DownloadType;
+
+/** Running total size of {@link DownloadStatus#LOADED} media files of each {@link DownloadType} */
+public final class DownloadSizeTable {
+    public static final String TABLE_NAME = "download_size";
+
+    private DownloadSizeTable() {
+    }
+
+    /** See {@link DownloadType} */
+    public static final String DOWNLOAD_TYPE = DownloadTable.DOWNLOAD_TYPE;
+    /** Sum of {@link DownloadTable#FILE_SIZE} of loaded downloads of this type */
+    public static final String TOTAL_SIZE = "total_size";
+    /** When the total was recalculated from {@link DownloadTable} last time */
+    public static final String RECONCILED_DATE = "reconciled_date";
+
+    public static void create(SQLiteDatabase db) {
+        DbUtils.execSQL(db, "CREATE TABLE " + TABLE_NAME + " ("
+                + DOWNLOAD_TYPE + " INTEGER PRIMARY KEY NOT NULL,"
+                + TOTAL_SIZE + " INTEGER NOT NULL DEFAULT 0,"
+                + RECONCILED_DATE + " INTEGER NOT NULL DEFAULT 0"
+                + ")");
+    }
+}
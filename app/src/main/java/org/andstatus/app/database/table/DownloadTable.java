@@ -92,7 +92,8 @@ public final class DownloadTable implements BaseColumns {
                 + DOWNLOAD_NUMBER
                 + ")");
 
-        DbUtils.execSQL(db, "CREATE INDEX idx_download_downloaded_date ON " + TABLE_NAME + " ("
+        DbUtils.execSQL(db, "CREATE INDEX idx_download_type_date ON " + TABLE_NAME + " ("
+                + DOWNLOAD_TYPE + ", "
                 + DOWNLOADED_DATE
                 + ")");
     }
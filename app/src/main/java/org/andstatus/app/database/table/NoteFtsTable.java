@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.database.table;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.andstatus.app.data.DbUtils;
+
+/**
+ * Full text search index of {@link NoteTable#CONTENT_TO_SEARCH}.
+ * "docid" of a row is the {@link NoteTable#_ID} of the indexed note.
+ * FTS4 is used, because FTS5 is not available in the SQLite, bundled with Android
+ */
+public final class NoteFtsTable {
+    public static final String TABLE_NAME = "note_fts";
+
+    public static final String DOCID = "docid";
+    public static final String CONTENT_TO_SEARCH = NoteTable.CONTENT_TO_SEARCH;
+
+    private NoteFtsTable() {
+    }
+
+    public static void create(SQLiteDatabase db) {
+        DbUtils.execSQL(db, "CREATE VIRTUAL TABLE " + TABLE_NAME + " USING fts4("
+                + CONTENT_TO_SEARCH + ","
+                + " tokenize=unicode61"
+                + ")");
+    }
+}
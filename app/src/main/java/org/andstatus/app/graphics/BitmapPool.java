@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.graphics;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import net.jcip.annotations.GuardedBy;
+
+import org.andstatus.app.util.I18n;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bitmaps, released by {@link ImageCache}s, to be reused for new images of the same size and config.
+ * Only bitmaps, which nobody can draw anymore, are put here, see {@link CachedImage#release()}.
+ * The pool is limited by the total size of its bitmaps in bytes: the least recently released bitmaps
+ * are dropped first and left to the garbage collector. Bitmaps are not pre-allocated: when the pool has
+ * no bitmap of the requested size, the caller creates a new one
+ * @author yvolk@yurivolkov.com
+ */
+class BitmapPool {
+    private final long maxBytes;
+    @GuardedBy("this")
+    private final Map<Key, Deque<Bitmap>> buckets = new HashMap<>();
+    /** All pooled bitmaps, the least recently released first */
+    @GuardedBy("this")
+    private final Deque<Bitmap> released = new ArrayDeque<>();
+    @GuardedBy("this")
+    private long sizeBytes = 0;
+    @GuardedBy("this")
+    private long hits = 0;
+    @GuardedBy("this")
+    private long misses = 0;
+
+    private static class Key {
+        final int width;
+        final int height;
+        final Bitmap.Config config;
+
+        Key(int width, int height, Bitmap.Config config) {
+            this.width = width;
+            this.height = height;
+            this.config = config;
+        }
+
+        static Key of(Bitmap bitmap) {
+            return new Key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+            return width == key.width && height == key.height && config == key.config;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = width;
+            result = 31 * result + height;
+            result = 31 * result + (config == null ? 0 : config.hashCode());
+            return result;
+        }
+    }
+
+    BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /** @return a released bitmap of exactly this size and config (its content is not cleared) or null */
+    @Nullable
+    synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        Deque<Bitmap> bucket = buckets.get(new Key(width, height, config));
+        Bitmap bitmap = bucket == null ? null : bucket.pollLast();
+        if (bitmap == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        if (bucket.isEmpty()) {
+            buckets.remove(Key.of(bitmap));
+        }
+        released.removeLastOccurrence(bitmap);
+        sizeBytes -= bitmap.getAllocationByteCount();
+        return bitmap;
+    }
+
+    synchronized void put(@NonNull Bitmap bitmap) {
+        if (bitmap.isRecycled() || !bitmap.isMutable()) return;
+
+        long bytes = bitmap.getAllocationByteCount();
+        if (bytes > maxBytes) return;
+
+        trimToSize(maxBytes - bytes);
+        Key key = Key.of(bitmap);
+        Deque<Bitmap> bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            buckets.put(key, bucket);
+        }
+        bucket.addLast(bitmap);
+        released.addLast(bitmap);
+        sizeBytes += bytes;
+    }
+
+    synchronized void evictAll() {
+        trimToSize(0);
+    }
+
+    @GuardedBy("this")
+    private void trimToSize(long size) {
+        while (sizeBytes > size) {
+            Bitmap bitmap = released.pollFirst();
+            if (bitmap == null) {
+                sizeBytes = 0;
+                break;
+            }
+            Key key = Key.of(bitmap);
+            Deque<Bitmap> bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.removeFirstOccurrence(bitmap);
+                if (bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+            sizeBytes -= bitmap.getAllocationByteCount();
+        }
+    }
+
+    synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    synchronized int getCount() {
+        return released.size();
+    }
+
+    synchronized String getInfo() {
+        long requests = hits + misses;
+        return "Bitmap pool: " + released.size() + " bitmaps, " + I18n.formatBytes(sizeBytes)
+                + " of " + I18n.formatBytes(maxBytes) + ", sizes: " + buckets.size()
+                + ", hits:" + hits + ", misses:" + misses
+                + (requests == 0 ? "" : ", hitRate:" + hits * 100 / requests + "%");
+    }
+}
@@ -21,6 +21,9 @@ import android.graphics.Point;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import net.jcip.annotations.GuardedBy;
 
 /**
  * @author yvolk@yurivolkov.com
@@ -35,27 +38,40 @@ public class CachedImage {
     private final Bitmap bitmap;
     protected final Drawable source;
     private volatile boolean expired = false;
+    /** The pool to release the bitmap to, when the image is expired and not used */
+    @Nullable
+    private final BitmapPool bitmapPool;
+    /** Number of views, showing the image, see {@link #acquire()} */
+    @GuardedBy("this")
+    private int users = 0;
+    /** The drawable was given out without reference counting, so the bitmap is never reused */
+    @GuardedBy("this")
+    private boolean shared = false;
+    @GuardedBy("this")
+    private boolean released = false;
 
     public CachedImage(long imageId, @NonNull Bitmap bitmap, @NonNull Rect srcRect) {
+        this(imageId, bitmap, srcRect, null);
+    }
+
+    CachedImage(long imageId, @NonNull Bitmap bitmap, @NonNull Rect srcRect, @Nullable BitmapPool bitmapPool) {
         id = imageId;
         this.bitmap = bitmap;
         source = new BitmapSubsetDrawable(bitmap, srcRect);
+        this.bitmapPool = bitmapPool;
     }
 
     public CachedImage(long imageId, Drawable drawable) {
         id = imageId;
         bitmap = EMPTY_BITMAP;
         source = drawable;
+        bitmapPool = null;
     }
 
     private static Bitmap newBitmap(int size) {
         return Bitmap.createBitmap(size, size, BITMAP_CONFIG);
     }
 
-    boolean isBitmapRecyclable() {
-        return !expired && !EMPTY_BITMAP.equals(bitmap);
-    }
-
     @NonNull
     Bitmap getBitmap() {
         return bitmap;
@@ -65,12 +81,53 @@ public class CachedImage {
         return expired;
     }
 
+    /** Called when the image is removed from its cache */
     CachedImage makeExpired() {
-        this.expired = true;
+        synchronized (this) {
+            expired = true;
+        }
+        releaseBitmapIfUnused();
         return this;
     }
 
+    /**
+     * Takes a reference to the image for showing it. Each successful call should be followed by {@link #release()}
+     * @return false if the image is expired, so it should be loaded again
+     */
+    public synchronized boolean acquire() {
+        if (expired) return false;
+
+        users++;
+        return true;
+    }
+
+    public void release() {
+        synchronized (this) {
+            if (users > 0) users--;
+        }
+        releaseBitmapIfUnused();
+    }
+
+    /** The bitmap is reused only if nobody can draw it anymore */
+    private void releaseBitmapIfUnused() {
+        synchronized (this) {
+            if (!expired || users > 0 || shared || released || bitmapPool == null) return;
+
+            released = true;
+        }
+        bitmapPool.put(bitmap);
+    }
+
+    /** The drawable, given out without reference counting. The bitmap of this image will never be reused */
     public Drawable getDrawable() {
+        synchronized (this) {
+            shared = true;
+        }
+        return source;
+    }
+
+    /** The drawable for a holder of the image, see {@link #acquire()} */
+    public Drawable getAcquiredDrawable() {
         return source;
     }
 
@@ -17,6 +17,9 @@
 package org.andstatus.app.graphics;
 
 import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v7.widget.AppCompatImageView;
 import android.util.AttributeSet;
 
@@ -29,6 +32,8 @@ public class IdentifiableImageView extends AppCompatImageView {
     public final long myViewId = InstanceId.next();
     private volatile long imageId = 0;
     private volatile boolean loaded = false;
+    /** The image, shown by this view, is held till another drawable is set */
+    private CachedImage image;
 
     public IdentifiableImageView(Context context) {
         super(context);
@@ -58,4 +63,24 @@ public class IdentifiableImageView extends AppCompatImageView {
     public void setLoaded() {
         this.loaded = true;
     }
+
+    /** @return false if the image is expired and cannot be shown */
+    public boolean setImage(@NonNull CachedImage image) {
+        if (image == this.image) return true;
+        if (!image.acquire()) return false;
+
+        setImageDrawable(image.getAcquiredDrawable());
+        this.image = image;
+        return true;
+    }
+
+    @Override
+    public void setImageDrawable(@Nullable Drawable drawable) {
+        super.setImageDrawable(drawable);
+        CachedImage previous = image;
+        if (previous != null && previous.getAcquiredDrawable() != drawable) {
+            image = null;
+            previous.release();
+        }
+    }
 }
@@ -39,13 +39,13 @@ import org.andstatus.app.context.MyContextHolder;
 import org.andstatus.app.context.MyPreferences;
 import org.andstatus.app.data.ImageFile;
 import org.andstatus.app.data.MyContentType;
+import org.andstatus.app.data.ThumbnailFile;
+import org.andstatus.app.util.I18n;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.StringUtils;
 
 import java.io.File;
-import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -57,14 +57,12 @@ public class ImageCache extends LruCache<String, CachedImage> {
 
     public final static int BYTES_PER_PIXEL = 4;
     final CacheName name;
-    private volatile int requestedCacheSize;
-    private volatile int currentCacheSize;
     private volatile int maxBitmapHeight;
     private volatile int maxBitmapWidth;
     final AtomicLong hits = new AtomicLong();
     final AtomicLong misses = new AtomicLong();
     final Set<String> brokenBitmaps = new ConcurrentSkipListSet<>();
-    final Queue<Bitmap> recycledBitmaps;
+    final BitmapPool bitmapPool;
     final DisplayMetrics displayMetrics;
     volatile boolean rounded = false;
 
@@ -73,32 +71,23 @@ public class ImageCache extends LruCache<String, CachedImage> {
         throw new IllegalStateException("Cache cannot be resized");
     }
 
-    public ImageCache(Context context, CacheName name, int maxBitmapHeightWidthIn, int requestedCacheSizeIn) {
-        super(requestedCacheSizeIn);
+    /**
+     * @param maxSizeBytes The cache is limited by the total size of its bitmaps, see {@link #sizeOf(String, CachedImage)}
+     * @param bitmapPool Evicted bitmaps are released to this pool, which may be shared by several caches
+     */
+    ImageCache(Context context, CacheName name, int maxBitmapHeightWidthIn, int maxSizeBytes,
+               BitmapPool bitmapPool) {
+        super(Math.max(maxSizeBytes, 1));
         this.name = name;
+        this.bitmapPool = bitmapPool;
         displayMetrics = context.getResources().getDisplayMetrics();
         int maxBitmapHeightWidth = maxBitmapHeightWidthIn;
         this.setMaxBounds(maxBitmapHeightWidth, maxBitmapHeightWidth);
-        this.requestedCacheSize = requestedCacheSizeIn;
-        this.currentCacheSize = this.requestedCacheSize;
-        recycledBitmaps = new ConcurrentLinkedQueue<>();
-        try {
-            for (int i = 0; i < currentCacheSize + 2; i++) {
-                recycledBitmaps.add(newBlankBitmap());
-            }
-        } catch (OutOfMemoryError e) {
-            MyLog.w(this, getInfo(), e);
-            currentCacheSize = recycledBitmaps.size() - 2;
-            if (currentCacheSize < 0) {
-                currentCacheSize = 0;
-            }
-            super.resize(currentCacheSize);
-        }
     }
 
-    private Bitmap newBlankBitmap() {
-        return Bitmap.createBitmap(displayMetrics, maxBitmapWidth,
-                maxBitmapHeight, CachedImage.BITMAP_CONFIG);
+    @Override
+    protected int sizeOf(String key, CachedImage value) {
+        return value.getBitmap().getAllocationByteCount();
     }
 
     @Nullable
@@ -111,12 +100,10 @@ public class ImageCache extends LruCache<String, CachedImage> {
         return getImage(imageFile, false);
     }
 
+    /** The bitmap is released to the pool later, when no view shows the image, see {@link CachedImage#release()} */
     @Override
     protected void entryRemoved(boolean evicted, String key, CachedImage oldValue, CachedImage newValue) {
-        if (oldValue.isBitmapRecyclable()) {
-            oldValue.makeExpired();
-            recycledBitmaps.add(oldValue.getBitmap());
-        }
+        oldValue.makeExpired();
     }
 
     @Nullable
@@ -135,7 +122,7 @@ public class ImageCache extends LruCache<String, CachedImage> {
             if (!fromCacheOnly && (new File(imageFile.getPath())).exists()) {
                 image = loadImage(imageFile);
                 if (image != null) {
-                    if (currentCacheSize > 0) {
+                    if (sizeOf(imageFile.getPath(), image) <= maxSize()) {
                         put(imageFile.getPath(), image);
                     }
                 } else {
@@ -153,9 +140,9 @@ public class ImageCache extends LruCache<String, CachedImage> {
             return null;
         }
         Rect srcRect = new Rect(0, 0, bitmap.getWidth(), bitmap.getHeight());
-        Bitmap background = getSuitableRecycledBitmap(srcRect);
+        Bitmap background = getSuitableBitmap(srcRect);
         if (background == null) {
-            MyLog.w(imageFile, "No suitable bitmap found to cache "
+            MyLog.w(imageFile, "No memory for a bitmap to cache "
                     + srcRect.width() + "x" + srcRect.height() + " '" + imageFile.getPath() + "'");
             return null ;
         }
@@ -166,8 +153,7 @@ public class ImageCache extends LruCache<String, CachedImage> {
         } else {
             canvas.drawBitmap(bitmap, 0 , 0, null);
         }
-        bitmap.recycle();
-        return new CachedImage(imageFile.getId(), background, srcRect);
+        return new CachedImage(imageFile.getId(), background, srcRect, bitmapPool);
     }
 
     /**
@@ -183,22 +169,51 @@ public class ImageCache extends LruCache<String, CachedImage> {
         canvas.drawOval(rectF, paint);
     }
 
-    private Bitmap getSuitableRecycledBitmap(Rect srcRect) {
-        return recycledBitmaps.poll();
+    /** A released bitmap of the same size or, if there is no such, a new one */
+    @Nullable
+    private Bitmap getSuitableBitmap(Rect srcRect) {
+        Bitmap bitmap = bitmapPool.get(srcRect.width(), srcRect.height(), CachedImage.BITMAP_CONFIG);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        try {
+            return Bitmap.createBitmap(displayMetrics, srcRect.width(), srcRect.height(), CachedImage.BITMAP_CONFIG);
+        } catch (OutOfMemoryError e) {
+            MyLog.w(this, getInfo(), e);
+            bitmapPool.evictAll();
+            return null;
+        }
     }
 
     @Nullable
     private Bitmap loadBitmap(ImageFile imageFile) {
+        ThumbnailFile thumbnail = new ThumbnailFile(imageFile.downloadId, maxBitmapWidth, maxBitmapHeight);
+        Bitmap bitmap = thumbnail.load(imageFile.getPath());
+        if (bitmap != null) {
+            MyLog.v(imageFile, () -> "Loaded " + name + "'s thumbnail " + bitmap.getWidth()
+                    + "x" + bitmap.getHeight() + " '" + imageFile.getPath() + "'");
+            return bitmap;
+        }
         switch (MyContentType.fromPathOfSavedFile(imageFile.getPath())) {
             case IMAGE:
-                return imagePathToBitmap(imageFile);
+                return saveThumbnailIfScaled(thumbnail, imagePathToBitmap(imageFile), imageFile.getSize());
             case VIDEO:
-                return videoPathToBitmap(imageFile);
+                return saveThumbnailIfScaled(thumbnail, videoPathToBitmap(imageFile), null);
             default:
                 return null;
         }
     }
 
+    /** Small images are decoded fast enough, so we store thumbnails of video frames and of scaled images only */
+    @Nullable
+    private Bitmap saveThumbnailIfScaled(ThumbnailFile thumbnail, @Nullable Bitmap bitmap, @Nullable Point sourceSize) {
+        if (bitmap != null && (sourceSize == null || bitmap.getWidth() < sourceSize.x
+                || bitmap.getHeight() < sourceSize.y)) {
+            thumbnail.save(bitmap);
+        }
+        return bitmap;
+    }
+
     @Nullable
     private Bitmap imagePathToBitmap(ImageFile imageFile) {
         final Bitmap bitmap;
@@ -212,6 +227,7 @@ public class ImageCache extends LruCache<String, CachedImage> {
             } catch (OutOfMemoryError e) {
                 MyLog.w(imageFile, getInfo(), e);
                 evictAll();
+                bitmapPool.evictAll();
                 return null;
             }
         }
@@ -232,7 +248,6 @@ public class ImageCache extends LruCache<String, CachedImage> {
         BitmapFactory.Options options = calculateScaling(imageFile, imageFile.getSize());
         Bitmap bitmap = ThumbnailUtils.extractThumbnail(source, imageFile.getSize().x / options.inSampleSize,
                 imageFile.getSize().y / options.inSampleSize);
-        source.recycle();
         MyLog.v(imageFile,  () -> (bitmap == null ? "Failed to load " + name + "'s bitmap"
                 : "Loaded " + name + "'s bitmap " + bitmap.getWidth()
                 + "x" + bitmap.getHeight()) + " '" + imageFile.getPath() + "'");
@@ -259,11 +274,7 @@ public class ImageCache extends LruCache<String, CachedImage> {
     public String getInfo() {
         StringBuilder builder = new StringBuilder(name.title);
         builder.append(": " + maxBitmapWidth + "x" + maxBitmapHeight + ", "
-                + size() + " of " + currentCacheSize);
-        if (requestedCacheSize != currentCacheSize) {
-            builder.append(" (initially capacity was " + requestedCacheSize + ")");
-        }
-        builder.append(", free: " + recycledBitmaps.size());
+                + snapshot().size() + " images, " + I18n.formatBytes(size()) + " of " + I18n.formatBytes(maxSize()));
         if (!brokenBitmaps.isEmpty()) {
             builder.append(", broken: " + brokenBitmaps.size());
         }
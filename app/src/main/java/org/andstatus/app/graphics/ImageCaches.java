@@ -45,9 +45,11 @@ public class ImageCaches {
     private static final float AVATARS_CACHE_PART_OF_TOTAL_APP_MEMORY = 0.05f;
     public static final int AVATARS_CACHE_SIZE_MIN = 200;
     public static final int AVATARS_CACHE_SIZE_MAX = 700;
+    private static final float BITMAP_POOL_PART_OF_TOTAL_APP_MEMORY = 0.03f;
 
     private static volatile ImageCache attachedImagesCache;
     private static volatile ImageCache avatarsCache;
+    private static volatile BitmapPool bitmapPool;
 
     private ImageCaches() {
         // Empty
@@ -58,6 +60,7 @@ public class ImageCaches {
         if (attachedImagesCache != null) {
             return;
         }
+        bitmapPool = new BitmapPool(Math.round(BITMAP_POOL_PART_OF_TOTAL_APP_MEMORY * getTotalAppMemory(context)));
         initializeAttachedImagesCache(context);
         initializeAvatarsCache(context);
         MyLog.i(ImageCaches.class.getSimpleName(), "Cache initialized. " + getCacheInfo());
@@ -80,7 +83,7 @@ public class ImageCaches {
             cacheSize = ATTACHED_IMAGES_CACHE_SIZE_MAX;
         }
         attachedImagesCache = new ImageCache(context, CacheName.ATTACHED_IMAGE, imageSize,
-                cacheSize);
+                calcCacheSizeBytes(imageSize, cacheSize), bitmapPool);
     }
 
     private static void initializeAvatarsCache(Context context) {
@@ -97,7 +100,8 @@ public class ImageCaches {
         if (cacheSize > AVATARS_CACHE_SIZE_MAX) {
             cacheSize = AVATARS_CACHE_SIZE_MAX;
         }
-        avatarsCache = new ImageCache(context, CacheName.AVATAR, imageSize, cacheSize);
+        avatarsCache = new ImageCache(context, CacheName.AVATAR, imageSize,
+                calcCacheSizeBytes(imageSize, cacheSize), bitmapPool);
         setAvatarsRounded();
     }
 
@@ -111,6 +115,11 @@ public class ImageCaches {
                 / imageSize / imageSize / ImageCache.BYTES_PER_PIXEL);
     }
 
+    /** The cache holds at least cacheSize images of the maximum size, and more of smaller images */
+    private static int calcCacheSizeBytes(int imageSize, int cacheSize) {
+        return cacheSize * imageSize * imageSize * ImageCache.BYTES_PER_PIXEL;
+    }
+
     @NonNull
     private static long getTotalAppMemory(Context context) {
         int memoryClass = 16;
@@ -155,6 +164,7 @@ public class ImageCaches {
         } else {
             builder.append(avatarsCache.getInfo() + "\n");
             builder.append(attachedImagesCache.getInfo() + "\n");
+            builder.append(bitmapPool.getInfo() + "\n");
             builder.append("Styled images: " + styledImages.size() + "\n");
         }
         Context context = MyContextHolder.get().context();
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.net.http;
+
+import android.support.annotation.NonNull;
+
+import org.andstatus.app.context.MyPreferences;
+import org.andstatus.app.util.MyLog;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cz.msebera.android.httpclient.client.HttpClient;
+
+/**
+ * Long-lived HTTP clients, one per origin and {@link SslModeEnum}, so that connections to a server
+ * (including their TCP and TLS handshakes) are kept alive and reused by consecutive requests.
+ * A client is used through a {@link Lease}, which is held while a request is in flight.
+ * When connection preferences change, a new client replaces the old one, and the old client
+ * is shut down after its last lease is released
+ * @author yvolk@yurivolkov.com
+ */
+public class HttpClientPool {
+    private static final String TAG = HttpClientPool.class.getSimpleName();
+    /** Connections, idle for longer time, are closed */
+    static final long IDLE_CONNECTION_SECONDS = 30;
+    private static final Map<String, PooledClient> clients = new ConcurrentHashMap<>();
+
+    private static class PooledClient {
+        final String key;
+        final String settings;
+        final HttpClient client;
+        /** Number of unreleased leases, i.e. of requests in flight */
+        final AtomicInteger users = new AtomicInteger();
+        volatile boolean retired = false;
+        final AtomicBoolean shutDown = new AtomicBoolean();
+
+        PooledClient(String key, String settings, HttpClient client) {
+            this.key = key;
+            this.settings = settings;
+            this.client = client;
+        }
+
+        /** Not used for new requests anymore. Requests in flight may still use its connections */
+        void retire() {
+            retired = true;
+            closeIdleConnections(client, 0);
+            if (users.get() == 0) shutdown();
+        }
+
+        void release() {
+            if (users.decrementAndGet() == 0 && retired) shutdown();
+        }
+
+        @SuppressWarnings("deprecation")
+        void shutdown() {
+            if (!shutDown.compareAndSet(false, true)) return;
+
+            MyLog.v(TAG, () -> "Shutting down retired client for " + key);
+            try {
+                if (client instanceof Closeable) {
+                    // This also stops the idle connections evictor
+                    ((Closeable) client).close();
+                } else {
+                    client.getConnectionManager().shutdown();
+                }
+            } catch (Exception e) {
+                MyLog.i(TAG, "Failed to shut down client for " + key, e);
+            }
+        }
+    }
+
+    /** Use of a pooled client by one request. Release it, after the response is read */
+    static class Lease implements Closeable {
+        final HttpClient client;
+        private final PooledClient pooled;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(PooledClient pooled) {
+            this.pooled = pooled;
+            this.client = pooled.client;
+        }
+
+        boolean isShutDown() {
+            return pooled.shutDown.get();
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) pooled.release();
+        }
+    }
+
+    private HttpClientPool() {
+        // Empty
+    }
+
+    @NonNull
+    static Lease acquire(long originId, @NonNull SslModeEnum sslMode) {
+        final String key = originId + ";" + sslMode.name();
+        final String settings = currentSettings();
+        // The lease is taken inside of the same atomic operation, which may retire the client
+        PooledClient pooled = clients.compute(key, (k, existing) -> {
+            PooledClient current = existing;
+            if (current == null || !current.settings.equals(settings)) {
+                if (current != null) current.retire();
+                int maxPerRoute = MyPreferences.getMaxConnectionsPerHost();
+                MyLog.v(TAG, () -> "New client for " + k + ", " + settings);
+                current = new PooledClient(k, settings, sslMode == SslModeEnum.MISCONFIGURED
+                        ? MisconfiguredSslHttpClientFactory.getHttpClient(maxPerRoute)
+                        : MyHttpClientFactory.getHttpClient(sslMode, maxPerRoute));
+            }
+            current.users.incrementAndGet();
+            return current;
+        });
+        if (sslMode == SslModeEnum.MISCONFIGURED) {
+            // The legacy client has no background eviction of idle connections
+            closeIdleConnections(pooled.client, IDLE_CONNECTION_SECONDS);
+        }
+        return new Lease(pooled);
+    }
+
+    private static String currentSettings() {
+        return "timeout:" + MyPreferences.getConnectionTimeoutMs()
+                + ",maxPerRoute:" + MyPreferences.getMaxConnectionsPerHost();
+    }
+
+    /** Closes expired connections and connections, idle for longer than idleSeconds */
+    @SuppressWarnings("deprecation")
+    private static void closeIdleConnections(HttpClient client, long idleSeconds) {
+        try {
+            client.getConnectionManager().closeExpiredConnections();
+            client.getConnectionManager().closeIdleConnections(idleSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            MyLog.i(TAG, "Failed to close idle connections", e);
+        }
+    }
+
+    /** Retires all pooled clients, so that new requests use new clients */
+    public static void clear() {
+        for (Map.Entry<String, PooledClient> entry : clients.entrySet()) {
+            if (clients.remove(entry.getKey(), entry.getValue())) {
+                entry.getValue().retire();
+            }
+        }
+    }
+
+    static int size() {
+        return clients.size();
+    }
+
+    /**
+     * {@link java.net.HttpURLConnection} keeps alive connections in one process-wide pool,
+     * configured by system properties, which are read once, so the limit is applied at application start
+     */
+    public static void configureJavaNet() {
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", Integer.toString(MyPreferences.getMaxConnectionsPerHost()));
+        System.setProperty("http.keepAliveDuration",
+                Long.toString(TimeUnit.SECONDS.toMillis(IDLE_CONNECTION_SECONDS)));
+    }
+}
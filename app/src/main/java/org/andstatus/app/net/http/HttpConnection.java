@@ -20,6 +20,7 @@ import android.net.Uri;
 
 import org.andstatus.app.account.AccountDataWriter;
 import org.andstatus.app.net.http.ConnectionException.StatusCode;
+import org.andstatus.app.support.java.util.function.ConsumerWithException;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.StringUtils;
 import org.andstatus.app.util.TriState;
@@ -109,9 +110,12 @@ public abstract class HttpConnection {
         }
         HttpReadResult result = new HttpReadResult(pathToUrlString(path));
         result.authenticate = authenticated;
+        result.setValidators(HttpValidators.load(data.getAccountName().getName(), result.getUrl()));
         getRequest(result);
         MyLog.logNetworkLevelMessage("get_response", data.getLogName(), result.strResponse);
+        result.onNotModified();
         result.parseAndThrow();
+        result.storeValidators();
         return result;
     }
 
@@ -123,6 +127,28 @@ public abstract class HttpConnection {
         return getRequestCommon(path, true).getJsonArray(parentKey);
     }
 
+    public final void getRequestAsArray(String path,
+            ConsumerWithException<JSONObject, ConnectionException> itemConsumer) throws ConnectionException {
+        getRequestAsArray(path, "items", itemConsumer);
+    }
+
+    /**
+     * Items of the response array are passed to the consumer as they are parsed from the response stream.
+     * The request is not conditional: the response is not stored, and the caller may fail to store the items,
+     * so a repeated request should return them again
+     */
+    public final void getRequestAsArray(String path, String parentKey,
+            ConsumerWithException<JSONObject, ConnectionException> itemConsumer) throws ConnectionException {
+        if (StringUtils.isEmpty(path)) {
+            throw new IllegalArgumentException("path is empty");
+        }
+        HttpReadResult result = new HttpReadResult(pathToUrlString(path)).setItemConsumer(parentKey, itemConsumer);
+        getRequest(result);
+        MyLog.logNetworkLevelMessage("get_response", data.getLogName(), result.strResponse);
+        result.parseAndThrow();
+        result.readItems();
+    }
+
     public final void downloadFile(String url, File file) throws ConnectionException {
         HttpReadResult result = new HttpReadResult(url, file);
         getRequest(result);
@@ -171,6 +197,10 @@ public abstract class HttpConnection {
      */
     public abstract boolean getCredentialsPresent();
 
+    public long getOriginId() {
+        return data.getOriginId();
+    }
+
     public SslModeEnum getSslMode() {
         return data.getSslMode();
     }
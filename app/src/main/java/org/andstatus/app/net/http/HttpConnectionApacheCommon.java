@@ -29,12 +29,14 @@ import org.andstatus.app.util.StringUtils;
 import org.andstatus.app.util.UriUtils;
 import org.json.JSONObject;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import cz.msebera.android.httpclient.Header;
 import cz.msebera.android.httpclient.HttpEntity;
@@ -50,6 +52,7 @@ import cz.msebera.android.httpclient.entity.ContentType;
 import cz.msebera.android.httpclient.entity.mime.MultipartEntityBuilder;
 import cz.msebera.android.httpclient.message.BasicNameValuePair;
 import cz.msebera.android.httpclient.protocol.HTTP;
+import cz.msebera.android.httpclient.util.EntityUtils;
 
 public class HttpConnectionApacheCommon {
     private HttpConnectionApacheSpecific specific;
@@ -71,7 +74,9 @@ public class HttpConnectionApacheCommon {
             } else {
                 fillSinglePartPost(httpPost, result.getFormParams());
             }
-            specific.httpApachePostRequest(httpPost, result);
+            try (HttpClientPool.Lease lease = acquireHttpClient(specific)) {
+                specific.httpApachePostRequest(lease.client, httpPost, result);
+            }
         } catch (UnsupportedEncodingException e) {
             MyLog.i(this, e);
         }
@@ -134,13 +139,18 @@ public class HttpConnectionApacheCommon {
         return formParams;
     }
 
-    public static HttpClient getHttpClient(SslModeEnum sslMode) {
-        return sslMode == SslModeEnum.MISCONFIGURED ?
-                MisconfiguredSslHttpClientFactory.getHttpClient() :
-                    MyHttpClientFactory.getHttpClient(sslMode) ;
+    /** The client may be used by the caller until the lease is closed */
+    static HttpClientPool.Lease acquireHttpClient(HttpConnectionApacheSpecific specific) {
+        return HttpClientPool.acquire(specific.getOriginId(), specific.getSslMode());
     }
 
     protected void getRequest(HttpReadResult result) {
+        try (HttpClientPool.Lease lease = acquireHttpClient(specific)) {
+            getRequest(lease.client, result);
+        }
+    }
+
+    private void getRequest(HttpClient client, HttpReadResult result) {
         String method = "getRequest; ";
         // See http://hc.apache.org/httpcomponents-client-ga/tutorial/html/fundamentals.html
         HttpResponse httpResponse = null;
@@ -151,19 +161,24 @@ public class HttpConnectionApacheCommon {
                 if (result.authenticate) {
                     specific.httpApacheSetAuthorization(httpGet);
                 }
-                httpResponse = specific.httpApacheGetResponse(httpGet);
+                for (Map.Entry<String, String> header : result.getConditionalHeaders().entrySet()) {
+                    httpGet.setHeader(header.getKey(), header.getValue());
+                }
+                httpResponse = specific.httpApacheGetResponse(client, httpGet);
                 StatusLine statusLine = httpResponse.getStatusLine();
                 result.statusLine = statusLine.toString();
                 result.setStatusCode(statusLine.getStatusCode());
                 switch (result.getStatusCode()) {
                     case OK:
                     case UNKNOWN:
+                        result.setResponseValidators(getHeaderValue(httpResponse, "ETag"),
+                                getHeaderValue(httpResponse, "Last-Modified"));
                         HttpEntity entity = httpResponse.getEntity();
                         if (entity != null) {
                             if (result.fileResult != null) {
                                 FileUtils.readStreamToFile(entity.getContent(), result.fileResult);
                             } else {
-                                result.strResponse = HttpConnectionUtils.readStreamToString(entity.getContent());
+                                result.readStream(entity.getContent());
                             }
                         }
                         stop = true;
@@ -188,6 +203,8 @@ public class HttpConnectionApacheCommon {
                                 }
                                 MyLog.v(this, message.toString());
                             }
+                            // Returns the connection to the pool before the redirect is followed
+                            closeResponse(httpResponse);
                         }
                         break;
                     default:
@@ -200,7 +217,7 @@ public class HttpConnectionApacheCommon {
                         if (!stop) {
                             result.authenticate = false;
                             result.appendToLog("retrying without authentication");
-                            DbUtils.closeSilently(httpResponse);
+                            closeResponse(httpResponse);
                             MyLog.v(this, result::toString);
                         }
                         break;
@@ -211,10 +228,27 @@ public class HttpConnectionApacheCommon {
         } catch (IllegalArgumentException e) {
             result.setException(e);
         } finally {
-            DbUtils.closeSilently(httpResponse);
+            closeResponse(httpResponse);
         }
     }
     
+    /**
+     * Returns the connection to the pool. A response of the legacy client is not {@link Closeable},
+     * so its entity is consumed instead
+     */
+    static void closeResponse(HttpResponse httpResponse) {
+        if (httpResponse instanceof Closeable) {
+            DbUtils.closeSilently(httpResponse);
+        } else if (httpResponse != null) {
+            EntityUtils.consumeQuietly(httpResponse.getEntity());
+        }
+    }
+
+    private static String getHeaderValue(HttpResponse httpResponse, String name) {
+        Header header = httpResponse.getFirstHeader(name);
+        return header == null ? "" : header.getValue();
+    }
+
     private HttpGet newHttpGet(String url) {
         HttpGet httpGet = new HttpGet(url);
         httpGet.setHeader("User-Agent", HttpConnection.USER_AGENT);
@@ -19,6 +19,7 @@ package org.andstatus.app.net.http;
 import java.io.IOException;
 
 import cz.msebera.android.httpclient.HttpResponse;
+import cz.msebera.android.httpclient.client.HttpClient;
 import cz.msebera.android.httpclient.client.methods.HttpGet;
 import cz.msebera.android.httpclient.client.methods.HttpPost;
 
@@ -27,8 +28,9 @@ import cz.msebera.android.httpclient.client.methods.HttpPost;
  * @author yvolk@yurivolkov.com
  */
 public interface HttpConnectionApacheSpecific {
-    void httpApachePostRequest(HttpPost httpPost, HttpReadResult result) throws ConnectionException;
-    HttpResponse httpApacheGetResponse(HttpGet httpGet) throws IOException;
+    void httpApachePostRequest(HttpClient client, HttpPost httpPost, HttpReadResult result) throws ConnectionException;
+    HttpResponse httpApacheGetResponse(HttpClient client, HttpGet httpGet) throws IOException;
     void httpApacheSetAuthorization(HttpGet httpGet) throws IOException;
+    long getOriginId();
     SslModeEnum getSslMode();
 }
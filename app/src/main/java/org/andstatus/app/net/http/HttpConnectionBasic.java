@@ -48,28 +48,30 @@ public class HttpConnectionBasic extends HttpConnection implements HttpConnectio
     }
 
     @Override
-    public void httpApachePostRequest(HttpPost postMethod, HttpReadResult result) throws ConnectionException {
+    public void httpApachePostRequest(HttpClient client, HttpPost postMethod, HttpReadResult result)
+            throws ConnectionException {
+        HttpResponse httpResponse = null;
         try {
-            HttpClient client = HttpConnectionApacheCommon.getHttpClient(data.getSslMode());
             postMethod.setHeader("User-Agent", HttpConnection.USER_AGENT);
             if (getCredentialsPresent()) {
                 postMethod.addHeader("Authorization", "Basic " + getCredentials());
             }
-            HttpResponse httpResponse = client.execute(postMethod);
+            httpResponse = client.execute(postMethod);
             StatusLine statusLine = httpResponse.getStatusLine();
             result.statusLine = statusLine.toString();
             result.setStatusCode(statusLine.getStatusCode());
             result.strResponse = HttpConnectionApacheCommon.readHttpResponseToString(httpResponse);
         } catch (Exception e) {
             result.setException(e);
-        } finally {
             postMethod.abort();
+        } finally {
+            // The response is read fully, so closing it returns the connection to the pool
+            HttpConnectionApacheCommon.closeResponse(httpResponse);
         }
     }
 
     @Override
-    public HttpResponse httpApacheGetResponse(HttpGet httpGet) throws IOException {
-        HttpClient client = HttpConnectionApacheCommon.getHttpClient(data.getSslMode());
+    public HttpResponse httpApacheGetResponse(HttpClient client, HttpGet httpGet) throws IOException {
         return client.execute(httpGet);
     }
 
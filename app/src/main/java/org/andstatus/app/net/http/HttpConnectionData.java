@@ -98,6 +98,10 @@ public class HttpConnectionData {
         return accountName.getOrigin().useLegacyHttpProtocol();
     }
 
+    public long getOriginId() {
+        return accountName.getOrigin().getId();
+    }
+
     public SslModeEnum getSslMode() {
         return accountName.getOrigin().getSslMode();
     }
@@ -127,6 +127,13 @@ public class HttpConnectionOAuth2JavaNet extends HttpConnectionOAuthJavaNet {
         return out.toByteArray();
     }
 
+    private static String getHeaderValue(Response response, String name) {
+        for (Map.Entry<String, String> entry : response.getHeaders().entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey())) return entry.getValue();
+        }
+        return "";
+    }
+
     @Override
     protected void getRequest(HttpReadResult result) throws ConnectionException {
         String method = "getRequest; ";
@@ -142,14 +149,19 @@ public class HttpConnectionOAuth2JavaNet extends HttpConnectionOAuthJavaNet {
                 if (result.authenticate) {
                     signRequest(request, service, redirected);
                 }
+                for (Map.Entry<String, String> header : result.getConditionalHeaders().entrySet()) {
+                    request.addHeader(header.getKey(), header.getValue());
+                }
                 Response response = service.execute(request);
                 result.setStatusCode(response.getCode());
                 switch(result.getStatusCode()) {
                     case OK:
+                        result.setResponseValidators(getHeaderValue(response, "ETag"),
+                                getHeaderValue(response, "Last-Modified"));
                         if (result.fileResult != null) {
                             FileUtils.readStreamToFile(response.getStream(), result.fileResult);
                         } else {
-                            result.strResponse = HttpConnectionUtils.readStreamToString(response.getStream());
+                            result.readStream(response.getStream());
                         }
                         stop = true;
                         break;
@@ -21,6 +21,7 @@ import org.andstatus.app.net.social.Connection.ApiRoutineEnum;
 import java.io.IOException;
 
 import cz.msebera.android.httpclient.HttpResponse;
+import cz.msebera.android.httpclient.client.HttpClient;
 import cz.msebera.android.httpclient.client.methods.HttpGet;
 import cz.msebera.android.httpclient.client.methods.HttpPost;
 import cz.msebera.android.httpclient.impl.client.BasicResponseHandler;
@@ -31,6 +32,7 @@ import oauth.signpost.commonshttp.CommonsHttpOAuthProvider;
 import oauth.signpost.exception.OAuthCommunicationException;
 import oauth.signpost.exception.OAuthExpectationFailedException;
 import oauth.signpost.exception.OAuthMessageSignerException;
+import oauth.signpost.http.HttpRequest;
 
 public class HttpConnectionOAuthApache extends HttpConnectionOAuth implements HttpConnectionApacheSpecific {
 
@@ -42,10 +44,8 @@ public class HttpConnectionOAuthApache extends HttpConnectionOAuth implements Ht
     @Override
     public OAuthProvider getProvider() throws ConnectionException {
         CommonsHttpOAuthProvider provider = null;
-        provider = new CommonsHttpOAuthProvider(getApiUrl(ApiRoutineEnum.OAUTH_REQUEST_TOKEN),
+        provider = new PooledClientOAuthProvider(this, getApiUrl(ApiRoutineEnum.OAUTH_REQUEST_TOKEN),
                 getApiUrl(ApiRoutineEnum.OAUTH_ACCESS_TOKEN), getApiUrl(ApiRoutineEnum.OAUTH_AUTHORIZE));
-
-        provider.setHttpClient(HttpConnectionApacheCommon.getHttpClient(data.getSslMode()));
         provider.setOAuth10a(true);
         return provider;
     }
@@ -66,14 +66,14 @@ public class HttpConnectionOAuthApache extends HttpConnectionOAuth implements Ht
     }
     
     @Override
-    public void httpApachePostRequest(HttpPost post, HttpReadResult result) throws ConnectionException {
+    public void httpApachePostRequest(HttpClient client, HttpPost post, HttpReadResult result)
+            throws ConnectionException {
         try {
             // TODO: Redo like for get request
             if (result.authenticate) {
                 signRequest(post);
             }
-            result.strResponse = HttpConnectionApacheCommon.getHttpClient(data.getSslMode()).execute(
-                    post, new BasicResponseHandler());
+            result.strResponse = client.execute(post, new BasicResponseHandler());
         } catch (Exception e) {
             // We don't catch other exceptions because in fact it's vary difficult to tell
             // what was a real cause of it. So let's make code clearer.
@@ -82,8 +82,8 @@ public class HttpConnectionOAuthApache extends HttpConnectionOAuth implements Ht
     }
 
     @Override
-    public HttpResponse httpApacheGetResponse(HttpGet httpGet) throws IOException {
-        return HttpConnectionApacheCommon.getHttpClient(data.getSslMode()).execute(httpGet);
+    public HttpResponse httpApacheGetResponse(HttpClient client, HttpGet httpGet) throws IOException {
+        return client.execute(httpGet);
     }
 
     private void signRequest(Object httpGetOrPost) throws IOException {
@@ -106,4 +106,42 @@ public class HttpConnectionOAuthApache extends HttpConnectionOAuth implements Ht
     protected void getRequest(HttpReadResult result) throws ConnectionException {
         new HttpConnectionApacheCommon(this).getRequest(result);
     }
+
+    /** The provider may live long, so it leases a pooled client for each token request only */
+    private static class PooledClientOAuthProvider extends CommonsHttpOAuthProvider {
+        private final transient HttpConnectionApacheSpecific specific;
+        private transient HttpClientPool.Lease lease = null;
+
+        PooledClientOAuthProvider(HttpConnectionApacheSpecific specific, String requestTokenEndpointUrl,
+                                  String accessTokenEndpointUrl, String authorizationWebsiteUrl) {
+            super(requestTokenEndpointUrl, accessTokenEndpointUrl, authorizationWebsiteUrl);
+            this.specific = specific;
+        }
+
+        @Override
+        protected oauth.signpost.http.HttpResponse sendRequest(HttpRequest request) throws Exception {
+            releaseClient();
+            lease = HttpConnectionApacheCommon.acquireHttpClient(specific);
+            setHttpClient(lease.client);
+            return super.sendRequest(request);
+        }
+
+        /** Called by the provider after each request, even a failed one */
+        @Override
+        protected void closeConnection(HttpRequest request, oauth.signpost.http.HttpResponse response)
+                throws Exception {
+            try {
+                super.closeConnection(request, response);
+            } finally {
+                releaseClient();
+            }
+        }
+
+        private void releaseClient() {
+            if (lease != null) {
+                lease.close();
+                lease = null;
+            }
+        }
+    }
 }
@@ -137,7 +137,7 @@ public class HttpConnectionOAuthJavaNet extends HttpConnectionOAuth {
             result.setStatusCode(conn.getResponseCode());
             switch(result.getStatusCode()) {
                 case OK:
-                    result.strResponse = HttpConnectionUtils.readStreamToString(conn.getInputStream());
+                    result.readStream(conn.getInputStream());
                     break;
                 default:
                     result.strResponse = HttpConnectionUtils.readStreamToString(conn.getErrorStream());
@@ -189,6 +189,15 @@ public class HttpConnectionOAuthJavaNet extends HttpConnectionOAuth {
         return consumer;
     }
 
+    /** Reads the rest of the response, so the connection may be reused by the next request */
+    private static void releaseConnection(HttpURLConnection conn) {
+        try {
+            HttpConnectionUtils.readStreamToString(conn.getInputStream());
+        } catch (IOException e) {
+            conn.disconnect();
+        }
+    }
+
     protected void getRequest(HttpReadResult result) throws ConnectionException {
         String method = "getRequest; ";
         StringBuilder logBuilder = new StringBuilder(method);
@@ -204,14 +213,19 @@ public class HttpConnectionOAuthJavaNet extends HttpConnectionOAuth {
                 if (result.authenticate) {
                     signConnection(conn, consumer, redirected);
                 }
+                for (Entry<String, String> header : result.getConditionalHeaders().entrySet()) {
+                    conn.setRequestProperty(header.getKey(), header.getValue());
+                }
                 conn.connect();
                 result.setStatusCode(conn.getResponseCode());
                 switch(result.getStatusCode()) {
                     case OK:
+                        result.setResponseValidators(conn.getHeaderField("ETag"),
+                                conn.getHeaderField("Last-Modified"));
                         if (result.fileResult != null) {
                             FileUtils.readStreamToFile(conn.getInputStream(), result.fileResult);
                         } else {
-                            result.strResponse = HttpConnectionUtils.readStreamToString(conn.getInputStream());
+                            result.readStream(conn.getInputStream());
                         }
                         stop = true;
                         break;
@@ -236,7 +250,7 @@ public class HttpConnectionOAuthJavaNet extends HttpConnectionOAuth {
                                 }
                                 MyLog.v(this, message::toString);
                             }
-                            conn.disconnect();
+                            releaseConnection(conn);
                         }
                         break;
                     default:
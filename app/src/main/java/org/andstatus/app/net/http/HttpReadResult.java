@@ -14,12 +14,15 @@
 
 package org.andstatus.app.net.http;
 
+import android.support.annotation.NonNull;
 import android.text.TextUtils;
 import android.text.format.Formatter;
 
 import org.andstatus.app.context.MyContextHolder;
 import org.andstatus.app.context.MyPreferences;
+import org.andstatus.app.data.DbUtils;
 import org.andstatus.app.net.http.ConnectionException.StatusCode;
+import org.andstatus.app.support.java.util.function.ConsumerWithException;
 import org.andstatus.app.util.I18n;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.StringUtils;
@@ -29,9 +32,16 @@ import org.json.JSONObject;
 import org.json.JSONTokener;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.Map;
 
 public class HttpReadResult {
     private final String urlInitial;
@@ -50,6 +60,12 @@ public class HttpReadResult {
     private StatusCode statusCode = StatusCode.UNKNOWN;
 
     boolean redirected = false;
+    private JsonItemsReader itemsReader = null;
+    private boolean itemsRead = false;
+    private ConnectionException itemsException = null;
+    private HttpValidators validators = HttpValidators.EMPTY;
+    private String eTag = "";
+    private String lastModified = "";
 
     public HttpReadResult(String urlIn) throws ConnectionException {
         this (urlIn, null);
@@ -116,10 +132,106 @@ public class HttpReadResult {
                 + (redirected ? "; redirected from:'" + urlInitial + "'" : "")
                 + ( hasFormParams() ? "; posted:'" + formParams.toString() + "'" : "")
                 + (StringUtils.isEmpty(strResponse) ? "" : "; response:'" + I18n.trimTextAt(strResponse, 40) + "'")
+                + (itemsRead && itemsReader != null ? "; items read:" + itemsReader.getItemsCount() : "")
                 + (exception == null ? "" : "; \nexception: " + exception.toString())
                 + (fileResult == null ? "" : "; saved to file");
     }
     
+    HttpReadResult setItemConsumer(String arrayKey,
+                                   @NonNull ConsumerWithException<JSONObject, ConnectionException> itemConsumer) {
+        itemsReader = new JsonItemsReader(arrayKey, itemConsumer);
+        return this;
+    }
+
+    /**
+     * Makes the request conditional, using validators of the previous response.
+     * The response body is stored with the validators and is reused on "304 Not Modified",
+     * so the caller gets the same response, even if it failed to process it the previous time
+     */
+    HttpReadResult setValidators(@NonNull HttpValidators validators) {
+        this.validators = validators;
+        return this;
+    }
+
+    /** Headers to add to the request */
+    @NonNull
+    Map<String, String> getConditionalHeaders() {
+        if (fileResult != null || !validators.hasBody()) return Collections.emptyMap();
+        return validators.getRequestHeaders();
+    }
+
+    /** Validators of a successful response */
+    void setResponseValidators(String eTag, String lastModified) {
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+    }
+
+    boolean isNotModified() {
+        return intStatusCode == 304;
+    }
+
+    /** On "304 Not Modified" takes the stored response */
+    void onNotModified() {
+        if (validators == HttpValidators.EMPTY || !isStatusOk() || !isNotModified()) return;
+
+        appendToLog("not modified");
+        strResponse = validators.getBody();
+        validators.onNotModified();
+    }
+
+    /** Stores validators of the successfully processed response */
+    void storeValidators() {
+        if (validators == HttpValidators.EMPTY || !isStatusOk() || isNotModified()) return;
+
+        validators.onResponse(eTag, lastModified, strResponse);
+    }
+
+    /**
+     * Reads a successful response body. If an item consumer is set, items of the response array
+     * are parsed and consumed right from the stream, without keeping the whole response in memory
+     */
+    void readStream(InputStream in) throws IOException {
+        // The whole response is kept for network level logging, and its items are read from it later
+        if (itemsReader == null || MyLog.isLogNetworkLevelMessages()) {
+            strResponse = HttpConnectionUtils.readStreamToString(in);
+            return;
+        }
+        itemsRead = true;
+        try (Reader reader = new InputStreamReader(in, HttpConnectionUtils.UTF_8)) {
+            itemsReader.read(reader);
+        } catch (JSONException e) {
+            itemsException = getItemsReadException("readStream; ", e, null);
+        } catch (ConnectionException e) {
+            itemsException = e;
+        } finally {
+            DbUtils.closeSilently(in);
+        }
+    }
+
+    /** Passes items of the response array to the item consumer, unless they were consumed while reading the stream */
+    void readItems() throws ConnectionException {
+        if (itemsReader == null) return;
+        if (itemsException != null) throw itemsException;
+        if (itemsRead) return;
+
+        itemsRead = true;
+        try {
+            itemsReader.read(new StringReader(strResponse));
+        } catch (IOException | JSONException e) {
+            throw getItemsReadException("readItems; ", e, strResponse);
+        }
+    }
+
+    /** An error object may be returned instead of the array of items, even with the OK status */
+    private ConnectionException getItemsReadException(String method, Exception e, String response) {
+        String error = itemsReader.getError();
+        if (StringUtils.isEmpty(error)) {
+            return ConnectionException.loggedJsonException(this, method + toString(), e, response);
+        }
+        appendToLog("error:" + error);
+        return getExceptionFromError(error);
+    }
+
     JSONObject getJsonObject() throws ConnectionException {
         return innerGetJsonObject(strResponse);
     }
@@ -187,20 +299,22 @@ public class HttpReadResult {
     }
  
     public ConnectionException getExceptionFromJsonErrorResponse() {
-        StatusCode statusCode = this.statusCode;
-        ConnectionException ce = null;
         String error = "?";
         try {
             JSONObject jsonError = new JSONObject(strResponse);
             error = jsonError.optString("error", error);
-            if (statusCode == StatusCode.UNKNOWN && error.contains("not found")) {
-                statusCode = StatusCode.NOT_FOUND;
-            }
-            ce = new ConnectionException(statusCode, toString() + "; error='" + error + "'");
         } catch (JSONException e) {
-            ce = ConnectionException.fromStatusCodeAndThrowable(statusCode, toString() + "; error='" + error + "'", e);
+            return ConnectionException.fromStatusCodeAndThrowable(statusCode, toString() + "; error='" + error + "'", e);
+        }
+        return getExceptionFromError(error);
+    }
+
+    private ConnectionException getExceptionFromError(@NonNull String error) {
+        StatusCode statusCode = this.statusCode;
+        if ((statusCode == StatusCode.UNKNOWN || statusCode == StatusCode.OK) && error.contains("not found")) {
+            statusCode = StatusCode.NOT_FOUND;
         }
-        return ce;
+        return new ConnectionException(statusCode, toString() + "; error='" + error + "'");
     }
 
     public void setException(Exception e) {
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.net.http;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.util.FileUtils;
+import org.andstatus.app.util.MyLog;
+import org.andstatus.app.util.StringUtils;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persistent validators ("ETag" and "Last-Modified" headers) of a GET response, stored by account and URL,
+ * so a repeated request is conditional, and an unchanged resource comes back as "304 Not Modified".
+ * Small response bodies are stored with their validators to be reused on "304 Not Modified".
+ * The store is in the application cache directory, which may be cleared by the system at any time
+ * @author yvolk@yurivolkov.com
+ */
+class HttpValidators {
+    private static final String TAG = HttpValidators.class.getSimpleName();
+    static final String DIRECTORY = "http_validators";
+    static final int MAX_BODY_LENGTH = 64 * 1024;
+    static final int MAX_ENTRIES = 300;
+    static final HttpValidators EMPTY = new HttpValidators("");
+
+    private static final String KEY_KEY = "key";
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_LAST_MODIFIED = "last_modified";
+    private static final String KEY_BODY = "body";
+
+    private final String key;
+    private String eTag = "";
+    private String lastModified = "";
+    /** null if the body is not stored */
+    private String body = null;
+
+    private HttpValidators(@NonNull String key) {
+        this.key = key;
+    }
+
+    @NonNull
+    static HttpValidators load(String accountName, String url) {
+        String key = accountName + " " + url;
+        HttpValidators validators = new HttpValidators(key);
+        File file = fileOf(key);
+        if (file == null || !file.exists()) return validators;
+
+        try {
+            JSONObject jso = FileUtils.getJSONObject(file);
+            if (key.equals(jso.optString(KEY_KEY))) {
+                validators.eTag = jso.optString(KEY_ETAG);
+                validators.lastModified = jso.optString(KEY_LAST_MODIFIED);
+                validators.body = jso.has(KEY_BODY) ? jso.optString(KEY_BODY) : null;
+            }
+        } catch (IOException e) {
+            MyLog.d(TAG, "Failed to load validators of " + url, e);
+        }
+        return validators;
+    }
+
+    boolean isEmpty() {
+        return StringUtils.isEmpty(eTag) && StringUtils.isEmpty(lastModified);
+    }
+
+    boolean hasBody() {
+        return body != null;
+    }
+
+    String getBody() {
+        return body == null ? "" : body;
+    }
+
+    /** Headers, which make the request conditional */
+    @NonNull
+    Map<String, String> getRequestHeaders() {
+        if (isEmpty()) return Collections.emptyMap();
+
+        Map<String, String> headers = new HashMap<>();
+        if (StringUtils.nonEmpty(eTag)) headers.put("If-None-Match", eTag);
+        if (StringUtils.nonEmpty(lastModified)) headers.put("If-Modified-Since", lastModified);
+        return headers;
+    }
+
+    /**
+     * Stores validators of a successful response with its body, or deletes stored ones,
+     * if the response has no validators, or its body is absent or too long to be stored
+     */
+    void onResponse(String eTag, String lastModified, String body) {
+        this.eTag = eTag == null ? "" : eTag;
+        this.lastModified = lastModified == null ? "" : lastModified;
+        this.body = body != null && body.length() <= MAX_BODY_LENGTH ? body : null;
+        File file = fileOf(key);
+        if (file == null) return;
+
+        if (isEmpty() || this.body == null) {
+            if (file.exists() && !file.delete()) {
+                MyLog.d(TAG, "Failed to delete " + file.getAbsolutePath());
+            }
+            return;
+        }
+        save(file);
+    }
+
+    /** The stored response is still valid: mark it as recently used */
+    void onNotModified() {
+        File file = fileOf(key);
+        if (file != null && file.exists() && !file.setLastModified(System.currentTimeMillis())) {
+            MyLog.v(TAG, () -> "Failed to touch " + file.getAbsolutePath());
+        }
+    }
+
+    /** Each save writes its own temporary file, so concurrent saves of the same entry don't mix */
+    private void save(@NonNull File file) {
+        File tmpFile = null;
+        try {
+            JSONObject jso = new JSONObject();
+            jso.put(KEY_KEY, key);
+            jso.put(KEY_ETAG, eTag);
+            jso.put(KEY_LAST_MODIFIED, lastModified);
+            if (body != null) jso.put(KEY_BODY, body);
+            tmpFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            FileUtils.readStreamToFile(new ByteArrayInputStream(jso.toString().getBytes(Charset.forName("UTF-8"))),
+                    tmpFile);
+            if (!tmpFile.renameTo(file)) {
+                MyLog.d(TAG, "Failed to rename " + tmpFile.getAbsolutePath());
+            }
+            prune(file.getParentFile());
+        } catch (JSONException | IOException e) {
+            MyLog.d(TAG, "Failed to save validators " + this, e);
+        } finally {
+            if (tmpFile != null && tmpFile.exists() && !tmpFile.delete()) {
+                MyLog.v(TAG, "Failed to delete " + tmpFile.getAbsolutePath());
+            }
+        }
+    }
+
+    /** Deletes least recently used entries, if there are too many of them */
+    private static void prune(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null || files.length <= MAX_ENTRIES) return;
+
+        Arrays.sort(files, (f1, f2) -> Long.compare(f1.lastModified(), f2.lastModified()));
+        for (int index = 0; index < files.length - MAX_ENTRIES * 3 / 4; index++) {
+            if (!files[index].delete()) {
+                MyLog.v(TAG, "Failed to delete " + files[index].getAbsolutePath());
+            }
+        }
+    }
+
+    private static File fileOf(String key) {
+        if (StringUtils.isEmpty(key)) return null;
+
+        Context context = MyContextHolder.get().context();
+        if (context == null || context.getCacheDir() == null) return null;
+        File dir = new File(context.getCacheDir(), DIRECTORY);
+        if (!dir.exists() && !dir.mkdirs()) return null;
+        return new File(dir, Integer.toHexString(key.hashCode()) + "_" + key.length() + ".json");
+    }
+
+    @Override
+    public String toString() {
+        return "HttpValidators{" + key
+                + (StringUtils.nonEmpty(eTag) ? ", etag:" + eTag : "")
+                + (StringUtils.nonEmpty(lastModified) ? ", lastModified:" + lastModified : "")
+                + (body == null ? "" : ", body stored")
+                + "}";
+    }
+}
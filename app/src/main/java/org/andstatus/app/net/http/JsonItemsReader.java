@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.net.http;
+
+import android.support.annotation.NonNull;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import org.andstatus.app.support.java.util.function.ConsumerWithException;
+import org.andstatus.app.util.StringUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads items of a JSON array from a response stream one by one, so only one item
+ * is kept in memory as a {@link JSONObject} tree at a time, and each item is passed to a consumer
+ * while the rest of the response is still being downloaded.
+ * The array is either the root value, or a value of the root object under the "arrayKey"
+ * or, if there is no such key, the first array found in the root object,
+ * see {@link HttpReadResult#getJsonArray(String)}.
+ * A root object without an array is an error response, even if its status is OK, see {@link #getError()}
+ * @author yvolk@yurivolkov.com
+ */
+class JsonItemsReader {
+    private final String arrayKey;
+    private final ConsumerWithException<JSONObject, ConnectionException> itemConsumer;
+    private int itemsCount = 0;
+    private String error = "";
+
+    JsonItemsReader(String arrayKey, @NonNull ConsumerWithException<JSONObject, ConnectionException> itemConsumer) {
+        this.arrayKey = arrayKey;
+        this.itemConsumer = itemConsumer;
+    }
+
+    int getItemsCount() {
+        return itemsCount;
+    }
+
+    /** The "error" of the root object, which has no array of items */
+    @NonNull
+    String getError() {
+        return error;
+    }
+
+    void read(@NonNull Reader in) throws IOException, JSONException, ConnectionException {
+        BufferedReader bufferedReader = new BufferedReader(in);
+        bufferedReader.mark(1);
+        if (bufferedReader.read() < 0) return;
+        bufferedReader.reset();
+
+        JsonReader reader = new JsonReader(bufferedReader);
+        reader.setLenient(true);
+        switch (reader.peek()) {
+            case BEGIN_ARRAY:
+                readItems(reader);
+                break;
+            case BEGIN_OBJECT:
+                readObjectWithItems(reader);
+                break;
+            default:
+                throw new JSONException("Expected an array or an object, found " + reader.peek());
+        }
+    }
+
+    private void readObjectWithItems(JsonReader reader) throws IOException, JSONException, ConnectionException {
+        boolean found = false;
+        JSONArray otherArray = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("error") && reader.peek() == JsonToken.STRING) {
+                error = reader.nextString();
+            } else if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                reader.skipValue();
+            } else if (!found && name.equals(arrayKey)) {
+                readItems(reader);
+                found = true;
+                otherArray = null;
+            } else if (!found && otherArray == null) {
+                otherArray = (JSONArray) readValue(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (found) {
+            error = "";
+            return;
+        }
+        if (otherArray == null) {
+            throw new JSONException("No array in the response object"
+                    + (StringUtils.isEmpty(error) ? "" : ", error:'" + error + "'"));
+        }
+        error = "";
+        for (int index = 0; index < otherArray.length(); index++) {
+            acceptItem(otherArray.get(index));
+        }
+    }
+
+    private void readItems(JsonReader reader) throws IOException, JSONException, ConnectionException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            acceptItem(readValue(reader));
+        }
+        reader.endArray();
+    }
+
+    private void acceptItem(Object item) throws JSONException, ConnectionException {
+        if (!(item instanceof JSONObject)) {
+            throw new JSONException("Array item " + itemsCount + " is not an object: " + item);
+        }
+        itemsCount++;
+        itemConsumer.accept((JSONObject) item);
+    }
+
+    static Object readValue(JsonReader reader) throws IOException, JSONException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                JSONObject jso = new JSONObject();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    jso.put(reader.nextName(), readValue(reader));
+                }
+                reader.endObject();
+                return jso;
+            case BEGIN_ARRAY:
+                JSONArray jsa = new JSONArray();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    jsa.put(readValue(reader));
+                }
+                reader.endArray();
+                return jsa;
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                return toNumber(reader.nextString());
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            default:
+                throw new JSONException("Unexpected token " + reader.peek());
+        }
+    }
+
+    /** The same types, as {@link org.json.JSONTokener} produces for numbers */
+    private static Object toNumber(String literal) {
+        if (literal.indexOf('.') < 0 && literal.indexOf('e') < 0 && literal.indexOf('E') < 0) {
+            try {
+                long longValue = Long.parseLong(literal);
+                if (longValue <= Integer.MAX_VALUE && longValue >= Integer.MIN_VALUE) {
+                    return (int) longValue;
+                }
+                return longValue;
+            } catch (NumberFormatException e) {
+                // Too large for a long, handled below
+            }
+        }
+        try {
+            return Double.valueOf(literal);
+        } catch (NumberFormatException e) {
+            return literal;
+        }
+    }
+}
@@ -20,7 +20,9 @@ import org.andstatus.app.context.MyPreferences;
 
 import cz.msebera.android.httpclient.HttpVersion;
 import cz.msebera.android.httpclient.client.HttpClient;
-import cz.msebera.android.httpclient.conn.ClientConnectionManager;
+import cz.msebera.android.httpclient.client.params.ClientPNames;
+import cz.msebera.android.httpclient.client.protocol.RequestAcceptEncoding;
+import cz.msebera.android.httpclient.client.protocol.ResponseContentEncoding;
 import cz.msebera.android.httpclient.conn.scheme.PlainSocketFactory;
 import cz.msebera.android.httpclient.conn.scheme.Scheme;
 import cz.msebera.android.httpclient.conn.scheme.SchemeRegistry;
@@ -39,7 +41,7 @@ public class MisconfiguredSslHttpClientFactory {
         // Empty
     }
     
-    static HttpClient getHttpClient() {
+    static HttpClient getHttpClient(int maxPerRoute) {
         SchemeRegistry schemeRegistry = new SchemeRegistry();
         schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
         
@@ -50,12 +52,20 @@ public class MisconfiguredSslHttpClientFactory {
         schemeRegistry.register(new Scheme("https", socketFactory, 443));
 
         HttpParams params = getHttpParams();        
-        ClientConnectionManager clientConnectionManager = new ThreadSafeClientConnManager(params, schemeRegistry);
-        HttpClient client = new DefaultHttpClient(clientConnectionManager, params);
+        ThreadSafeClientConnManager clientConnectionManager = new ThreadSafeClientConnManager(params, schemeRegistry);
+        clientConnectionManager.setMaxTotal(2 * maxPerRoute);
+        clientConnectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        DefaultHttpClient client = new DefaultHttpClient(clientConnectionManager, params);
+        // Compressed responses, like HttpClientBuilder does by default
+        client.addRequestInterceptor(new RequestAcceptEncoding());
+        client.addResponseInterceptor(new ResponseContentEncoding());
         client.getParams()
                 .setIntParameter(CoreConnectionPNames.CONNECTION_TIMEOUT,
                         MyPreferences.getConnectionTimeoutMs())
                 .setIntParameter(CoreConnectionPNames.SO_TIMEOUT,
+                        MyPreferences.getConnectionTimeoutMs())
+                // A request fails instead of waiting forever, when all pooled connections are leased
+                .setLongParameter(ClientPNames.CONN_MANAGER_TIMEOUT,
                         MyPreferences.getConnectionTimeoutMs());
         return client;
     }
@@ -18,6 +18,8 @@ package org.andstatus.app.net.http;
 
 import org.andstatus.app.context.MyPreferences;
 
+import java.util.concurrent.TimeUnit;
+
 import cz.msebera.android.httpclient.client.HttpClient;
 import cz.msebera.android.httpclient.client.config.RequestConfig;
 import cz.msebera.android.httpclient.config.Registry;
@@ -36,28 +38,34 @@ public class MyHttpClientFactory {
         // Empty
     }
     
-    public static HttpClient getHttpClient(SslModeEnum sslMode) {
+    /** The client keeps alive up to maxPerRoute connections to each host, see {@link HttpClientPool} */
+    static HttpClient getHttpClient(SslModeEnum sslMode, int maxPerRoute) {
         Registry<ConnectionSocketFactory> registry = 
                 RegistryBuilder.<ConnectionSocketFactory> create()
                     .register("http", PlainConnectionSocketFactory.getSocketFactory())
                     .register("https", TlsSniSocketFactory.getInstance(sslMode))
                     .build();
         PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(registry);
-        // max.  3 connections in total
-        connectionManager.setMaxTotal(3);
-        // max.  2 connections per host
-        connectionManager.setDefaultMaxPerRoute(2);
+        // Media files may be on other hosts than the origin itself
+        connectionManager.setMaxTotal(2 * maxPerRoute);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        // Kept alive connections may be closed by a server, so check them before reuse
+        connectionManager.setValidateAfterInactivity(2000);
 
         // use request defaults from AndroidHttpClient
         RequestConfig requestConfig = RequestConfig.copy(RequestConfig.DEFAULT)
                 .setConnectTimeout(MyPreferences.getConnectionTimeoutMs())
                 .setSocketTimeout(2*MyPreferences.getConnectionTimeoutMs())
+                // A request fails instead of waiting forever, when all pooled connections are leased
+                .setConnectionRequestTimeout(MyPreferences.getConnectionTimeoutMs())
                 .setStaleConnectionCheckEnabled(false)
                 .build();
         
         HttpClientBuilder builder = HttpClients.custom()
                 .useSystemProperties()
                 .setConnectionManager(connectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(HttpClientPool.IDLE_CONNECTION_SECONDS, TimeUnit.SECONDS)
                 .setDefaultRequestConfig(requestConfig)
                 /* TODO maybe:  
                 .setRetryHandler(DavHttpRequestRetryHandler.INSTANCE)
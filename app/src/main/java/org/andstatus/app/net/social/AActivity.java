@@ -370,9 +370,17 @@ public class AActivity extends AObject {
         if (updatedDate > 0) calculateInteraction(myContext);
         if (getId() == 0) {
             id = DbUtils.addRowWithRetry(myContext, ActivityTable.TABLE_NAME, toContentValues(), 3);
+            if (!timelinePosition.isEmpty()) {
+                myContext.oidCache().put(OidEnum.ACTIVITY_OID, accountActor.origin.getId(),
+                        timelinePosition.getPosition(), id);
+            }
             MyLog.v(this, () -> "Added " + this);
         } else {
             DbUtils.updateRowWithRetry(myContext, ActivityTable.TABLE_NAME, getId(), toContentValues(), 3);
+            if (!timelinePosition.isEmpty()) {
+                myContext.oidCache().update(OidEnum.ACTIVITY_OID, accountActor.origin.getId(),
+                        timelinePosition.getPosition(), id);
+            }
             MyLog.v(this, () -> "Updated " + this);
         }
         afterSave(myContext);
@@ -116,7 +116,7 @@ public class Actor implements Comparable<Actor>, IsEmpty {
     public static Actor load(@NonNull MyContext myContext, long actorId, boolean reloadFirst, Supplier<Actor> supplier) {
         if (actorId == 0) return supplier.get();
 
-        Actor cached = myContext.users().actors.getOrDefault(actorId, Actor.EMPTY);
+        Actor cached = myContext.users().getCachedActor(actorId);
         return MyAsyncTask.nonUiThread() && (cached.isPartiallyDefined() || reloadFirst)
                 ? loadFromDatabase(myContext, actorId, supplier).betterToCache(cached)
                 : cached;
@@ -163,7 +163,7 @@ public class Actor implements Comparable<Actor>, IsEmpty {
 
         actor.user = User.fromCursor(myContext, cursor);
         actor.avatarFile = AvatarFile.fromCursor(actor, cursor);
-        Actor cachedActor = myContext.users().actors.getOrDefault(actor.actorId, Actor.EMPTY);
+        Actor cachedActor = myContext.users().getCachedActor(actor.actorId);
         if (actor.isBetterToCacheThan(cachedActor)) {
             myContext.users().updateCache(actor);
             return actor;
@@ -199,8 +199,7 @@ public class ConnectionMastodon extends ConnectionTwitterLike {
         Uri.Builder builder = sUri.buildUpon();
         appendPositionParameters(builder, youngestPosition, oldestPosition);
         builder.appendQueryParameter("limit", strFixedDownloadLimit(limit, apiRoutine));
-        JSONArray jArr = http.getRequestAsArray(builder.build().toString());
-        return jArrToTimeline(jArr, apiRoutine, url);
+        return getTimelineItems(builder.build().toString(), apiRoutine, url);
     }
 
     @NonNull
@@ -217,8 +216,7 @@ public class ConnectionMastodon extends ConnectionTwitterLike {
         builder.appendQueryParameter("q", searchQuery);
         builder.appendQueryParameter("resolve", "true");
         builder.appendQueryParameter("limit", strFixedDownloadLimit(limit, apiRoutine));
-        JSONArray jArr = http.getRequestAsArray(builder.build().toString());
-        return jArrToActors(jArr, apiRoutine, url);
+        return getActorItems(builder.build().toString(), apiRoutine, url);
     }
 
     protected String getApiPathWithTag(ApiRoutineEnum routineEnum, String tag) throws ConnectionException {
@@ -480,7 +478,7 @@ public class ConnectionMastodon extends ConnectionTwitterLike {
         Uri.Builder builder = sUri.buildUpon();
         int limit = 400;
         builder.appendQueryParameter("limit", strFixedDownloadLimit(limit, apiRoutine));
-        return jArrToActors(http.getRequestAsArray(builder.build().toString()), apiRoutine, url);
+        return getActorItems(builder.build().toString(), apiRoutine, url);
     }
 
 }
@@ -186,7 +186,7 @@ public class ConnectionTheTwitter extends ConnectionTwitterLike {
             builder.appendQueryParameter("q", searchQuery);
         }
         builder.appendQueryParameter("count", strFixedDownloadLimit(limit, apiRoutine));
-        return jArrToActors(http.getRequestAsArray(builder.build().toString()), apiRoutine, url);
+        return getActorItems(builder.build().toString(), apiRoutine, url);
     }
 
     private static final String ATTACHMENTS_FIELD_NAME = "media";
@@ -241,7 +241,7 @@ public class ConnectionTheTwitter extends ConnectionTwitterLike {
             builder.appendQueryParameter("user_id", actorId);
         }
         builder.appendQueryParameter("count", strFixedDownloadLimit(limit, apiRoutine));
-        return jArrToActors(http.getRequestAsArray(builder.build().toString()), apiRoutine, url);
+        return getActorItems(builder.build().toString(), apiRoutine, url);
     }
 
 }
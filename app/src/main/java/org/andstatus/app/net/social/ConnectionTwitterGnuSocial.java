@@ -165,8 +165,7 @@ public class ConnectionTwitterGnuSocial extends ConnectionTwitterLike {
             return new ArrayList<>();
         } else {
             String url = getApiPathWithNoteId(ApiRoutineEnum.GET_CONVERSATION, conversationOid);
-            JSONArray jArr = http.getRequestAsArray(url);
-            return jArrToTimeline(jArr, ApiRoutineEnum.GET_CONVERSATION, url);
+            return getTimelineItems(url, ApiRoutineEnum.GET_CONVERSATION, url);
         }
     }
 
@@ -31,6 +31,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -218,8 +219,7 @@ public abstract class ConnectionTwitterLike extends Connection {
             throws ConnectionException {
         Uri.Builder builder = getTimelineUriBuilder(apiRoutine, limit, actorOid);
         appendPositionParameters(builder, youngestPosition, oldestPosition);
-        JSONArray jArr = http.getRequestAsArray(builder.build().toString());
-        return jArrToTimeline(jArr, apiRoutine, builder.build().toString());
+        return getTimelineItems(builder.build().toString(), apiRoutine, builder.build().toString());
     }
 
     @NonNull
@@ -434,8 +434,7 @@ public abstract class ConnectionTwitterLike extends Connection {
         }
         appendPositionParameters(builder, youngestPosition, oldestPosition);
         builder.appendQueryParameter("count", strFixedDownloadLimit(limit, apiRoutine));
-        JSONArray jArr = http.getRequestAsArray(builder.build().toString());
-        return jArrToTimeline(jArr, apiRoutine, url);
+        return getTimelineItems(builder.build().toString(), apiRoutine, url);
     }
 
     void appendPositionParameters(Uri.Builder builder, TimelinePosition youngest, TimelinePosition oldest) {
@@ -454,6 +453,15 @@ public abstract class ConnectionTwitterLike extends Connection {
         }
     }
 
+    /** Activities are parsed one by one while the response is being read */
+    List<AActivity> getTimelineItems(String path, ApiRoutineEnum apiRoutine, String url) throws ConnectionException {
+        List<AActivity> timeline = new ArrayList<>();
+        http.getRequestAsArray(path, jso -> timeline.add(activityFromTwitterLikeJson(jso)));
+        // Read the activities in chronological order
+        Collections.reverse(timeline);
+        return onTimelineItems(timeline, apiRoutine, url);
+    }
+
     List<AActivity> jArrToTimeline(JSONArray jArr, ApiRoutineEnum apiRoutine, String url) throws ConnectionException {
         List<AActivity> timeline = new ArrayList<>();
         if (jArr != null) {
@@ -467,6 +475,10 @@ public abstract class ConnectionTwitterLike extends Connection {
                 }
             }
         }
+        return onTimelineItems(timeline, apiRoutine, url);
+    }
+
+    private List<AActivity> onTimelineItems(List<AActivity> timeline, ApiRoutineEnum apiRoutine, String url) {
         if (apiRoutine.isNotePrivate()) {
             setNotesPrivate(timeline);
         }
@@ -482,19 +494,10 @@ public abstract class ConnectionTwitterLike extends Connection {
         }
     }
 
-    List<Actor> jArrToActors(JSONArray jArr, ApiRoutineEnum apiRoutine, String url) throws ConnectionException {
+    /** Actors are parsed one by one while the response is being read */
+    List<Actor> getActorItems(String path, ApiRoutineEnum apiRoutine, String url) throws ConnectionException {
         List<Actor> actors = new ArrayList<>();
-        if (jArr != null) {
-            for (int index = 0; index < jArr.length(); index++) {
-                try {
-                    JSONObject jso = jArr.getJSONObject(index);
-                    Actor item = actorFromJson(jso);
-                    actors.add(item);
-                } catch (JSONException e) {
-                    throw ConnectionException.loggedJsonException(this, "Parsing " + apiRoutine, e, null);
-                }
-            }
-        }
+        http.getRequestAsArray(path, jso -> actors.add(actorFromJson(jso)));
         MyLog.d(this, apiRoutine + " '" + url + "' " + actors.size() + " items");
         return actors;
     }
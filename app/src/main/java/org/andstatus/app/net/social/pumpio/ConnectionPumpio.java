@@ -50,6 +50,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -208,19 +209,8 @@ public class ConnectionPumpio extends Connection {
         Uri.Builder builder = sUri.buildUpon();
         builder.appendQueryParameter("count", strFixedDownloadLimit(limit, apiRoutine));
         String url = builder.build().toString();
-        JSONArray jArr = conu.httpConnection.getRequestAsArray(url);
         List<Actor> actors = new ArrayList<>();
-        if (jArr != null) {
-            for (int index = 0; index < jArr.length(); index++) {
-                try {
-                    JSONObject jso = jArr.getJSONObject(index);
-                    Actor item = actorFromJson(jso);
-                    actors.add(item);
-                } catch (JSONException e) {
-                    throw ConnectionException.loggedJsonException(this, "Parsing list of actors", e, null);
-                }
-            }
-        }
+        conu.httpConnection.getRequestAsArray(url, jso -> actors.add(actorFromJson(jso)));
         MyLog.d(TAG, apiRoutine + " '" + url + "' " + actors.size() + " actors");
         return actors;
     }
@@ -348,19 +338,10 @@ public class ConnectionPumpio extends Connection {
         }
         builder.appendQueryParameter("count", strFixedDownloadLimit(limit, apiRoutine));
         String url = builder.build().toString();
-        JSONArray jArr = conu.httpConnection.getRequestAsArray(url);
         List<AActivity> activities = new ArrayList<>();
-        if (jArr != null) {
-            // Read the activities in the chronological order
-            for (int index = jArr.length() - 1; index >= 0; index--) {
-                try {
-                    JSONObject jso = jArr.getJSONObject(index);
-                    activities.add(activityFromJson(jso));
-                } catch (JSONException e) {
-                    throw ConnectionException.loggedJsonException(this, "Parsing timeline", e, null);
-                }
-            }
-        }
+        conu.httpConnection.getRequestAsArray(url, jso -> activities.add(activityFromJson(jso)));
+        // Read the activities in the chronological order
+        Collections.reverse(activities);
         MyLog.d(TAG, "getTimeline '" + url + "' " + activities.size() + " notes");
         return activities;
     }
@@ -26,6 +26,7 @@ import android.widget.RelativeLayout;
 import org.andstatus.app.R;
 import org.andstatus.app.context.MyPreferences;
 import org.andstatus.app.data.DownloadStatus;
+import org.andstatus.app.data.ImageFile;
 import org.andstatus.app.graphics.IdentifiableImageView;
 import org.andstatus.app.net.social.SpanUtil;
 import org.andstatus.app.timeline.BaseTimelineAdapter;
@@ -34,8 +35,7 @@ import org.andstatus.app.util.MyStringBuilder;
 import org.andstatus.app.util.MyUrlSpan;
 import org.andstatus.app.util.SharedPreferencesUtil;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Collection;
 
 /**
  * @author yvolk@yurivolkov.com
@@ -44,7 +44,6 @@ public abstract class BaseNoteAdapter<T extends BaseNoteViewItem<T>> extends Bas
     protected final boolean showButtonsBelowNotes =
             SharedPreferencesUtil.getBoolean(MyPreferences.KEY_SHOW_BUTTONS_BELOW_NOTE, true);
     protected final NoteContextMenu contextMenu;
-    protected Set<Long> preloadedImages = new HashSet<>(100);
 
     public BaseNoteAdapter(@NonNull NoteContextMenu contextMenu, TimelineData<T> listData) {
         super(contextMenu.getMyContext(), listData);
@@ -59,9 +58,20 @@ public abstract class BaseNoteAdapter<T extends BaseNoteViewItem<T>> extends Bas
         setPosition(view, position);
         T item = getItem(position);
         populateView(view, item, position);
+        prefetchImages(position);
         return view;
     }
 
+    @Override
+    public void addImagesToPrefetch(T item, Collection<ImageFile> images) {
+        if (showAvatars) {
+            images.add(item.author.getAvatarFile());
+        }
+        if (showAttachedImages) {
+            images.add(item.getAttachedImageFile());
+        }
+    }
+
     public void populateView(ViewGroup view, T item, int position) {
         showRebloggers(view, item);
         MyUrlSpan.showText(view, R.id.note_author, item.author.getName(), false, false);
@@ -144,7 +154,6 @@ public abstract class BaseNoteAdapter<T extends BaseNoteViewItem<T>> extends Bas
         imageWrapper.setVisibility(show ? View.VISIBLE : View.GONE);
         if (!show) return;
 
-        preloadedImages.add(item.getNoteId());
         final IdentifiableImageView imageView = imageWrapper.findViewById(R.id.attached_image);
         item.getAttachedImageFile().showImage(contextMenu.getActivity(), imageView);
         setOnButtonClick(imageView, 0, NoteContextMenuItem.VIEW_IMAGE);
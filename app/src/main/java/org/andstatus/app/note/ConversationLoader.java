@@ -42,8 +42,12 @@ import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.StringUtils;
 
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -66,9 +70,12 @@ public abstract class ConversationLoader<T extends ConversationItem<T>> extends
     private final T tFactory;
 
     final Map<Long, T> cachedItems = new ConcurrentHashMap<>();
+    /** Cached items by the id of the note, they reply to */
+    private final Map<Long, List<T>> cachedReplies = new HashMap<>();
     LoadableListActivity.ProgressPublisher mProgress;
 
-    final List<Long> idsOfItemsToFind = new ArrayList<>();
+    final Set<Long> idsOfItemsToFind = new HashSet<>();
+    private final Set<Long> idsOfItemsInList = new HashSet<>();
 
     public ConversationLoader(T emptyItem, MyContext myContext, MyAccount ma, long selectedNoteId, boolean sync) {
         tFactory = emptyItem;
@@ -97,8 +104,10 @@ public abstract class ConversationLoader<T extends ConversationItem<T>> extends
     private void load1() {
         conversationIds.clear();
         cachedItems.clear();
+        cachedReplies.clear();
         idsOfItemsToFind.clear();
         items.clear();
+        idsOfItemsInList.clear();
         if (sync) {
             requestConversationSync(selectedNoteId);
         }
@@ -116,6 +125,19 @@ public abstract class ConversationLoader<T extends ConversationItem<T>> extends
         // Empty
     }
 
+    void cacheItem(T item) {
+        T previous = cachedItems.put(item.getNoteId(), item);
+        if (previous != null) {
+            getCachedReplies(previous.inReplyToNoteId).remove(previous);
+        }
+        cachedReplies.computeIfAbsent(item.inReplyToNoteId, id -> new ArrayList<>()).add(item);
+    }
+
+    @NonNull
+    List<T> getCachedReplies(long noteId) {
+        return cachedReplies.getOrDefault(noteId, Collections.emptyList());
+    }
+
     private void addMissedFromCache() {
         if (cachedItems.isEmpty()) return;
         for (ConversationItem item : items) {
@@ -142,11 +164,10 @@ public abstract class ConversationLoader<T extends ConversationItem<T>> extends
     protected boolean addNoteIdToFind(long noteId) {
         if (noteId == 0) {
             return false;
-        } else if (idsOfItemsToFind.contains(noteId)) {
+        } else if (!idsOfItemsToFind.add(noteId)) {
             MyLog.v(this, () -> "find cycled on the id=" + noteId);
             return false;
         }
-        idsOfItemsToFind.add(noteId);
         return true;
     }
 
@@ -195,7 +216,7 @@ public abstract class ConversationLoader<T extends ConversationItem<T>> extends
 
     protected boolean addNoteToList(T oMsg) {
         boolean added = false;
-        if (items.contains(oMsg)) {
+        if (!idsOfItemsInList.add(oMsg.getNoteId())) {
             MyLog.v(this, () -> "Note id=" + oMsg.getNoteId() + " is in the list already");
         } else {
             items.add(oMsg);
@@ -269,38 +290,49 @@ public abstract class ConversationLoader<T extends ConversationItem<T>> extends
     
     private void enumerateNotes() {
         idsOfItemsToFind.clear();
-        for (ConversationItem item : items) {
+        Map<Long, List<T>> replies = new HashMap<>();
+        for (int ind = items.size() - 1; ind >= 0; ind--) {
+            T item = items.get(ind);
             item.mListOrder = 0;
             item.historyOrder = 0;
+            replies.computeIfAbsent(item.inReplyToNoteId, id -> new ArrayList<>()).add(item);
         }
         OrderCounters order = new OrderCounters();
         for (int ind = items.size()-1; ind >= 0; ind--) {
-            ConversationItem oMsg = items.get(ind);
+            T oMsg = items.get(ind);
             if (oMsg.mListOrder < 0 ) {
                 continue;
             }
-            enumerateBranch(oMsg, order, 0);
+            enumerateBranch(oMsg, replies, order);
         }
     }
 
-    private void enumerateBranch(ConversationItem oMsg, OrderCounters order, int indent) {
-        if (!addNoteIdToFind(oMsg.getNoteId())) {
-            return;
-        }
-        int indentNext = indent;
-        oMsg.historyOrder = order.history++;
-        oMsg.mListOrder = order.list--;
-        oMsg.indentLevel = indent;
-        if ((oMsg.mNReplies > 1 || oMsg.mNParentReplies > 1)
-                && indentNext < MAX_INDENT_LEVEL) {
-            indentNext++;
-        }
-        for (int ind = items.size() - 1; ind >= 0; ind--) {
-           ConversationItem reply = items.get(ind);
-           if (reply.inReplyToNoteId == oMsg.getNoteId()) {
-               reply.mNParentReplies = oMsg.mNReplies;
-               enumerateBranch(reply, order, indentNext);
-           }
+    /** Depth-first, replies in the order of the list, using a stack instead of recursion */
+    private void enumerateBranch(T root, Map<Long, List<T>> replies, OrderCounters order) {
+        Deque<T> branch = new ArrayDeque<>();
+        root.indentLevel = 0;
+        branch.push(root);
+        while (!branch.isEmpty()) {
+            T oMsg = branch.pop();
+            if (!addNoteIdToFind(oMsg.getNoteId())) {
+                continue;
+            }
+            int indentNext = oMsg.indentLevel;
+            oMsg.historyOrder = order.history++;
+            oMsg.mListOrder = order.list--;
+            if ((oMsg.mNReplies > 1 || oMsg.mNParentReplies > 1)
+                    && indentNext < MAX_INDENT_LEVEL) {
+                indentNext++;
+            }
+            List<T> branchReplies = replies.getOrDefault(oMsg.getNoteId(), Collections.emptyList());
+            for (int ind = branchReplies.size() - 1; ind >= 0; ind--) {
+                T reply = branchReplies.get(ind);
+                if (idsOfItemsToFind.contains(reply.getNoteId())) continue;
+
+                reply.mNParentReplies = oMsg.mNReplies;
+                reply.indentLevel = indentNext;
+                branch.push(reply);
+            }
         }
     }
 
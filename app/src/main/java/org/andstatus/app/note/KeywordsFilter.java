@@ -18,13 +18,16 @@ package org.andstatus.app.note;
 
 import android.support.annotation.NonNull;
 
+import org.andstatus.app.data.NoteSearchIndex;
 import org.andstatus.app.util.IsEmpty;
 import org.andstatus.app.util.MyHtml;
 import org.andstatus.app.util.StringUtils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class KeywordsFilter implements IsEmpty {
     static final String CONTAINS_PREFIX = "contains:";
@@ -65,11 +68,31 @@ public class KeywordsFilter implements IsEmpty {
 
     final List<Keyword> keywordsToFilter;
     private final List<String> keywordsRaw;
+    private final KeywordsMatcher matcher;
     private static final char DOUBLE_QUOTE = '"';
 
+    /** Compiled matchers by filter strings, shared by all filters (e.g. in the timeline and in the DataUpdater) */
+    private static final int MATCHERS_CACHE_SIZE = 32;
+    private static final Map<String, KeywordsMatcher> matchers = new ConcurrentHashMap<>();
+
     public KeywordsFilter(String keywordsIn) {
         keywordsRaw = parseFilterString(keywordsIn);
         keywordsToFilter = rawToActual(keywordsRaw);
+        matcher = getMatcher(keywordsIn, keywordsToFilter);
+    }
+
+    @NonNull
+    private static KeywordsMatcher getMatcher(String keywordsIn, List<Keyword> keywordsToFilter) {
+        final String key = StringUtils.notNull(keywordsIn);
+        KeywordsMatcher cached = matchers.get(key);
+        if (cached != null) return cached;
+
+        KeywordsMatcher matcher = new KeywordsMatcher(KeywordsMatcher.valuesOf(keywordsToFilter));
+        if (matchers.size() >= MATCHERS_CACHE_SIZE) {
+            matchers.clear();
+        }
+        matchers.put(key, matcher);
+        return matcher;
     }
 
     @NonNull
@@ -135,37 +158,28 @@ public class KeywordsFilter implements IsEmpty {
     }
 
     public boolean matchedAny(String s) {
-        if (keywordsToFilter.isEmpty() || StringUtils.isEmpty(s)) {
-            return false;
-        }
-        for (Keyword keyword : keywordsToFilter) {
-            if (s.contains(keyword.value)) {
-                return true;
-            }
-        }
-        return false;
+        return matcher.matchedAny(s);
     }
 
     public boolean matchedAll(String s) {
-        if (keywordsToFilter.isEmpty() || StringUtils.isEmpty(s)) {
-            return false;
-        }
-        for (Keyword keyword : keywordsToFilter) {
-            if (!s.contains(keyword.value)) {
-                return false;
-            }
-        }
-        return true;
+        return matcher.matchedAll(s);
     }
 
+    /**
+     * Selection of notes, containing all keywords. Candidates are looked up in the full text search index,
+     * see {@link NoteSearchIndex}, and then keywords are matched exactly in the fieldName
+     */
     @NonNull
-    public String getSqlSelection(String fieldName) {
+    public String getSqlSelection(String noteIdColumn, String fieldName) {
         if (isEmpty()) {
             return "";
         }
         StringBuilder selection = new StringBuilder();
+        if (StringUtils.nonEmpty(getFtsQuery())) {
+            selection.append(NoteSearchIndex.getNoteIdsMatching(noteIdColumn));
+        }
         for (int ind = 0; ind < keywordsToFilter.size(); ind++) {
-            if (ind > 0) {
+            if (selection.length() > 0) {
                 selection.append(" AND ");
             }
             selection.append(fieldName + " LIKE ?");
@@ -176,12 +190,58 @@ public class KeywordsFilter implements IsEmpty {
     @NonNull
     public String[] prependSqlSelectionArgs(String[] selectionArgs) {
         String[] selectionArgsOut = selectionArgs;
-        for (Keyword keyword : keywordsToFilter) {
-            selectionArgsOut = StringUtils.addBeforeArray(selectionArgsOut, "%" + keyword.value + "%");
+        for (int ind = keywordsToFilter.size() - 1; ind >= 0; ind--) {
+            selectionArgsOut = StringUtils.addBeforeArray(selectionArgsOut,
+                    "%" + keywordsToFilter.get(ind).value + "%");
+        }
+        String ftsQuery = getFtsQuery();
+        if (StringUtils.nonEmpty(ftsQuery)) {
+            selectionArgsOut = StringUtils.addBeforeArray(selectionArgsOut, ftsQuery);
         }
         return selectionArgsOut;
     }
 
+    /**
+     * Full text search query: a phrase of words for each keyword. "contains:" keywords
+     * may start or end in the middle of a word, so they are matched by the LIKE selection only
+     * @return empty string if no keywords may be looked up in the index
+     */
+    @NonNull
+    String getFtsQuery() {
+        StringBuilder query = new StringBuilder();
+        for (Keyword keyword : keywordsToFilter) {
+            if (keyword.contains) continue;
+
+            String phrase = toFtsPhrase(keyword.value);
+            if (phrase.isEmpty()) continue;
+
+            if (query.length() > 0) {
+                query.append(" ");
+            }
+            query.append(DOUBLE_QUOTE).append(phrase).append(DOUBLE_QUOTE);
+        }
+        return query.toString();
+    }
+
+    @NonNull
+    private static String toFtsPhrase(String value) {
+        StringBuilder phrase = new StringBuilder();
+        boolean inWord = false;
+        for (int ind = 0; ind < value.length(); ind++) {
+            char c = value.charAt(ind);
+            if (Character.isLetterOrDigit(c)) {
+                if (!inWord && phrase.length() > 0) {
+                    phrase.append(' ');
+                }
+                phrase.append(c);
+                inWord = true;
+            } else {
+                inWord = false;
+            }
+        }
+        return phrase.toString();
+    }
+
     @NonNull
     public String getFirstTagOrFirstKeyword() {
         for (String keyword : keywordsRaw) {
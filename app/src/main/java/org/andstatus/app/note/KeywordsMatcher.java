@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.note;
+
+import android.support.annotation.NonNull;
+
+import org.andstatus.app.util.StringUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton, compiled from a list of keywords.
+ * Finds occurrences of all keywords in one pass over a text.
+ * Immutable after construction, so it may be shared between threads
+ * @author yvolk@yurivolkov.com
+ */
+class KeywordsMatcher {
+    private static final int[] NO_OUTPUTS = new int[]{};
+
+    private static class Node {
+        final Map<Character, Node> next = new HashMap<>();
+        Node fail = null;
+        /** Indices of keywords, ending at this node, including those reachable via failure links */
+        int[] outputs = NO_OUTPUTS;
+    }
+
+    private final Node root = new Node();
+    private final int keywordsCount;
+
+    KeywordsMatcher(@NonNull List<String> keywords) {
+        keywordsCount = keywords.size();
+        for (int ind = 0; ind < keywords.size(); ind++) {
+            addKeyword(keywords.get(ind), ind);
+        }
+        buildFailureLinks();
+    }
+
+    private void addKeyword(String keyword, int index) {
+        Node node = root;
+        for (int ind = 0; ind < keyword.length(); ind++) {
+            Character ch = keyword.charAt(ind);
+            Node child = node.next.get(ch);
+            if (child == null) {
+                child = new Node();
+                node.next.put(ch, child);
+            }
+            node = child;
+        }
+        node.outputs = append(node.outputs, new int[]{index});
+    }
+
+    /** Breadth first, so failure links of shorter prefixes are ready before they are used */
+    private void buildFailureLinks() {
+        Queue<Node> queue = new ArrayDeque<>();
+        root.fail = root;
+        for (Node child : root.next.values()) {
+            child.fail = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.remove();
+            for (Map.Entry<Character, Node> entry : node.next.entrySet()) {
+                Node child = entry.getValue();
+                Node fail = node.fail;
+                while (fail != root && !fail.next.containsKey(entry.getKey())) {
+                    fail = fail.fail;
+                }
+                Node failTarget = fail.next.get(entry.getKey());
+                child.fail = failTarget == null ? root : failTarget;
+                child.outputs = append(child.outputs, child.fail.outputs);
+                queue.add(child);
+            }
+        }
+    }
+
+    private static int[] append(int[] first, int[] second) {
+        if (second.length == 0) return first;
+        if (first.length == 0) return second;
+
+        int[] result = new int[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private Node step(Node node, char ch) {
+        Node current = node;
+        while (true) {
+            Node next = current.next.get(ch);
+            if (next != null) return next;
+            if (current == root) return root;
+            current = current.fail;
+        }
+    }
+
+    boolean matchedAny(String text) {
+        if (keywordsCount == 0 || StringUtils.isEmpty(text)) return false;
+
+        Node node = root;
+        for (int ind = 0; ind < text.length(); ind++) {
+            node = step(node, text.charAt(ind));
+            if (node.outputs.length > 0) return true;
+        }
+        return false;
+    }
+
+    boolean matchedAll(String text) {
+        if (keywordsCount == 0 || StringUtils.isEmpty(text)) return false;
+
+        BitSet found = new BitSet(keywordsCount);
+        int foundCount = 0;
+        Node node = root;
+        for (int ind = 0; ind < text.length(); ind++) {
+            node = step(node, text.charAt(ind));
+            for (int keywordIndex : node.outputs) {
+                if (!found.get(keywordIndex)) {
+                    found.set(keywordIndex);
+                    if (++foundCount == keywordsCount) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @NonNull
+    static List<String> valuesOf(@NonNull List<KeywordsFilter.Keyword> keywords) {
+        List<String> values = new ArrayList<>(keywords.size());
+        for (KeywordsFilter.Keyword keyword : keywords) {
+            values.add(keyword.value);
+        }
+        return values;
+    }
+}
@@ -29,7 +29,6 @@ import org.andstatus.app.util.MyUrlSpan;
  * @author yvolk@yurivolkov.com
  */
 public class NoteAdapter extends BaseNoteAdapter<NoteViewItem> {
-    private int positionPrev = -1;
     private int itemNumberShownCounter = 0;
     private final String TOP_TEXT;
 
@@ -50,28 +49,8 @@ public class NoteAdapter extends BaseNoteAdapter<NoteViewItem> {
         }
     }
 
-    private void preloadAttachments(int position) {
-        if (positionPrev < 0 || position == positionPrev) {
-            return;
-        }
-        Integer positionToPreload = position;
-        for (int i = 0; i < 5; i++) {
-            positionToPreload = positionToPreload + (position > positionPrev ? 1 : -1);
-            if (positionToPreload < 0 || positionToPreload >= getCount()) {
-                break;
-            }
-            NoteViewItem item = getItem(positionToPreload);
-            if (!preloadedImages.contains(item.getNoteId())) {
-                preloadedImages.add(item.getNoteId());
-                item.getAttachedImageFile().preloadImageAsync();
-                break;
-            }
-        }
-    }
-
     @Override
     protected void showNoteNumberEtc(ViewGroup view, NoteViewItem item, int position) {
-        preloadAttachments(position);
         String text;
         switch (position) {
             case 0:
@@ -87,7 +66,6 @@ public class NoteAdapter extends BaseNoteAdapter<NoteViewItem> {
         }
         MyUrlSpan.showText(view, R.id.note_number, text, false, false);
         itemNumberShownCounter++;
-        positionPrev = position;
     }
 
     @Override
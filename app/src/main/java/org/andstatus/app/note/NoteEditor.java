@@ -368,8 +368,10 @@ public class NoteEditor {
     }
     
     public void hide() {
+        NoteEditorData previous = editorData;
         editorData = NoteEditorData.EMPTY;
         updateScreen();
+        previous.releaseImage();
         if (isVisible()) {
             editorView.setVisibility(View.GONE);
             closeSoftKeyboard();
@@ -565,9 +567,10 @@ public class NoteEditor {
     private void showAttachedImage() {
         ImageView imageView = editorView.findViewById(R.id.attached_image);
         if (editorData.image == null || screenToggleState == ScreenToggleState.SHOW_TIMELINE) {
+            imageView.setImageDrawable(null);
             imageView.setVisibility(View.GONE);
         } else {
-            imageView.setImageDrawable(editorData.image.getDrawable());
+            imageView.setImageDrawable(editorData.image.getAcquiredDrawable());
             imageView.setVisibility(View.VISIBLE);
         }
     }
@@ -668,6 +671,7 @@ public class NoteEditor {
                             return data;
                         } else {
                             MyLog.v(NoteEditorData.TAG, () -> "Cannot be edited " + data);
+                            data.releaseImage();
                             MyPreferences.setBeingEditedNoteId(0);
                             return NoteEditorData.EMPTY;
                         }
@@ -683,6 +687,7 @@ public class NoteEditor {
                         if (lock.acquired() && data.isValid()) {
                             if (editorData.isValid()) {
                                 MyLog.v(NoteEditorData.TAG, "Loaded draft is not used: Editor data is valid");
+                                data.releaseImage();
                                 show();
                             } else {
                                 showData(data);
@@ -726,9 +731,13 @@ public class NoteEditor {
 
     public void showData(NoteEditorData data) {
         if (data.isValid()) {
+            NoteEditorData previous = editorData;
             editorData = data;
             updateScreen();
+            if (previous != data) previous.releaseImage();
             show();
+        } else {
+            data.releaseImage();
         }
     }
 
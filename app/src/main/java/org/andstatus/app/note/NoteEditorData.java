@@ -137,6 +137,10 @@ public class NoteEditorData implements IsEmpty {
                     attachment.getFilename(), attachment.mediaMetadata, attachment.getStatus(),
                     attachment.getDownloadedDate());
             image = imageFile.loadAndGetImage();
+            // The image is held until the data is replaced or hidden in the editor, see releaseImage()
+            if (image != null && !image.acquire()) {
+                image = null;
+            }
             note.attachments.add(Attachment.fromUri(attachment.getUri()));
         }
         MyLog.v(TAG, () -> "Loaded " + this);
@@ -214,12 +218,12 @@ public class NoteEditorData implements IsEmpty {
                 MyQuery.noteIdToLongColumnValue(NoteTable.AUTHOR_ID, noteId)), noteId, 0, true);
     }
 
+    /** The copy is for saving, so it doesn't hold the attached image */
     NoteEditorData copy() {
         if (this.isValid()) {
             NoteEditorData data = new NoteEditorData(ma, MyContextHolder.get(), activity,
                     activity.getNote().getInReplyTo().getNote().noteId, false);
             data.attachment = attachment;
-            data.image = image;
             data.replyToConversationParticipants = replyToConversationParticipants;
             return data;
         } else {
@@ -227,6 +231,14 @@ public class NoteEditorData implements IsEmpty {
         }
     }
 
+    /** Releases the attached image, acquired on loading, so its bitmap may be reused */
+    void releaseImage() {
+        if (image != null) {
+            image.release();
+            image = null;
+        }
+    }
+
     public void save(Uri imageUriToSave) {
         Note note = activity.getNote();
         Uri mediaUri = imageUriToSave.equals(Uri.EMPTY) ? attachment.getUri() : imageUriToSave;
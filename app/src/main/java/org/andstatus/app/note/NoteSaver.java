@@ -111,6 +111,7 @@ public class NoteSaver extends MyAsyncTask<NoteEditorCommand, Void, NoteEditorDa
                 editor.showData(data);
             } else {
                 MyLog.v(NoteEditorData.TAG, () -> "Saved; Result skipped: no lock");
+                data.releaseImage();
             }
         } else {
             MyLog.v(NoteEditorData.TAG, "Saved; No future data");
@@ -18,6 +18,7 @@ package org.andstatus.app.note;
 
 import android.database.Cursor;
 import android.net.Uri;
+import android.support.annotation.NonNull;
 
 import org.andstatus.app.account.MyAccount;
 import org.andstatus.app.context.MyContext;
@@ -29,6 +30,9 @@ import org.andstatus.app.timeline.meta.Timeline;
 import org.andstatus.app.timeline.meta.TimelineType;
 import org.andstatus.app.util.MyLog;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 /**
  * @author yvolk@yurivolkov.com
  */
@@ -40,56 +44,82 @@ public class RecursiveConversationLoader<T extends ConversationItem<T>> extends
 
     @Override
     protected void load2(T oMsg) {
-        findPreviousNotesRecursively(getItem(oMsg.getNoteId(), 0));
+        findPreviousNotes(getItem(oMsg.getNoteId(), 0));
     }
 
+    /** Caches the whole reply graph of the note at once, so its notes are not queried one by one */
     @Override
     void cacheConversation(T oMsg) {
-        String selection = (oMsg.conversationId == 0
-                ? ProjectionMap.ACTIVITY_TABLE_ALIAS + "." + ActivityTable.NOTE_ID + "=" + oMsg.getNoteId()
-                : ProjectionMap.NOTE_TABLE_ALIAS + "." + NoteTable.CONVERSATION_ID + "=" + oMsg.conversationId);
         Uri uri = Timeline.getTimeline(TimelineType.EVERYTHING, 0, ma.getOrigin()).getUri();
 
         try (Cursor cursor = myContext.context().getContentResolver().query(uri,
                 oMsg.getProjection().toArray(new String[]{}),
-                selection, null, null)) {
+                getReplyGraphSelection(oMsg.getNoteId()), null, null)) {
             if (cursor != null) {
                 while (cursor.moveToNext()) {
                     T oMsg2 = newONote(DbUtils.getLong(cursor, ActivityTable.NOTE_ID));
                     oMsg2.load(cursor);
-                    cachedItems.put(oMsg2.getNoteId(), oMsg2);
+                    if (oMsg2.getNoteId() != oMsg.getNoteId()
+                            && (oMsg2.conversationId == 0 || conversationIds.add(oMsg2.conversationId))) {
+                        fixConversation = true;
+                    }
+                    cacheItem(oMsg2);
                 }
             }
         }
     }
 
-    private void findPreviousNotesRecursively(T oMsg) {
-        if (!addNoteIdToFind(oMsg.getNoteId())) {
-            return;
-        }
-        findRepliesRecursively(oMsg);
-        MyLog.v(this, () -> "findPreviousNotesRecursively id=" + oMsg.getNoteId() + " replies:" + oMsg.mNReplies);
-        loadItemFromDatabase(oMsg);
-        if (oMsg.isLoaded()) {
-            if (addNoteToList(oMsg)) {
-                if (oMsg.inReplyToNoteId != 0) {
-                    findPreviousNotesRecursively(getItem(oMsg.inReplyToNoteId,
-                            oMsg.replyLevel - 1));
+    /**
+     * Selects notes, connected to the note by replies (both the notes it replies to and replies to it),
+     * together with all notes of their conversations, using one query.
+     * The recursion follows reply links only, the conversations are added once to its result
+     */
+    @NonNull
+    static String getReplyGraphSelection(long noteId) {
+        return ProjectionMap.NOTE_TABLE_ALIAS + "." + NoteTable._ID + " IN ("
+                + "WITH RECURSIVE graph(id, in_reply_to_id, conversation_id) AS ("
+                + "SELECT " + NoteTable._ID + ", " + NoteTable.IN_REPLY_TO_NOTE_ID + ", " + NoteTable.CONVERSATION_ID
+                + " FROM " + NoteTable.TABLE_NAME + " WHERE " + NoteTable._ID + "=" + noteId
+                + " UNION"
+                + " SELECT n." + NoteTable._ID + ", n." + NoteTable.IN_REPLY_TO_NOTE_ID
+                + ", n." + NoteTable.CONVERSATION_ID
+                + " FROM " + NoteTable.TABLE_NAME + " AS n, graph"
+                + " WHERE n." + NoteTable.IN_REPLY_TO_NOTE_ID + "=graph.id"
+                + " OR n." + NoteTable._ID + "=graph.in_reply_to_id"
+                + ") SELECT id FROM graph"
+                + " UNION SELECT " + NoteTable._ID + " FROM " + NoteTable.TABLE_NAME
+                + " WHERE " + NoteTable.CONVERSATION_ID + " IN ("
+                + "SELECT conversation_id FROM graph WHERE conversation_id!=0))";
+    }
+
+    /** Walks from the note to its replies and to the notes, it replies to, using a stack instead of recursion */
+    private void findPreviousNotes(T selected) {
+        Deque<T> toFind = new ArrayDeque<>();
+        toFind.push(selected);
+        while (!toFind.isEmpty()) {
+            T oMsg = toFind.pop();
+            if (!addNoteIdToFind(oMsg.getNoteId())) {
+                continue;
+            }
+            findReplies(oMsg, toFind);
+            MyLog.v(this, () -> "findPreviousNotes id=" + oMsg.getNoteId() + " replies:" + oMsg.mNReplies);
+            loadItemFromDatabase(oMsg);
+            if (oMsg.isLoaded()) {
+                if (addNoteToList(oMsg) && oMsg.inReplyToNoteId != 0) {
+                    toFind.push(getItem(oMsg.inReplyToNoteId, oMsg.replyLevel - 1));
                 }
+            } else if (mAllowLoadingFromInternet) {
+                loadFromInternet(oMsg.getNoteId());
             }
-        } else if (mAllowLoadingFromInternet) {
-            loadFromInternet(oMsg.getNoteId());
         }
     }
 
-    public void findRepliesRecursively(T oMsg) {
+    private void findReplies(T oMsg, Deque<T> toFind) {
         MyLog.v(this, () -> "findReplies for id=" + oMsg.getNoteId());
-        for (T oMsgReply : cachedItems.values()) {
-            if (oMsgReply.inReplyToNoteId == oMsg.getNoteId()) {
-                oMsg.mNReplies++;
-                oMsgReply.replyLevel = oMsg.replyLevel + 1;
-                findPreviousNotesRecursively(oMsgReply);
-            }
+        for (T oMsgReply : getCachedReplies(oMsg.getNoteId())) {
+            oMsg.mNReplies++;
+            oMsgReply.replyLevel = oMsg.replyLevel + 1;
+            toFind.push(oMsgReply);
         }
     }
 }
@@ -49,7 +49,6 @@ import org.andstatus.app.util.RelativeTime;
 import org.andstatus.app.util.StringUtils;
 
 import java.util.Objects;
-import java.util.Queue;
 
 /**
  * Command data store
@@ -308,13 +307,17 @@ public class CommandData implements Comparable<CommandData> {
     }
 
 
-    /** We need to distinguish duplicated commands but to ignore differences in results! */
+    /** We need to distinguish duplicated commands but to ignore differences in results!
+     * The hash doesn't depend on ids of the timeline and of its actor, as they may be assigned
+     * while the command is queued: {@link CommandDataQueue} is indexed by the hash */
     @Override
     public int hashCode() {
         final int prime = 31;
         int result = 1 + command.save().hashCode();
         result = prime * result + myAccount.hashCode();
-        result += prime * timeline.hashCode();
+        result += prime * timeline.getTimelineType().hashCode();
+        result += prime * timeline.getOrigin().hashCode();
+        result += prime * timeline.getSearchQuery().hashCode();
         result += prime * itemId;
         return result;
     }
@@ -475,14 +478,12 @@ public class CommandData implements Comparable<CommandData> {
         return builder.toString();
     }
 
-    void deleteCommandFromQueue(Queue<CommandData> queue) {
+    void deleteCommandFromQueue(CommandDataQueue queue) {
         String method = "deleteCommandFromQueue: ";
-        for (CommandData cd : queue) {
-            if (cd.getCommandId() == itemId) {
-                queue.remove(cd);
-                getResult().incrementDownloadedCount();
-                MyLog.v(this, () -> method + "deleted: " + cd);
-            }
+        CommandData cd = queue.findById(itemId);
+        if (cd != null && queue.remove(cd)) {
+            getResult().incrementDownloadedCount();
+            MyLog.v(this, () -> method + "deleted: " + cd);
         }
         MyLog.v(this, () -> method + "id=" + itemId + ", processed queue: " + queue.size());
     }
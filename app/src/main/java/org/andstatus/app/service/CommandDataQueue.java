@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.service;
+
+import android.support.annotation.NonNull;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.function.Predicate;
+
+/**
+ * Priority queue of commands, indexed by the command identity ({@link CommandData#equals(Object)})
+ * and by command id, so duplicate checks and lookups don't scan the queue.
+ * Equal commands are not added twice: {@link #offer(CommandData)} returns false for a duplicate
+ * @author yvolk@yurivolkov.com
+ */
+class CommandDataQueue extends AbstractQueue<CommandData> {
+    private final PriorityBlockingQueue<CommandData> queue;
+    /** Queued command by an equal command */
+    private final Map<CommandData, CommandData> index = new ConcurrentHashMap<>();
+    private final Map<Long, CommandData> byId = new ConcurrentHashMap<>();
+
+    CommandDataQueue(int initialCapacity) {
+        queue = new PriorityBlockingQueue<>(initialCapacity);
+    }
+
+    @Override
+    public synchronized boolean offer(@NonNull CommandData commandData) {
+        if (index.containsKey(commandData) || !queue.offer(commandData)) return false;
+
+        index.put(commandData, commandData);
+        byId.put(commandData.getCommandId(), commandData);
+        return true;
+    }
+
+    @Override
+    public synchronized CommandData poll() {
+        CommandData commandData = queue.poll();
+        if (commandData != null) {
+            unIndex(commandData);
+        }
+        return commandData;
+    }
+
+    /** @return the first (by priority) command, accepted by the filter, removed from the queue, or null */
+    synchronized CommandData poll(@NonNull Predicate<CommandData> filter) {
+        CommandData first = null;
+        for (CommandData commandData : queue) {
+            if ((first == null || commandData.compareTo(first) < 0) && filter.test(commandData)) {
+                first = commandData;
+            }
+        }
+        if (first != null && queue.remove(first)) {
+            unIndex(first);
+            return first;
+        }
+        return null;
+    }
+
+    @Override
+    public CommandData peek() {
+        return queue.peek();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof CommandData && index.containsKey(o);
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        if (!contains(o)) return false;
+
+        CommandData queued = index.get(o);
+        if (queued == null || !queue.remove(queued)) return false;
+        unIndex(queued);
+        return true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        queue.clear();
+        index.clear();
+        byId.clear();
+    }
+
+    /** @return the queued command, equal to the one given, or null */
+    CommandData find(@NonNull CommandData commandData) {
+        return index.get(commandData);
+    }
+
+    /** @return the queued command with this id, or null */
+    CommandData findById(long commandId) {
+        return byId.get(commandId);
+    }
+
+    private void unIndex(CommandData commandData) {
+        index.remove(commandData);
+        byId.remove(commandData.getCommandId());
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    /** Weakly consistent, as the iterator of {@link PriorityBlockingQueue} */
+    @NonNull
+    @Override
+    public Iterator<CommandData> iterator() {
+        final Iterator<CommandData> iterator = queue.iterator();
+        return new Iterator<CommandData>() {
+            private CommandData last = null;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public CommandData next() {
+                last = iterator.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) throw new IllegalStateException();
+
+                CommandDataQueue.this.remove(last);
+                last = null;
+            }
+        };
+    }
+}
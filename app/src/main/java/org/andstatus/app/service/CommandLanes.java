@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.service;
+
+import android.support.annotation.NonNull;
+
+import net.jcip.annotations.GuardedBy;
+
+import org.andstatus.app.origin.Origin;
+import org.andstatus.app.timeline.meta.Timeline;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides, which queued command may be started now by one of {@link MyService} executors, running in parallel.
+ * Commands are grouped into lanes: downloads of media files have their own lane,
+ * other commands have a lane per {@link Origin}. Each lane has a limit of commands, executed at the same time.
+ * Commands of the same account and timeline are never executed at the same time
+ * @author yvolk@yurivolkov.com
+ */
+class CommandLanes {
+    /** Number of executors for commands other than downloads */
+    static final int SYNC_EXECUTORS = 3;
+    static final int MAX_PER_ORIGIN = 2;
+    /** Number of executors (and the limit) for downloads of media files */
+    static final int DOWNLOAD_EXECUTORS = 2;
+    private static final String DOWNLOAD_LANE = "download";
+
+    private final int maxPerOrigin;
+    private final int maxDownloads;
+    /** Number of commands, being executed, by lane */
+    @GuardedBy("this")
+    private final Map<String, Integer> running = new HashMap<>();
+    /** Accounts and timelines of the commands, being executed */
+    @GuardedBy("this")
+    private final Set<String> runningKeys = new HashSet<>();
+
+    CommandLanes() {
+        this(MAX_PER_ORIGIN, DOWNLOAD_EXECUTORS);
+    }
+
+    CommandLanes(int maxPerOrigin, int maxDownloads) {
+        this.maxPerOrigin = maxPerOrigin;
+        this.maxDownloads = maxDownloads;
+    }
+
+    static boolean isDownload(@NonNull CommandData commandData) {
+        switch (commandData.getCommand()) {
+            case GET_AVATAR:
+            case GET_ATTACHMENT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @NonNull
+    static String laneOf(@NonNull CommandData commandData) {
+        if (isDownload(commandData)) return DOWNLOAD_LANE;
+
+        Origin origin = commandData.myAccount.isValid()
+                ? commandData.myAccount.getOrigin()
+                : commandData.getTimeline().preferredOrigin();
+        return "origin" + origin.getId();
+    }
+
+    /** Commands with equal keys are executed sequentially. Downloads don't touch accounts and timelines */
+    static String keyOf(@NonNull CommandData commandData) {
+        if (isDownload(commandData)) return "";
+
+        Timeline timeline = commandData.getTimeline();
+        return commandData.myAccount.getAccountName() + ";" + timeline.getTimelineType()
+                + ";" + timeline.getActorId() + ";" + timeline.getOrigin().getId();
+    }
+
+    /**
+     * Polls the queue for the first command, which may be started now, and marks it as running
+     * @param downloads true for the download lane, false for other lanes
+     * @return null if nothing can be started by the executor now
+     */
+    synchronized CommandData pollToStart(@NonNull CommandQueue commandQueue, boolean downloads) {
+        CommandData commandData = commandQueue.pollQueue(cd -> isDownload(cd) == downloads && mayStart(cd));
+        if (commandData != null) {
+            onStart(commandData);
+        }
+        return commandData;
+    }
+
+    @GuardedBy("this")
+    private boolean mayStart(@NonNull CommandData commandData) {
+        String lane = laneOf(commandData);
+        int count = running.containsKey(lane) ? running.get(lane) : 0;
+        if (count >= (isDownload(commandData) ? maxDownloads : maxPerOrigin)) return false;
+
+        String key = keyOf(commandData);
+        return key.isEmpty() || !runningKeys.contains(key);
+    }
+
+    @GuardedBy("this")
+    private void onStart(@NonNull CommandData commandData) {
+        String lane = laneOf(commandData);
+        running.put(lane, (running.containsKey(lane) ? running.get(lane) : 0) + 1);
+        String key = keyOf(commandData);
+        if (!key.isEmpty()) {
+            runningKeys.add(key);
+        }
+    }
+
+    synchronized void onEnd(@NonNull CommandData commandData) {
+        String lane = laneOf(commandData);
+        Integer count = running.get(lane);
+        if (count == null || count <= 1) {
+            running.remove(lane);
+        } else {
+            running.put(lane, count - 1);
+        }
+        runningKeys.remove(keyOf(commandData));
+    }
+
+    synchronized int getRunningCount() {
+        int count = 0;
+        for (int laneCount : running.values()) {
+            count += laneCount;
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "running:" + running;
+    }
+}
@@ -21,6 +21,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteDiskIOException;
+import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 
 import org.andstatus.app.context.MyContext;
@@ -32,13 +33,17 @@ import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.RelativeTime;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 /**
  * @author yvolk@yurivolkov.com
@@ -48,7 +53,8 @@ public class CommandQueue {
     private static final long RETRY_QUEUE_PROCESSING_PERIOD_SECONDS = 900;
     private static final long MIN_RETRY_PERIOD_SECONDS = 900;
     private static final long MAX_DAYS_IN_ERROR_QUEUE = 10;
-    private final static Queue<CommandData> preQueue = new PriorityBlockingQueue<>(INITIAL_CAPACITY);
+    private static final int MAX_SAVED_PER_QUEUE = 300;
+    private final static CommandDataQueue preQueue = new CommandDataQueue(INITIAL_CAPACITY);
 
     private volatile MyContext myContext = MyContextHolder.get();
     private final Context context;
@@ -65,12 +71,14 @@ public class CommandQueue {
             default:
                 break;
         }
+        if (preQueue.offer(commandData)) {
+            MyLog.v(CommandQueue.class, () -> "Added to preQueue " + commandData);
+            return;
+        }
         if (preQueue.contains(commandData)) {
             MyLog.v(CommandQueue.class, () -> "Didn't add to preQueue. Already found " + commandData);
             return;
         }
-        MyLog.v(CommandQueue.class, () -> "Adding to preQueue " + commandData);
-        if (preQueue.offer(commandData)) return;
 
         // TODO: Remove less prioritized item to free space for this one?!
 
@@ -78,14 +86,20 @@ public class CommandQueue {
     }
 
     private static class OneQueue {
-        Queue<CommandData> queue = new PriorityBlockingQueue<>(INITIAL_CAPACITY);
+        final CommandDataQueue queue = new CommandDataQueue(INITIAL_CAPACITY);
         volatile int savedCount = 0;
         volatile boolean savedForegroundTasks = false;
+        /** The queue was loaded from the database, so {@link #savedRows} are all its rows there */
+        volatile boolean loaded = false;
+        /** Rows of this queue in the database, as we wrote or read them: command id -> values */
+        final Map<Long, ContentValues> savedRows = new HashMap<>();
 
         public void clear() {
             queue.clear();
             savedCount = 0;
             savedForegroundTasks = false;
+            loaded = true;
+            savedRows.clear();
         }
 
         public boolean isEmpty() {
@@ -133,25 +147,33 @@ public class CommandQueue {
             case UNKNOWN:
                 return null;
             default:
-                return queues.get(queueType).queue;
+                OneQueue oneQueue = queues.get(queueType);
+                if (loaded && !oneQueue.loaded) {
+                    loadLazily(queueType);
+                }
+                return oneQueue.queue;
         }
     }
 
+    /** The Error queue is loaded on first access only */
     public synchronized CommandQueue load() {
         if (loaded) {
             MyLog.v(this, "Already loaded");
         } else {
             int count = load(QueueType.CURRENT) + load(QueueType.RETRY);
-            int countError = load(QueueType.ERROR);
             MyLog.d(this, "State restored, " + (count > 0 ? Integer.toString(count) : "no ")
-                    + " msg in the Queues"
-                    + (countError > 0 ? ", plus " + Integer.toString(countError) + " in Error queue" : "")
-            );
+                    + " msg in the Queues");
             loaded = true;
         }
         return this;
     }
 
+    private synchronized void loadLazily(@NonNull QueueType queueType) {
+        if (loaded && !queues.get(queueType).loaded) {
+            load(queueType);
+        }
+    }
+
     /** @return Number of items loaded */
     private int load(@NonNull QueueType queueType) {
         final String method = "loadQueue-" + queueType.save();
@@ -165,13 +187,19 @@ public class CommandQueue {
         }
         String sql = "SELECT * FROM " + CommandTable.TABLE_NAME + " WHERE " + CommandTable.QUEUE_TYPE + "='"
                 + queueType.save() + "'";
+        oneQueue.savedRows.clear();
         Cursor c = null;
         try {
             c = db.rawQuery(sql, null);
             while (c.moveToNext()) {
                 CommandData cd = CommandData.fromCursor(myContext, c);
+                oneQueue.savedRows.put(DbUtils.getLong(c, CommandTable._ID), toContentValues(cd, queueType));
                 if (CommandEnum.EMPTY.equals(cd.getCommand())) {
                     MyLog.e(context, method + "; empty skipped " + cd);
+                } else if (queueType == QueueType.ERROR
+                        && cd.executedMoreSecondsAgoThan(TimeUnit.DAYS.toSeconds(MAX_DAYS_IN_ERROR_QUEUE))) {
+                    // Its row is deleted on save, as the row of a removed command
+                    MyLog.i(context, method + "; removed old from Error queue: " + cd);
                 } else if (queue.contains(cd)) {
                     MyLog.e(context, method + "; duplicate skipped " + cd);
                 } else {
@@ -191,63 +219,139 @@ public class CommandQueue {
         MyLog.d(context, method + "; loaded " + count + " commands from '" + queueType + "'");
         oneQueue.savedCount = 0;
         oneQueue.savedForegroundTasks = false;
+        oneQueue.loaded = true;
         return count;
     }
 
+    /**
+     * Writes only differences between the queues in memory and their rows in the database,
+     * all in one transaction. Saved commands are removed from memory till the next {@link #load()}
+     */
     synchronized void save() {
         SQLiteDatabase db = myContext.getDatabase();
         if (db == null) {
             MyLog.d(context, "save; Database is unavailable");
             return;
         }
-        if (loaded) clearQueuesInDatabase(db);
         moveCommandsFromPreToMainQueue();
-        int countCurrentRetry = save(db, QueueType.CURRENT) + save(db, QueueType.RETRY);
-        int countError = save(db, QueueType.ERROR);
+        Map<QueueType, List<CommandData>> toSave = new HashMap<>();
+        Set<Long> idsToSave = new HashSet<>();
+        for (Map.Entry<QueueType, OneQueue> entry : queues.entrySet()) {
+            List<CommandData> commands = pollToSave(entry.getKey(), entry.getValue());
+            toSave.put(entry.getKey(), commands);
+            for (CommandData cd : commands) {
+                idsToSave.add(cd.getCommandId());
+            }
+        }
+        int countCurrentRetry;
+        int countError;
+        int countDeleted;
+        db.beginTransaction();
+        try {
+            countDeleted = deleteRemoved(db, idsToSave);
+            countCurrentRetry = save(db, QueueType.CURRENT, toSave.get(QueueType.CURRENT))
+                    + save(db, QueueType.RETRY, toSave.get(QueueType.RETRY));
+            countError = save(db, QueueType.ERROR, toSave.get(QueueType.ERROR));
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
         MyLog.d(this, (loaded ? "Queues saved" : "Saved new queued commands only") + ", "
                 + (countCurrentRetry > 0 ? Integer.toString(countCurrentRetry) : "no") + " commands"
                 + (countError > 0 ? ", plus " + Integer.toString(countError) + " in Error queue" : "")
+                + (countDeleted > 0 ? ", " + countDeleted + " deleted" : "")
         );
         saved |= loaded;
         loaded = false;
+        for (OneQueue oneQueue : queues.values()) {
+            oneQueue.loaded = false;
+        }
     }
 
-    /** @return Number of items persisted */
-    private int save(@NonNull SQLiteDatabase db, @NonNull QueueType queueType) {
+    private List<CommandData> pollToSave(@NonNull QueueType queueType, @NonNull OneQueue oneQueue) {
         final String method = "saveQueue-" + queueType.save();
-        OneQueue oneQueue = queues.get(queueType);
         Queue<CommandData> queue = oneQueue.queue;
+        List<CommandData> commands = new ArrayList<>();
+        while (!queue.isEmpty() && commands.size() < MAX_SAVED_PER_QUEUE) {
+            CommandData cd = queue.poll();
+            commands.add(cd);
+            if (myContext.isTestRun() && queue.contains(cd)) {
+                MyLog.e(context, method + "; Duplicated command in a queue:" + commands.size() + " " + cd.toString());
+            }
+        }
+        if (!queue.isEmpty()) {
+            MyLog.e(context, method + "; " + commands.size() + " to save, " + queue.size() + " left");
+        }
+        return commands;
+    }
+
+    /** Deletes rows of loaded queues, which are not in any queue anymore */
+    private int deleteRemoved(@NonNull SQLiteDatabase db, @NonNull Set<Long> idsToSave) {
+        final String method = "deleteRemoved";
+        int count = 0;
+        SQLiteStatement statement = null;
+        try {
+            for (OneQueue oneQueue : queues.values()) {
+                if (!oneQueue.loaded) continue;
+
+                Iterator<Map.Entry<Long, ContentValues>> iterator = oneQueue.savedRows.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    long commandId = iterator.next().getKey();
+                    if (idsToSave.contains(commandId)) continue;
+
+                    if (statement == null) {
+                        statement = db.compileStatement("DELETE FROM " + CommandTable.TABLE_NAME
+                                + " WHERE " + CommandTable._ID + "=?");
+                    }
+                    statement.bindLong(1, commandId);
+                    statement.executeUpdateDelete();
+                    iterator.remove();
+                    count++;
+                }
+            }
+        } catch (Exception e) {
+            MyLog.e(context, method, e);
+            if (SQLiteDiskIOException.class.isAssignableFrom(e.getClass())) {
+                throw e;
+            } else {
+                throw new IllegalStateException(method, e);
+            }
+        } finally {
+            DbUtils.closeSilently(statement);
+        }
+        return count;
+    }
+
+    /** @return Number of items persisted, including unchanged */
+    private int save(@NonNull SQLiteDatabase db, @NonNull QueueType queueType, @NonNull List<CommandData> commands) {
+        final String method = "saveQueue-" + queueType.save();
+        OneQueue oneQueue = queues.get(queueType);
         int count = 0;
+        int countWritten = 0;
         try {
             if (loaded) {
                 oneQueue.savedCount = 0;
                 oneQueue.savedForegroundTasks = false;
             }
-            if (!queue.isEmpty()) {
-                while (!queue.isEmpty() && count < 300) {
-                    CommandData cd = queue.poll();
-                    oneQueue.savedForegroundTasks |= cd.isInForeground();
-                    ContentValues values = new ContentValues();
-                    cd.toContentValues(values);
-                    values.put(CommandTable.QUEUE_TYPE, queueType.save());
-                    db.insert(CommandTable.TABLE_NAME, null, values);
-                    count++;
-                    if (MyLog.isVerboseEnabled() && (count < 6 || cd.getCommand() == CommandEnum.UPDATE_NOTE)) {
-                        MyLog.v(context, method + "; " + count + ": " + cd.toString());
-                    }
-                    if (myContext.isTestRun() && queue.contains(cd)) {
-                        MyLog.e(context, method + "; Duplicated command in a queue:" + count + " " + cd.toString());
-                    }
+            for (CommandData cd : commands) {
+                oneQueue.savedForegroundTasks |= cd.isInForeground();
+                ContentValues values = toContentValues(cd, queueType);
+                if (!values.equals(oneQueue.savedRows.get(cd.getCommandId()))) {
+                    db.insertWithOnConflict(CommandTable.TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                    removeFromOtherSavedRows(queueType, cd.getCommandId());
+                    oneQueue.savedRows.put(cd.getCommandId(), values);
+                    countWritten++;
                 }
-                if (queue.isEmpty()) {
-                    MyLog.d(context, method + "; " + count + " saved");
-                } else {
-                    MyLog.e(context, method + "; " + count + " saved" +
-                            (queue.isEmpty() ? "" : ", " + queue.size() + " left"));
+                count++;
+                if (MyLog.isVerboseEnabled() && (count < 6 || cd.getCommand() == CommandEnum.UPDATE_NOTE)) {
+                    MyLog.v(context, method + "; " + count + ": " + cd.toString());
                 }
             }
+            if (count > 0) {
+                MyLog.d(context, method + "; " + count + " saved, " + countWritten + " of them changed");
+            }
         } catch (Exception e) {
-            String msgLog = method + "; " + count + " saved, " + queue.size() + " left.";
+            String msgLog = method + "; " + count + " saved, " + (commands.size() - count) + " left.";
             MyLog.e(context, msgLog, e);
             if (SQLiteDiskIOException.class.isAssignableFrom(e.getClass())) {
                 throw e;
@@ -259,6 +363,22 @@ public class CommandQueue {
         return count;
     }
 
+    /** The command's row moved from other queue to this one */
+    private void removeFromOtherSavedRows(@NonNull QueueType queueType, long commandId) {
+        for (Map.Entry<QueueType, OneQueue> entry : queues.entrySet()) {
+            if (entry.getKey() != queueType) {
+                entry.getValue().savedRows.remove(commandId);
+            }
+        }
+    }
+
+    private static ContentValues toContentValues(@NonNull CommandData cd, @NonNull QueueType queueType) {
+        ContentValues values = new ContentValues();
+        cd.toContentValues(values);
+        values.put(CommandTable.QUEUE_TYPE, queueType.save());
+        return values;
+    }
+
     private synchronized void clearQueuesInDatabase(@NonNull SQLiteDatabase db) {
         final String method = "clearQueuesInDatabase";
         try {
@@ -274,21 +394,26 @@ public class CommandQueue {
         }
     }
 
-    void clear() {
+    synchronized void clear() {
         loaded = true;
         // MyLog.v(this, MyLog.getStackTrace(new IllegalStateException("CommandQueue#clear called")));
         for ( Map.Entry<QueueType, OneQueue> entry : queues.entrySet()) {
             entry.getValue().clear();
         }
         preQueue.clear();
+        SQLiteDatabase db = myContext.getDatabase();
+        if (db != null) {
+            clearQueuesInDatabase(db);
+        }
         save();
         MyLog.v(this, "Queues cleared");
     }
 
     void deleteCommand(CommandData commandData) {
         moveCommandsFromPreToMainQueue();
-        for (OneQueue oneQueue : queues.values()) {
-            commandData.deleteCommandFromQueue(oneQueue.queue);
+        for (Map.Entry<QueueType, OneQueue> entry : queues.entrySet()) {
+            loadLazily(entry.getKey());
+            commandData.deleteCommandFromQueue(entry.getValue().queue);
         }
         if (commandData.getResult().getDownloadedCount() == 0) {
             commandData.getResult().incrementParseExceptions();
@@ -308,9 +433,7 @@ public class CommandQueue {
     }
 
     void addToQueue(QueueType queueType, CommandData commandData) {
-        if (get(queueType).contains(commandData)) {
-            get(queueType).remove(commandData);
-        }
+        get(queueType).remove(commandData);
         if (!get(queueType).offer(commandData)) {
             MyLog.e(this, queueType.name() + " is full?");
         }
@@ -339,14 +462,36 @@ public class CommandQueue {
         return true;
     }
 
-    CommandData pollQueue() {
+    /**
+     * @return Number (not more than maxCount) of commands in memory, which may be polled now with this filter.
+     * Queues, which are not loaded yet, count as one command, if they have anything to execute
+     */
+    int countToPollNow(@NonNull Predicate<CommandData> filter, int maxCount) {
+        if (!loaded || isAnythingToRetryNow()) {
+            return isAnythingToExecuteNow() ? 1 : 0;
+        }
+        boolean foregroundOnly = !MyPreferences.isSyncWhileUsingApplicationEnabled() && myContext.isInForeground();
+        int count = 0;
+        for (CommandDataQueue queue : Arrays.asList(preQueue, queues.get(QueueType.CURRENT).queue)) {
+            for (CommandData commandData : queue) {
+                if (count >= maxCount) return count;
+                if ((!foregroundOnly || commandData.isInForeground()) && filter.test(commandData)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /** Polls the first command, accepted by the filter, skipping others */
+    synchronized CommandData pollQueue(@NonNull Predicate<CommandData> filter) {
         moveCommandsFromPreToMainQueue();
         CommandData commandData;
         do {
-            commandData = get(QueueType.CURRENT).poll();
+            commandData = pollCurrent(filter);
             if (commandData == null && isAnythingToRetryNow()) {
                 moveCommandsFromRetryToMainQueue();
-                commandData = get(QueueType.CURRENT).poll();
+                commandData = pollCurrent(filter);
             }
             if (commandData == null) {
                 break;
@@ -372,6 +517,11 @@ public class CommandQueue {
         return commandData;
     }
 
+    private CommandData pollCurrent(@NonNull Predicate<CommandData> filter) {
+        loadLazily(QueueType.CURRENT);
+        return queues.get(QueueType.CURRENT).queue.poll(filter);
+    }
+
     private void moveCommandsFromPreToMainQueue() {
         for (CommandData cd : preQueue) {
             if (addToMainQueue(cd)) preQueue.remove(cd);
@@ -404,47 +554,37 @@ public class CommandQueue {
 
     private CommandData findInRetryQueue(CommandData cdIn) {
         CommandData cdOut = cdIn;
-        if (get(QueueType.RETRY).contains(cdIn)) {
-            for (CommandData cd : get(QueueType.RETRY)) {
-                if (cd.equals(cdIn)) {
-                    cd.resetRetries();
-                    if (cdIn.isManuallyLaunched() || cd.executedMoreSecondsAgoThan(MIN_RETRY_PERIOD_SECONDS)) {
-                        cdOut = cd;
-                        get(QueueType.RETRY).remove(cd);
-                        MyLog.v(this, () -> "Returned from Retry queue: " + cd);
-                    } else {
-                        cdOut = null;
-                        MyLog.v(this, () -> "Found in Retry queue: " + cd);
-                    }
-                    break;
-                }
+        CommandData cd = queues.get(QueueType.RETRY).queue.find(cdIn);
+        if (cd != null) {
+            cd.resetRetries();
+            if (cdIn.isManuallyLaunched() || cd.executedMoreSecondsAgoThan(MIN_RETRY_PERIOD_SECONDS)) {
+                cdOut = cd;
+                get(QueueType.RETRY).remove(cd);
+                MyLog.v(this, () -> "Returned from Retry queue: " + cd);
+            } else {
+                cdOut = null;
+                MyLog.v(this, () -> "Found in Retry queue: " + cd);
             }
         }
         return cdOut;
     }
 
+    /**
+     * Only commands of the Error queue, which are in memory, are checked: loading the whole queue
+     * for a polled command would defeat its lazy loading. A failed command is put to the Error queue again
+     */
     private CommandData findInErrorQueue(CommandData cdIn) {
-        CommandData cdOut = cdIn;
-        if (get(QueueType.ERROR).contains(cdIn)) {
-            for (CommandData cd : get(QueueType.ERROR)) {
-                if (cd.equals(cdIn)) {
-                    if (cdIn.isManuallyLaunched() || cd.executedMoreSecondsAgoThan(MIN_RETRY_PERIOD_SECONDS)) {
-                        cdOut = cd;
-                        get(QueueType.ERROR).remove(cd);
-                        MyLog.v(this, () -> "Returned from Error queue: " + cd);
-                        cd.resetRetries();
-                    } else {
-                        cdOut = null;
-                        MyLog.v(this, () -> "Found in Error queue: " + cd);
-                    }
-                } else {
-                    if (cd.executedMoreSecondsAgoThan(TimeUnit.DAYS.toSeconds(MAX_DAYS_IN_ERROR_QUEUE))) {
-                        get(QueueType.ERROR).remove(cd);
-                        MyLog.i(this, "Removed old from Error queue: " + cd);
-                    }
-                }
-            }
+        CommandDataQueue errorQueue = queues.get(QueueType.ERROR).queue;
+        CommandData cd = errorQueue.find(cdIn);
+        if (cd == null) return cdIn;
+
+        if (cdIn.isManuallyLaunched() || cd.executedMoreSecondsAgoThan(MIN_RETRY_PERIOD_SECONDS)) {
+            errorQueue.remove(cd);
+            MyLog.v(this, () -> "Returned from Error queue: " + cd);
+            cd.resetRetries();
+            return cd;
         }
-        return cdOut;
+        MyLog.v(this, () -> "Found in Error queue: " + cd);
+        return null;
     }
 }
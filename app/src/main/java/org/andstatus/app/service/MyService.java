@@ -44,6 +44,8 @@ import org.andstatus.app.util.RelativeTime;
 import org.andstatus.app.util.SharedPreferencesUtil;
 import org.andstatus.app.util.TriState;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.andstatus.app.notification.NotificationEventType.SERVICE_RUNNING;
@@ -74,8 +76,10 @@ public class MyService extends Service {
     private int mLatestProcessedStartId = 0;
     
     private final Object executorLock = new Object();
+    /** Executors, working in parallel, see {@link CommandLanes} */
     @GuardedBy("executorLock")
-    private QueueExecutor mExecutor = null;
+    private final List<QueueExecutor> executors = new ArrayList<>();
+    private final CommandLanes lanes = new CommandLanes();
 
     private final Object heartBeatLock = new Object();
     @GuardedBy("heartBeatLock")
@@ -236,7 +240,7 @@ public class MyService extends Service {
                 startExecution();
                 break;
             default:
-                MyLog.v(this, () -> "Didn't change execution " + mExecutor);
+                MyLog.v(this, () -> "Didn't change execution " + executorsToString());
                 break;
         }
     }
@@ -318,7 +322,7 @@ public class MyService extends Service {
     private void startExecution() {
         acquireWakeLock();
         try {
-            ensureExecutorStarted();
+            ensureExecutorsStarted();
         } catch (Exception e) {
             MyLog.i(this, "Couldn't start executor", e);
             couldStopExecutor(true);
@@ -326,48 +330,65 @@ public class MyService extends Service {
         }
     }
     
-    private void ensureExecutorStarted() {
-        final String method = "ensureExecutorStarted";
+    private void ensureExecutorsStarted() {
+        final String method = "ensureExecutorsStarted";
         StringBuilder logMessageBuilder = new StringBuilder();
         synchronized(executorLock) {
-            if ( mExecutor != null && mExecutor.completedBackgroundWork()) {
-                logMessageBuilder.append(" Removing completed Executor " + mExecutor);
-                removeExecutor(logMessageBuilder);
-            }
-            if ( mExecutor != null && !isExecutorReallyWorkingNow()) {
-                logMessageBuilder.append(" Cancelling stalled Executor " + mExecutor);
-                removeExecutor(logMessageBuilder);
-            }
-            if (mExecutor != null) {
-                logMessageBuilder.append(" There is an Executor already " + mExecutor);
-            } else {
-                // For now let's have only ONE working thread 
-                // (it seems there is some problem in parallel execution...)
-                QueueExecutor newExecutor = new QueueExecutor();
-                logMessageBuilder.append(" Adding and starting new Executor " + newExecutor);
-                if (AsyncTaskLauncher.execute(this, false, newExecutor)) {
-                    mExecutor = newExecutor;
-                } else {
-                    logMessageBuilder.append(" New executor was not added");
+            for (QueueExecutor executor : new ArrayList<>(executors)) {
+                if (executor.completedBackgroundWork()) {
+                    logMessageBuilder.append(" Removing completed Executor " + executor);
+                    removeExecutor(executor, logMessageBuilder);
+                } else if (!executor.isReallyWorking()) {
+                    logMessageBuilder.append(" Cancelling stalled Executor " + executor);
+                    removeExecutor(executor, logMessageBuilder);
                 }
             }
+            startExecutors(false, CommandLanes.SYNC_EXECUTORS, logMessageBuilder);
+            startExecutors(true, CommandLanes.DOWNLOAD_EXECUTORS, logMessageBuilder);
         }
         if (logMessageBuilder.length() > 0) {
             MyLog.v(this, () -> method + "; " + logMessageBuilder);
         }
     }
-    
-    private void removeExecutor(StringBuilder logMessageBuilder) {
-        synchronized(executorLock) {
-            if (mExecutor == null) {
-                return;
-            }
-            if (mExecutor.needsBackgroundWork()) {
-                logMessageBuilder.append(" Cancelling and");
-                mExecutor.cancelLogged(true);
+
+    /** Starts new executors of the kind, if there are commands, which they could start now */
+    @GuardedBy("executorLock")
+    private void startExecutors(boolean downloads, int maxExecutors, StringBuilder logMessageBuilder) {
+        int count = 0;
+        for (QueueExecutor executor : executors) {
+            if (executor.downloads == downloads) count++;
+        }
+        if (count >= maxExecutors) {
+            logMessageBuilder.append(" There are " + count + (downloads ? " download" : "") + " Executors already");
+            return;
+        }
+        int toStart = commandQueue.countToPollNow(
+                commandData -> CommandLanes.isDownload(commandData) == downloads, maxExecutors - count);
+        for (int ind = 0; ind < toStart; ind++) {
+            QueueExecutor newExecutor = new QueueExecutor(downloads);
+            logMessageBuilder.append(" Adding and starting new Executor " + newExecutor);
+            if (AsyncTaskLauncher.execute(this, false, newExecutor)) {
+                executors.add(newExecutor);
+            } else {
+                logMessageBuilder.append(" New executor was not added");
+                break;
             }
-            logMessageBuilder.append(" Removing Executor " + mExecutor);
-            mExecutor = null;
+        }
+    }
+
+    @GuardedBy("executorLock")
+    private void removeExecutor(QueueExecutor executor, StringBuilder logMessageBuilder) {
+        if (executor.needsBackgroundWork()) {
+            logMessageBuilder.append(" Cancelling and");
+            executor.cancelLogged(true);
+        }
+        logMessageBuilder.append(" Removing Executor " + executor);
+        executors.remove(executor);
+    }
+
+    private String executorsToString() {
+        synchronized(executorLock) {
+            return executors.toString() + ", " + lanes;
         }
     }
 
@@ -388,8 +409,11 @@ public class MyService extends Service {
     
     private boolean isExecutorReallyWorkingNow() {
         synchronized(executorLock) {
-          return mExecutor != null && mExecutor.isReallyWorking();
-        }        
+            for (QueueExecutor executor : executors) {
+                if (executor.isReallyWorking()) return true;
+            }
+            return false;
+        }
     }
     
     @Override
@@ -448,6 +472,7 @@ public class MyService extends Service {
             }
         }
         AsyncTaskLauncher.cancelPoolTasks(MyAsyncTask.PoolEnum.SYNC);
+        AsyncTaskLauncher.cancelPoolTasks(MyAsyncTask.PoolEnum.FILE_DOWNLOAD);
         releaseWakeLock();
         stopSelfResult(latestProcessedStartId);
         myContext.getNotifier().clearAndroidNotification(SERVICE_RUNNING);
@@ -458,16 +483,21 @@ public class MyService extends Service {
         StringBuilder logMessageBuilder = new StringBuilder();
         boolean could = true;
         synchronized(executorLock) {
-            if (mExecutor != null && mExecutor.needsBackgroundWork() && mExecutor.isReallyWorking() ) {
-                if (forceNow) {
-                    logMessageBuilder.append(" Cancelling working Executor;");
-                } else {
-                    logMessageBuilder.append(" Cannot stop now Executor " + mExecutor);
-                    could = false;
+            for (QueueExecutor executor : executors) {
+                if (executor.needsBackgroundWork() && executor.isReallyWorking()) {
+                    if (forceNow) {
+                        logMessageBuilder.append(" Cancelling working Executor;");
+                    } else {
+                        logMessageBuilder.append(" Cannot stop now Executor " + executor);
+                        could = false;
+                        break;
+                    }
                 }
             }
             if (could) {
-                removeExecutor(logMessageBuilder);
+                for (QueueExecutor executor : new ArrayList<>(executors)) {
+                    removeExecutor(executor, logMessageBuilder);
+                }
             }
         }
         if (logMessageBuilder.length() > 0) {
@@ -489,9 +519,13 @@ public class MyService extends Service {
     private class QueueExecutor extends MyAsyncTask<Void, Void, Boolean> implements CommandExecutorParent {
         private volatile CommandData currentlyExecuting = null;
         private static final long MAX_EXECUTION_TIME_SECONDS = 60;
+        /** Executes downloads of media files only, see {@link CommandLanes#isDownload(CommandData)} */
+        final boolean downloads;
 
-        QueueExecutor() {
-            super(PoolEnum.SYNC);
+        QueueExecutor(boolean downloads) {
+            super(QueueExecutor.class, downloads ? PoolEnum.FILE_DOWNLOAD : PoolEnum.SYNC);
+            setSingleInstance(false);
+            this.downloads = downloads;
         }
 
         @Override
@@ -513,47 +547,67 @@ public class MyService extends Service {
                     break;
                 }
                 synchronized (executorLock) {
-                    if (mExecutor != this) {
-                        breakReason = "Other executor";
+                    if (!executors.contains(this)) {
+                        breakReason = "Removed executor";
                         break;
                     }
                 }
-                CommandData commandData = commandQueue.pollQueue();
+                CommandData commandData = lanes.pollToStart(commandQueue, downloads);
                 currentlyExecuting = commandData;
                 currentlyExecutingSince = System.currentTimeMillis();
                 if (commandData == null) {
                     breakReason = "No more commands";
                     break;
                 }
-                ConnectionState connectionState = myContext.getConnectionState();
-                if (commandData.getCommand().getConnectionRequired().isConnectionStateOk(connectionState)) {
-                    MyServiceEventsBroadcaster.newInstance(myContext, getServiceState())
-                            .setCommandData(commandData)
-                            .setEvent(MyServiceEvent.BEFORE_EXECUTING_COMMAND).broadcast();
-                    if (commandData.getCommand() == DELETE_COMMAND) {
-                        commandQueue.deleteCommand(commandData);
-                    } else {
-                        CommandExecutorStrategy.executeCommand(commandData, this);
-                    }
-                } else {
-                    commandData.getResult().incrementNumIoExceptions();
-                    commandData.getResult().setMessage("Expected '"
-                            + commandData.getCommand().getConnectionRequired()
-                            + "', but was '" + connectionState + "' connection");
-                }
-                if (commandData.getResult().shouldWeRetry()) {
-                    commandQueue.addToQueue(QueueType.RETRY, commandData);
-                } else if (commandData.getResult().hasError()) {
-                    commandQueue.addToQueue(QueueType.ERROR, commandData);
+                try {
+                    execute(commandData);
+                } finally {
+                    lanes.onEnd(commandData);
                 }
-                broadcastAfterExecutingCommand(commandData);
-                addSyncOfThisToQueue(commandData);
             } while (true);
             MyLog.d(this, "Ended, " + breakReason + ", " + commandQueue.totalSizeToExecute() + " commands left");
-            commandQueue.save();
+            if (isLastExecutor()) {
+                commandQueue.save();
+            }
             return true;
         }
 
+        private void execute(CommandData commandData) {
+            ConnectionState connectionState = myContext.getConnectionState();
+            if (commandData.getCommand().getConnectionRequired().isConnectionStateOk(connectionState)) {
+                MyServiceEventsBroadcaster.newInstance(myContext, getServiceState())
+                        .setCommandData(commandData)
+                        .setEvent(MyServiceEvent.BEFORE_EXECUTING_COMMAND).broadcast();
+                if (commandData.getCommand() == DELETE_COMMAND) {
+                    commandQueue.deleteCommand(commandData);
+                } else {
+                    CommandExecutorStrategy.executeCommand(commandData, this);
+                }
+            } else {
+                commandData.getResult().incrementNumIoExceptions();
+                commandData.getResult().setMessage("Expected '"
+                        + commandData.getCommand().getConnectionRequired()
+                        + "', but was '" + connectionState + "' connection");
+            }
+            if (commandData.getResult().shouldWeRetry()) {
+                commandQueue.addToQueue(QueueType.RETRY, commandData);
+            } else if (commandData.getResult().hasError()) {
+                commandQueue.addToQueue(QueueType.ERROR, commandData);
+            }
+            broadcastAfterExecutingCommand(commandData);
+            addSyncOfThisToQueue(commandData);
+        }
+
+        /** The queues are saved (and removed from memory) by the last working executor only */
+        private boolean isLastExecutor() {
+            synchronized (executorLock) {
+                for (QueueExecutor executor : executors) {
+                    if (executor != this && executor.needsBackgroundWork()) return false;
+                }
+                return true;
+            }
+        }
+
         private void addSyncOfThisToQueue(CommandData commandDataExecuted) {
             if (commandDataExecuted.getResult().hasError()
                     || commandDataExecuted.getCommand() != CommandEnum.UPDATE_NOTE
@@ -26,19 +26,33 @@ import org.andstatus.app.net.http.ConnectionException;
 import org.andstatus.app.net.http.ConnectionException.StatusCode;
 import org.andstatus.app.net.social.AActivity;
 import org.andstatus.app.net.social.TimelinePosition;
+import org.andstatus.app.os.AsyncTaskLauncher;
+import org.andstatus.app.os.MyAsyncTask;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.RelativeTime;
 import org.andstatus.app.util.StringUtils;
 import org.andstatus.app.util.TriState;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 class TimelineDownloaderOther extends TimelineDownloader {
+    private static final String TAG = TimelineDownloaderOther.class.getSimpleName();
     private static final int YOUNGER_NOTES_TO_DOWNLOAD_MAX = 200;
     private static final int OLDER_NOTES_TO_DOWNLOAD_MAX = 40;
     private static final int LATEST_NOTES_TO_DOWNLOAD_MAX = 20;
+    /** Number of pages, which may be fetched ahead of the page, being stored */
+    private static final int PAGES_AHEAD = 2;
+    /** Marks the end of pages in the hand-off queue */
+    private static final List<AActivity> END_OF_PAGES = new ArrayList<>();
+    /** If the fetcher task didn't start during this time, pages are fetched in the command thread */
+    private static final long TASK_START_WAIT_MS = 500;
 
     TimelineDownloaderOther(CommandExecutionContext execContext) {
         super(execContext);
@@ -78,7 +92,120 @@ class TimelineDownloaderOther extends TimelineDownloader {
         syncTracker.onTimelineDownloaded();
 
         DataUpdater di = new DataUpdater(execContext);
-        for (int loopCounter=0; loopCounter < 100; loopCounter++ ) {
+        PagesFetcher fetcher = new PagesFetcher(actorOid, toDownload, previousPosition, syncTracker);
+        fetcher.start();
+        try {
+            for (List<AActivity> activities = fetcher.takePage(); activities != END_OF_PAGES;
+                 activities = fetcher.takePage()) {
+                di.onActivities(activities, false);
+                for (AActivity activity : activities) {
+                    syncTracker.onNewMsg(activity.getTimelinePosition(), activity.getUpdatedDate());
+                }
+            }
+        } finally {
+            fetcher.stop();
+        }
+        di.saveLum();
+        fetcher.throwIfFailed();
+    }
+
+    /**
+     * Fetches pages of the timeline in a background task, so the next page is being downloaded,
+     * while the previous one is being stored. Not more than {@link #PAGES_AHEAD} pages are waiting to be stored.
+     * The fetcher doesn't touch the Timeline: it follows its own copy of the position, and the Timeline
+     * is updated by the command thread after a page is stored.
+     * If the task doesn't start soon (the pool is busy), the command thread fetches pages itself, one by one
+     */
+    private class PagesFetcher {
+        private final String actorOid;
+        private int toDownload;
+        private TimelinePosition previousPosition;
+        /** Position of the youngest (or of the oldest) fetched item, as it will be in the Timeline */
+        private TimelinePosition position;
+        private long positionDate;
+        private int loopCounter = 0;
+        private boolean ended = false;
+        private final BlockingQueue<List<AActivity>> pages = new ArrayBlockingQueue<>(PAGES_AHEAD);
+        /** Fetching is done either by the background task or by the command thread, whichever claims it first */
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private volatile boolean fetchingInline = false;
+        private final CountDownLatch taskEnded = new CountDownLatch(1);
+        private volatile boolean stopping = false;
+        private volatile Throwable failure = null;
+        private final MyAsyncTask<Void, Void, Void> task;
+
+        PagesFetcher(String actorOid, int toDownload, TimelinePosition previousPosition,
+                     TimelineSyncTracker syncTracker) {
+            this.actorOid = actorOid;
+            this.toDownload = toDownload;
+            this.previousPosition = previousPosition;
+            position = previousPosition;
+            positionDate = syncTracker.getPreviousItemDate();
+            task = new MyAsyncTask<Void, Void, Void>(TAG + "-fetcher", MyAsyncTask.PoolEnum.SYNC) {
+                @Override
+                protected Void doInBackground2(Void... params) {
+                    if (claimed.compareAndSet(false, true)) {
+                        fetchPages();
+                    }
+                    return null;
+                }
+            };
+            task.setSingleInstance(false);
+        }
+
+        void start() {
+            if (!AsyncTaskLauncher.execute(TAG, false, task)) {
+                fetchInline();
+            }
+        }
+
+        private void fetchPages() {
+            try {
+                while (!stopping) {
+                    List<AActivity> activities = fetchNextPage();
+                    if (activities == END_OF_PAGES) break;
+                    pages.put(activities);
+                }
+            } catch (InterruptedException e) {
+                MyLog.v(TAG, "Fetching interrupted");
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                if (!stopping) {
+                    putEndOfPages();
+                }
+                taskEnded.countDown();
+            }
+        }
+
+        private void putEndOfPages() {
+            try {
+                pages.put(END_OF_PAGES);
+            } catch (InterruptedException e) {
+                MyLog.v(TAG, "Fetching interrupted at the end");
+            }
+        }
+
+        /** @return the next page or {@link #END_OF_PAGES} */
+        @NonNull
+        private List<AActivity> fetchNextPage() throws ConnectionException {
+            while (!ended && loopCounter < 100) {
+                loopCounter++;
+                List<AActivity> activities = fetchPage();
+                if (activities == null) continue;
+
+                if (toDownload <= 0 || activities.isEmpty() || previousPosition.equals(position)) {
+                    ended = true;
+                } else {
+                    previousPosition = position;
+                }
+                return activities;
+            }
+            return END_OF_PAGES;
+        }
+
+        /** @return null, if the page should be fetched again from the new position */
+        private List<AActivity> fetchPage() throws ConnectionException {
             try {
                 int limit = getConnection().fixedDownloadLimit(
                         toDownload, getTimeline().getTimelineType().getConnectionApiRoutine());
@@ -100,7 +227,7 @@ class TimelineDownloaderOther extends TimelineDownloader {
                 }
                 for (AActivity activity : activities) {
                     toDownload--;
-                    syncTracker.onNewMsg(activity.getTimelinePosition(), activity.getUpdatedDate());
+                    onNewItem(activity.getTimelinePosition(), activity.getUpdatedDate());
                     if (!activity.isSubscribedByMe().equals(TriState.FALSE)
                         && activity.getUpdatedDate() > 0
                         && execContext.getTimeline().getTimelineType().isSubscribedByMe()
@@ -108,12 +235,8 @@ class TimelineDownloaderOther extends TimelineDownloader {
                             ) {
                         activity.setSubscribedByMe(TriState.TRUE);
                     }
-                    di.onActivity(activity, false);
-                }
-                if (toDownload <= 0 || activities.isEmpty() || previousPosition.equals(syncTracker.getPreviousPosition())) {
-                    break;
                 }
-                previousPosition = syncTracker.getPreviousPosition();
+                return activities;
             } catch (ConnectionException e) {
                 if (e.getStatusCode() != StatusCode.NOT_FOUND) {
                     throw e;
@@ -121,11 +244,85 @@ class TimelineDownloaderOther extends TimelineDownloader {
                 if (previousPosition.isEmpty()) {
                     throw ConnectionException.hardConnectionException("No last position", e);
                 }
-                MyLog.d(this, "The timeline was not found, last position='" + previousPosition +"'", e);
+                MyLog.d(TimelineDownloaderOther.this, "The timeline was not found, last position='"
+                        + previousPosition +"'", e);
                 previousPosition = TimelinePosition.EMPTY;
+                return null;
             }
         }
-        di.saveLum();
+
+        /** The same change of the position, as {@link TimelineSyncTracker#onNewMsg(TimelinePosition, long)} makes */
+        private void onNewItem(TimelinePosition itemPosition, long itemDate) {
+            if (itemPosition == null || itemPosition.isEmpty() || itemDate <= 0) return;
+
+            boolean newFilled = StringUtils.isNewFilledValue(position.getPosition(), itemPosition.getPosition());
+            if (isSyncYounger()
+                    ? positionDate < itemDate || (positionDate == itemDate && newFilled)
+                    : positionDate == 0 || positionDate > itemDate || (positionDate == itemDate && newFilled)) {
+                position = itemPosition;
+                positionDate = itemDate;
+            }
+        }
+
+        /** Waits for the next page. The fetched pages are stored even if fetching of the next one failed */
+        @NonNull
+        List<AActivity> takePage() {
+            try {
+                while (!fetchingInline) {
+                    List<AActivity> activities = pages.poll(TASK_START_WAIT_MS, TimeUnit.MILLISECONDS);
+                    if (activities != null) return activities;
+
+                    if (claimed.compareAndSet(false, true)) {
+                        MyLog.v(TAG, "The fetcher task didn't start, fetching in the command thread");
+                        fetchingInline = true;
+                    } else if (taskEnded.getCount() == 0 && pages.isEmpty()) {
+                        return END_OF_PAGES;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return END_OF_PAGES;
+            }
+            return fetchNextInline();
+        }
+
+        private void fetchInline() {
+            claimed.set(true);
+            fetchingInline = true;
+        }
+
+        @NonNull
+        private List<AActivity> fetchNextInline() {
+            if (failure != null) return END_OF_PAGES;
+            try {
+                return fetchNextPage();
+            } catch (Throwable e) {
+                failure = e;
+                return END_OF_PAGES;
+            }
+        }
+
+        void stop() {
+            stopping = true;
+            if (claimed.compareAndSet(false, true) || fetchingInline || taskEnded.getCount() == 0) return;
+
+            task.cancelLogged(true);
+            pages.clear();
+            try {
+                taskEnded.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void throwIfFailed() throws ConnectionException {
+            Throwable e = failure;
+            if (e == null) return;
+            if (e instanceof ConnectionException) throw (ConnectionException) e;
+            if (e instanceof RuntimeException) throw (RuntimeException) e;
+            if (e instanceof Error) throw (Error) e;
+            throw new ConnectionException("Failed to fetch the timeline", e);
+        }
     }
 
     @NonNull
@@ -24,10 +24,12 @@ import android.widget.TextView;
 import org.andstatus.app.R;
 import org.andstatus.app.context.MyContext;
 import org.andstatus.app.context.MyPreferences;
+import org.andstatus.app.data.ImageFile;
 import org.andstatus.app.timeline.meta.Timeline;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.SharedPreferencesUtil;
 
+import java.util.Collection;
 import java.util.List;
 
 public abstract class BaseTimelineAdapter<T extends ViewItem<T>> extends BaseAdapter  implements View.OnClickListener {
@@ -41,6 +43,7 @@ public abstract class BaseTimelineAdapter<T extends ViewItem<T>> extends BaseAda
     private final TimelineData<T> listData;
     private final float displayDensity;
     private volatile boolean positionRestored = false;
+    private final ImagesPrefetcher<T> imagesPrefetcher = new ImagesPrefetcher<>(this);
 
     /** Single page data */
     public BaseTimelineAdapter(@NonNull MyContext myContext, @NonNull Timeline timeline, @NonNull List<T> items) {
@@ -121,6 +124,16 @@ public abstract class BaseTimelineAdapter<T extends ViewItem<T>> extends BaseAda
         }
     }
 
+    /** To be called, when the item at this position is shown */
+    protected void prefetchImages(int position) {
+        imagesPrefetcher.onPositionShown(position);
+    }
+
+    /** Adds images of the item, which will be shown with it, see {@link ImagesPrefetcher} */
+    public void addImagesToPrefetch(T item, Collection<ImageFile> images) {
+        // Nothing to prefetch by default
+    }
+
     public int getPositionById(long itemId) {
         return listData.getPositionById(itemId);
     }
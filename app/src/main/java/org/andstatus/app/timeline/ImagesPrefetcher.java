@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.timeline;
+
+import android.support.annotation.NonNull;
+
+import net.jcip.annotations.GuardedBy;
+
+import org.andstatus.app.data.ImageFile;
+import org.andstatus.app.os.AsyncTaskLauncher;
+import org.andstatus.app.os.MyAsyncTask;
+import org.andstatus.app.util.MyLog;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads images of the items, which are about to be shown, into the memory cache:
+ * {@link #ROWS_AHEAD} rows after the last shown one, in the direction of scrolling.
+ * The images are loaded one by one in a single background task, the nearest rows first.
+ * When the list is scrolled further, requests for rows outside the new look-ahead window are cancelled
+ * @author yvolk@yurivolkov.com
+ */
+class ImagesPrefetcher<T extends ViewItem<T>> {
+    static final int ROWS_AHEAD = 8;
+
+    private final BaseTimelineAdapter<T> adapter;
+    private final Object lock = new Object();
+    /** Images to load by the path of the file, in the order of loading */
+    @GuardedBy("lock")
+    private Map<String, ImageFile> requested = new LinkedHashMap<>();
+    @GuardedBy("lock")
+    private boolean loading = false;
+    private volatile int positionPrev = -1;
+    private final AtomicLong prefetchedCount = new AtomicLong();
+    private final AtomicLong cancelledCount = new AtomicLong();
+
+    ImagesPrefetcher(@NonNull BaseTimelineAdapter<T> adapter) {
+        this.adapter = adapter;
+    }
+
+    /** Is called in the UI thread, when the item at this position is shown */
+    void onPositionShown(int position) {
+        int prev = positionPrev;
+        positionPrev = position;
+        if (prev < 0 || position == prev) return;
+
+        Map<String, ImageFile> window = new LinkedHashMap<>();
+        List<ImageFile> images = new ArrayList<>();
+        int step = position > prev ? 1 : -1;
+        for (int ind = 1; ind <= ROWS_AHEAD; ind++) {
+            int positionAhead = position + step * ind;
+            if (positionAhead < 0 || positionAhead >= adapter.getCount()) break;
+
+            images.clear();
+            adapter.addImagesToPrefetch(adapter.getItem(positionAhead), images);
+            for (ImageFile imageFile : images) {
+                if (!window.containsKey(imageFile.getPath()) && imageFile.mayBePrefetched()) {
+                    window.put(imageFile.getPath(), imageFile);
+                }
+            }
+        }
+        synchronized (lock) {
+            for (String path : requested.keySet()) {
+                if (!window.containsKey(path)) {
+                    cancelledCount.incrementAndGet();
+                }
+            }
+            requested = window;
+            if (!loading && !requested.isEmpty()) {
+                launchLoader();
+            }
+        }
+    }
+
+    @GuardedBy("lock")
+    private void launchLoader() {
+        loading = true;
+        boolean launched = AsyncTaskLauncher.execute(this, false,
+                new MyAsyncTask<Void, Void, Void>(this, MyAsyncTask.PoolEnum.QUICK_UI) {
+                    @Override
+                    protected Void doInBackground2(Void... params) {
+                        ImageFile imageFile;
+                        while (!isCancelled() && (imageFile = nextToLoad()) != null) {
+                            imageFile.loadAndGetImage();
+                            prefetchedCount.incrementAndGet();
+                        }
+                        return null;
+                    }
+
+                    @Override
+                    protected void onFinish(Void aVoid, boolean success) {
+                        if (!success) {
+                            synchronized (lock) {
+                                loading = false;
+                            }
+                        }
+                        MyLog.v(ImagesPrefetcher.this, () -> "Prefetched " + prefetchedCount.get()
+                                + ", cancelled " + cancelledCount.get() + " images");
+                    }
+                });
+        if (!launched) {
+            loading = false;
+        }
+    }
+
+    private ImageFile nextToLoad() {
+        synchronized (lock) {
+            Iterator<ImageFile> iterator = requested.values().iterator();
+            if (!iterator.hasNext()) {
+                loading = false;
+                return null;
+            }
+            ImageFile imageFile = iterator.next();
+            iterator.remove();
+            return imageFile;
+        }
+    }
+}
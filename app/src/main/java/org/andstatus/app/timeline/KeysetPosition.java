@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.timeline;
+
+import android.provider.BaseColumns;
+import android.support.annotation.NonNull;
+
+import org.andstatus.app.data.ProjectionMap;
+import org.andstatus.app.database.table.ActivityTable;
+import org.andstatus.app.timeline.meta.TimelineType;
+import org.andstatus.app.util.MyLog;
+import org.andstatus.app.util.SelectionAndArgs;
+
+/**
+ * Boundary of a loaded {@link TimelinePage}: (time sort field, activity _id) of its first or last row.
+ * The next page is "seeked" from this position, so its query cost doesn't depend on
+ * how deep into the history we have scrolled
+ * @author yvolk@yurivolkov.com
+ */
+public final class KeysetPosition {
+    public static final KeysetPosition EMPTY = new KeysetPosition(0, 0);
+    private static final String ACTIVITY_ID_COLUMN = ProjectionMap.ACTIVITY_TABLE_ALIAS + "." + BaseColumns._ID;
+
+    public final long date;
+    public final long activityId;
+
+    public static KeysetPosition of(long date, long activityId) {
+        return date == 0 || activityId == 0 ? EMPTY : new KeysetPosition(date, activityId);
+    }
+
+    private KeysetPosition(long date, long activityId) {
+        this.date = date;
+        this.activityId = activityId;
+    }
+
+    public boolean isEmpty() {
+        return activityId == 0;
+    }
+
+    public boolean nonEmpty() {
+        return !isEmpty();
+    }
+
+    boolean isOlderThan(@NonNull KeysetPosition other) {
+        return date < other.date || (date == other.date && activityId < other.activityId);
+    }
+
+    boolean isYoungerThan(@NonNull KeysetPosition other) {
+        return date > other.date || (date == other.date && activityId > other.activityId);
+    }
+
+    /** Selects rows strictly older (olderThan = true) or younger than this position */
+    void addSeekSelection(@NonNull SelectionAndArgs sa, @NonNull TimelineType timelineType, boolean olderThan) {
+        if (isEmpty()) return;
+
+        final String field = ActivityTable.getTimeSortField(timelineType);
+        final String operator = olderThan ? " < ?" : " > ?";
+        sa.addSelection(field + operator
+                        + " OR (" + field + " = ? AND " + ACTIVITY_ID_COLUMN + operator + ")",
+                new String[]{String.valueOf(date), String.valueOf(date), String.valueOf(activityId)});
+    }
+
+    static String getSortOrder(@NonNull TimelineType timelineType, boolean ascending) {
+        return ActivityTable.getTimeSortOrder(timelineType, ascending) + ", "
+                + ACTIVITY_ID_COLUMN + (ascending ? " ASC" : " DESC");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        KeysetPosition that = (KeysetPosition) o;
+        return date == that.date && activityId == that.activityId;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (date ^ (date >>> 32));
+        return 31 * result + (int) (activityId ^ (activityId >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return isEmpty() ? "EMPTY" : MyLog.formatDateTime(date) + ", actId=" + activityId;
+    }
+}
@@ -22,16 +22,18 @@ import org.andstatus.app.timeline.meta.Timeline;
 import org.andstatus.app.timeline.meta.TimelineType;
 import org.andstatus.app.util.SharedPreferencesUtil;
 
+/**
+ * Filters notes of a loaded timeline. The search query of a timeline is not here: it is applied,
+ * when the timeline is queried from the database, using the full text search index
+ */
 public class TimelineFilter {
     public final KeywordsFilter keywordsFilter;
     public final boolean hideRepliesNotToMeOrFriends;
-    public final KeywordsFilter searchQuery;
 
     TimelineFilter(Timeline timeline) {
         keywordsFilter = new KeywordsFilter(
                 SharedPreferencesUtil.getString(MyPreferences.KEY_FILTER_HIDE_NOTES_BASED_ON_KEYWORDS, ""));
         hideRepliesNotToMeOrFriends = timeline.getTimelineType() == TimelineType.HOME
                 && SharedPreferencesUtil.getBoolean(MyPreferences.KEY_FILTER_HIDE_REPLIES_NOT_TO_ME_OR_FRIENDS, false);
-        searchQuery = new KeywordsFilter(timeline.getSearchQuery());
     }
 }
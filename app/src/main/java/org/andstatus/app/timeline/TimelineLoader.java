@@ -22,12 +22,14 @@ import android.support.annotation.NonNull;
 import org.andstatus.app.actor.ActorListLoader;
 import org.andstatus.app.actor.ActorListType;
 import org.andstatus.app.data.DbUtils;
+import org.andstatus.app.database.table.ActivityTable;
 import org.andstatus.app.list.SyncLoader;
 import org.andstatus.app.util.I18n;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.StopWatch;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -36,12 +38,13 @@ import java.util.List;
 public class TimelineLoader<T extends ViewItem<T>> extends SyncLoader<T> {
     private final TimelineParameters params;
     private final TimelinePage<T> page;
+    private final ArrayList<T> pageItems = new ArrayList<>();
 
     private final long instanceId;
 
     protected TimelineLoader(@NonNull TimelineParameters params, long instanceId) {
         this.params = params;
-        this.page = new TimelinePage<T>(getParams(), new ArrayList<>());
+        this.page = new TimelinePage<T>(getParams(), pageItems);
         this.items = page.items;
         this.instanceId = instanceId;
     }
@@ -55,7 +58,7 @@ public class TimelineLoader<T extends ViewItem<T>> extends SyncLoader<T> {
         }
         params.timeline.save(params.getMyContext());
         if (params.whichPage != WhichPage.EMPTY) {
-            filter(loadActors(loadFromCursor(queryDatabase())));
+            addToPage(loadActors(loadFromCursor(queryDatabase())));
         }
         params.isLoaded = true;
         if (MyLog.isDebugEnabled()) {
@@ -91,31 +94,45 @@ public class TimelineLoader<T extends ViewItem<T>> extends SyncLoader<T> {
         return cursor;
     }
 
+    /** Rows are filtered as they are read, so filtered out items are not kept in memory
+     * @return matched items in the order of the cursor */
     private List<T> loadFromCursor(Cursor cursor) {
         final String method = "loadFromCursor";
         final StopWatch stopWatch = StopWatch.createStarted();
         if (MyLog.isDebugEnabled()) {
             MyLog.d(this, method + " started" );
         }
-        List<T> items = new ArrayList<>();
+        List<T> items = Collections.emptyList();
+        TimelineFilter filter = new TimelineFilter(getParams().getTimeline());
         int rowsCount = 0;
+        int filteredOutCount = 0;
         if (cursor != null && !cursor.isClosed()) {
             try {
-                if (cursor.moveToFirst()) {
-                    do {
-                        rowsCount++;
-                        T item = (T) page.getEmptyItem().fromCursor(params.getMyContext(), cursor);
-                        getParams().rememberItemDateLoaded(item.getDate());
+                items = new ArrayList<>(cursor.getCount());
+                while (cursor.moveToNext()) {
+                    rowsCount++;
+                    T item = (T) page.getEmptyItem().fromCursor(params.getMyContext(), cursor);
+                    getParams().rememberItemPositionLoaded(item.getDate(),
+                            DbUtils.getLong(cursor, ActivityTable.ACTIVITY_ID));
+                    if (item.matches(filter)) {
                         items.add(item);
-                    } while (cursor.moveToNext());
+                    } else {
+                        filteredOutCount++;
+                        if (MyLog.isVerboseEnabled() && filteredOutCount < 6) {
+                            MyLog.v(this, filteredOutCount + " Filtered out: "
+                                    + I18n.trimTextAt(item.toString(), 200));
+                        }
+                    }
                 }
             } finally {
                 cursor.close();
             }
         }
         getParams().rowsLoaded = rowsCount;
+        getParams().rowsFilteredOut = filteredOutCount;
         if (MyLog.isDebugEnabled()) {
-            MyLog.d(this, method + " ended; " + rowsCount + " rows, " + stopWatch.getTime() + "ms" );
+            MyLog.d(this, method + " ended; Filtered out " + filteredOutCount + " of " + rowsCount
+                    + " rows, " + stopWatch.getTime() + "ms" );
         }
         return items;
     }
@@ -133,35 +150,15 @@ public class TimelineLoader<T extends ViewItem<T>> extends SyncLoader<T> {
         return items;
     }
 
-    protected void filter(List<T> items) {
-        final String method = "filter";
-        final StopWatch stopWatch = StopWatch.createStarted();
-        if (MyLog.isDebugEnabled()) {
-            MyLog.d(this, method + " started" );
-        }
-        TimelineFilter filter = new TimelineFilter(getParams().getTimeline());
-        int rowsCount = 0;
-        int filteredOutCount = 0;
-        boolean reversedOrder = getParams().isSortOrderAscending();
-        for (T item : items) {
-            rowsCount++;
-            if (item.matches(filter)) {
-                if (reversedOrder) {
-                    page.items.add(0, item);
-                } else {
-                    page.items.add(item);
-                }
-            } else {
-                filteredOutCount++;
-                if (MyLog.isVerboseEnabled() && filteredOutCount < 6) {
-                    MyLog.v(this, filteredOutCount + " Filtered out: "
-                            + I18n.trimTextAt(item.toString(), 200));
-                }
+    /** Places already filtered items into the page: the page is always sorted from younger to older items */
+    private void addToPage(List<T> items) {
+        pageItems.ensureCapacity(pageItems.size() + items.size());
+        if (getParams().isSortOrderAscending()) {
+            for (int ind = items.size() - 1; ind >= 0; ind--) {
+                pageItems.add(items.get(ind));
             }
-        }
-        if (MyLog.isDebugEnabled()) {
-            MyLog.d(this, method + " ended; Filtered out " + filteredOutCount + " of " + rowsCount
-                    + " rows, " + stopWatch.getTime() + "ms" );
+        } else {
+            pageItems.addAll(items);
         }
     }
 
@@ -47,6 +47,18 @@ public class TimelinePage<T extends ViewItem<T>> {
         this.items = items == null ? Collections.emptyList() : items;
     }
 
+    /** Position to seek an older page from */
+    @NonNull
+    public KeysetPosition getOldestPosition() {
+        return params.getOldestLoaded();
+    }
+
+    /** Position to seek a younger page from */
+    @NonNull
+    public KeysetPosition getYoungestPosition() {
+        return params.getYoungestLoaded();
+    }
+
     public void setLoadedActor(ActorListLoader loader) {
         if (params.timeline.getTimelineType().withActorProfile()) {
             int index = loader.getList().indexOf(ActorViewItem.fromActor(params.timeline.actor));
@@ -53,6 +53,10 @@ public class TimelineParameters {
     private Set<String> mProjection;
 
     long maxDate = 0;
+    /** Keyset pagination: load rows, older than this position. See {@link KeysetPosition} */
+    KeysetPosition olderThan = KeysetPosition.EMPTY;
+    /** Keyset pagination: load rows, younger than this position */
+    KeysetPosition youngerThan = KeysetPosition.EMPTY;
 
     // These params are updated just before page loading
     volatile long minDate = 0;
@@ -62,8 +66,11 @@ public class TimelineParameters {
     // Execution state / loaded data:
     volatile boolean isLoaded = false;
     volatile int rowsLoaded = 0;
+    volatile int rowsFilteredOut = 0;
     volatile long minDateLoaded = 0;
     volatile long maxDateLoaded = 0;
+    volatile KeysetPosition oldestLoaded = KeysetPosition.EMPTY;
+    volatile KeysetPosition youngestLoaded = KeysetPosition.EMPTY;
 
     public static TimelineParameters clone(@NonNull TimelineParameters prev, WhichPage whichPage) {
         TimelineParameters params = new TimelineParameters(prev.myContext);
@@ -82,6 +89,7 @@ public class TimelineParameters {
             case OLDER:
                 if (prev.mayHaveOlderPage()) {
                     params.maxDate = prev.minDateLoaded;
+                    params.olderThan = prev.oldestLoaded;
                 } else {
                     params.maxDate = prev.maxDate;
                 }
@@ -89,6 +97,7 @@ public class TimelineParameters {
             case YOUNGER:
                 if (prev.mayHaveYoungerPage()) {
                     params.minDate = prev.maxDateLoaded;
+                    params.youngerThan = prev.youngestLoaded;
                 } else {
                     params.minDate = prev.minDate;
                 }
@@ -108,15 +117,32 @@ public class TimelineParameters {
         return isLoaded;
     }
 
+    /** @return Number of rows, read from the database for this page, including filtered out ones */
+    public int getRowsLoaded() {
+        return rowsLoaded;
+    }
+
+    /** @return Number of rows, rejected by {@link TimelineFilter} */
+    public int getRowsFilteredOut() {
+        return rowsFilteredOut;
+    }
+
     public boolean mayHaveYoungerPage() {
         return maxDate > 0
-                || (minDate > 0 && rowsLoaded > 0 && minDate < maxDateLoaded);
+                || (minDate > 0 && rowsLoaded > 0
+                    && (minDate < maxDateLoaded || youngestLoaded.isYoungerThan(youngerThan)));
     }
 
     public boolean mayHaveOlderPage() {
         return whichPage.equals(WhichPage.CURRENT)
                 || minDate > 0
-                || (maxDate > 0 && rowsLoaded > 0 && maxDate > minDateLoaded);
+                || (maxDate > 0 && rowsLoaded > 0
+                    && (maxDate > minDateLoaded || (olderThan.nonEmpty() && oldestLoaded.isOlderThan(olderThan))));
+    }
+
+    /** The page is loaded by "seeking" from a known position instead of by a date window */
+    public boolean isKeysetPage() {
+        return olderThan.nonEmpty() || youngerThan.nonEmpty();
     }
 
     public boolean isSortOrderAscending() {
@@ -144,9 +170,12 @@ public class TimelineParameters {
             //    + ", projection=" + Arrays.toString(mProjection)
                 + (minDate > 0 ? ", minDate=" + MyLog.formatDateTime(minDate) : "")
                 + (maxDate > 0 ? ", maxDate=" + MyLog.formatDateTime(maxDate) : "")
+                + (olderThan.isEmpty() ? "" : ", olderThan=" + olderThan)
+                + (youngerThan.isEmpty() ? "" : ", youngerThan=" + youngerThan)
                 + (selectionAndArgs.isEmpty() ? "" : ", sa=" + selectionAndArgs)
                 + (StringUtils.isEmpty(sortOrderAndLimit) ? "" : ", sortOrder=" + sortOrderAndLimit)
-                + (isLoaded  ? ", loaded" : "")
+                + (isLoaded  ? ", loaded " + rowsLoaded + " rows"
+                    + (rowsFilteredOut > 0 ? ", filtered out " + rowsFilteredOut : "") : "")
                 + (mLoaderCallbacks == null ? "" : ", loaderCallbacks=" + mLoaderCallbacks)
         );
     }
@@ -186,8 +215,9 @@ public class TimelineParameters {
         if (!timeline.equals(that.timeline)) return false;
         if (!whichPage.equals(WhichPage.CURRENT) && !that.whichPage.equals(WhichPage.CURRENT)) {
             if (minDate != that.minDate) return false;
+            if (!youngerThan.equals(that.youngerThan)) return false;
         }
-        return maxDate == that.maxDate;
+        return maxDate == that.maxDate && olderThan.equals(that.olderThan);
     }
 
     @Override
@@ -197,8 +227,10 @@ public class TimelineParameters {
             result = 31 * result + (-1 ^ (-1 >>> 32));
         } else {
             result = 31 * result + (int) (minDate ^ (minDate >>> 32));
+            result = 31 * result + youngerThan.hashCode();
         }
         result = 31 * result + (int) (maxDate ^ (maxDate >>> 32));
+        result = 31 * result + olderThan.hashCode();
         return result;
     }
 
@@ -206,6 +238,8 @@ public class TimelineParameters {
         whichPage = WhichPage.CURRENT;
         minDate = 0;
         maxDate = 0;
+        olderThan = KeysetPosition.EMPTY;
+        youngerThan = KeysetPosition.EMPTY;
         return parseUri(Uri.parse(savedState.getString(IntentExtra.MATCHED_URI.key,"")), "");
     }
     
@@ -235,6 +269,30 @@ public class TimelineParameters {
         }
     }
 
+    /** Remembers boundaries of the loaded page to seek next pages from them */
+    public void rememberItemPositionLoaded(long date, long activityId) {
+        rememberItemDateLoaded(date);
+        KeysetPosition position = KeysetPosition.of(date, activityId);
+        if (position.isEmpty()) return;
+
+        if (oldestLoaded.isEmpty() || position.isOlderThan(oldestLoaded)) {
+            oldestLoaded = position;
+        }
+        if (youngestLoaded.isEmpty() || position.isYoungerThan(youngestLoaded)) {
+            youngestLoaded = position;
+        }
+    }
+
+    @NonNull
+    public KeysetPosition getOldestLoaded() {
+        return oldestLoaded;
+    }
+
+    @NonNull
+    public KeysetPosition getYoungestLoaded() {
+        return youngestLoaded;
+    }
+
     private void prepareQueryParameters() {
         switch (whichPage) {
             case CURRENT:
@@ -248,12 +306,21 @@ public class TimelineParameters {
     }
 
     private String buildSortOrderAndLimit() {
+        if (isKeysetPage()) {
+            return KeysetPosition.getSortOrder(getTimelineType(), isSortOrderAscending()) + " LIMIT " + PAGE_SIZE;
+        }
         return  ActivityTable.getTimeSortOrder(getTimelineType(), isSortOrderAscending())
                 + (minDate > 0 && maxDate > 0 ? "" : " LIMIT " + PAGE_SIZE);
     }
 
     private SelectionAndArgs buildSelectionAndArgs() {
         SelectionAndArgs sa = new SelectionAndArgs();
+        if (isKeysetPage()) {
+            sa.addSelection(ActivityTable.getTimeSortField(getTimelineType()) + " > 0");
+            olderThan.addSeekSelection(sa, getTimelineType(), true);
+            youngerThan.addSeekSelection(sa, getTimelineType(), false);
+            return sa;
+        }
         final long minDateActual = minDate > 0 ? minDate : 1;
         sa.addSelection(ActivityTable.getTimeSortField(getTimelineType()) + " >= ?",
                 String.valueOf(minDateActual));
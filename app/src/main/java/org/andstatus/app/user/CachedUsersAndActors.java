@@ -3,6 +3,8 @@ package org.andstatus.app.user;
 import android.database.Cursor;
 import android.support.annotation.NonNull;
 
+import net.jcip.annotations.GuardedBy;
+
 import org.andstatus.app.context.MyContext;
 import org.andstatus.app.data.ActorSql;
 import org.andstatus.app.data.DbUtils;
@@ -19,20 +21,38 @@ import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.TriState;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
 import static org.andstatus.app.util.RelativeTime.SOME_TIME_AGO;
 
+/**
+ * Users and actors, seen recently, and all my users and actors.
+ * Caches of other users and actors are bounded, the least recently used are evicted first
+ */
 public class CachedUsersAndActors {
+    static final int MAX_CACHED_ACTORS = 2000;
+    static final int MAX_CACHED_USERS = 1000;
     private final MyContext myContext;
-    public final Map<Long, User> users = new ConcurrentHashMap<>();
-    public final Map<Long, Actor> actors = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    @GuardedBy("lock")
+    private final Map<Long, User> users = new LruMap<>(MAX_CACHED_USERS);
+    @GuardedBy("lock")
+    private final Map<Long, Actor> actors = new LruMap<>(MAX_CACHED_ACTORS);
+    /** Reverse index: actorId -> cached user of that actor */
+    @GuardedBy("lock")
+    private final Map<Long, User> actorIdToUser = new LruMap<>(MAX_CACHED_ACTORS);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
     public final Map<Long, User> myUsers = new ConcurrentHashMap<>();
     public final Map<Long, Actor> myActors = new ConcurrentHashMap<>();
+    /** Ids of all actors of my users, so {@link #isMe(long)} doesn't scan the users */
+    private final Set<Long> myActorIds = ConcurrentHashMap.newKeySet();
     /** key - friendId, set of values - IDs of my actors  */
     public final Map<Long, Set<Long>> friendsOfMyActors = new ConcurrentHashMap<>();
 
@@ -44,6 +64,20 @@ public class CachedUsersAndActors {
         this.myContext = myContext;
     }
 
+    private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+        private final int maxSize;
+
+        LruMap(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxSize;
+        }
+    }
+
     public int size() {
         return myUsers.size();
     }
@@ -60,10 +94,14 @@ public class CachedUsersAndActors {
     }
 
     private void initializeMyUsers() {
-        users.clear();
-        actors.clear();
+        synchronized (lock) {
+            users.clear();
+            actors.clear();
+            actorIdToUser.clear();
+        }
         myUsers.clear();
         myActors.clear();
+        myActorIds.clear();
         final String sql = "SELECT " + ActorSql.select()
                 + " FROM " + ActorSql.tables()
                 + " WHERE " + UserTable.IS_MY + "=" + TriState.TRUE.id;
@@ -127,7 +165,15 @@ public class CachedUsersAndActors {
 
     @Override
     public String toString() {
-        return "MyUsers{\n" + myUsers + "\nMy actors: " + myActors + "\nMy friends: " + friendsOfMyActors + '}';
+        return "MyUsers{\n" + myUsers + "\nMy actors: " + myActors + "\nMy friends: " + friendsOfMyActors
+                + "\n" + getCacheInfo() + '}';
+    }
+
+    public String getCacheInfo() {
+        synchronized (lock) {
+            return "Cached actors: " + actors.size() + ", users: " + users.size()
+                    + "; hits: " + hits.get() + ", misses: " + misses.get();
+        }
     }
 
     public boolean isMeOrMyFriend(Actor actor) {
@@ -139,9 +185,34 @@ public class CachedUsersAndActors {
     }
 
     public boolean isMe(long actorId) {
-        return actorId != 0 && (
-            myActors.containsKey(actorId) || myUsers.values().stream().anyMatch(user -> user.actorIds.contains(actorId))
-        );
+        return actorId != 0 && (myActorIds.contains(actorId) || myActors.containsKey(actorId));
+    }
+
+    /** @return {@link Actor#EMPTY} if the actor is not cached */
+    @NonNull
+    public Actor getCachedActor(long actorId) {
+        Actor actor;
+        synchronized (lock) {
+            actor = actors.get(actorId);
+        }
+        if (actor == null) {
+            actor = myActors.get(actorId);
+        }
+        (actor == null ? misses : hits).incrementAndGet();
+        return actor == null ? Actor.EMPTY : actor;
+    }
+
+    /** @return {@link User#EMPTY} if the user is not cached */
+    @NonNull
+    public User getCachedUser(long userId) {
+        User user;
+        synchronized (lock) {
+            user = users.get(userId);
+        }
+        if (user == null) {
+            user = myUsers.get(userId);
+        }
+        return user == null ? User.EMPTY : user;
     }
 
     public Actor lookupUser(Actor actor) {
@@ -164,7 +235,7 @@ public class CachedUsersAndActors {
     public Actor toHomeOrigin(Actor actor) {
         return actor.origin.getHost().equals(actor.getHost())
                 ? actor
-                : actor.user.actorIds.stream().map(id -> actors.getOrDefault(id, Actor.EMPTY))
+                : actor.user.actorIds.stream().map(this::getCachedActor)
                     .filter(a -> a != Actor.EMPTY && a.origin.getHost().equals(actor.getHost()))
                     .findAny().orElse(actor);
     }
@@ -174,7 +245,7 @@ public class CachedUsersAndActors {
     public Actor toOrigin(Actor actor, Origin origin) {
         return actor.origin.equals(origin)
                 ? actor
-                : actor.user.actorIds.stream().map(id -> actors.getOrDefault(id, Actor.EMPTY))
+                : actor.user.actorIds.stream().map(this::getCachedActor)
                 .filter(a -> a != Actor.EMPTY && a.origin.equals(origin))
                 .findAny().orElse(actor);
     }
@@ -182,10 +253,14 @@ public class CachedUsersAndActors {
     @NonNull
     public User userFromActorId(long actorId, Supplier<User> userSupplier) {
         if (actorId == 0) return User.EMPTY;
-        final User user1 = actors.getOrDefault(actorId, Actor.EMPTY).user;
-        return user1.nonEmpty()
-                ? user1
-                : users.values().stream().filter(user -> user.actorIds.contains(actorId)).findFirst().orElseGet(userSupplier);
+        final User user1 = getCachedActor(actorId).user;
+        if (user1.nonEmpty()) return user1;
+
+        User user2;
+        synchronized (lock) {
+            user2 = actorIdToUser.get(actorId);
+        }
+        return user2 == null ? userSupplier.get() : user2;
     }
 
     public void updateCache(@NonNull Actor actor) {
@@ -194,23 +269,56 @@ public class CachedUsersAndActors {
         final User user = actor.user;
         final long userId = user.userId;
         final long actorId = actor.actorId;
-        if (actorId != 0) {
-            user.actorIds.add(actorId);
-            updateCachedActor(actors, actor);
-            if (user.isMyUser().isTrue) updateCachedActor(myActors, actor);
-        }
-        if (userId == 0) return;
-
-        User cached = users.getOrDefault(userId, User.EMPTY);
-        if (cached.isEmpty()) {
-            users.putIfAbsent(userId, user);
-            if (user.isMyUser().isTrue) myUsers.putIfAbsent(userId, user);
-        } else if (user.isMyUser().isTrue && cached.isMyUser().untrue) {
-            user.actorIds.addAll(cached.actorIds);
-            users.put(userId, user);
-            myUsers.put(userId, user);
-        } else if (actorId != 0) {
-            cached.actorIds.add(actorId);
+        synchronized (lock) {
+            if (actorId != 0) {
+                user.actorIds.add(actorId);
+                updateCachedActor(actors, actor);
+                if (user.isMyUser().isTrue) updateCachedActor(myActors, actor);
+            }
+            if (userId == 0) return;
+
+            User cached = getCachedUser(userId);
+            if (cached.isEmpty()) {
+                users.put(userId, user);
+                if (user.isMyUser().isTrue) myUsers.putIfAbsent(userId, user);
+                indexActorsOf(user);
+            } else if (user.isMyUser().isTrue && cached.isMyUser().untrue) {
+                user.actorIds.addAll(cached.actorIds);
+                users.put(userId, user);
+                myUsers.put(userId, user);
+                indexActorsOf(user);
+            } else if (actorId != 0) {
+                cached.actorIds.add(actorId);
+                indexActorsOf(cached);
+            }
+        }
+    }
+
+    @GuardedBy("lock")
+    private void indexActorsOf(@NonNull User user) {
+        for (long actorId : user.actorIds) {
+            actorIdToUser.put(actorId, user);
+        }
+        if (user.isMyUser().isTrue) {
+            myActorIds.addAll(user.actorIds);
+        }
+    }
+
+    /** Evicts the actors and their users, which are not mine, e.g. after changes of the actors were rolled back.
+     * They will be loaded from the database again */
+    public void evict(@NonNull Collection<Long> actorIds) {
+        synchronized (lock) {
+            for (long actorId : actorIds) {
+                actors.remove(actorId);
+                User user = actorIdToUser.remove(actorId);
+                if (user == null || myUsers.containsKey(user.userId)) continue;
+
+                users.remove(user.userId);
+                for (long otherActorId : user.actorIds) {
+                    actors.remove(otherActorId);
+                    actorIdToUser.remove(otherActorId);
+                }
+            }
         }
     }
 
@@ -68,7 +68,7 @@ public class User implements IsEmpty {
     @NonNull
     public static User fromCursor(MyContext myContext, Cursor cursor) {
         final long userId = DbUtils.getLong(cursor, ActorTable.USER_ID);
-        User user1 = myContext.users().users.getOrDefault(userId, User.EMPTY);
+        User user1 = myContext.users().getCachedUser(userId);
         return user1.nonEmpty() ? user1
                 : new User(userId, DbUtils.getString(cursor, UserTable.KNOWN_AS),
                     DbUtils.getTriState(cursor, UserTable.IS_MY),
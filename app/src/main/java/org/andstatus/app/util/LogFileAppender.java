@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2018 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.util;
+
+import android.util.Log;
+
+import net.jcip.annotations.GuardedBy;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends lines to the current log file (see {@link MyLog#getLogFilename()}) in a background thread,
+ * so logging threads wait neither for file I/O nor for each other.
+ * Lines are queued in a bounded buffer; when it is full, new lines are dropped and counted.
+ * The file is kept open, flushed periodically and rotated when it grows too large
+ * @author yvolk@yurivolkov.com
+ */
+class LogFileAppender {
+    private static final String TAG = LogFileAppender.class.getSimpleName();
+    static final int BUFFER_CAPACITY = 4000;
+    static final long FLUSH_PERIOD_MS = 1000;
+    static final long MAX_FILE_SIZE = 8L * 1024 * 1024;
+
+    private final BlockingQueue<String> buffer = new ArrayBlockingQueue<>(BUFFER_CAPACITY);
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final Object writerLock = new Object();
+    private volatile Thread thread = null;
+
+    @GuardedBy("writerLock")
+    private Writer writer = null;
+    @GuardedBy("writerLock")
+    private String openedFilename = null;
+    /** Counts bytes, written to the file, including its initial length */
+    @GuardedBy("writerLock")
+    private CountingOutputStream fileOut = null;
+    @GuardedBy("writerLock")
+    private boolean unflushed = false;
+    @GuardedBy("writerLock")
+    private long flushedAt = 0;
+
+    void append(String line) {
+        if (!buffer.offer(line)) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /** Opens (creates) the log file and starts the writer thread, if not started yet */
+    void start() {
+        synchronized (writerLock) {
+            ensureWriter();
+            if (thread == null) {
+                Thread newThread = new Thread(this::run, TAG);
+                newThread.setDaemon(true);
+                newThread.setPriority(Thread.MIN_PRIORITY);
+                thread = newThread;
+                newThread.start();
+            }
+        }
+    }
+
+    /** Writes all buffered lines and closes the log file */
+    void stop() {
+        Thread oldThread;
+        synchronized (writerLock) {
+            oldThread = thread;
+            thread = null;
+            writeBuffered();
+            closeWriter();
+        }
+        if (oldThread != null) {
+            oldThread.interrupt();
+        }
+    }
+
+    private void run() {
+        while (thread == Thread.currentThread()) {
+            String line;
+            try {
+                line = buffer.poll(FLUSH_PERIOD_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            synchronized (writerLock) {
+                if (line != null) {
+                    write(line);
+                    writeBuffered();
+                }
+                flushIfDue(line == null);
+            }
+        }
+    }
+
+    @GuardedBy("writerLock")
+    private void writeBuffered() {
+        String line;
+        while ((line = buffer.poll()) != null) {
+            write(line);
+        }
+    }
+
+    @GuardedBy("writerLock")
+    private void write(String line) {
+        if (!ensureWriter()) return;
+
+        try {
+            long dropped = droppedCount.getAndSet(0);
+            if (dropped > 0) {
+                writeRaw(MyLog.currentDateTimeForLogLine() + " W/" + TAG + ": " + dropped
+                        + " lines dropped, as the log buffer was full\n");
+            }
+            writeRaw(line);
+            if (fileOut.count > MAX_FILE_SIZE) {
+                rotate();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write to " + openedFilename, e);
+            closeWriter();
+        }
+    }
+
+    @GuardedBy("writerLock")
+    private void writeRaw(String string) throws IOException {
+        writer.write(string);
+        unflushed = true;
+    }
+
+    @GuardedBy("writerLock")
+    private void rotate() {
+        String previousFilename = openedFilename;
+        MyLog.setNextLogFileName();
+        if (previousFilename.equals(MyLog.getLogFilename())) {
+            // The same second; keep appending to the file
+            fileOut.count = 0;
+        } else {
+            closeWriter();
+        }
+    }
+
+    /** Also checks that the log file wasn't removed, e.g. by the pruner */
+    @GuardedBy("writerLock")
+    private void flushIfDue(boolean idle) {
+        if (writer == null) return;
+
+        long now = System.currentTimeMillis();
+        if (!idle && now - flushedAt < FLUSH_PERIOD_MS) return;
+
+        flushedAt = now;
+        if (unflushed) {
+            try {
+                writer.flush();
+                unflushed = false;
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to flush " + openedFilename, e);
+                closeWriter();
+                return;
+            }
+        }
+        if (!FileUtils.exists(MyLog.getFileInLogDir(openedFilename, false))) {
+            closeWriter();
+            MyLog.setNextLogFileName();
+        }
+    }
+
+    @GuardedBy("writerLock")
+    private boolean ensureWriter() {
+        String filename = MyLog.getLogFilename();
+        if (StringUtils.isEmpty(filename)) {
+            closeWriter();
+            return false;
+        }
+        if (writer != null && filename.equals(openedFilename)) return true;
+
+        closeWriter();
+        File file = MyLog.getFileInLogDir(filename, false);
+        if (file == null) return false;
+        try {
+            fileOut = new CountingOutputStream(new FileOutputStream(file, true), file.length());
+            writer = new BufferedWriter(new OutputStreamWriter(fileOut, StandardCharsets.UTF_8));
+            openedFilename = filename;
+            flushedAt = System.currentTimeMillis();
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to open " + filename, e);
+            return false;
+        }
+    }
+
+    @GuardedBy("writerLock")
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to close " + openedFilename, e);
+            }
+        }
+        writer = null;
+        fileOut = null;
+        openedFilename = null;
+        unflushed = false;
+    }
+
+    /** Encoded bytes, rather than characters, are limited by {@link #MAX_FILE_SIZE} */
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out, long initialCount) {
+            super(out);
+            count = initialCount;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -98,6 +98,7 @@ public class MyLog {
     private final static AtomicBoolean logToFileEnabled = new AtomicBoolean(false);
     @GuardedBy("logToFileEnabled")
     private static String logFileName = null;
+    private static final LogFileAppender logFileAppender = new LogFileAppender();
 
     public static final String COMMA = ",";
 
@@ -497,7 +498,9 @@ public class MyLog {
         logToFileEnabled.set(logEnabled);
         if (logToFileEnabled.get()) {
             setNextLogFileName(false);
+            logFileAppender.start();
         } else { 
+            logFileAppender.stop();
             synchronized (logToFileEnabled) {
                 logFileName = null;
             }
@@ -538,26 +541,14 @@ public class MyLog {
             builder.append(getStackTrace(tr));
         }
         builder.append("\n");
-        writeRawStringToLogFile(builder);
+        logFileAppender.append(builder.toString());
     }
 
-    private static final Object logFileWriterLock = new Object();
-
-    private static void writeRawStringToLogFile(StringBuilder builder) {
-        synchronized (logFileWriterLock) {
-            writeStringToFile(builder.toString(), getMostRecentLogFileName(), true, false);
-        }
-    }
-    
-    private static String getMostRecentLogFileName() {
-        String filename = getLogFilename();
-        if (!FileUtils.exists(getFileInLogDir(filename, false))) {
-            setNextLogFileName(true);
-            filename = getLogFilename();
-        }
-        return filename;
+    /** Number of log lines, which were not written to the log file, because its buffer was full */
+    public static long getDroppedLogLinesCount() {
+        return logFileAppender.getDroppedCount();
     }
-    
+
     public static String getLogFilename() {
         synchronized (logToFileEnabled) {
             return logFileName;
@@ -604,10 +595,14 @@ public class MyLog {
     }
 
     public static void logNetworkLevelMessage(Object objTag, String namePrefix, Object message) {
-        if (message != null && SharedPreferencesUtil.getBoolean(MyPreferences.KEY_LOG_NETWORK_LEVEL_MESSAGES, false)) {
+        if (message != null && isLogNetworkLevelMessages()) {
             logJson(objTag, namePrefix, message, true);
         }
     }
+
+    public static boolean isLogNetworkLevelMessages() {
+        return SharedPreferencesUtil.getBoolean(MyPreferences.KEY_LOG_NETWORK_LEVEL_MESSAGES, false);
+    }
    
     public static void logJson(Object objTag, String namePrefix, Object jso, boolean toFile) {
         if (jso == null) {